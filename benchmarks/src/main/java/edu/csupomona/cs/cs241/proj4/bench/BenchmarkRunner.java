@@ -0,0 +1,42 @@
+package edu.csupomona.cs.cs241.proj4.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the gc profiler always on, so every result has
+ * the throughput, the latency percentiles (p99 among them) and the
+ * allocation rate. Any normal JMH option can be added on the command line,
+ * for example
+ * 
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar TreeBenchmark.lookup -p size=1000000 -p distribution=ZIPFIAN
+ * </pre>
+ * 
+ * @author Satshabad
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Runs the benchmarks
+     * 
+     * @param args
+     *            JMH command line options
+     * @throws CommandLineOptionException
+     *             if the options can't be read
+     * @throws RunnerException
+     *             if a benchmark fails
+     */
+    public static void main(String[] args) throws CommandLineOptionException,
+            RunnerException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+}
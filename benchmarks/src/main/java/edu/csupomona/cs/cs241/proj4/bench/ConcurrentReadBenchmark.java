@@ -0,0 +1,270 @@
+package edu.csupomona.cs.cs241.proj4.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.csupomona.cs.cs241.proj4.ConcurrentRedBlackTree;
+import edu.csupomona.cs.cs241.proj4.RedBlackTree;
+import edu.csupomona.cs.cs241.proj4.ShardedRedBlackTree;
+
+/**
+ * Measures one tree shared by as many threads as there are cores, with a
+ * given share of the operations being writes. Compares a tree guarded by
+ * synchronized against {@link ConcurrentRedBlackTree} and
+ * {@link ShardedRedBlackTree}. Run with -t to try
+ * other thread counts.
+ *
+ * @author Satshabad
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@Threads(Threads.MAX)
+public class ConcurrentReadBenchmark {
+
+    /**
+     * How many lookups are prepared ahead, a power of two
+     */
+    private static final int PROBES = 1 << 16;
+
+    /**
+     * The most threads that get keys of their own to write
+     */
+    private static final int MAX_THREADS = 1024;
+
+    /**
+     * The number of keys in the tree
+     */
+    @Param({ "100000", "1000000" })
+    int size;
+
+    /**
+     * Out of every 100 operations, how many are writes
+     */
+    @Param({ "0", "1", "10", "50" })
+    int writePercent;
+
+    /**
+     * How the tree is shared
+     */
+    @Param
+    Guard guard;
+
+    /**
+     * The shared tree
+     */
+    private OrderedIndex index;
+
+    /**
+     * Keys in the tree in a random order, these are the ones looked up
+     */
+    private Long[] probes;
+
+    /**
+     * Hands each thread its own key to write
+     */
+    private final AtomicInteger threads = new AtomicInteger();
+
+    /**
+     * Fills the tree with the even keys 0 to 2 * size - 2, the odd keys are
+     * left for the threads to write
+     *
+     * @pre true
+     * @post the tree holds size keys
+     */
+    @Setup(Level.Trial)
+    public void fill() {
+        index = guard.create();
+        for (int i = 0; i < size; i++) {
+            Long key = Long.valueOf(2L * i);
+            index.add(key, key);
+        }
+        Random random = new Random(7);
+        probes = new Long[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = Long.valueOf(2L * random.nextInt(size));
+        }
+    }
+
+    /**
+     * Does a lookup, or writePercent of the time an add of a new key of the
+     * thread's own or a delete of the one it added before. Those keys are odd
+     * and spread over the whole range so every part of the tree is written.
+     *
+     * @param state
+     *            the thread's place in the probes and its key
+     * @return the value found or deleted
+     */
+    @Benchmark
+    public Long operate(ThreadState state) {
+        int step = state.step++;
+        if (step % 100 < writePercent) {
+            if (state.added) {
+                state.added = false;
+                return index.delete(state.key);
+            }
+            state.added = true;
+            long slot = (long) (state.writes++ % (size / MAX_THREADS + 1))
+                    * MAX_THREADS + state.id;
+            state.key = Long.valueOf(2 * slot + 1);
+            index.add(state.key, state.key);
+            return state.key;
+        }
+        return index.lookup(probes[(step + state.offset) & (PROBES - 1)]);
+    }
+
+    /**
+     * What each thread has to remember between operations
+     *
+     * @author Satshabad
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        /**
+         * how many operations this thread has done
+         */
+        int step;
+
+        /**
+         * where this thread starts in the probes
+         */
+        int offset;
+
+        /**
+         * which thread this is, the odd keys it writes are id apart from the
+         * next multiple of MAX_THREADS
+         */
+        int id;
+
+        /**
+         * how many keys this thread has added
+         */
+        int writes;
+
+        /**
+         * the key this thread added last
+         */
+        Long key;
+
+        /**
+         * whether key is in the tree now
+         */
+        boolean added;
+
+        /**
+         * Gives this thread its id and place
+         *
+         * @param benchmark
+         *            the shared state
+         */
+        @Setup(Level.Trial)
+        public void claim(ConcurrentReadBenchmark benchmark) {
+            id = benchmark.threads.getAndIncrement() % MAX_THREADS;
+            offset = id * 7919;
+        }
+    }
+
+    /**
+     * The ways of sharing one tree between threads
+     *
+     * @author Satshabad
+     */
+    public enum Guard {
+
+        /**
+         * Every call holds the tree's monitor
+         */
+        SYNCHRONIZED {
+            public OrderedIndex create() {
+                final RedBlackTree<Long, Long> tree = new RedBlackTree<Long, Long>();
+                return new OrderedIndex() {
+                    public synchronized boolean add(Long key, Long value) {
+                        return tree.add(key, value);
+                    }
+
+                    public synchronized Long lookup(Long key) {
+                        return tree.lookup(key);
+                    }
+
+                    public synchronized Long delete(Long key) {
+                        return tree.delete(key);
+                    }
+                };
+            }
+        },
+
+        /**
+         * Reads are optimistic and only writes lock
+         */
+        STAMPED {
+            public OrderedIndex create() {
+                final ConcurrentRedBlackTree<Long, Long> tree = new ConcurrentRedBlackTree<Long, Long>();
+                return new OrderedIndex() {
+                    public boolean add(Long key, Long value) {
+                        return tree.add(key, value);
+                    }
+
+                    public Long lookup(Long key) {
+                        return tree.lookup(key);
+                    }
+
+                    public Long delete(Long key) {
+                        return tree.delete(key);
+                    }
+                };
+            }
+        },
+
+        /**
+         * The keys are split into one range per core, each with its own lock
+         */
+        SHARDED {
+            public OrderedIndex create() {
+                final ShardedRedBlackTree<Long, Long> tree = new ShardedRedBlackTree<Long, Long>(
+                        Runtime.getRuntime().availableProcessors());
+                return new OrderedIndex() {
+                    public boolean add(Long key, Long value) {
+                        return tree.add(key, value);
+                    }
+
+                    public Long lookup(Long key) {
+                        return tree.lookup(key);
+                    }
+
+                    public Long delete(Long key) {
+                        return tree.delete(key);
+                    }
+                };
+            }
+        };
+
+        /**
+         * Makes a new empty tree shared this way
+         *
+         * @pre true
+         * @post an empty index is returned
+         *
+         * @return the new index
+         */
+        public abstract OrderedIndex create();
+    }
+}
@@ -0,0 +1,146 @@
+package edu.csupomona.cs.cs241.proj4.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.csupomona.cs.cs241.proj4.Codec;
+import edu.csupomona.cs.cs241.proj4.Durability;
+import edu.csupomona.cs.cs241.proj4.DurableRedBlackTree;
+
+/**
+ * Measures the adds a second of a {@link DurableRedBlackTree} in each
+ * {@link Durability}, written by as many threads as there are cores. The log
+ * is kept in a new directory under java.io.tmpdir, so point that at the disk
+ * to be measured. Run with -t 1 to see one writer, where a group commit can't
+ * do better than forcing each write.
+ *
+ * @author Satshabad
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class DurabilityBenchmark {
+
+    /**
+     * How soon an add is forced to disk
+     */
+    @Param
+    Durability durability;
+
+    /**
+     * The tree written to
+     */
+    private DurableRedBlackTree<Long, Long> tree;
+
+    /**
+     * Where the tree keeps its checkpoint and log
+     */
+    private File directory;
+
+    /**
+     * Hands each thread its own keys
+     */
+    private final AtomicInteger threads = new AtomicInteger();
+
+    /**
+     * Opens an empty tree in a new directory
+     *
+     * @pre true
+     * @post the tree is empty
+     *
+     * @throws IOException
+     *             if the directory can't be made
+     */
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        directory = Files.createTempDirectory("durability").toFile();
+        tree = new DurableRedBlackTree<Long, Long>(directory, Codec.LONG,
+                Codec.LONG, durability);
+    }
+
+    /**
+     * Closes the tree and deletes its files
+     *
+     * @pre true
+     * @post the directory is gone
+     *
+     * @throws IOException
+     *             if the log can't be written
+     */
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        tree.close();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    /**
+     * Adds the thread's next key, each thread's keys being the next multiple
+     * of 1024 after the one before plus its id
+     *
+     * @param state
+     *            the thread's id and how many keys it has added
+     * @return whether the add was made
+     * @throws IOException
+     *             if the log can't be written
+     */
+    @Benchmark
+    public boolean add(ThreadState state) throws IOException {
+        Long key = Long.valueOf((long) state.writes++ * 1024 + state.id);
+        return tree.add(key, key);
+    }
+
+    /**
+     * What each thread has to remember between adds
+     *
+     * @author Satshabad
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        /**
+         * which thread this is
+         */
+        int id;
+
+        /**
+         * how many keys this thread has added
+         */
+        int writes;
+
+        /**
+         * Gives this thread its id
+         *
+         * @param benchmark
+         *            the shared state
+         */
+        @Setup(Level.Trial)
+        public void claim(DurabilityBenchmark benchmark) {
+            id = benchmark.threads.getAndIncrement() % 1024;
+        }
+    }
+}
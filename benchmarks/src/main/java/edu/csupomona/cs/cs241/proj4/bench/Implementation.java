@@ -0,0 +1,168 @@
+package edu.csupomona.cs.cs241.proj4.bench;
+
+import java.util.TreeMap;
+
+import edu.csupomona.cs.cs241.proj4.ArenaRedBlackTree;
+import edu.csupomona.cs.cs241.proj4.KeyMode;
+import edu.csupomona.cs.cs241.proj4.LongRedBlackTree;
+import edu.csupomona.cs.cs241.proj4.PersistentRedBlackTree;
+import edu.csupomona.cs.cs241.proj4.RedBlackTree;
+
+/**
+ * The ordered indexes the benchmarks can be run against.
+ * 
+ * @author Satshabad
+ */
+public enum Implementation {
+
+    /**
+     * The tree this project is about
+     */
+    RED_BLACK_TREE {
+        public OrderedIndex create() {
+            final RedBlackTree<Long, Long> tree = new RedBlackTree<Long, Long>();
+            return new OrderedIndex() {
+                public boolean add(Long key, Long value) {
+                    return tree.add(key, value);
+                }
+
+                public Long lookup(Long key) {
+                    return tree.lookup(key);
+                }
+
+                public Long delete(Long key) {
+                    return tree.delete(key);
+                }
+            };
+        }
+    },
+
+    /**
+     * The tree this project is about, replacing the value of a key that is
+     * already there rather than adding it again
+     */
+    RED_BLACK_TREE_MAP {
+        public OrderedIndex create() {
+            final RedBlackTree<Long, Long> tree = new RedBlackTree<Long, Long>(
+                    KeyMode.MAP);
+            return new OrderedIndex() {
+                public boolean add(Long key, Long value) {
+                    int before = tree.size();
+                    tree.add(key, value);
+                    return tree.size() != before;
+                }
+
+                public Long lookup(Long key) {
+                    return tree.lookup(key);
+                }
+
+                public Long delete(Long key) {
+                    return tree.delete(key);
+                }
+            };
+        }
+    },
+
+    /**
+     * The tree with the keys kept as plain longs
+     */
+    LONG_RED_BLACK_TREE {
+        public OrderedIndex create() {
+            final LongRedBlackTree<Long> tree = new LongRedBlackTree<Long>();
+            return new OrderedIndex() {
+                public boolean add(Long key, Long value) {
+                    return tree.add(key, value);
+                }
+
+                public Long lookup(Long key) {
+                    return tree.lookup(key);
+                }
+
+                public Long delete(Long key) {
+                    return tree.delete(key);
+                }
+            };
+        }
+    },
+
+    /**
+     * The tree with the nodes kept in parallel arrays
+     */
+    ARENA_RED_BLACK_TREE {
+        public OrderedIndex create() {
+            final ArenaRedBlackTree<Long, Long> tree = new ArenaRedBlackTree<Long, Long>();
+            return new OrderedIndex() {
+                public boolean add(Long key, Long value) {
+                    return tree.add(key, value);
+                }
+
+                public Long lookup(Long key) {
+                    return tree.lookup(key);
+                }
+
+                public Long delete(Long key) {
+                    return tree.delete(key);
+                }
+            };
+        }
+    },
+
+    /**
+     * The tree that copies the path on every change, keeping the latest
+     * version
+     */
+    PERSISTENT_RED_BLACK_TREE {
+        public OrderedIndex create() {
+            return new OrderedIndex() {
+                private PersistentRedBlackTree<Long, Long> tree = new PersistentRedBlackTree<Long, Long>();
+
+                public boolean add(Long key, Long value) {
+                    tree = tree.add(key, value);
+                    return true;
+                }
+
+                public Long lookup(Long key) {
+                    return tree.lookup(key);
+                }
+
+                public Long delete(Long key) {
+                    Long value = tree.lookup(key);
+                    tree = tree.delete(key);
+                    return value;
+                }
+            };
+        }
+    },
+
+    /**
+     * The red black tree of the JDK, used as the baseline
+     */
+    TREE_MAP {
+        public OrderedIndex create() {
+            final TreeMap<Long, Long> map = new TreeMap<Long, Long>();
+            return new OrderedIndex() {
+                public boolean add(Long key, Long value) {
+                    return map.put(key, value) == null;
+                }
+
+                public Long lookup(Long key) {
+                    return map.get(key);
+                }
+
+                public Long delete(Long key) {
+                    return map.remove(key);
+                }
+            };
+        }
+    };
+
+    /**
+     * Makes a new empty index of this kind
+     * 
+     * @pre true
+     * @post an empty index is returned
+     * 
+     * @return the new index
+     */
+    public abstract OrderedIndex create();
+}
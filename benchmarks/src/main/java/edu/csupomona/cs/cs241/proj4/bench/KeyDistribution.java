@@ -0,0 +1,176 @@
+package edu.csupomona.cs.cs241.proj4.bench;
+
+import java.util.Random;
+
+/**
+ * The shapes of key streams the benchmarks are run with. Every distribution
+ * is deterministic for a given seed so runs can be compared.
+ * 
+ * @author Satshabad
+ */
+public enum KeyDistribution {
+
+    /**
+     * Keys drawn uniformly from all longs, practically no duplicates
+     */
+    UNIFORM {
+        public long[] keys(int count, long seed) {
+            Random random = new Random(seed);
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = random.nextLong();
+            }
+            return keys;
+        }
+    },
+
+    /**
+     * Keys 0, 1, 2... like timestamps or ids, always added on the far right
+     */
+    SEQUENTIAL {
+        public long[] keys(int count, long seed) {
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = i;
+            }
+            return keys;
+        }
+    },
+
+    /**
+     * Timestamps from a few sources merged as they arrive. They go up four
+     * ticks a key on average but each can be up to {@value #TIMESTAMP_SKEW}
+     * ticks late, so most keys land a little before the highest rather than
+     * after it
+     */
+    TIMESTAMPS {
+        public long[] keys(int count, long seed) {
+            Random random = new Random(seed);
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = 4L * i + random.nextInt(TIMESTAMP_SKEW);
+            }
+            return keys;
+        }
+    },
+
+    /**
+     * Keys count - 1 down to 0, always added on the far left
+     */
+    REVERSE_SORTED {
+        public long[] keys(int count, long seed) {
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = count - 1 - i;
+            }
+            return keys;
+        }
+    },
+
+    /**
+     * Keys whose popularity follows a Zipf law with exponent
+     * {@value #ZIPF_THETA}, so a few keys repeat very often. The ranks are
+     * scrambled so the hot keys are spread over the key space.
+     */
+    ZIPFIAN {
+        public long[] keys(int count, long seed) {
+            Random random = new Random(seed);
+            long items = Math.max(count, 2);
+            double zetaN = zeta(items, ZIPF_THETA);
+            double zeta2 = zeta(2, ZIPF_THETA);
+            double alpha = 1.0 / (1.0 - ZIPF_THETA);
+            double eta = (1 - Math.pow(2.0 / items, 1 - ZIPF_THETA))
+                    / (1 - zeta2 / zetaN);
+
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                double u = random.nextDouble();
+                double uz = u * zetaN;
+                long rank;
+                if (uz < 1.0) {
+                    rank = 0;
+                } else if (uz < 1.0 + Math.pow(0.5, ZIPF_THETA)) {
+                    rank = 1;
+                } else {
+                    rank = (long) (items * Math.pow(eta * u - eta + 1, alpha));
+                }
+                keys[i] = scramble(rank);
+            }
+            return keys;
+        }
+    },
+
+    /**
+     * Keys drawn uniformly from only count / {@value #COPIES_PER_KEY}
+     * distinct values, so every key is added many times
+     */
+    DUPLICATE_HEAVY {
+        public long[] keys(int count, long seed) {
+            Random random = new Random(seed);
+            int distinct = Math.max(count / COPIES_PER_KEY, 1);
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = scramble(random.nextInt(distinct));
+            }
+            return keys;
+        }
+    };
+
+    /**
+     * How skewed the Zipfian distribution is, the value YCSB uses
+     */
+    public static final double ZIPF_THETA = 0.99;
+
+    /**
+     * How many ticks late a timestamp can be
+     */
+    public static final int TIMESTAMP_SKEW = 32;
+
+    /**
+     * How many times on average each duplicate heavy key is repeated
+     */
+    public static final int COPIES_PER_KEY = 100;
+
+    /**
+     * Makes a stream of keys of this distribution
+     * 
+     * @pre count is not negative
+     * @post the same count and seed always give the same keys
+     * 
+     * @param count
+     *            how many keys to make
+     * @param seed
+     *            the seed of the random numbers
+     * @return the keys in the order they should be used
+     */
+    public abstract long[] keys(int count, long seed);
+
+    /**
+     * Computes the generalized harmonic number, the sum of 1 / i^theta for i
+     * from 1 to n
+     * 
+     * @param n
+     *            the number of terms
+     * @param theta
+     *            the exponent
+     * @return the sum
+     */
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+
+    /**
+     * Spreads small numbers over the whole range of longs, one to one
+     * 
+     * @param rank
+     *            the number to spread
+     * @return a key that is unique to rank
+     */
+    private static long scramble(long rank) {
+        return rank * 0x9E3779B97F4A7C15L;
+    }
+}
@@ -0,0 +1,75 @@
+package edu.csupomona.cs.cs241.proj4.bench;
+
+/**
+ * Measures how many bytes of heap each implementation uses per entry. The key
+ * and value objects are made before the index and shared by every
+ * implementation, so only what the index itself allocates is counted. Run it
+ * with
+ * 
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar edu.csupomona.cs.cs241.proj4.bench.MemoryFootprint 1000000
+ * </pre>
+ * 
+ * @author Satshabad
+ */
+public class MemoryFootprint {
+
+    /**
+     * Prints the bytes per entry of every implementation
+     * 
+     * @param args
+     *            the number of entries, one million if not given
+     */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        Long[] keys = boxedKeys(size);
+
+        for (Implementation implementation : Implementation.values()) {
+            long before = usedHeap();
+            OrderedIndex index = implementation.create();
+            for (int i = 0; i < size; i++) {
+                index.add(keys[i], keys[i]);
+            }
+            long after = usedHeap();
+            System.out.printf("%-22s %8.1f bytes per entry%n", implementation,
+                    (double) (after - before) / size);
+
+            // keep the index reachable until it has been measured
+            if (index.lookup(keys[0]) == null) {
+                throw new IllegalStateException();
+            }
+        }
+    }
+
+    /**
+     * Makes the shared keys. This is done apart from main so that the long
+     * array they come from is garbage before anything is measured.
+     * 
+     * @param size
+     *            how many keys to make
+     * @return uniform keys
+     */
+    private static Long[] boxedKeys(int size) {
+        long[] raw = KeyDistribution.UNIFORM.keys(size, 42);
+        Long[] keys = new Long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = raw[i];
+        }
+        return keys;
+    }
+
+    /**
+     * Gets the heap in use after the garbage has been collected
+     * 
+     * @return the bytes in use
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,49 @@
+package edu.csupomona.cs.cs241.proj4.bench;
+
+/**
+ * The operations the benchmarks measure, so the red black tree and the
+ * baseline it is compared to can be driven by the same code.
+ * 
+ * @author Satshabad
+ */
+public interface OrderedIndex {
+
+    /**
+     * Adds a mapping to the index
+     * 
+     * @pre key and value are not null
+     * @post the key maps to the value
+     * 
+     * @param key
+     *            the key of the mapping
+     * @param value
+     *            the value of the mapping
+     * @return true if a new mapping was made, false if an existing one was
+     *         used
+     */
+    boolean add(Long key, Long value);
+
+    /**
+     * Looks up the value of a key
+     * 
+     * @pre true
+     * @post the index is unchanged
+     * 
+     * @param key
+     *            the key to look up
+     * @return the value of the key or null if there is none
+     */
+    Long lookup(Long key);
+
+    /**
+     * Deletes the mapping of a key
+     * 
+     * @pre true
+     * @post one mapping of the key is gone
+     * 
+     * @param key
+     *            the key to delete
+     * @return the value that was deleted or null if there was none
+     */
+    Long delete(Long key);
+}
@@ -0,0 +1,267 @@
+package edu.csupomona.cs.cs241.proj4.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures add, lookup, delete and a mixed workload on a tree that already
+ * holds {@link #size} keys of the chosen {@link #distribution}. The adds and
+ * deletes are undone between invocations so the tree keeps the same size for
+ * the whole run.
+ * 
+ * @author Satshabad
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class TreeBenchmark {
+
+    /**
+     * How many adds or deletes are measured in one invocation, enough that
+     * undoing them between invocations costs little in comparison
+     */
+    static final int BATCH = 1024;
+
+    /**
+     * How many lookups are prepared ahead, a power of two
+     */
+    private static final int PROBES = 1 << 16;
+
+    /**
+     * The number of keys in the tree before each measurement
+     */
+    @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+    int size;
+
+    /**
+     * The shape of the keys
+     */
+    @Param
+    KeyDistribution distribution;
+
+    /**
+     * The tree being measured
+     */
+    @Param
+    Implementation implementation;
+
+    /**
+     * The index holding size keys
+     */
+    OrderedIndex index;
+
+    /**
+     * Keys that come after the ones already in the index in the key stream,
+     * these are the ones added
+     */
+    Long[] incoming;
+
+    /**
+     * Keys that are in the index, these are the ones deleted
+     */
+    Long[] present;
+
+    /**
+     * Keys in the index in a random order, these are the ones looked up
+     */
+    private Long[] probes;
+
+    /**
+     * Where the next lookup or mixed operation is in its array
+     */
+    private int next;
+
+    /**
+     * Fills the index with the first size keys of the distribution
+     * 
+     * @pre true
+     * @post the index holds size keys
+     */
+    @Setup(Level.Trial)
+    public void fill() {
+        long[] keys = distribution.keys(size + BATCH, 42);
+        index = implementation.create();
+        for (int i = 0; i < size; i++) {
+            index.add(keys[i], keys[i]);
+        }
+
+        incoming = new Long[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            incoming[i] = keys[size + i];
+        }
+
+        Random random = new Random(7);
+        present = new Long[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            present[i] = keys[(int) ((long) i * size / BATCH)];
+        }
+        probes = new Long[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = keys[random.nextInt(size)];
+        }
+    }
+
+    /**
+     * Looks up one key that is in the tree
+     * 
+     * @return the value found
+     */
+    @Benchmark
+    public Long lookup() {
+        return index.lookup(probes[next++ & (PROBES - 1)]);
+    }
+
+    /**
+     * Adds a batch of keys that come next in the key stream
+     * 
+     * @param undo
+     *            takes the keys back out after the invocation
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void add(AddUndo undo) {
+        for (int i = 0; i < BATCH; i++) {
+            undo.made[i] = index.add(incoming[i], incoming[i]);
+        }
+    }
+
+    /**
+     * Deletes a batch of keys spread over the whole tree
+     * 
+     * @param undo
+     *            puts the keys back after the invocation
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void delete(DeleteUndo undo) {
+        for (int i = 0; i < BATCH; i++) {
+            undo.removed[i] = index.delete(present[i]);
+        }
+    }
+
+    /**
+     * One operation of a read mostly workload: 8 in 10 are lookups, 1 in 10
+     * an add and 1 in 10 a delete of the key added before, so the size stays
+     * the same
+     * 
+     * @param mixed
+     *            remembers which key was added last
+     * @param blackhole
+     *            consumes what the operation returns
+     */
+    @Benchmark
+    public void mixed(MixedState mixed, Blackhole blackhole) {
+        int step = mixed.step++;
+        switch (step % 10) {
+        case 0:
+            mixed.pending = incoming[(step / 10) & (BATCH - 1)];
+            if (!index.add(mixed.pending, mixed.pending)) {
+                mixed.pending = null;
+            }
+            break;
+        case 5:
+            if (mixed.pending != null) {
+                blackhole.consume(index.delete(mixed.pending));
+            }
+            break;
+        default:
+            blackhole.consume(index.lookup(probes[next++ & (PROBES - 1)]));
+        }
+    }
+
+    /**
+     * Deletes the keys the add benchmark made new mappings for
+     * 
+     * @author Satshabad
+     */
+    @State(Scope.Thread)
+    public static class AddUndo {
+
+        /**
+         * whether each add of the batch made a new mapping
+         */
+        boolean[] made = new boolean[BATCH];
+
+        /**
+         * Takes the batch back out of the tree
+         * 
+         * @param benchmark
+         *            the benchmark holding the tree
+         */
+        @TearDown(Level.Invocation)
+        public void undo(TreeBenchmark benchmark) {
+            for (int i = 0; i < BATCH; i++) {
+                if (made[i]) {
+                    benchmark.index.delete(benchmark.incoming[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds back the keys the delete benchmark took out
+     * 
+     * @author Satshabad
+     */
+    @State(Scope.Thread)
+    public static class DeleteUndo {
+
+        /**
+         * the values deleted by the batch, null where nothing was deleted
+         */
+        Long[] removed = new Long[BATCH];
+
+        /**
+         * Puts the batch back in the tree
+         * 
+         * @param benchmark
+         *            the benchmark holding the tree
+         */
+        @TearDown(Level.Invocation)
+        public void undo(TreeBenchmark benchmark) {
+            for (int i = 0; i < BATCH; i++) {
+                if (removed[i] != null) {
+                    benchmark.index.add(benchmark.present[i], removed[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * What the mixed benchmark has to remember between operations
+     * 
+     * @author Satshabad
+     */
+    @State(Scope.Thread)
+    public static class MixedState {
+
+        /**
+         * how many operations have been done
+         */
+        int step;
+
+        /**
+         * the key added by the last add that is yet to be deleted, or null
+         */
+        Long pending;
+    }
+}
@@ -0,0 +1,182 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link RedBlackTree#aggregate(Comparable, Comparable, Aggregator)}
+ * against the values of a {@link TreeMap} range added up one by one, as the
+ * tree is changed by adds, deletes, splits and joins.
+ * 
+ * @author Satshabad
+ */
+public class AggregateTest {
+
+    /**
+     * Joins strings in order, which is associative but not commutative, so
+     * it catches aggregates combined the wrong way round
+     */
+    private static final Aggregator<Long, String> CONCAT = new Aggregator<Long, String>() {
+        public String identity() {
+            return "";
+        }
+
+        public String of(Long value) {
+            return value + ",";
+        }
+
+        public String combine(String left, String right) {
+            return left + right;
+        }
+    };
+
+    /**
+     * Random adds and deletes, checking sums of random ranges after each
+     */
+    @Test
+    public void sumsMatchTheModel() {
+        Random random = TreeModel.random();
+        RedBlackTree<Integer, Long> tree = new RedBlackTree<Integer, Long>(
+                KeyMode.MAP, Aggregator.LONG_SUM);
+        TreeMap<Integer, Long> model = new TreeMap<Integer, Long>();
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(1000);
+            if (random.nextInt(3) < 2) {
+                long value = random.nextInt(2001) - 1000;
+                tree.add(key, value);
+                model.put(key, value);
+            } else {
+                assertEquals(model.remove(key), tree.delete(key));
+            }
+            check(model, tree, Aggregator.LONG_SUM, random);
+        }
+        tree.verify();
+    }
+
+    /**
+     * The least and greatest aggregators, with the identity for empty ranges
+     */
+    @Test
+    public void minAndMax() {
+        Random random = TreeModel.random();
+        RedBlackTree<Integer, Long> least = new RedBlackTree<Integer, Long>(
+                KeyMode.MAP, Aggregator.LONG_MIN);
+        RedBlackTree<Integer, Long> greatest = new RedBlackTree<Integer, Long>(
+                KeyMode.MAP, Aggregator.LONG_MAX);
+        TreeMap<Integer, Long> model = new TreeMap<Integer, Long>();
+        for (int i = 0; i < 3000; i++) {
+            int key = random.nextInt(500);
+            if (random.nextInt(3) < 2) {
+                long value = random.nextLong();
+                least.add(key, value);
+                greatest.add(key, value);
+                model.put(key, value);
+            } else {
+                least.delete(key);
+                greatest.delete(key);
+                model.remove(key);
+            }
+            check(model, least, Aggregator.LONG_MIN, random);
+            check(model, greatest, Aggregator.LONG_MAX, random);
+        }
+    }
+
+    /**
+     * Aggregates come out in order of key, and stay right when the tree is
+     * split apart and joined back together
+     */
+    @Test
+    public void orderSurvivesSplitAndJoin() {
+        Random random = TreeModel.random();
+        RedBlackTree<Integer, Long> tree = new RedBlackTree<Integer, Long>(
+                KeyMode.MAP, CONCAT);
+        TreeMap<Integer, Long> model = new TreeMap<Integer, Long>();
+        for (int i = 0; i < 400; i++) {
+            int key = random.nextInt(1000);
+            tree.add(key, (long) key);
+            model.put(key, (long) key);
+        }
+        for (int i = 0; i < 200; i++) {
+            int at = random.nextInt(1000);
+            RedBlackTree<Integer, Long> high = tree.split(at);
+            check(new TreeMap<Integer, Long>(model.headMap(at)), tree,
+                    CONCAT, random);
+            check(new TreeMap<Integer, Long>(model.tailMap(at)), high,
+                    CONCAT, random);
+            // put it back together around a pivot taken out of the high half
+            Map.Entry<Integer, Long> pivot = model.ceilingEntry(at);
+            if (pivot == null) {
+                tree = RedBlackTree.join(tree, 1000 + i, 0L, high);
+                model.put(1000 + i, 0L);
+                assertEquals(Long.valueOf(0L), tree.delete(1000 + i));
+                model.remove(1000 + i);
+            } else {
+                high.delete(pivot.getKey());
+                tree = RedBlackTree.join(tree, pivot.getKey(),
+                        pivot.getValue(), high);
+            }
+            check(model, tree, CONCAT, random);
+        }
+        tree.verify();
+    }
+
+    /**
+     * Compares the aggregate of the whole tree, of every single key's
+     * neighbourhood and of random ranges with the model's
+     * 
+     * @param model
+     *            the mappings the tree should hold
+     * @param tree
+     *            the tree
+     * @param aggregator
+     *            the aggregator the tree was made with
+     * @param random
+     *            picks the ranges
+     */
+    private static <A> void check(SortedMap<Integer, Long> model,
+            RedBlackTree<Integer, Long> tree, Aggregator<Long, A> aggregator,
+            Random random) {
+        assertEquals(model.size(), tree.size());
+        assertEquals(expected(model, aggregator),
+                tree.aggregate(null, null, aggregator));
+        for (int i = 0; i < 5; i++) {
+            int lo = random.nextInt(1100) - 50;
+            int hi = lo + random.nextInt(300);
+            assertEquals("[" + lo + ", " + hi + "]",
+                    expected(model.subMap(lo, hi + 1), aggregator),
+                    tree.aggregate(lo, hi, aggregator));
+            assertEquals("[.., " + hi + "]",
+                    expected(model.headMap(hi + 1), aggregator),
+                    tree.aggregate(null, hi, aggregator));
+            assertEquals("[" + lo + ", ..]",
+                    expected(model.tailMap(lo), aggregator),
+                    tree.aggregate(lo, null, aggregator));
+        }
+        // lo above hi is empty
+        assertEquals(aggregator.identity(), tree.aggregate(10, 5, aggregator));
+    }
+
+    /**
+     * Adds up the values of some mappings one by one
+     * 
+     * @param mappings
+     *            the mappings, in order of key
+     * @param aggregator
+     *            how to add them up
+     * @return their aggregate
+     */
+    private static <A> A expected(SortedMap<Integer, Long> mappings,
+            Aggregator<Long, A> aggregator) {
+        A total = aggregator.identity();
+        for (Long value : mappings.values()) {
+            total = aggregator.combine(total, aggregator.of(value));
+        }
+        return total;
+    }
+}
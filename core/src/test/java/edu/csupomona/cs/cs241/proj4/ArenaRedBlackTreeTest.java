@@ -0,0 +1,70 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link ArenaRedBlackTree} against a {@link TreeMap}, through enough
+ * adds and deletes that the arrays grow and freed slots are used again.
+ * 
+ * @author Satshabad
+ */
+public class ArenaRedBlackTreeTest {
+
+    /**
+     * Random adds and deletes starting from a tiny arena
+     */
+    @Test
+    public void matchesTreeMap() {
+        Random random = TreeModel.random();
+        ArenaRedBlackTree<Integer, String> tree = new ArenaRedBlackTree<Integer, String>(
+                1);
+        TreeMap<Integer, String> model = new TreeMap<Integer, String>();
+        for (int i = 0; i < 30000; i++) {
+            int key = random.nextInt(3000);
+            if (model.containsKey(key)) {
+                if (random.nextInt(3) > 0) {
+                    assertEquals(model.remove(key), tree.delete(key));
+                }
+            } else {
+                String value = "v" + i;
+                model.put(key, value);
+                tree.add(key, value);
+            }
+            if (i % 1000 == 0) {
+                tree.verify();
+            }
+        }
+        tree.verify();
+        for (int key = -10; key < 3010; key++) {
+            assertEquals(model.get(key), tree.lookup(key));
+        }
+        assertNull(tree.delete(-1));
+        assertFalse(tree.add(null, "v"));
+        assertFalse(tree.add(1, null));
+    }
+
+    /**
+     * Deleting everything and adding it back leaves a valid tree each time
+     */
+    @Test
+    public void emptiesAndRefills() {
+        ArenaRedBlackTree<Integer, Integer> tree = new ArenaRedBlackTree<Integer, Integer>();
+        for (int round = 0; round < 3; round++) {
+            for (int key = 0; key < 1000; key++) {
+                tree.add(key, key + round);
+            }
+            tree.verify();
+            for (int key = 999; key >= 0; key--) {
+                assertEquals(Integer.valueOf(key + round), tree.delete(key));
+            }
+            assertEquals(1, tree.verify());
+        }
+    }
+}
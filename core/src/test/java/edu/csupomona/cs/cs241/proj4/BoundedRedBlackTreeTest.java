@@ -0,0 +1,221 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link BoundedRedBlackTree} under each {@link EvictionPolicy}
+ * against a plain model of the same policy, with bounds on the number of
+ * mappings and on their weight, and checks that mappings expire.
+ * 
+ * @author Satshabad
+ */
+public class BoundedRedBlackTreeTest {
+
+    /**
+     * Random adds, lookups and deletes with at most 50 mappings
+     */
+    @Test
+    public void boundedByCount() {
+        for (EvictionPolicy policy : EvictionPolicy.values()) {
+            run(policy, 50, Long.MAX_VALUE, TreeModel.random());
+        }
+    }
+
+    /**
+     * Random adds, lookups and deletes with weights adding up to at most 200
+     */
+    @Test
+    public void boundedByWeight() {
+        for (EvictionPolicy policy : EvictionPolicy.values()) {
+            run(policy, Integer.MAX_VALUE, 200, TreeModel.random());
+        }
+    }
+
+    /**
+     * Mappings with a short time to live are gone once it has passed, the
+     * others stay
+     * 
+     * @throws InterruptedException
+     *             if the test is interrupted
+     */
+    @Test
+    public void expiry() throws InterruptedException {
+        BoundedRedBlackTree<Integer, String> tree = new BoundedRedBlackTree<Integer, String>(
+                EvictionPolicy.LOWEST_KEY, 1000);
+        for (int key = 0; key < 100; key++) {
+            if (key % 2 == 0) {
+                tree.add(key, "short", 1, 1, TimeUnit.MILLISECONDS);
+            } else {
+                tree.add(key, "long", 1, 1, TimeUnit.HOURS);
+            }
+        }
+        Thread.sleep(20);
+        // writes may already have taken some of the expired mappings out
+        int waiting = tree.size() - 50;
+        assertEquals(waiting, tree.expire());
+        assertEquals(0, tree.expire());
+        assertEquals(50, tree.size());
+        assertEquals(50, tree.weight());
+        for (int key = 0; key < 100; key++) {
+            assertEquals(key % 2 == 0 ? null : "long", tree.lookup(key));
+        }
+        tree.verify();
+    }
+
+    /**
+     * Makes the same random changes to a tree and to a model of its policy,
+     * checking they agree after every one
+     * 
+     * @param policy
+     *            which mapping goes when the tree is over a bound
+     * @param maxEntries
+     *            the most mappings
+     * @param maxWeight
+     *            the most weight
+     * @param random
+     *            picks the changes
+     */
+    private static void run(EvictionPolicy policy, int maxEntries,
+            long maxWeight, Random random) {
+        BoundedRedBlackTree<Integer, Integer> tree = new BoundedRedBlackTree<Integer, Integer>(
+                policy, maxEntries, maxWeight);
+        Model model = new Model(policy);
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(200);
+            int choice = random.nextInt(10);
+            if (choice < 5) {
+                long weight = 1 + random.nextInt(20);
+                model.put(key, i, weight);
+                while (model.size() > maxEntries || model.weight > maxWeight) {
+                    model.evict();
+                }
+                assertEquals(policy + " at " + i, model.containsKey(key),
+                        tree.add(key, i, weight));
+            } else if (choice < 8) {
+                assertEquals(policy + " at " + i, model.look(key),
+                        tree.lookup(key));
+            } else {
+                assertEquals(policy + " at " + i, model.delete(key),
+                        tree.delete(key));
+            }
+            assertEquals(model.size(), tree.size());
+            assertEquals(model.weight, tree.weight());
+        }
+        tree.verify();
+        for (Map.Entry<Integer, Integer> entry : model.entrySet()) {
+            assertEquals(entry.getValue(), tree.lookup(entry.getKey()));
+        }
+        assertFalse(tree.add(1, 1, maxWeight == Long.MAX_VALUE ? -1
+                : maxWeight + 1));
+    }
+
+    /**
+     * The mappings in the order the policy takes them out, first to go first
+     */
+    private static final class Model extends LinkedHashMap<Integer, Integer> {
+
+        /**
+         * Generated to quiet the serialization lint
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The policy modelled
+         */
+        private final EvictionPolicy policy;
+
+        /**
+         * The weight of each mapping
+         */
+        private final Map<Integer, Long> weights = new LinkedHashMap<Integer, Long>();
+
+        /**
+         * The total weight
+         */
+        long weight;
+
+        /**
+         * Makes an empty model
+         * 
+         * @param policy
+         *            the policy modelled
+         */
+        Model(EvictionPolicy policy) {
+            super(16, 0.75f, policy == EvictionPolicy.LEAST_RECENTLY_USED);
+            this.policy = policy;
+        }
+
+        /**
+         * Adds or replaces a mapping
+         * 
+         * @param key
+         *            the key
+         * @param value
+         *            the value
+         * @param weight
+         *            the weight
+         */
+        void put(int key, int value, long weight) {
+            delete(key);
+            put(key, value);
+            weights.put(key, weight);
+            this.weight += weight;
+        }
+
+        /**
+         * Looks up a key, which is a use of it
+         * 
+         * @param key
+         *            the key
+         * @return its value, null if there is none
+         */
+        Integer look(int key) {
+            return get(key);
+        }
+
+        /**
+         * Takes out a mapping
+         * 
+         * @param key
+         *            the key
+         * @return its value, null if there is none
+         */
+        Integer delete(int key) {
+            Long removed = weights.remove(key);
+            if (removed != null) {
+                weight -= removed;
+            }
+            return remove(key);
+        }
+
+        /**
+         * Takes out the mapping the policy picks
+         */
+        void evict() {
+            int victim;
+            if (policy == EvictionPolicy.LEAST_RECENTLY_USED) {
+                victim = keySet().iterator().next();
+            } else {
+                Iterator<Integer> keys = keySet().iterator();
+                victim = keys.next();
+                while (keys.hasNext()) {
+                    int key = keys.next();
+                    if (policy == EvictionPolicy.LOWEST_KEY ? key < victim
+                            : key > victim) {
+                        victim = key;
+                    }
+                }
+            }
+            delete(victim);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link ConcurrentRedBlackTree} and the optimistic lookups of
+ * {@link ShardedRedBlackTree}: lookups racing writers find what is there,
+ * and an exception thrown by the key itself reaches the caller.
+ * 
+ * @author Satshabad
+ */
+public class ConcurrentRedBlackTreeTest {
+
+    /**
+     * A key whose compareTo throws when it is poisoned, like a key of the
+     * wrong type would
+     */
+    static final class Touchy implements Comparable<Touchy> {
+
+        /**
+         * The order of the key
+         */
+        final int value;
+
+        /**
+         * If comparing with this key throws
+         */
+        final boolean poisoned;
+
+        /**
+         * Makes a key
+         * 
+         * @param value
+         *            the order of the key
+         * @param poisoned
+         *            if comparing with this key throws
+         */
+        Touchy(int value, boolean poisoned) {
+            this.value = value;
+            this.poisoned = poisoned;
+        }
+
+        public int compareTo(Touchy other) {
+            if (poisoned || other.poisoned) {
+                throw new ClassCastException("can't compare " + value);
+            }
+            return value < other.value ? -1 : value == other.value ? 0 : 1;
+        }
+    }
+
+    /**
+     * The exception a key throws is not mistaken for a racing write
+     */
+    @Test
+    public void lookupThrowsWhatTheKeyThrows() {
+        ConcurrentRedBlackTree<Touchy, Integer> tree = new ConcurrentRedBlackTree<Touchy, Integer>();
+        ShardedRedBlackTree<Touchy, Integer> sharded = new ShardedRedBlackTree<Touchy, Integer>(
+                4);
+        for (int i = 0; i < 100; i++) {
+            tree.add(new Touchy(i, false), i);
+            sharded.add(new Touchy(i, false), i);
+        }
+        assertEquals(Integer.valueOf(7), tree.lookup(new Touchy(7, false)));
+        assertEquals(Integer.valueOf(7), sharded.lookup(new Touchy(7, false)));
+        try {
+            tree.lookup(new Touchy(7, true));
+            fail("the concurrent tree swallowed the exception");
+        } catch (ClassCastException e) {
+            // expected
+        }
+        try {
+            sharded.lookup(new Touchy(7, true));
+            fail("the sharded tree swallowed the exception");
+        } catch (ClassCastException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Readers never see a key that is always in the tree go missing while
+     * writers add and delete other keys
+     * 
+     * @throws InterruptedException
+     *             if the test is interrupted
+     */
+    @Test
+    public void readersRacingWriters() throws InterruptedException {
+        final ConcurrentRedBlackTree<Integer, Integer> tree = new ConcurrentRedBlackTree<Integer, Integer>();
+        // the even keys stay, the odd ones come and go
+        for (int key = 0; key < 4000; key += 2) {
+            tree.add(key, key);
+        }
+        final AtomicInteger missed = new AtomicInteger();
+        final int rounds = 20000;
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 2; t++) {
+            final int seed = t;
+            threads.add(new Thread(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < rounds; i++) {
+                        int key = 2 * ((i * 31 + seed) % 2000) + 1;
+                        if (tree.lookup(key) == null) {
+                            tree.add(key, key);
+                        } else {
+                            tree.delete(key);
+                        }
+                    }
+                }
+            }));
+            threads.add(new Thread(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < rounds; i++) {
+                        int key = 2 * ((i * 17 + seed) % 2000);
+                        if (!Integer.valueOf(key).equals(tree.lookup(key))) {
+                            missed.incrementAndGet();
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, missed.get());
+        assertTrue(tree.check(false).isValid());
+        assertTrue(tree.size() >= 2000);
+    }
+
+    /**
+     * A tree handed to the constructor is copied: changes to it afterward
+     * are not seen, changes to the concurrent tree don't reach it, and the
+     * copy keeps its mode
+     */
+    @Test
+    public void wrappedTreeIsCopied() {
+        for (KeyMode mode : KeyMode.values()) {
+            RedBlackTree<Integer, String> original = new RedBlackTree<Integer, String>(
+                    mode);
+            for (int key = 0; key < 1000; key++) {
+                original.add(key, "value " + key);
+            }
+            ConcurrentRedBlackTree<Integer, String> tree = new ConcurrentRedBlackTree<Integer, String>(
+                    original);
+            assertTrue(tree.check(false).isValid());
+            assertEquals(1000, tree.size());
+
+            original.delete(0);
+            original.add(5000, "added later");
+            assertEquals("value 0", tree.lookup(0));
+            assertEquals(null, tree.lookup(5000));
+
+            tree.add(1, "again");
+            tree.delete(2);
+            assertEquals(mode == KeyMode.MAP ? 999 : 1000, tree.size());
+            assertEquals("value 1", original.lookup(1));
+            assertEquals("value 2", original.lookup(2));
+            assertEquals(1000, original.size());
+            assertTrue(tree.check(false).isValid());
+            assertTrue(original.check(false).isValid());
+        }
+    }
+}
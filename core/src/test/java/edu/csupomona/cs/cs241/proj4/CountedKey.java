@@ -0,0 +1,50 @@
+package edu.csupomona.cs.cs241.proj4;
+
+/**
+ * An int key that counts how many times keys are compared, for the tests
+ * that check a search does less work than another.
+ *
+ * @author Satshabad
+ */
+final class CountedKey implements Comparable<CountedKey> {
+
+    /**
+     * The comparisons made since the count was last reset
+     */
+    static long compares;
+
+    /**
+     * The key
+     */
+    final int key;
+
+    /**
+     * Makes a key
+     *
+     * @param key
+     *            the key
+     */
+    CountedKey(int key) {
+        this.key = key;
+    }
+
+    public int compareTo(CountedKey other) {
+        compares++;
+        return Integer.compare(key, other.key);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof CountedKey && ((CountedKey) other).key == key;
+    }
+
+    @Override
+    public int hashCode() {
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        return Integer.toString(key);
+    }
+}
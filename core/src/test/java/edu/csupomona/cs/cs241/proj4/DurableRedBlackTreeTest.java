@@ -0,0 +1,276 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks {@link DurableRedBlackTree} against a {@link TreeMap}, across
+ * checkpoints, reopening, codecs that fail and checkpoints that can't be
+ * written.
+ * 
+ * @author Satshabad
+ */
+public class DurableRedBlackTreeTest {
+
+    /**
+     * A directory for each test
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Writes strings, but fails on the one that says so
+     */
+    private static final Codec<String> PICKY = new Codec<String>() {
+        public void write(String value, DataOutput out) throws IOException {
+            if (value.equals("unwritable")) {
+                throw new IOException("can't write " + value);
+            }
+            Codec.STRING.write(value, out);
+        }
+
+        public String read(DataInput in) throws IOException {
+            return Codec.STRING.read(in);
+        }
+    };
+
+    /**
+     * Random changes with a checkpoint every few kilobytes of log come back
+     * the same after every reopening, in every durability
+     * 
+     * @throws IOException
+     *             if the directory can't be used
+     */
+    @Test
+    public void reopensToTheModel() throws IOException {
+        for (Durability durability : Durability.values()) {
+            File directory = folder.newFolder();
+            Random random = TreeModel.random();
+            TreeMap<Long, String> model = new TreeMap<Long, String>();
+            for (int round = 0; round < 4; round++) {
+                DurableRedBlackTree<Long, String> tree = open(directory,
+                        durability, 4096);
+                check(model, tree);
+                for (int i = 0; i < 2000; i++) {
+                    long key = random.nextInt(500);
+                    if (random.nextInt(3) == 0) {
+                        assertEquals(model.remove(key), tree.delete(key));
+                    } else {
+                        String value = "v" + i;
+                        assertTrue(tree.add(key, value));
+                        model.put(key, value);
+                    }
+                }
+                check(model, tree);
+                tree.close();
+            }
+        }
+    }
+
+    /**
+     * A value the codec can't write changes neither the tree nor the log
+     * 
+     * @throws IOException
+     *             if the directory can't be used
+     */
+    @Test
+    public void failedEncodingChangesNothing() throws IOException {
+        File directory = folder.newFolder();
+        DurableRedBlackTree<Long, String> tree = new DurableRedBlackTree<Long, String>(
+                directory, Codec.LONG, PICKY, Durability.PER_OPERATION);
+        tree.add(1L, "one");
+        try {
+            tree.add(1L, "unwritable");
+            fail("the codec failure was lost");
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            tree.add(2L, "unwritable");
+            fail("the codec failure was lost");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals("one", tree.lookup(1L));
+        assertNull(tree.lookup(2L));
+
+        // the failure was the codec's, the log is still writable
+        tree.add(3L, "three");
+        tree.close();
+
+        tree = new DurableRedBlackTree<Long, String>(directory, Codec.LONG,
+                PICKY, Durability.PER_OPERATION);
+        assertEquals("one", tree.lookup(1L));
+        assertNull(tree.lookup(2L));
+        assertEquals("three", tree.lookup(3L));
+        tree.close();
+    }
+
+    /**
+     * A checkpoint whose count of mappings was damaged is refused with an
+     * IOException when the tree is opened, not by running out of memory
+     * 
+     * @throws IOException
+     *             if the directory can't be used
+     */
+    @Test
+    public void corruptCheckpointCount() throws IOException {
+        File directory = folder.newFolder();
+        DurableRedBlackTree<Long, String> tree = open(directory,
+                Durability.PER_OPERATION, 0);
+        for (long key = 0; key < 10; key++) {
+            tree.add(key, "v" + key);
+        }
+        tree.checkpoint();
+        tree.close();
+
+        // the checkpoint is its sequence number and then a snapshot, whose
+        // count is 20 bytes in
+        RandomAccessFile checkpoint = new RandomAccessFile(new File(
+                directory, "checkpoint"), "rw");
+        try {
+            checkpoint.seek(8 + 20);
+            checkpoint.writeInt(Integer.MAX_VALUE);
+        } finally {
+            checkpoint.close();
+        }
+        try {
+            open(directory, Durability.PER_OPERATION, 0);
+            fail("opened a tree from a corrupt checkpoint");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("checksum"));
+        }
+    }
+
+    /**
+     * Writes go on while checkpoints can't be written, and a checkpoint is
+     * taken once they can be again
+     * 
+     * @throws IOException
+     *             if the directory can't be used
+     */
+    @Test
+    public void failedCheckpointDoesNotFailWrites() throws IOException {
+        File directory = folder.newFolder();
+        DurableRedBlackTree<Long, String> tree = open(directory,
+                Durability.GROUP, 1024);
+        // a directory in the way of the checkpoint's temporary file
+        File blocker = new File(directory, "checkpoint.tmp");
+        assertTrue(new File(blocker, "in the way").mkdirs());
+
+        TreeMap<Long, String> model = new TreeMap<Long, String>();
+        for (long key = 0; key < 500; key++) {
+            tree.add(key, "v" + key);
+            model.put(key, "v" + key);
+        }
+        assertNotNull(tree.checkpointFailure());
+        check(model, tree);
+
+        assertTrue(new File(blocker, "in the way").delete());
+        assertTrue(blocker.delete());
+        for (long key = 500; key < 1000; key++) {
+            tree.add(key, "v" + key);
+            model.put(key, "v" + key);
+        }
+        assertNull(tree.checkpointFailure());
+        assertTrue(new File(directory, "checkpoint").exists());
+        tree.close();
+
+        tree = open(directory, Durability.GROUP, 1024);
+        check(model, tree);
+        tree.close();
+    }
+
+    /**
+     * Checkpoints taken by one thread while another writes and reads lose
+     * nothing
+     * 
+     * @throws Exception
+     *             if the directory can't be used or the thread fails
+     */
+    @Test
+    public void checkpointsDuringWrites() throws Exception {
+        File directory = folder.newFolder();
+        final DurableRedBlackTree<Long, String> tree = open(directory,
+                Durability.ASYNC, 0);
+        final IOException[] failed = new IOException[1];
+        Thread checkpointer = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    for (int i = 0; i < 20; i++) {
+                        tree.checkpoint();
+                    }
+                } catch (IOException e) {
+                    failed[0] = e;
+                }
+            }
+        });
+        checkpointer.start();
+        TreeMap<Long, String> model = new TreeMap<Long, String>();
+        for (long key = 0; key < 5000; key++) {
+            tree.add(key, "v" + key);
+            model.put(key, "v" + key);
+            assertEquals("v" + key / 2, tree.lookup(key / 2));
+        }
+        checkpointer.join();
+        assertNull(failed[0]);
+        tree.close();
+
+        DurableRedBlackTree<Long, String> reopened = open(directory,
+                Durability.ASYNC, 0);
+        check(model, reopened);
+        reopened.close();
+    }
+
+    /**
+     * Opens a tree of longs to strings
+     * 
+     * @param directory
+     *            the directory of the tree
+     * @param durability
+     *            how soon a change is forced to disk
+     * @param checkpointBytes
+     *            the log length a checkpoint is taken at
+     * @return the tree
+     * @throws IOException
+     *             if the directory can't be used
+     */
+    private static DurableRedBlackTree<Long, String> open(File directory,
+            Durability durability, long checkpointBytes) throws IOException {
+        return new DurableRedBlackTree<Long, String>(directory, Codec.LONG,
+                Codec.STRING, durability, checkpointBytes);
+    }
+
+    /**
+     * Checks that the tree holds just what the model does
+     * 
+     * @param model
+     *            what the tree should hold
+     * @param tree
+     *            the tree
+     */
+    private static void check(TreeMap<Long, String> model,
+            final DurableRedBlackTree<Long, String> tree) {
+        TreeModel.check(model, tree.size(), new Function<Long, String>() {
+            public String apply(Long key) {
+                return tree.lookup(key);
+            }
+        });
+    }
+}
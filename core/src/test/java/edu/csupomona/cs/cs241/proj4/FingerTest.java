@@ -0,0 +1,129 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Checks the places {@link RedBlackTree#add(Comparable, Object)} tries before
+ * a descent from the root: after the highest key, near the last key added
+ * and before the lowest key. The tree has to end up the same as if every add
+ * had gone down from the root.
+ *
+ * @author Satshabad
+ */
+public class FingerTest {
+
+    /**
+     * A repeated key goes in front of the copies already there, wherever the
+     * add starts from
+     */
+    @Test
+    public void duplicatesGoLeft() {
+        Random random = TreeModel.random();
+        RedBlackTree<Integer, Integer> tree = new RedBlackTree<Integer, Integer>(
+                KeyMode.DUPLICATES);
+        TreeMap<Integer, LinkedList<Integer>> model = new TreeMap<Integer, LinkedList<Integer>>();
+        int key = 0;
+        for (int i = 0; i < 5000; i++) {
+            // mostly a step or two from the last key, sometimes anywhere
+            if (random.nextInt(10) == 0) {
+                key = random.nextInt(300);
+            } else {
+                key = Math.max(0, key + random.nextInt(5) - 2);
+            }
+            tree.add(key, i);
+            LinkedList<Integer> copies = model.get(key);
+            if (copies == null) {
+                copies = new LinkedList<Integer>();
+                model.put(key, copies);
+            }
+            copies.addFirst(i);
+        }
+
+        assertTrue(tree.check(false).isValid());
+        List<Integer> keys = new ArrayList<Integer>();
+        List<Integer> values = new ArrayList<Integer>();
+        for (Map.Entry<Integer, LinkedList<Integer>> entry : model.entrySet()) {
+            for (Integer value : entry.getValue()) {
+                keys.add(entry.getKey());
+                values.add(value);
+            }
+        }
+        List<Integer> treeValues = new ArrayList<Integer>();
+        for (Node<Integer, Integer> node : tree.tailMap(null)) {
+            treeValues.add(node.getValue());
+        }
+        assertEquals(keys, TreeModel.keys(tree.tailMap(null)));
+        assertEquals(values, treeValues);
+    }
+
+    /**
+     * Taking out the lowest, the highest or the last added node leaves the
+     * adds after it in the right place
+     */
+    @Test
+    public void deletesUnderTheFinger() {
+        Random random = TreeModel.random();
+        RedBlackTree<Integer, Integer> tree = new RedBlackTree<Integer, Integer>(
+                KeyMode.MAP);
+        TreeMap<Integer, Integer> model = new TreeMap<Integer, Integer>();
+        int last = 0;
+        for (int i = 0; i < 3000; i++) {
+            int choice = random.nextInt(10);
+            if (choice == 0 && !model.isEmpty()) {
+                Integer lowest = model.firstKey();
+                assertEquals(model.remove(lowest), tree.delete(lowest));
+            } else if (choice == 1 && !model.isEmpty()) {
+                Integer highest = model.lastKey();
+                assertEquals(model.remove(highest), tree.delete(highest));
+            } else if (choice == 2) {
+                assertEquals(model.remove(last), tree.delete(last));
+            } else {
+                // near the last key, past either end now and then
+                last = last + random.nextInt(21) - 8;
+                tree.add(last, i);
+                model.put(last, i);
+            }
+            TreeModel.checkTree(model, tree);
+        }
+    }
+
+    /**
+     * Keys that arrive a little out of order, as timestamps from a few
+     * sources do, are placed near the last key without a descent from the
+     * root
+     */
+    @Test
+    public void nearlySortedKeys() {
+        Random random = TreeModel.random();
+        RedBlackTree<CountedKey, Integer> tree = new RedBlackTree<CountedKey, Integer>(
+                KeyMode.MAP);
+        TreeMap<CountedKey, Integer> model = new TreeMap<CountedKey, Integer>();
+        int count = 1 << 16;
+        CountedKey[] keys = new CountedKey[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = new CountedKey(4 * i + random.nextInt(32));
+        }
+        CountedKey.compares = 0;
+        for (int i = 0; i < count; i++) {
+            tree.add(keys[i], i);
+        }
+        long perAdd = CountedKey.compares / count;
+        for (int i = 0; i < count; i++) {
+            model.put(keys[i], i);
+        }
+
+        // a descent from the root alone takes at least one comparison a level
+        assertTrue(perAdd + " comparisons an add", perAdd < 16);
+        TreeModel.checkTree(model, tree);
+    }
+}
@@ -0,0 +1,149 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link IntervalTree} against a plain list of intervals searched one
+ * by one, and that {@link IntervalTree#verify()} reports a broken tree
+ * without fixing it.
+ * 
+ * @author Satshabad
+ */
+public class IntervalTreeTest {
+
+    /**
+     * Random adds, deletes and queries, repeated intervals included
+     */
+    @Test
+    public void matchesList() {
+        Random random = TreeModel.random();
+        IntervalTree<Integer, Integer> tree = new IntervalTree<Integer, Integer>();
+        List<int[]> model = new ArrayList<int[]>();
+        for (int i = 0; i < 5000; i++) {
+            int low = random.nextInt(1000);
+            int high = low + random.nextInt(100);
+            if (random.nextInt(3) == 0 && !model.isEmpty()) {
+                int[] interval = model.remove(random.nextInt(model.size()));
+                assertEquals(Integer.valueOf(value(interval[0], interval[1])),
+                        tree.delete(interval[0], interval[1]));
+            } else {
+                tree.add(low, high, value(low, high));
+                model.add(new int[] { low, high });
+            }
+            tree.verify();
+            assertEquals(model.size(), tree.size());
+
+            int a = random.nextInt(1100) - 50;
+            int b = a + random.nextInt(60);
+            assertEquals(overlapping(model, a, b),
+                    describe(tree.overlapping(a, b)));
+            assertEquals(overlapping(model, a, a), describe(tree.stabbing(a)));
+        }
+        assertNull(tree.delete(-5, -1));
+        assertEquals(0, tree.overlapping(10, 5).size());
+    }
+
+    /**
+     * A wrong highest endpoint is reported every time verify is called, it
+     * is not quietly put right
+     * 
+     * @throws Exception
+     *             if the tree can't be reached into
+     */
+    @Test
+    public void verifyDoesNotRepair() throws Exception {
+        IntervalTree<Integer, Integer> tree = new IntervalTree<Integer, Integer>();
+        for (int i = 0; i < 20; i++) {
+            tree.add(i, i + 5, i);
+        }
+        assertEquals(tree.verify(), tree.verify());
+
+        Field rootField = IntervalTree.class.getDeclaredField("root");
+        rootField.setAccessible(true);
+        Object root = rootField.get(tree);
+        Field maxField = root.getClass().getDeclaredField("max");
+        maxField.setAccessible(true);
+        maxField.set(root, 1000);
+        for (int i = 0; i < 2; i++) {
+            try {
+                tree.verify();
+                fail("a wrong highest endpoint was not reported");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Gets the value the tests map an interval to
+     * 
+     * @param low
+     *            the lower endpoint
+     * @param high
+     *            the upper endpoint
+     * @return the value
+     */
+    private static int value(int low, int high) {
+        return low * 1000 + high;
+    }
+
+    /**
+     * Finds the intervals of the list that overlap a query, the slow way
+     * 
+     * @param model
+     *            the intervals
+     * @param a
+     *            the lower endpoint of the query
+     * @param b
+     *            the upper endpoint of the query
+     * @return the intervals found in order, written out
+     */
+    private static List<String> overlapping(List<int[]> model, int a, int b) {
+        List<int[]> found = new ArrayList<int[]>();
+        for (int[] interval : model) {
+            if (interval[0] <= b && interval[1] >= a) {
+                found.add(interval);
+            }
+        }
+        Collections.sort(found, new Comparator<int[]>() {
+            public int compare(int[] x, int[] y) {
+                return x[0] != y[0] ? Integer.compare(x[0], y[0]) : Integer
+                        .compare(x[1], y[1]);
+            }
+        });
+        List<String> written = new ArrayList<String>();
+        for (int[] interval : found) {
+            written.add(interval[0] + ".." + interval[1] + "="
+                    + value(interval[0], interval[1]));
+        }
+        return written;
+    }
+
+    /**
+     * Writes out the intervals a tree found
+     * 
+     * @param found
+     *            the intervals
+     * @return the intervals written out, in the same order
+     */
+    private static List<String> describe(
+            List<Interval<Integer, Integer>> found) {
+        List<String> written = new ArrayList<String>();
+        for (Interval<Integer, Integer> interval : found) {
+            written.add(interval.getLow() + ".." + interval.getHigh() + "="
+                    + interval.getValue());
+        }
+        return written;
+    }
+}
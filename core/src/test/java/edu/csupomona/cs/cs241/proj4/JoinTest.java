@@ -0,0 +1,109 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link RedBlackTree#join} refuses what would break a tree, and
+ * that {@link RedBlackTree#check(boolean)} finds a key repeated in a map.
+ * 
+ * @author Satshabad
+ */
+public class JoinTest {
+
+    /**
+     * A map can't take a pivot equal to the last key on the left or the
+     * first on the right
+     */
+    @Test
+    public void mapRefusesEqualPivot() {
+        try {
+            RedBlackTree.join(tree(KeyMode.MAP, 1, 5), 5, 7,
+                    tree(KeyMode.MAP, 9));
+            fail("joined a map with 5 on the left and as the pivot");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            RedBlackTree.join(tree(KeyMode.MAP, 1), 5, 7,
+                    tree(KeyMode.MAP, 5, 9));
+            fail("joined a map with 5 on the right and as the pivot");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        RedBlackTree<Integer, Integer> joined = RedBlackTree.join(
+                tree(KeyMode.MAP, 1, 4), 5, 7, tree(KeyMode.MAP, 6, 9));
+        assertEquals(5, joined.size());
+        assertTrue(joined.check(false).isValid());
+    }
+
+    /**
+     * Trees with duplicates can still be joined on a repeated key
+     */
+    @Test
+    public void duplicatesTakeEqualPivot() {
+        RedBlackTree<Integer, Integer> joined = RedBlackTree.join(
+                tree(KeyMode.DUPLICATES, 1, 5), 5, 7,
+                tree(KeyMode.DUPLICATES, 5, 9));
+        assertEquals(5, joined.size());
+        assertTrue(joined.check(false).isValid());
+    }
+
+    /**
+     * A map and a tree with duplicates can't be joined
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void modesMustMatch() {
+        RedBlackTree.join(tree(KeyMode.MAP, 1), 5, 7,
+                tree(KeyMode.DUPLICATES, 9));
+    }
+
+    /**
+     * The same nodes are fine with duplicates allowed and broken without
+     */
+    @Test
+    public void checkerFindsRepeatedKeys() {
+        for (int count = 2; count < 40; count++) {
+            RedBlackTree<Integer, Integer> tree = new RedBlackTree<Integer, Integer>(
+                    KeyMode.DUPLICATES);
+            for (int i = 0; i < count; i++) {
+                tree.add(i == count / 2 ? 0 : i, i);
+            }
+            assertTrue(tree.check(false).isValid());
+
+            Node<Integer, Integer> root = tree.descendingMap().iterator()
+                    .next();
+            while (root.getParent() != null) {
+                root = root.getParent();
+            }
+            for (boolean parallel : new boolean[] { false, true }) {
+                assertEquals(TreeViolation.DUPLICATE_KEY,
+                        new TreeChecker<Integer, Integer>(tree.nilLeaf(), true)
+                                .check(root, parallel).getViolation());
+            }
+        }
+    }
+
+    /**
+     * Makes a tree mapping each key to itself
+     * 
+     * @param mode
+     *            the key mode of the tree
+     * @param keys
+     *            the keys to add
+     * @return the tree
+     */
+    private static RedBlackTree<Integer, Integer> tree(KeyMode mode,
+            int... keys) {
+        RedBlackTree<Integer, Integer> tree = new RedBlackTree<Integer, Integer>(
+                mode);
+        for (int key : keys) {
+            tree.add(key, key);
+        }
+        return tree;
+    }
+}
@@ -0,0 +1,86 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks {@link MappedLongRedBlackTree} against a {@link TreeMap}, closing
+ * and opening the file again between rounds of random changes.
+ * 
+ * @author Satshabad
+ */
+public class MappedLongRedBlackTreeTest {
+
+    /**
+     * What the tree gives back for a key it doesn't have
+     */
+    private static final long NOT_FOUND = Long.MIN_VALUE;
+
+    /**
+     * A directory for each test
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Every round of changes is still there after the file is opened again
+     * 
+     * @throws IOException
+     *             if the file can't be used
+     */
+    @Test
+    public void reopensToTheModel() throws IOException {
+        File path = new File(folder.getRoot(), "tree");
+        Random random = TreeModel.random();
+        TreeMap<Long, Long> model = new TreeMap<Long, Long>();
+        for (int round = 0; round < 4; round++) {
+            MappedLongRedBlackTree tree = new MappedLongRedBlackTree(path);
+            check(model, tree);
+            for (int i = 0; i < 3000; i++) {
+                long key = random.nextInt(1500) - 750;
+                if (model.containsKey(key)) {
+                    if (random.nextBoolean()) {
+                        assertEquals(model.remove(key).longValue(),
+                                tree.delete(key, NOT_FOUND));
+                    }
+                } else {
+                    long value = random.nextLong() >>> 1;
+                    model.put(key, value);
+                    tree.add(key, value);
+                }
+            }
+            check(model, tree);
+            tree.close();
+        }
+    }
+
+    /**
+     * Checks that the tree holds just what the model does, and is valid
+     * 
+     * @param model
+     *            what the tree should hold
+     * @param tree
+     *            the tree
+     */
+    private static void check(TreeMap<Long, Long> model,
+            final MappedLongRedBlackTree tree) {
+        tree.verify();
+        TreeModel.check(model, new Function<Long, Long>() {
+            public Long apply(Long key) {
+                return tree.lookup(key, NOT_FOUND);
+            }
+        });
+        for (long key = -800; key < 800; key++) {
+            assertEquals(model.containsKey(key), tree.contains(key));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+/**
+ * Checks that every version of a {@link PersistentRedBlackTree} keeps
+ * holding what a {@link TreeMap} copied at the same moment holds, however
+ * many versions are made after it.
+ * 
+ * @author Satshabad
+ */
+public class PersistentRedBlackTreeTest {
+
+    /**
+     * Random adds, replacements and deletes, with every hundredth version
+     * kept and checked at the end
+     */
+    @Test
+    public void oldVersionsDoNotChange() {
+        Random random = TreeModel.random();
+        PersistentRedBlackTree<Integer, String> tree = new PersistentRedBlackTree<Integer, String>();
+        TreeMap<Integer, String> model = new TreeMap<Integer, String>();
+        List<PersistentRedBlackTree<Integer, String>> versions = new ArrayList<PersistentRedBlackTree<Integer, String>>();
+        List<TreeMap<Integer, String>> models = new ArrayList<TreeMap<Integer, String>>();
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                tree = tree.delete(key);
+                model.remove(key);
+            } else {
+                String value = "v" + random.nextInt(5);
+                tree = tree.add(key, value);
+                model.put(key, value);
+            }
+            if (i % 100 == 0) {
+                versions.add(tree);
+                models.add(new TreeMap<Integer, String>(model));
+            }
+        }
+        versions.add(tree);
+        models.add(model);
+
+        for (int v = 0; v < versions.size(); v++) {
+            check(models.get(v), versions.get(v));
+        }
+    }
+
+    /**
+     * Changes that change nothing give back the same version
+     */
+    @Test
+    public void noChangeNoVersion() {
+        PersistentRedBlackTree<Integer, String> tree = new PersistentRedBlackTree<Integer, String>()
+                .add(1, "one");
+        assertSame(tree, tree.delete(2));
+        assertSame(tree, tree.add(null, "none"));
+        assertSame(tree, tree.add(2, null));
+    }
+
+    /**
+     * Checks that a version holds just what its model does, in order
+     * 
+     * @param model
+     *            what the version should hold
+     * @param tree
+     *            the version
+     */
+    private static void check(TreeMap<Integer, String> model,
+            final PersistentRedBlackTree<Integer, String> tree) {
+        tree.verify();
+        TreeModel.checkOrder(model, tree.iterator());
+        TreeModel.check(model, tree.size(), new Function<Integer, String>() {
+            public String apply(Integer key) {
+                return tree.lookup(key);
+            }
+        });
+    }
+}
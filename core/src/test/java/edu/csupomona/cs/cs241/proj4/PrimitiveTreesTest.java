@@ -0,0 +1,77 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link LongRedBlackTree}, {@link IntRedBlackTree} and
+ * {@link LongLongRedBlackTree} against a {@link TreeMap} through random adds
+ * and deletes, verifying the trees as they go.
+ * 
+ * @author Satshabad
+ */
+public class PrimitiveTreesTest {
+
+    /**
+     * What the trees give back for a key they don't have
+     */
+    private static final long NOT_FOUND = Long.MIN_VALUE;
+
+    /**
+     * The three trees make the same changes as the model and end up the same
+     */
+    @Test
+    public void matchTreeMap() {
+        Random random = TreeModel.random();
+        LongRedBlackTree<Long> longs = new LongRedBlackTree<Long>();
+        IntRedBlackTree<Long> ints = new IntRedBlackTree<Long>();
+        LongLongRedBlackTree longLongs = new LongLongRedBlackTree();
+        TreeMap<Integer, Long> model = new TreeMap<Integer, Long>();
+        for (int i = 0; i < 20000; i++) {
+            // negative keys and the extremes too
+            int key = random.nextInt(4000) - 2000;
+            if (i % 1000 == 0) {
+                key = i % 2000 == 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            }
+            if (model.containsKey(key)) {
+                if (random.nextBoolean()) {
+                    Long value = model.remove(key);
+                    assertEquals(value, longs.delete(key));
+                    assertEquals(value, ints.delete(key));
+                    assertEquals(value.longValue(), longLongs.delete(key,
+                            NOT_FOUND));
+                }
+            } else {
+                long value = random.nextLong() >>> 1;
+                model.put(key, value);
+                longs.add(key, value);
+                ints.add(key, value);
+                longLongs.add(key, value);
+            }
+            if (i % 500 == 0) {
+                longs.verify();
+                ints.verify();
+                longLongs.verify();
+            }
+        }
+
+        for (int key = -2100; key < 2100; key++) {
+            Long value = model.get(key);
+            assertEquals(value, longs.lookup(key));
+            assertEquals(value, ints.lookup(key));
+            assertEquals(value == null ? NOT_FOUND : value.longValue(),
+                    longLongs.lookup(key, NOT_FOUND));
+            assertEquals(value != null, longLongs.contains(key));
+        }
+        for (Map.Entry<Integer, Long> entry : model.entrySet()) {
+            assertEquals(entry.getValue(), longs.lookup(entry.getKey()));
+        }
+        assertEquals(longs.verify(), ints.verify());
+        longLongs.verify();
+    }
+}
@@ -0,0 +1,140 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link RedBlackTree#rank}, {@link RedBlackTree#select} and
+ * {@link RedBlackTree#countRange} against a {@link TreeMap} counting the
+ * copies of each key, over random adds and deletes.
+ *
+ * @author Satshabad
+ */
+public class RankTest {
+
+    /**
+     * Keys are drawn from 0 up to this, so many of them repeat
+     */
+    private static final int KEYS = 200;
+
+    /**
+     * A map ranks, selects and counts as the model does
+     */
+    @Test
+    public void map() {
+        run(KeyMode.MAP);
+    }
+
+    /**
+     * A tree with the same key many times counts every copy
+     */
+    @Test
+    public void duplicates() {
+        run(KeyMode.DUPLICATES);
+    }
+
+    /**
+     * Makes random changes to a tree in a mode and checks it after each few
+     *
+     * @param mode
+     *            the mode of the tree
+     */
+    private static void run(KeyMode mode) {
+        Random random = TreeModel.random();
+        RedBlackTree<Integer, Integer> tree = new RedBlackTree<Integer, Integer>(
+                mode);
+        // the number of copies of each key
+        TreeMap<Integer, Integer> model = new TreeMap<Integer, Integer>();
+        check(model, tree, random);
+        for (int i = 0; i < 3000; i++) {
+            int key = random.nextInt(KEYS);
+            if (random.nextInt(3) == 0) {
+                tree.delete(key);
+                Integer copies = model.get(key);
+                if (copies != null && copies > 1) {
+                    model.put(key, copies - 1);
+                } else {
+                    model.remove(key);
+                }
+            } else {
+                tree.add(key, i);
+                Integer copies = model.get(key);
+                model.put(key, copies == null || mode == KeyMode.MAP ? 1
+                        : copies + 1);
+            }
+            if (i % 50 == 0) {
+                check(model, tree, random);
+            }
+        }
+        check(model, tree, random);
+    }
+
+    /**
+     * Checks every rank and select, and some random ranges
+     *
+     * @param model
+     *            the number of copies of each key
+     * @param tree
+     *            the tree
+     * @param random
+     *            picks the ranges
+     */
+    private static void check(TreeMap<Integer, Integer> model,
+            RedBlackTree<Integer, Integer> tree, Random random) {
+        List<Integer> sorted = new ArrayList<Integer>();
+        for (Map.Entry<Integer, Integer> entry : model.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                sorted.add(entry.getKey());
+            }
+        }
+        assertEquals(sorted.size(), tree.size());
+
+        // past both ends too
+        for (int key = -1; key <= KEYS; key++) {
+            assertEquals("rank of " + key, count(model.headMap(key)),
+                    tree.rank(key));
+        }
+        for (int index = 0; index < sorted.size(); index++) {
+            assertEquals("key at " + index, sorted.get(index),
+                    tree.select(index));
+        }
+        assertNull(tree.select(-1));
+        assertNull(tree.select(sorted.size()));
+        assertNull(tree.select(Integer.MAX_VALUE));
+
+        for (int i = 0; i < 50; i++) {
+            int lo = random.nextInt(KEYS + 2) - 1;
+            int hi = random.nextInt(KEYS + 2) - 1;
+            int expected = lo > hi ? 0 : count(model.subMap(lo, true, hi,
+                    true));
+            assertEquals("count from " + lo + " to " + hi, expected,
+                    tree.countRange(lo, hi));
+        }
+        for (Integer key : model.keySet()) {
+            assertEquals(model.get(key).intValue(), tree.countRange(key, key));
+        }
+    }
+
+    /**
+     * Adds up the copies in part of the model
+     *
+     * @param copies
+     *            the number of copies of each key
+     * @return the total
+     */
+    private static int count(Map<Integer, Integer> copies) {
+        int total = 0;
+        for (int count : copies.values()) {
+            total += count;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,230 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Checks which {@link RebalanceEvent}s a {@link RedBlackTree} tells its
+ * {@link RebalanceListener} about, and in what order, and that a tree with
+ * no listener tells nobody.
+ *
+ * @author Satshabad
+ */
+public class RebalanceListenerTest {
+
+    /**
+     * Adding 1 to 8 in order goes through every case of an add: a black
+     * parent, a red uncle, a rotation of the grandparent and a red root
+     */
+    @Test
+    public void addEvents() {
+        RedBlackTree<Integer, String> tree = new RedBlackTree<Integer, String>(
+                KeyMode.MAP);
+        Recorder recorder = new Recorder();
+        tree.setRebalanceListener(recorder);
+
+        // the first node is made black, with no rebalance
+        assertEquals(Arrays.<String> asList(), add(tree, recorder, 1));
+        assertEquals(Arrays.asList("INSERT_CASE_2 2"), add(tree, recorder, 2));
+        assertEquals(Arrays.asList("INSERT_CASE_5 3", "ROTATE_LEFT 1",
+                "RECOLOR 1", "RECOLOR 2"), add(tree, recorder, 3));
+        assertEquals(Arrays.asList("INSERT_CASE_3 4", "RECOLOR 1",
+                "RECOLOR 3", "RECOLOR 2", "INSERT_CASE_1 2", "RECOLOR 2"),
+                add(tree, recorder, 4));
+        assertEquals(Arrays.asList("INSERT_CASE_5 5", "ROTATE_LEFT 3",
+                "RECOLOR 3", "RECOLOR 4"), add(tree, recorder, 5));
+        assertEquals(Arrays.asList("INSERT_CASE_3 6", "RECOLOR 3",
+                "RECOLOR 5", "RECOLOR 4", "INSERT_CASE_2 4"),
+                add(tree, recorder, 6));
+        assertEquals(Arrays.asList("INSERT_CASE_5 7", "ROTATE_LEFT 5",
+                "RECOLOR 5", "RECOLOR 6"), add(tree, recorder, 7));
+        // the red uncle pushes the problem up to 6, which is rotated on 2
+        assertEquals(Arrays.asList("INSERT_CASE_3 8", "RECOLOR 5",
+                "RECOLOR 7", "RECOLOR 6", "INSERT_CASE_5 6", "ROTATE_LEFT 2",
+                "RECOLOR 2", "RECOLOR 4"), add(tree, recorder, 8));
+
+        // an inner grandchild is rotated outward first
+        RedBlackTree<Integer, String> inner = new RedBlackTree<Integer, String>(
+                KeyMode.MAP);
+        inner.add(1, "one");
+        inner.add(3, "three");
+        inner.setRebalanceListener(recorder);
+        assertEquals(Arrays.asList("INSERT_CASE_4 2", "ROTATE_RIGHT 3",
+                "INSERT_CASE_5 3", "ROTATE_LEFT 1", "RECOLOR 1", "RECOLOR 2"),
+                add(inner, recorder, 2));
+    }
+
+    /**
+     * Deletes report the case of each node checked, where the nil leaf is
+     * reported with no key, and a red leaf needs no rebalance at all
+     */
+    @Test
+    public void deleteEvents() {
+        RedBlackTree<Integer, String> tree = new RedBlackTree<Integer, String>(
+                KeyMode.MAP);
+        for (int key = 1; key <= 8; key++) {
+            tree.add(key, "value " + key);
+        }
+        Recorder recorder = new Recorder();
+        tree.setRebalanceListener(recorder);
+
+        assertEquals(Arrays.asList("DELETE_CASE_4 null", "RECOLOR 3",
+                "RECOLOR 2"), delete(tree, recorder, 1));
+        assertEquals(Arrays.<String> asList(), delete(tree, recorder, 8));
+        assertEquals(Arrays.asList("DELETE_CASE_4 null", "RECOLOR 7",
+                "RECOLOR 6"), delete(tree, recorder, 5));
+        // the red child takes the place of the black node and turns black
+        assertEquals(Arrays.asList("DELETE_CASE_0 7", "RECOLOR 7"),
+                delete(tree, recorder, 4));
+        assertTrue(tree.check(false).isValid());
+
+        // three black nodes: the sibling is made red and the root is checked
+        RedBlackTree<Integer, String> black = new RedBlackTree<Integer, String>(
+                KeyMode.MAP);
+        for (int key = 1; key <= 4; key++) {
+            black.add(key, "value " + key);
+        }
+        black.delete(4);
+        black.setRebalanceListener(recorder);
+        assertEquals(Arrays.asList("DELETE_CASE_3 null", "RECOLOR 3",
+                "DELETE_CASE_1 2"), delete(black, recorder, 1));
+        assertTrue(black.check(false).isValid());
+    }
+
+    /**
+     * Random adds and deletes fire every event there is, each add starting
+     * with a case of an add and each delete with a case of a delete. A
+     * delete only climbs to the root through black nodes, which takes a tree
+     * of a few keys, so a tree of at most 8 keys is changed along with a
+     * big one.
+     */
+    @Test
+    public void everyEventFires() {
+        Random random = TreeModel.random();
+        RedBlackTree<Integer, String> big = new RedBlackTree<Integer, String>(
+                KeyMode.MAP);
+        RedBlackTree<Integer, String> small = new RedBlackTree<Integer, String>(
+                KeyMode.MAP);
+        Recorder recorder = new Recorder();
+        big.setRebalanceListener(recorder);
+        small.setRebalanceListener(recorder);
+        for (int i = 0; i < 5000; i++) {
+            RedBlackTree<Integer, String> tree = i % 2 == 0 ? big : small;
+            int key = random.nextInt(tree == big ? 500 : 8);
+            boolean adding = random.nextBoolean();
+            recorder.lines.clear();
+            if (adding) {
+                tree.add(key, "value " + i);
+            } else {
+                tree.delete(key);
+            }
+            if (!recorder.lines.isEmpty()) {
+                String first = recorder.lines.get(0);
+                assertTrue(first, first.startsWith(adding ? "INSERT_CASE_"
+                        : "DELETE_CASE_"));
+            }
+        }
+        assertEquals(EnumSet.allOf(RebalanceEvent.class), recorder.seen);
+        assertTrue(big.check(false).isValid());
+        assertTrue(small.check(false).isValid());
+    }
+
+    /**
+     * Taking the listener away stops the events, and the tree still
+     * rebalances
+     */
+    @Test
+    public void noListener() {
+        RedBlackTree<Integer, String> tree = new RedBlackTree<Integer, String>(
+                KeyMode.MAP);
+        Recorder recorder = new Recorder();
+        tree.setRebalanceListener(recorder);
+        tree.add(1, "one");
+        tree.add(2, "two");
+        tree.add(3, "three");
+        assertTrue(!recorder.lines.isEmpty());
+
+        tree.setRebalanceListener(null);
+        recorder.lines.clear();
+        Random random = TreeModel.random();
+        for (int i = 0; i < 2000; i++) {
+            if (random.nextBoolean()) {
+                tree.add(random.nextInt(300), "value " + i);
+            } else {
+                tree.delete(random.nextInt(300));
+            }
+        }
+        assertEquals(Arrays.<String> asList(), recorder.lines);
+        assertTrue(tree.check(false).isValid());
+    }
+
+    /**
+     * Adds a key and gets what the listener was told
+     *
+     * @param tree
+     *            the tree
+     * @param recorder
+     *            the listener of the tree
+     * @param key
+     *            the key to add
+     * @return each event and key, in order
+     */
+    private static List<String> add(RedBlackTree<Integer, String> tree,
+            Recorder recorder, int key) {
+        recorder.lines.clear();
+        tree.add(key, "value " + key);
+        return new ArrayList<String>(recorder.lines);
+    }
+
+    /**
+     * Deletes a key and gets what the listener was told
+     *
+     * @param tree
+     *            the tree
+     * @param recorder
+     *            the listener of the tree
+     * @param key
+     *            the key to delete
+     * @return each event and key, in order
+     */
+    private static List<String> delete(RedBlackTree<Integer, String> tree,
+            Recorder recorder, int key) {
+        recorder.lines.clear();
+        tree.delete(key);
+        return new ArrayList<String>(recorder.lines);
+    }
+
+    /**
+     * Writes down every event with the key of its node
+     *
+     * @author Satshabad
+     */
+    private static final class Recorder implements
+            RebalanceListener<Integer, String> {
+
+        /**
+         * The events since the last clear, each as its name and key
+         */
+        final List<String> lines = new ArrayList<String>();
+
+        /**
+         * Every kind of event ever told
+         */
+        final Set<RebalanceEvent> seen = EnumSet.noneOf(RebalanceEvent.class);
+
+        public void onRebalance(RebalanceEvent event,
+                Node<Integer, String> node) {
+            lines.add(event + " " + node.getKey());
+            seen.add(event);
+        }
+    }
+}
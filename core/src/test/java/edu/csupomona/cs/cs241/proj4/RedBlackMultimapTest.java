@@ -0,0 +1,197 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link RedBlackMultimap} against a {@link TreeMap} of lists, and
+ * that a delete moving the next mapping into a node with two children moves
+ * its value too.
+ *
+ * @author Satshabad
+ */
+public class RedBlackMultimapTest {
+
+    /**
+     * Random adds and deletes of keys and of single values leave the same
+     * values, in the same order, as the model
+     */
+    @Test
+    public void model() {
+        Random random = TreeModel.random();
+        RedBlackMultimap<Integer, Integer> multimap = new RedBlackMultimap<Integer, Integer>();
+        TreeMap<Integer, List<Integer>> model = new TreeMap<Integer, List<Integer>>();
+        int size = 0;
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(100);
+            int choice = random.nextInt(10);
+            if (choice == 0) {
+                List<Integer> values = model.remove(key);
+                assertEquals(values, multimap.delete(key));
+                size -= values == null ? 0 : values.size();
+            } else if (choice < 4) {
+                // values repeat, only the first equal one goes
+                Integer value = random.nextInt(20);
+                List<Integer> values = model.get(key);
+                boolean there = values != null && values.remove(value);
+                assertEquals(there, multimap.delete(key, value));
+                if (there) {
+                    size--;
+                    if (values.isEmpty()) {
+                        model.remove(key);
+                    }
+                }
+            } else {
+                Integer value = random.nextInt(20);
+                assertTrue(multimap.add(key, value));
+                List<Integer> values = model.get(key);
+                if (values == null) {
+                    values = new ArrayList<Integer>();
+                    model.put(key, values);
+                }
+                values.add(value);
+                size++;
+            }
+
+            if (i % 100 == 0) {
+                multimap.verify();
+                assertEquals(size, multimap.size());
+                assertEquals(model.size(), multimap.keyCount());
+                for (int k = 0; k < 100; k++) {
+                    List<Integer> values = model.get(k);
+                    assertEquals(values, multimap.lookup(k));
+                    assertEquals(values == null ? 0 : values.size(),
+                            multimap.count(k));
+                }
+            }
+        }
+    }
+
+    /**
+     * A key keeps its node until its last value is deleted
+     */
+    @Test
+    public void emptyBucketRemovesNode() {
+        RedBlackMultimap<String, Integer> multimap = new RedBlackMultimap<String, Integer>();
+        multimap.add("a", 1);
+        multimap.add("a", 2);
+        multimap.add("b", 3);
+        assertEquals(3, multimap.size());
+        assertEquals(2, multimap.keyCount());
+
+        assertFalse(multimap.delete("a", 5));
+        assertTrue(multimap.delete("a", 1));
+        assertEquals(2, multimap.keyCount());
+        assertEquals(1, multimap.count("a"));
+
+        assertTrue(multimap.delete("a", 2));
+        assertEquals(1, multimap.keyCount());
+        assertEquals(1, multimap.size());
+        assertEquals(0, multimap.count("a"));
+        assertNull(multimap.lookup("a"));
+        assertFalse(multimap.delete("a", 2));
+        assertNull(multimap.delete("a"));
+        multimap.verify();
+    }
+
+    /**
+     * Nulls are not added, and a key given many values keeps all of them in
+     * order however many times its bucket grows
+     */
+    @Test
+    public void bucketGrowth() {
+        RedBlackMultimap<String, Integer> multimap = new RedBlackMultimap<String, Integer>();
+        assertFalse(multimap.add(null, 1));
+        assertFalse(multimap.add("a", null));
+        assertEquals(0, multimap.size());
+
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(multimap.add("a", i));
+            expected.add(i);
+        }
+        assertEquals(1, multimap.keyCount());
+        assertEquals(1000, multimap.count("a"));
+        assertEquals(expected, multimap.lookup("a"));
+
+        // from the middle and both ends
+        assertTrue(multimap.delete("a", 500));
+        assertTrue(multimap.delete("a", 0));
+        assertTrue(multimap.delete("a", 999));
+        expected.remove(Integer.valueOf(500));
+        expected.remove(Integer.valueOf(0));
+        expected.remove(Integer.valueOf(999));
+        assertEquals(expected, multimap.lookup("a"));
+        assertEquals(expected, multimap.delete("a"));
+        assertEquals(0, multimap.size());
+        assertEquals(0, multimap.keyCount());
+    }
+
+    /**
+     * Deleting a key whose node has two children moves the next key into
+     * that node, and the next key keeps its own value
+     */
+    @Test
+    public void twoChildDeleteMovesValue() {
+        for (int deleted = 0; deleted < 31; deleted++) {
+            RedBlackTree<Integer, String> tree = new RedBlackTree<Integer, String>(
+                    KeyMode.DUPLICATES);
+            TreeMap<Integer, String> model = new TreeMap<Integer, String>();
+            for (int key = 0; key < 31; key++) {
+                tree.add(key, "value " + key);
+                model.put(key, "value " + key);
+            }
+            Node<Integer, String> node = node(tree, deleted);
+            boolean twoChildren = node.getLeftChild().getSize() > 0
+                    && node.getRightChild().getSize() > 0;
+
+            assertEquals(model.remove(deleted), tree.delete(deleted));
+            if (twoChildren) {
+                assertEquals(model.get(deleted + 1), tree.lookup(deleted + 1));
+            }
+            TreeModel.checkTree(model, tree);
+        }
+
+        // the root of 31 keys added in order has two children
+        RedBlackTree<Integer, String> tree = new RedBlackTree<Integer, String>(
+                KeyMode.DUPLICATES);
+        for (int key = 0; key < 31; key++) {
+            tree.add(key, "value " + key);
+        }
+        Node<Integer, String> root = node(tree, 0);
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        int key = root.getKey();
+        assertTrue(root.getLeftChild().getSize() > 0
+                && root.getRightChild().getSize() > 0);
+        tree.delete(key);
+        assertEquals("value " + (key + 1), tree.lookup(key + 1));
+    }
+
+    /**
+     * Finds the node of a key
+     *
+     * @param tree
+     *            the tree
+     * @param key
+     *            the key, in the tree
+     * @return its node
+     */
+    private static Node<Integer, String> node(RedBlackTree<Integer, String> tree,
+            int key) {
+        for (Node<Integer, String> node : tree.tailMap(key)) {
+            return node;
+        }
+        throw new AssertionError(key + " is not in the tree");
+    }
+}
@@ -0,0 +1,204 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.BinaryOperator;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link RedBlackTree#union}, {@link RedBlackTree#intersection} and
+ * {@link RedBlackTree#difference} against a {@link TreeMap}, on empty trees,
+ * small trees and trees big enough that the steps are forked.
+ *
+ * @author Satshabad
+ */
+public class SetOperationTest {
+
+    /**
+     * Sizes of tree to try, from empty to well past the size a step is
+     * forked at
+     */
+    private static final int[] SIZES = { 0, 1, 7, 100, 3000, 20000 };
+
+    /**
+     * Adds the values of a key in both trees of a union
+     */
+    private static final BinaryOperator<Integer> SUM = new BinaryOperator<Integer>() {
+        public Integer apply(Integer a, Integer b) {
+            return a + b;
+        }
+    };
+
+    /**
+     * Every pair of sizes, overlapping a little or a lot, gives the union a
+     * TreeMap gives, keeping the value from the first tree without a merge
+     * and merging it with one
+     */
+    @Test
+    public void union() {
+        Random random = TreeModel.random();
+        for (int aSize : SIZES) {
+            for (int bSize : SIZES) {
+                for (BinaryOperator<Integer> merge : Arrays
+                        .<BinaryOperator<Integer>> asList(null, SUM)) {
+                    TreeMap<Integer, Integer> a = model(random, aSize);
+                    TreeMap<Integer, Integer> b = model(random, bSize);
+                    TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>(
+                            b);
+                    for (Map.Entry<Integer, Integer> entry : a.entrySet()) {
+                        Integer other = b.get(entry.getKey());
+                        expected.put(entry.getKey(), merge == null
+                                || other == null ? entry.getValue() : merge
+                                .apply(entry.getValue(), other));
+                    }
+
+                    RedBlackTree<Integer, Integer> aTree = tree(a);
+                    RedBlackTree<Integer, Integer> bTree = tree(b);
+                    check(expected, RedBlackTree.union(aTree, bTree, merge),
+                            aTree, bTree);
+                }
+            }
+        }
+    }
+
+    /**
+     * Every pair of sizes gives the intersection a TreeMap gives, with the
+     * values from the first tree
+     */
+    @Test
+    public void intersection() {
+        Random random = TreeModel.random();
+        for (int aSize : SIZES) {
+            for (int bSize : SIZES) {
+                TreeMap<Integer, Integer> a = model(random, aSize);
+                TreeMap<Integer, Integer> b = model(random, bSize);
+                TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>(
+                        a);
+                expected.keySet().retainAll(b.keySet());
+
+                RedBlackTree<Integer, Integer> aTree = tree(a);
+                RedBlackTree<Integer, Integer> bTree = tree(b);
+                check(expected, RedBlackTree.intersection(aTree, bTree), aTree,
+                        bTree);
+            }
+        }
+    }
+
+    /**
+     * Every pair of sizes gives the difference a TreeMap gives
+     */
+    @Test
+    public void difference() {
+        Random random = TreeModel.random();
+        for (int aSize : SIZES) {
+            for (int bSize : SIZES) {
+                TreeMap<Integer, Integer> a = model(random, aSize);
+                TreeMap<Integer, Integer> b = model(random, bSize);
+                TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>(
+                        a);
+                expected.keySet().removeAll(b.keySet());
+
+                RedBlackTree<Integer, Integer> aTree = tree(a);
+                RedBlackTree<Integer, Integer> bTree = tree(b);
+                check(expected, RedBlackTree.difference(aTree, bTree), aTree,
+                        bTree);
+            }
+        }
+    }
+
+    /**
+     * A tree that may hold a key twice is refused, and neither tree is
+     * emptied
+     */
+    @Test
+    public void duplicatesRefused() {
+        RedBlackTree<Integer, Integer> map = new RedBlackTree<Integer, Integer>(
+                KeyMode.MAP);
+        map.add(1, 1);
+        RedBlackTree<Integer, Integer> duplicates = new RedBlackTree<Integer, Integer>(
+                KeyMode.DUPLICATES);
+        duplicates.add(1, 1);
+        duplicates.add(1, 2);
+        try {
+            RedBlackTree.union(map, duplicates, null);
+            fail("made a union with a tree of duplicates");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            RedBlackTree.intersection(duplicates, map);
+            fail("made an intersection with a tree of duplicates");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            RedBlackTree.difference(duplicates, duplicates);
+            fail("made a difference of trees of duplicates");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(1, map.size());
+        assertEquals(2, duplicates.size());
+    }
+
+    /**
+     * Makes random mappings, with keys drawn from a range about twice their
+     * number so two of them share about half their keys
+     *
+     * @param random
+     *            the random numbers
+     * @param size
+     *            the number of mappings
+     * @return the mappings
+     */
+    private static TreeMap<Integer, Integer> model(Random random, int size) {
+        TreeMap<Integer, Integer> model = new TreeMap<Integer, Integer>();
+        while (model.size() < size) {
+            model.put(random.nextInt(2 * size), random.nextInt(1000));
+        }
+        return model;
+    }
+
+    /**
+     * Makes a map holding the mappings of a model
+     *
+     * @param model
+     *            the mappings
+     * @return the tree
+     */
+    private static RedBlackTree<Integer, Integer> tree(
+            TreeMap<Integer, Integer> model) {
+        RedBlackTree<Integer, Integer> tree = new RedBlackTree<Integer, Integer>(
+                KeyMode.MAP);
+        for (Map.Entry<Integer, Integer> entry : model.entrySet()) {
+            tree.add(entry.getKey(), entry.getValue());
+        }
+        return tree;
+    }
+
+    /**
+     * Checks the result of an operation and that it emptied both trees
+     *
+     * @param expected
+     *            what the result should hold
+     * @param result
+     *            the result
+     * @param a
+     *            the first tree
+     * @param b
+     *            the second tree
+     */
+    private static void check(TreeMap<Integer, Integer> expected,
+            RedBlackTree<Integer, Integer> result,
+            RedBlackTree<Integer, Integer> a, RedBlackTree<Integer, Integer> b) {
+        TreeModel.checkTree(expected, result);
+        assertEquals(0, a.size());
+        assertEquals(0, b.size());
+    }
+}
@@ -0,0 +1,166 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link ShardedRedBlackTree} against a {@link TreeMap} while its
+ * shards are cut and joined under it.
+ * 
+ * @author Satshabad
+ */
+public class ShardedRedBlackTreeTest {
+
+    /**
+     * Keys that only ever go up land in the last shard, which keeps being cut
+     * while smaller shards are joined to make room
+     */
+    @Test
+    public void increasingKeys() {
+        ShardedRedBlackTree<Integer, Integer> tree = new ShardedRedBlackTree<Integer, Integer>(
+                8);
+        TreeMap<Integer, Integer> model = new TreeMap<Integer, Integer>();
+        for (int i = 0; i < 100000; i++) {
+            tree.add(i, -i);
+            model.put(i, -i);
+        }
+        assertEquals(8, tree.shardCount());
+        check(model, tree);
+    }
+
+    /**
+     * Random adds and deletes, with ranges picked from a sample that is
+     * nothing like the keys
+     */
+    @Test
+    public void randomChanges() {
+        Random random = TreeModel.random();
+        List<Integer> sample = new ArrayList<Integer>();
+        for (int i = 0; i < 100; i++) {
+            sample.add(i);
+        }
+        ShardedRedBlackTree<Integer, Integer> tree = new ShardedRedBlackTree<Integer, Integer>(
+                5, sample);
+        TreeMap<Integer, Integer> model = new TreeMap<Integer, Integer>();
+        for (int i = 0; i < 60000; i++) {
+            int key = random.nextInt(50000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(model.remove(key), tree.delete(key));
+            } else if (!model.containsKey(key)) {
+                tree.add(key, i);
+                model.put(key, i);
+            }
+        }
+        check(model, tree);
+    }
+
+    /**
+     * Writers on many threads lose nothing while shards are cut and joined
+     * 
+     * @throws InterruptedException
+     *             if the test is interrupted
+     */
+    @Test
+    public void concurrentWriters() throws InterruptedException {
+        final ShardedRedBlackTree<Integer, Integer> tree = new ShardedRedBlackTree<Integer, Integer>(
+                4);
+        final int threads = 4;
+        final int each = 20000;
+        final AtomicInteger missed = new AtomicInteger();
+        List<Thread> writers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            Thread writer = new Thread(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < each; i++) {
+                        int key = i * threads + offset;
+                        tree.add(key, key);
+                        if (!Integer.valueOf(key).equals(tree.lookup(key))) {
+                            missed.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(0, missed.get());
+
+        TreeMap<Integer, Integer> model = new TreeMap<Integer, Integer>();
+        for (int key = 0; key < threads * each; key++) {
+            model.put(key, key);
+        }
+        check(model, tree);
+    }
+
+    /**
+     * A visitor may write to the tree it scans, here moving every key it is
+     * given to a negative key, which cuts and joins shards as it goes. The
+     * keys are visited once each, in order, and the moved keys, all in a
+     * shard already copied, are not seen by this scan.
+     */
+    @Test(timeout = 60000)
+    public void writingVisitor() {
+        final ShardedRedBlackTree<Integer, Integer> tree = new ShardedRedBlackTree<Integer, Integer>(
+                8);
+        for (int key = 0; key < 20000; key++) {
+            tree.add(key, key);
+        }
+        final List<Integer> keys = new ArrayList<Integer>();
+        tree.scan(null, null, new BiConsumer<Integer, Integer>() {
+            public void accept(Integer key, Integer value) {
+                keys.add(key);
+                assertEquals(key, tree.delete(key));
+                tree.add(key - 100000, value);
+            }
+        });
+
+        TreeMap<Integer, Integer> model = new TreeMap<Integer, Integer>();
+        List<Integer> visited = new ArrayList<Integer>();
+        for (int key = 0; key < 20000; key++) {
+            model.put(key - 100000, key);
+            visited.add(key);
+        }
+        assertEquals(visited, keys);
+        check(model, tree);
+    }
+
+    /**
+     * Checks that the tree holds just what the model does, in order
+     * 
+     * @param model
+     *            what the tree should hold
+     * @param tree
+     *            the tree
+     */
+    private static void check(TreeMap<Integer, Integer> model,
+            final ShardedRedBlackTree<Integer, Integer> tree) {
+        TreeModel.check(model, tree.size(), new Function<Integer, Integer>() {
+            public Integer apply(Integer key) {
+                return tree.lookup(key);
+            }
+        });
+        assertNull(tree.lookup(-1));
+
+        final List<Integer> keys = new ArrayList<Integer>();
+        tree.scan(null, null, new BiConsumer<Integer, Integer>() {
+            public void accept(Integer key, Integer value) {
+                keys.add(key);
+            }
+        });
+        assertEquals(new ArrayList<Integer>(model.keySet()), keys);
+    }
+}
@@ -0,0 +1,216 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link RedBlackTree#addAll(SortedMap)} and
+ * {@link RedBlackTree#deleteAll(SortedSet)} against a {@link TreeMap}, and
+ * counts their comparisons against the same keys added or deleted one at a
+ * time.
+ *
+ * @author Satshabad
+ */
+public class SortedBatchTest {
+
+    /**
+     * The number of keys in the tree before a batch, the even numbers from 0
+     */
+    private static final int SIZE = 1 << 16;
+
+    /**
+     * The number of keys in a batch
+     */
+    private static final int BATCH = 4096;
+
+    /**
+     * Keys past the highest take no more comparisons in a batch than one at
+     * a time
+     */
+    @Test
+    public void appendedBatch() {
+        TreeMap<CountedKey, Integer> batch = new TreeMap<CountedKey, Integer>();
+        for (int i = 0; i < BATCH; i++) {
+            batch.put(new CountedKey(2 * SIZE + i), i);
+        }
+        long[] compares = add(batch);
+        assertTrue(compares[0] + " batched, " + compares[1] + " one by one",
+                compares[0] <= compares[1]);
+    }
+
+    /**
+     * Keys in a run between keys of the tree take no more comparisons in a
+     * batch than one at a time, where each add starts near the last key too
+     */
+    @Test
+    public void interiorBatch() {
+        TreeMap<CountedKey, Integer> batch = new TreeMap<CountedKey, Integer>();
+        for (int i = 0; i < BATCH; i++) {
+            batch.put(new CountedKey(SIZE / 2 + 2 * i + 1), i);
+        }
+        long[] compares = add(batch);
+        assertTrue(compares[0] + " batched, " + compares[1] + " one by one",
+                compares[0] <= compares[1]);
+    }
+
+    /**
+     * Keys before, between and after the keys of the tree, some of them
+     * already there, end up where a TreeMap puts them
+     */
+    @Test
+    public void mixedBatch() {
+        Random random = TreeModel.random();
+        TreeMap<CountedKey, Integer> batch = new TreeMap<CountedKey, Integer>();
+        for (int i = 0; i < BATCH; i++) {
+            batch.put(new CountedKey(random.nextInt(3 * SIZE) - SIZE / 2), i);
+        }
+        add(batch);
+    }
+
+    /**
+     * The highest keys of the tree take far fewer comparisons to delete in a
+     * batch than one at a time
+     */
+    @Test
+    public void deletedFromTheTop() {
+        TreeSet<CountedKey> keys = new TreeSet<CountedKey>();
+        for (int i = 0; i < BATCH; i++) {
+            keys.add(new CountedKey(2 * (SIZE - BATCH + i)));
+        }
+        long[] compares = delete(keys);
+        assertTrue(compares[0] + " batched, " + compares[1] + " one by one",
+                2 * compares[0] < compares[1]);
+    }
+
+    /**
+     * A run of keys in the middle of the tree takes far fewer comparisons to
+     * delete in a batch than one at a time
+     */
+    @Test
+    public void deletedFromTheMiddle() {
+        TreeSet<CountedKey> keys = new TreeSet<CountedKey>();
+        for (int i = 0; i < BATCH; i++) {
+            keys.add(new CountedKey(SIZE / 2 + 2 * i));
+        }
+        long[] compares = delete(keys);
+        assertTrue(compares[0] + " batched, " + compares[1] + " one by one",
+                2 * compares[0] < compares[1]);
+    }
+
+    /**
+     * Random keys, some in the tree and some not, are deleted just as a
+     * TreeMap deletes them
+     */
+    @Test
+    public void mixedDeletes() {
+        Random random = TreeModel.random();
+        TreeSet<CountedKey> keys = new TreeSet<CountedKey>();
+        for (int i = 0; i < BATCH; i++) {
+            keys.add(new CountedKey(random.nextInt(3 * SIZE) - SIZE / 2));
+        }
+        delete(keys);
+    }
+
+    /**
+     * Adds a batch to one tree with addAll and to another with add, and
+     * checks both against the model
+     *
+     * @param batch
+     *            the mappings to add
+     * @return the comparisons made by addAll and by the adds
+     */
+    private static long[] add(SortedMap<CountedKey, Integer> batch) {
+        TreeMap<CountedKey, Integer> model = model();
+        RedBlackTree<CountedKey, Integer> batched = tree(model);
+        RedBlackTree<CountedKey, Integer> single = tree(model);
+        model.putAll(batch);
+
+        CountedKey.compares = 0;
+        assertEquals(batch.size(), batched.addAll(batch));
+        long batchedCompares = CountedKey.compares;
+
+        CountedKey.compares = 0;
+        for (Map.Entry<CountedKey, Integer> entry : batch.entrySet()) {
+            single.add(entry.getKey(), entry.getValue());
+        }
+        long singleCompares = CountedKey.compares;
+
+        TreeModel.checkTree(model, batched);
+        TreeModel.checkTree(model, single);
+        return new long[] { batchedCompares, singleCompares };
+    }
+
+    /**
+     * Deletes keys from one tree with deleteAll and from another with
+     * delete, and checks both against the model
+     *
+     * @param keys
+     *            the keys to delete
+     * @return the comparisons made by deleteAll and by the deletes
+     */
+    private static long[] delete(SortedSet<CountedKey> keys) {
+        TreeMap<CountedKey, Integer> model = model();
+        RedBlackTree<CountedKey, Integer> batched = tree(model);
+        RedBlackTree<CountedKey, Integer> single = tree(model);
+        int there = 0;
+        for (CountedKey key : keys) {
+            if (model.remove(key) != null) {
+                there++;
+            }
+        }
+
+        CountedKey.compares = 0;
+        assertEquals(there, batched.deleteAll(keys));
+        long batchedCompares = CountedKey.compares;
+
+        CountedKey.compares = 0;
+        for (CountedKey key : keys) {
+            single.delete(key);
+        }
+        long singleCompares = CountedKey.compares;
+
+        TreeModel.checkTree(model, batched);
+        TreeModel.checkTree(model, single);
+        return new long[] { batchedCompares, singleCompares };
+    }
+
+    /**
+     * Makes the mappings every batch starts from
+     *
+     * @return the even numbers below twice {@link #SIZE}, each mapped to
+     *         itself
+     */
+    private static TreeMap<CountedKey, Integer> model() {
+        TreeMap<CountedKey, Integer> model = new TreeMap<CountedKey, Integer>();
+        for (int i = 0; i < SIZE; i++) {
+            model.put(new CountedKey(2 * i), 2 * i);
+        }
+        return model;
+    }
+
+    /**
+     * Makes a map holding the mappings of a model
+     *
+     * @param model
+     *            the mappings
+     * @return the tree
+     */
+    private static RedBlackTree<CountedKey, Integer> tree(
+            TreeMap<CountedKey, Integer> model) {
+        RedBlackTree<CountedKey, Integer> tree = new RedBlackTree<CountedKey, Integer>(
+                KeyMode.MAP);
+        for (Map.Entry<CountedKey, Integer> entry : model.entrySet()) {
+            tree.add(entry.getKey(), entry.getValue());
+        }
+        return tree;
+    }
+}
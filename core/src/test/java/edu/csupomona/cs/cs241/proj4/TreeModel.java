@@ -0,0 +1,158 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.function.Function;
+
+/**
+ * What the tests that run a structure side by side with a
+ * {@link java.util.TreeMap} share: the random numbers they run on and the
+ * checks that the structure holds just what the model does.
+ *
+ * @author Satshabad
+ */
+final class TreeModel {
+
+    /**
+     * Every test starts from the same seed, so a failure happens again the
+     * same way when it is run again
+     */
+    static final long SEED = 0x5eed241L;
+
+    /**
+     * Only the static methods are used
+     */
+    private TreeModel() {
+    }
+
+    /**
+     * Gets the random numbers a test runs on
+     *
+     * @pre true
+     * @post true
+     *
+     * @return a generator started from {@link #SEED}
+     */
+    static Random random() {
+        return new Random(SEED);
+    }
+
+    /**
+     * Checks that a structure holds every mapping of the model and as many
+     * mappings as the model
+     *
+     * @pre true
+     * @post true
+     *
+     * @param model
+     *            what the structure should hold
+     * @param size
+     *            the number of mappings the structure says it holds
+     * @param lookup
+     *            looks a key up in the structure
+     */
+    static <K, V> void check(Map<K, V> model, int size,
+            Function<? super K, ?> lookup) {
+        assertEquals("size", model.size(), size);
+        check(model, lookup);
+    }
+
+    /**
+     * Checks that a structure holds every mapping of the model, for a
+     * structure that does not count its mappings
+     *
+     * @pre true
+     * @post true
+     *
+     * @param model
+     *            what the structure should hold
+     * @param lookup
+     *            looks a key up in the structure
+     */
+    static <K, V> void check(Map<K, V> model, Function<? super K, ?> lookup) {
+        for (Map.Entry<K, V> entry : model.entrySet()) {
+            assertEquals("value of " + entry.getKey(), entry.getValue(),
+                    lookup.apply(entry.getKey()));
+        }
+    }
+
+    /**
+     * Checks that a structure gives back the mappings of the model in the
+     * same order and no others
+     *
+     * @pre true
+     * @post entries is used up
+     *
+     * @param model
+     *            what the structure should hold
+     * @param entries
+     *            the mappings of the structure, in order
+     */
+    static <K, V> void checkOrder(SortedMap<K, V> model,
+            Iterator<? extends Map.Entry<?, ?>> entries) {
+        for (Map.Entry<K, V> expected : model.entrySet()) {
+            assertTrue("missing " + expected.getKey(), entries.hasNext());
+            Map.Entry<?, ?> entry = entries.next();
+            assertEquals(expected.getKey(), entry.getKey());
+            assertEquals(expected.getValue(), entry.getValue());
+        }
+        assertFalse("more than the model", entries.hasNext());
+    }
+
+    /**
+     * Checks that a tree holds just what the model does, in order, and is
+     * valid
+     *
+     * @pre the tree holds no key twice
+     * @post true
+     *
+     * @param model
+     *            what the tree should hold
+     * @param tree
+     *            the tree
+     */
+    static <K extends Comparable<K>, V> void checkTree(SortedMap<K, V> model,
+            final RedBlackTree<K, V> tree) {
+        assertTrue(tree.check(false).isValid());
+        assertEquals("size", model.size(), tree.size());
+        List<K> keys = new ArrayList<K>();
+        List<V> values = new ArrayList<V>();
+        for (Node<K, V> node : tree.tailMap(null)) {
+            keys.add(node.getKey());
+            values.add(node.getValue());
+        }
+        assertEquals(new ArrayList<K>(model.keySet()), keys);
+        assertEquals(new ArrayList<V>(model.values()), values);
+        check(model, new Function<K, V>() {
+            public V apply(K key) {
+                return tree.lookup(key);
+            }
+        });
+    }
+
+    /**
+     * Gets the keys of some nodes in the order they come
+     *
+     * @pre true
+     * @post true
+     *
+     * @param nodes
+     *            the nodes
+     * @return their keys
+     */
+    static <K extends Comparable<K>, V> List<K> keys(Iterable<Node<K, V>> nodes) {
+        List<K> keys = new ArrayList<K>();
+        for (Node<K, V> node : nodes) {
+            keys.add(node.getKey());
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,168 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Checks the exact output of {@link TreeRenderer} in every
+ * {@link RenderFormat}, for a small tree, an empty tree, a tree cut off by
+ * the depth and keys that have to be escaped.
+ *
+ * @author Satshabad
+ */
+public class TreeRendererTest {
+
+    /**
+     * 1, 2 and 3 added in order: a black 2 with a red child on each side
+     */
+    private static final RedBlackTree<Integer, String> SMALL = tree(3);
+
+    /**
+     * 1 to 10 added in order, four levels deep
+     */
+    private static final RedBlackTree<Integer, String> TEN = tree(10);
+
+    /**
+     * No keys at all
+     */
+    private static final RedBlackTree<Integer, String> EMPTY = tree(0);
+
+    /**
+     * TEXT draws the rows with every nil leaf below the last keys
+     *
+     * @throws IOException
+     *             never, the output is in memory
+     */
+    @Test
+    public void text() throws IOException {
+        assertEquals("         2:B         \n"
+                + "   1:R         3:R         \n"
+                + "N:B   N:B   N:B   N:B   \n",
+                render(SMALL, RenderFormat.TEXT, Integer.MAX_VALUE));
+        assertEquals("\n", render(EMPTY, RenderFormat.TEXT, Integer.MAX_VALUE));
+        // only two rows, with no nil leaves under the second
+        assertEquals("   4:B   \n" + "2:B   6:B   \n",
+                render(TEN, RenderFormat.TEXT, 2));
+    }
+
+    /**
+     * DOT numbers the nodes in the order they are written and joins each to
+     * its children
+     *
+     * @throws IOException
+     *             never, the output is in memory
+     */
+    @Test
+    public void dot() throws IOException {
+        String header = "digraph tree {\n"
+                + "  node [style=filled, fontcolor=white];\n";
+        assertEquals(header + "  n0 [label=\"2\", fillcolor=black];\n"
+                + "  n1 [label=\"1\", fillcolor=red];\n" + "  n0 -> n1;\n"
+                + "  n2 [label=\"3\", fillcolor=red];\n" + "  n0 -> n2;\n"
+                + "}\n", render(SMALL, RenderFormat.DOT, Integer.MAX_VALUE));
+        assertEquals(header + "}\n",
+                render(EMPTY, RenderFormat.DOT, Integer.MAX_VALUE));
+        // the keys below the second level are counted, not drawn
+        assertEquals(header + "  n0 [label=\"4\", fillcolor=black];\n"
+                + "  n1 [label=\"2\", fillcolor=black];\n"
+                + "  n1more [label=\"+2\", shape=plaintext, fontcolor=black];\n"
+                + "  n1 -> n1more;\n" + "  n0 -> n1;\n"
+                + "  n2 [label=\"6\", fillcolor=black];\n"
+                + "  n2more [label=\"+5\", shape=plaintext, fontcolor=black];\n"
+                + "  n2 -> n2more;\n" + "  n0 -> n2;\n" + "}\n",
+                render(TEN, RenderFormat.DOT, 2));
+    }
+
+    /**
+     * JSON nests an object per key, null for a nil leaf
+     *
+     * @throws IOException
+     *             never, the output is in memory
+     */
+    @Test
+    public void json() throws IOException {
+        assertEquals("{\"key\":\"2\",\"color\":\"black\",\"size\":3,"
+                + "\"left\":{\"key\":\"1\",\"color\":\"red\",\"size\":1,"
+                + "\"left\":null,\"right\":null},"
+                + "\"right\":{\"key\":\"3\",\"color\":\"red\",\"size\":1,"
+                + "\"left\":null,\"right\":null}}\n",
+                render(SMALL, RenderFormat.JSON, Integer.MAX_VALUE));
+        assertEquals("null\n",
+                render(EMPTY, RenderFormat.JSON, Integer.MAX_VALUE));
+        // each subtree below the second level is its number of keys
+        assertEquals("{\"key\":\"4\",\"color\":\"black\",\"size\":10,"
+                + "\"left\":{\"key\":\"2\",\"color\":\"black\",\"size\":3,"
+                + "\"left\":{\"more\":1},\"right\":{\"more\":1}},"
+                + "\"right\":{\"key\":\"6\",\"color\":\"black\",\"size\":6,"
+                + "\"left\":{\"more\":1},\"right\":{\"more\":4}}}\n",
+                render(TEN, RenderFormat.JSON, 2));
+    }
+
+    /**
+     * Quotes and backslashes in a key are escaped in DOT and JSON
+     *
+     * @throws IOException
+     *             never, the output is in memory
+     */
+    @Test
+    public void escapedKeys() throws IOException {
+        RedBlackTree<String, String> tree = new RedBlackTree<String, String>(
+                KeyMode.MAP);
+        tree.add("say \"hi\"", "quoted");
+        tree.add("a\\b", "backslash");
+
+        StringBuilder dot = new StringBuilder();
+        new TreeRenderer<String, String>(RenderFormat.DOT).render(tree, dot);
+        assertEquals("digraph tree {\n"
+                + "  node [style=filled, fontcolor=white];\n"
+                + "  n0 [label=\"say \\\"hi\\\"\", fillcolor=black];\n"
+                + "  n1 [label=\"a\\\\b\", fillcolor=red];\n"
+                + "  n0 -> n1;\n" + "}\n", dot.toString());
+
+        StringBuilder json = new StringBuilder();
+        new TreeRenderer<String, String>(RenderFormat.JSON).render(tree, json);
+        assertEquals("{\"key\":\"say \\\"hi\\\"\",\"color\":\"black\","
+                + "\"size\":2,\"left\":{\"key\":\"a\\\\b\",\"color\":\"red\","
+                + "\"size\":1,\"left\":null,\"right\":null},\"right\":null}\n",
+                json.toString());
+    }
+
+    /**
+     * Draws a tree
+     *
+     * @param tree
+     *            the tree
+     * @param format
+     *            how it is drawn
+     * @param maxDepth
+     *            the number of levels drawn
+     * @return the picture
+     * @throws IOException
+     *             never, the output is in memory
+     */
+    private static String render(RedBlackTree<Integer, String> tree,
+            RenderFormat format, int maxDepth) throws IOException {
+        StringBuilder out = new StringBuilder();
+        new TreeRenderer<Integer, String>(format, maxDepth).render(tree, out);
+        return out.toString();
+    }
+
+    /**
+     * Makes a map of the keys from 1 added in order
+     *
+     * @param count
+     *            the number of keys
+     * @return the map
+     */
+    private static RedBlackTree<Integer, String> tree(int count) {
+        RedBlackTree<Integer, String> tree = new RedBlackTree<Integer, String>(
+                KeyMode.MAP);
+        for (int key = 1; key <= count; key++) {
+            tree.add(key, "value " + key);
+        }
+        return tree;
+    }
+}
@@ -0,0 +1,301 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.junit.Test;
+
+/**
+ * Checks that snapshots of random trees read back to the same trees, with
+ * and without compression and checksums, and that corrupt snapshots are
+ * refused with an IOException.
+ * 
+ * @author Satshabad
+ */
+public class TreeSnapshotTest {
+
+    /**
+     * Where the key mode is in the header, after the magic number, the
+     * version and the flags
+     */
+    private static final int MODE_OFFSET = 16;
+
+    /**
+     * Where the number of mappings is in the header
+     */
+    private static final int COUNT_OFFSET = 20;
+
+    /**
+     * Where the checksum of the header is, the end of the rest of it
+     */
+    private static final int HEADER_CHECKSUM_OFFSET = 24;
+
+    /**
+     * Random maps of every size around a block read back the same
+     * 
+     * @throws IOException
+     *             never, the snapshots are in memory
+     */
+    @Test
+    public void roundTrip() throws IOException {
+        Random random = TreeModel.random();
+        for (int round = 0; round < 40; round++) {
+            RedBlackTree<Integer, String> tree = new RedBlackTree<Integer, String>(
+                    KeyMode.MAP);
+            TreeMap<Integer, String> model = new TreeMap<Integer, String>();
+            int count = random.nextInt(round < 20 ? 50 : 20000);
+            for (int i = 0; i < count; i++) {
+                int key = random.nextInt();
+                String value = "value " + random.nextInt(1000);
+                tree.add(key, value);
+                model.put(key, value);
+            }
+            boolean compress = random.nextBoolean();
+            boolean checksum = random.nextBoolean();
+
+            RedBlackTree<Integer, String> read = RedBlackTree.readSnapshot(
+                    new ByteArrayInputStream(write(tree, compress, checksum)),
+                    Codec.INTEGER, Codec.STRING);
+            assertTrue(read.check(false).isValid());
+            assertEquals(model.size(), read.size());
+            for (Map.Entry<Integer, String> entry : model.entrySet()) {
+                assertEquals(entry.getValue(), read.lookup(entry.getKey()));
+            }
+            // the mode came back too, adding a key again replaces it
+            if (count > 0) {
+                read.add(model.firstKey(), "again");
+                assertEquals(model.size(), read.size());
+            }
+        }
+    }
+
+    /**
+     * A snapshot that says it is of a map but holds a key twice is corrupt
+     */
+    @Test
+    public void repeatedKeyInMap() {
+        RedBlackTree<Integer, String> tree = new RedBlackTree<Integer, String>(
+                KeyMode.DUPLICATES);
+        tree.add(1, "one");
+        tree.add(2, "two");
+        tree.add(2, "two again");
+        tree.add(3, "three");
+        byte[] bytes = write(tree, false, true);
+        ByteBuffer.wrap(bytes).putInt(MODE_OFFSET, KeyMode.MAP.ordinal());
+        reseal(bytes);
+        try {
+            RedBlackTree.readSnapshot(new ByteArrayInputStream(bytes),
+                    Codec.INTEGER, Codec.STRING);
+            fail("read a map holding 2 twice");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("twice"));
+        }
+    }
+
+    /**
+     * A header changed after it was written fails its checksum
+     */
+    @Test
+    public void corruptHeader() {
+        byte[] bytes = write(tree(10), false, false);
+        ByteBuffer.wrap(bytes).putInt(MODE_OFFSET, KeyMode.DUPLICATES.ordinal());
+        assertCorrupt(bytes, "checksum");
+    }
+
+    /**
+     * A snapshot of a few mappings whose count says it holds billions is
+     * refused with an IOException, not by running out of memory, whether the
+     * count fails the checksum, passes it or has none to pass
+     */
+    @Test
+    public void corruptCount() {
+        for (int count : new int[] { Integer.MAX_VALUE, 1 << 28, 11, 9 }) {
+            byte[] bytes = write(tree(10), false, true);
+            ByteBuffer.wrap(bytes).putInt(COUNT_OFFSET, count);
+            assertCorrupt(bytes, "checksum");
+
+            reseal(bytes);
+            assertCorrupt(bytes, "header says " + count);
+
+            assertCorrupt(unchecked(bytes), "header says " + count);
+        }
+    }
+
+    /**
+     * A snapshot written before headers had checksums still reads back
+     *
+     * @throws IOException
+     *             never, the snapshot is in memory
+     */
+    @Test
+    public void uncheckedHeader() throws IOException {
+        RedBlackTree<Integer, String> read = RedBlackTree.readSnapshot(
+                new ByteArrayInputStream(unchecked(write(tree(10), true,
+                        true))), Codec.INTEGER, Codec.STRING);
+        assertTrue(read.check(false).isValid());
+        assertEquals(10, read.size());
+        assertEquals("value 3", read.lookup(3));
+    }
+
+    /**
+     * A bulk load of a map refuses a key that comes twice, a bulk load that
+     * allows duplicates takes it
+     */
+    @Test
+    public void fromSortedRepeatedKey() {
+        List<Map.Entry<Integer, Integer>> entries = new ArrayList<Map.Entry<Integer, Integer>>();
+        for (int key : new int[] { 1, 2, 2, 3 }) {
+            entries.add(new AbstractMap.SimpleEntry<Integer, Integer>(
+                    key, key));
+        }
+        assertEquals(4, RedBlackTree.fromSorted(entries.iterator(), 4,
+                KeyMode.DUPLICATES).size());
+        try {
+            RedBlackTree.fromSorted(entries.iterator(), 4, KeyMode.MAP);
+            fail("built a map holding 2 twice");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * A string whose length is cut down below zero or blown up past its block
+     * is refused as corrupt, not allocated
+     */
+    @Test
+    public void corruptStringLength() {
+        for (int length : new int[] { -1, Integer.MIN_VALUE, 1 << 30,
+                Integer.MAX_VALUE }) {
+            ByteBuffer bytes = ByteBuffer.allocate(8);
+            bytes.putInt(length).putInt(0);
+            try {
+                Codec.STRING.read(new DataInputStream(new ByteArrayInputStream(
+                        bytes.array())));
+                fail("read a string of length " + length);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+
+        // every string of an unchecksummed snapshot claims to run past its
+        // block
+        RedBlackTree<Integer, String> tree = new RedBlackTree<Integer, String>(
+                KeyMode.MAP);
+        tree.add(1, "one");
+        byte[] snapshot = write(tree, false, false);
+        byte[] one = "one".getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i + 4 + one.length <= snapshot.length; i++) {
+            if (ByteBuffer.wrap(snapshot).getInt(i) == one.length
+                    && snapshot[i + 4] == one[0]) {
+                ByteBuffer.wrap(snapshot).putInt(i, 1 << 30);
+            }
+        }
+        try {
+            RedBlackTree.readSnapshot(new ByteArrayInputStream(snapshot),
+                    Codec.INTEGER, Codec.STRING);
+            fail("read a snapshot with a corrupt string length");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("length"));
+        }
+    }
+
+    /**
+     * Makes a map of the first keys from 0, each to its own value
+     *
+     * @param count
+     *            the number of keys
+     * @return the map
+     */
+    private static RedBlackTree<Integer, String> tree(int count) {
+        RedBlackTree<Integer, String> tree = new RedBlackTree<Integer, String>(
+                KeyMode.MAP);
+        for (int i = 0; i < count; i++) {
+            tree.add(i, "value " + i);
+        }
+        return tree;
+    }
+
+    /**
+     * Checks that reading a snapshot fails with an IOException
+     *
+     * @param bytes
+     *            the snapshot
+     * @param message
+     *            what the message of the exception says
+     */
+    private static void assertCorrupt(byte[] bytes, String message) {
+        try {
+            RedBlackTree.readSnapshot(new ByteArrayInputStream(bytes),
+                    Codec.INTEGER, Codec.STRING);
+            fail("read a corrupt snapshot");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+
+    /**
+     * Gives a changed header the checksum it would have been written with
+     *
+     * @param bytes
+     *            the snapshot, changed in place
+     */
+    private static void reseal(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, HEADER_CHECKSUM_OFFSET);
+        ByteBuffer.wrap(bytes).putLong(HEADER_CHECKSUM_OFFSET, crc.getValue());
+    }
+
+    /**
+     * Turns a snapshot into one of version 1, whose header has no checksum
+     *
+     * @param bytes
+     *            the snapshot
+     * @return the same snapshot in version 1
+     */
+    private static byte[] unchecked(byte[] bytes) {
+        ByteBuffer old = ByteBuffer.allocate(bytes.length - 8);
+        old.put(bytes, 0, HEADER_CHECKSUM_OFFSET);
+        old.put(bytes, HEADER_CHECKSUM_OFFSET + 8, bytes.length
+                - HEADER_CHECKSUM_OFFSET - 8);
+        old.putInt(8, 1);
+        return old.array();
+    }
+
+    /**
+     * Writes a snapshot of a tree into memory
+     * 
+     * @param tree
+     *            the tree
+     * @param compress
+     *            if the blocks are compressed
+     * @param checksum
+     *            if the blocks have checksums
+     * @return the bytes of the snapshot
+     */
+    static byte[] write(RedBlackTree<Integer, String> tree, boolean compress,
+            boolean checksum) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            tree.writeSnapshot(out, Codec.INTEGER, Codec.STRING, compress,
+                    checksum);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,190 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link TreeSpliterator} and the streams made from it give the
+ * nodes in key order, that its sizes are exact however it is split, and that
+ * it keeps the promises of its characteristics when keys repeat.
+ *
+ * @author Satshabad
+ */
+public class TreeSpliteratorTest {
+
+    /**
+     * Gets the key of a node
+     */
+    private static final Function<Node<Integer, Integer>, Integer> KEY = new Function<Node<Integer, Integer>, Integer>() {
+        public Integer apply(Node<Integer, Integer> node) {
+            return node.getKey();
+        }
+    };
+
+    /**
+     * Both streams give the keys in order, for trees of every size from
+     * empty up and in both modes
+     */
+    @Test
+    public void streamsInOrder() {
+        Random random = TreeModel.random();
+        for (KeyMode mode : KeyMode.values()) {
+            for (int size : new int[] { 0, 1, 2, 3, 10, 1000, 20000 }) {
+                RedBlackTree<Integer, Integer> tree = tree(random, mode, size);
+                List<Integer> keys = TreeModel.keys(tree.tailMap(null));
+                assertEquals(keys, tree.stream().map(KEY).collect(
+                        Collectors.<Integer> toList()));
+                assertEquals(keys, tree.parallelStream().map(KEY).collect(
+                        Collectors.<Integer> toList()));
+                assertEquals(keys.size(), tree.parallelStream().count());
+            }
+        }
+    }
+
+    /**
+     * Splitting again and again, with some nodes taken before a split, gives
+     * parts whose sizes add up to the whole and are each exact, and which
+     * hold the keys in order
+     */
+    @Test
+    public void splitsAreExact() {
+        Random random = TreeModel.random();
+        for (KeyMode mode : KeyMode.values()) {
+            for (int size : new int[] { 0, 1, 2, 5, 64, 1000 }) {
+                for (int round = 0; round < 10; round++) {
+                    RedBlackTree<Integer, Integer> tree = tree(random, mode,
+                            size);
+                    List<Integer> keys = new ArrayList<Integer>();
+                    Spliterator<Node<Integer, Integer>> spliterator = tree
+                            .spliterator();
+                    assertEquals(size, spliterator.estimateSize());
+                    assertEquals(size, spliterator.getExactSizeIfKnown());
+                    drain(spliterator, random, keys);
+                    assertEquals(TreeModel.keys(tree.tailMap(null)), keys);
+                }
+            }
+        }
+    }
+
+    /**
+     * A tree holding a key many times still gives each node once, and the
+     * comparator puts the nodes in the order they come
+     */
+    @Test
+    public void characteristicsWithRepeatedKeys() {
+        RedBlackTree<Integer, Integer> tree = new RedBlackTree<Integer, Integer>(
+                KeyMode.DUPLICATES);
+        Random random = TreeModel.random();
+        for (int i = 0; i < 500; i++) {
+            tree.add(random.nextInt(20), i);
+        }
+        TreeSpliterator<Integer, Integer> spliterator = tree.spliterator();
+        for (int characteristic : new int[] { Spliterator.ORDERED,
+                Spliterator.SORTED, Spliterator.DISTINCT,
+                Spliterator.NONNULL, Spliterator.SIZED,
+                Spliterator.SUBSIZED }) {
+            assertTrue(spliterator.hasCharacteristics(characteristic));
+        }
+
+        // DISTINCT is about the nodes, which are never equal to each other
+        List<Node<Integer, Integer>> nodes = tree.parallelStream().collect(
+                Collectors.<Node<Integer, Integer>> toList());
+        Set<Node<Integer, Integer>> seen = Collections
+                .newSetFromMap(new IdentityHashMap<Node<Integer, Integer>, Boolean>());
+        seen.addAll(nodes);
+        assertEquals(500, seen.size());
+        assertEquals(500, tree.stream().distinct().count());
+
+        // SORTED by the comparator, with equal keys side by side
+        Comparator<? super Node<Integer, Integer>> comparator = spliterator
+                .getComparator();
+        assertNotNull(comparator);
+        for (int i = 1; i < nodes.size(); i++) {
+            int order = comparator.compare(nodes.get(i - 1), nodes.get(i));
+            assertTrue(order <= 0);
+            assertEquals(order == 0, nodes.get(i - 1).getKey()
+                    .equals(nodes.get(i).getKey()));
+        }
+    }
+
+    /**
+     * Takes every node of a spliterator, splitting it at random, and checks
+     * every size on the way
+     *
+     * @param spliterator
+     *            the spliterator
+     * @param random
+     *            decides when to split
+     * @param keys
+     *            gets the keys in the order they are taken
+     */
+    private static void drain(Spliterator<Node<Integer, Integer>> spliterator,
+            Random random, final List<Integer> keys) {
+        long total = spliterator.estimateSize();
+        long size = total;
+        int before = keys.size();
+        Consumer<Node<Integer, Integer>> take = new Consumer<Node<Integer, Integer>>() {
+            public void accept(Node<Integer, Integer> node) {
+                keys.add(node.getKey());
+            }
+        };
+
+        // a node taken from the head still leaves the rest splittable
+        if (random.nextInt(4) == 0 && spliterator.tryAdvance(take)) {
+            assertEquals(size - 1, spliterator.estimateSize());
+            size--;
+        }
+        Spliterator<Node<Integer, Integer>> prefix = random.nextInt(5) == 0 ? null
+                : spliterator.trySplit();
+        if (prefix == null) {
+            spliterator.forEachRemaining(take);
+        } else {
+            assertEquals(size, prefix.estimateSize()
+                    + spliterator.estimateSize());
+            assertTrue(prefix.hasCharacteristics(Spliterator.SUBSIZED));
+            drain(prefix, random, keys);
+            drain(spliterator, random, keys);
+        }
+        assertEquals(0, spliterator.estimateSize());
+        assertEquals(total, keys.size() - before);
+        assertNull(spliterator.trySplit());
+    }
+
+    /**
+     * Makes a tree of random keys
+     *
+     * @param random
+     *            the random numbers
+     * @param mode
+     *            the mode of the tree
+     * @param size
+     *            the number of keys, which may repeat outside
+     *            {@link KeyMode#MAP}
+     * @return the tree
+     */
+    private static RedBlackTree<Integer, Integer> tree(Random random,
+            KeyMode mode, int size) {
+        RedBlackTree<Integer, Integer> tree = new RedBlackTree<Integer, Integer>(
+                mode);
+        while (tree.size() < size) {
+            tree.add(random.nextInt(2 * size), tree.size());
+        }
+        return tree;
+    }
+}
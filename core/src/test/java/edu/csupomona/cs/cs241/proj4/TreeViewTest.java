@@ -0,0 +1,102 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Checks the views of {@link RedBlackTree} against the same views of a
+ * {@link TreeMap} holding the same keys, both their sizes and the keys they
+ * walk through.
+ * 
+ * @author Satshabad
+ */
+public class TreeViewTest {
+
+    /**
+     * The views of a small tree, whose sizes are easy to work out by hand
+     */
+    @Test
+    public void sizesOfUnboundedSides() {
+        RedBlackTree<Integer, Integer> tree = new RedBlackTree<Integer, Integer>();
+        for (int i = 0; i < 10; i++) {
+            tree.add(i, i);
+        }
+        assertEquals(5, tree.headMap(5).size());
+        assertEquals(6, tree.headMap(5, true).size());
+        assertEquals(5, tree.tailMap(5).size());
+        assertEquals(4, tree.tailMap(5, false).size());
+        assertEquals(10, tree.descendingMap().size());
+        assertEquals(5, tree.headMap(5).descendingMap().size());
+        assertEquals(0, new RedBlackTree<Integer, Integer>().headMap(5).size());
+    }
+
+    /**
+     * Every kind of view of random trees, with bounds in and out of the
+     * tree, agrees with TreeMap
+     */
+    @Test
+    public void viewsMatchTreeMap() {
+        Random random = TreeModel.random();
+        for (int round = 0; round < 200; round++) {
+            RedBlackTree<Integer, Integer> tree = new RedBlackTree<Integer, Integer>(
+                    KeyMode.MAP);
+            TreeMap<Integer, Integer> model = new TreeMap<Integer, Integer>();
+            int range = 1 + random.nextInt(100);
+            int count = random.nextInt(60);
+            for (int i = 0; i < count; i++) {
+                int key = random.nextInt(range);
+                tree.add(key, i);
+                model.put(key, i);
+            }
+
+            for (int query = 0; query < 20; query++) {
+                int lo = random.nextInt(range + 4) - 2;
+                int hi = random.nextInt(range + 4) - 2;
+                boolean loInclusive = random.nextBoolean();
+                boolean hiInclusive = random.nextBoolean();
+
+                check(model.headMap(hi, false), tree.headMap(hi));
+                check(model.headMap(hi, hiInclusive),
+                        tree.headMap(hi, hiInclusive));
+                check(model.tailMap(lo, true), tree.tailMap(lo));
+                check(model.tailMap(lo, loInclusive),
+                        tree.tailMap(lo, loInclusive));
+                check(model.descendingMap(), tree.descendingMap());
+                if (lo <= hi) {
+                    check(model.subMap(lo, true, hi, false),
+                            tree.subMap(lo, hi));
+                    check(model.subMap(lo, loInclusive, hi, hiInclusive),
+                            tree.subMap(lo, loInclusive, hi, hiInclusive));
+                } else {
+                    // TreeMap refuses these, the view is just empty
+                    assertEquals(0, tree.subMap(lo, loInclusive, hi,
+                            hiInclusive).size());
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks a view and its reverse against the same range of the model
+     * 
+     * @param expected
+     *            the range of the model
+     * @param view
+     *            the view of the tree
+     */
+    private static void check(NavigableMap<Integer, Integer> expected,
+            TreeView<Integer, Integer> view) {
+        assertEquals(expected.size(), view.size());
+        assertEquals(new ArrayList<Integer>(expected.keySet()),
+                TreeModel.keys(view));
+        assertEquals(expected.size(), view.descendingMap().size());
+        assertEquals(new ArrayList<Integer>(expected.descendingKeySet()),
+                TreeModel.keys(view.descendingMap()));
+    }
+}
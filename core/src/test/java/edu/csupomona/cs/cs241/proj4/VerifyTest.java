@@ -0,0 +1,153 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Field;
+
+import org.junit.Test;
+
+/**
+ * Checks that the verify methods of the other trees throw
+ * IllegalStateException for a broken tree, like
+ * {@link RedBlackTree#verify()}, rather than rely on assertions.
+ * 
+ * @author Satshabad
+ */
+public class VerifyTest {
+
+    /**
+     * Trees of boxed nodes, whose root's left child gets the wrong color
+     * 
+     * @throws Exception
+     *             if a tree can't be reached into
+     */
+    @Test
+    public void nodeTrees() throws Exception {
+        LongRedBlackTree<String> longs = new LongRedBlackTree<String>();
+        IntRedBlackTree<String> ints = new IntRedBlackTree<String>();
+        LongLongRedBlackTree longLongs = new LongLongRedBlackTree();
+        for (int i = 0; i < 50; i++) {
+            longs.add(i, "v");
+            ints.add(i, "v");
+            longLongs.add(i, i);
+        }
+        assertTrue(longs.verify() > 1);
+        assertTrue(ints.verify() > 1);
+        assertTrue(longLongs.verify() > 1);
+
+        Object node = field(field(longs, "root"), "left");
+        set(node, "red", !(Boolean) field(node, "red"));
+        node = field(field(ints, "root"), "left");
+        set(node, "red", !(Boolean) field(node, "red"));
+        node = field(field(longLongs, "root"), "left");
+        set(node, "red", !(Boolean) field(node, "red"));
+
+        try {
+            longs.verify();
+            fail("a broken LongRedBlackTree was not reported");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            ints.verify();
+            fail("a broken IntRedBlackTree was not reported");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            longLongs.verify();
+            fail("a broken LongLongRedBlackTree was not reported");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    /**
+     * An arena tree whose root's left child gets the wrong color bit
+     * 
+     * @throws Exception
+     *             if the tree can't be reached into
+     */
+    @Test
+    public void arenaTree() throws Exception {
+        ArenaRedBlackTree<Integer, String> tree = new ArenaRedBlackTree<Integer, String>();
+        for (int i = 0; i < 50; i++) {
+            tree.add(i, "v");
+        }
+        assertTrue(tree.verify() > 1);
+
+        int root = (Integer) field(tree, "root");
+        int left = ((int[]) field(tree, "left"))[root];
+        ((long[]) field(tree, "red"))[left >>> 6] ^= 1L << left;
+        try {
+            tree.verify();
+            fail("a broken ArenaRedBlackTree was not reported");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    /**
+     * A version of a persistent tree whose root's children are swapped, so
+     * its keys are out of order
+     * 
+     * @throws Exception
+     *             if the tree can't be reached into
+     */
+    @Test
+    public void persistentTree() throws Exception {
+        PersistentRedBlackTree<Integer, String> tree = new PersistentRedBlackTree<Integer, String>();
+        for (int i = 0; i < 50; i++) {
+            tree = tree.add(i, "v");
+        }
+        assertTrue(tree.verify() > 1);
+
+        Object root = field(tree, "root");
+        Object left = field(root, "left");
+        set(root, "left", field(root, "right"));
+        set(root, "right", left);
+        try {
+            tree.verify();
+            fail("a broken PersistentRedBlackTree was not reported");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Reads a private field
+     * 
+     * @param object
+     *            the object holding the field
+     * @param name
+     *            the name of the field
+     * @return the value of the field
+     * @throws Exception
+     *             if there is no such field
+     */
+    private static Object field(Object object, String name) throws Exception {
+        Field field = object.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(object);
+    }
+
+    /**
+     * Writes a private field, final or not
+     * 
+     * @param object
+     *            the object holding the field
+     * @param name
+     *            the name of the field
+     * @param value
+     *            the value to write
+     * @throws Exception
+     *             if there is no such field
+     */
+    private static void set(Object object, String name, Object value)
+            throws Exception {
+        Field field = object.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(object, value);
+    }
+}
@@ -0,0 +1,106 @@
+package edu.csupomona.cs.cs241.proj4;
+
+/**
+ * Sums up the values of a {@link RedBlackTree}, for
+ * {@link RedBlackTree#aggregate(Comparable, Comparable, Aggregator)}. Each
+ * node keeps the aggregate of its subtree, so combine has to be associative
+ * and identity has to change nothing it is combined with. Combine does not
+ * have to be commutative, the values are always combined in order of key.
+ *
+ * @author Satshabad
+ *
+ * @param <V>
+ *            the values that are aggregated
+ * @param <A>
+ *            the type of an aggregate
+ */
+public interface Aggregator<V, A> {
+
+    /**
+     * Sums longs
+     */
+    Aggregator<Long, Long> LONG_SUM = new Aggregator<Long, Long>() {
+        public Long identity() {
+            return 0L;
+        }
+
+        public Long of(Long value) {
+            return value;
+        }
+
+        public Long combine(Long left, Long right) {
+            return left + right;
+        }
+    };
+
+    /**
+     * Finds the least long, Long.MAX_VALUE if there are none
+     */
+    Aggregator<Long, Long> LONG_MIN = new Aggregator<Long, Long>() {
+        public Long identity() {
+            return Long.MAX_VALUE;
+        }
+
+        public Long of(Long value) {
+            return value;
+        }
+
+        public Long combine(Long left, Long right) {
+            return Math.min(left, right);
+        }
+    };
+
+    /**
+     * Finds the greatest long, Long.MIN_VALUE if there are none
+     */
+    Aggregator<Long, Long> LONG_MAX = new Aggregator<Long, Long>() {
+        public Long identity() {
+            return Long.MIN_VALUE;
+        }
+
+        public Long of(Long value) {
+            return value;
+        }
+
+        public Long combine(Long left, Long right) {
+            return Math.max(left, right);
+        }
+    };
+
+    /**
+     * Gets the aggregate of no values at all
+     *
+     * @pre true
+     * @post combining it with any aggregate gives back that aggregate
+     *
+     * @return the identity
+     */
+    A identity();
+
+    /**
+     * Gets the aggregate of one value
+     *
+     * @pre value is not null
+     * @post true
+     *
+     * @param value
+     *            the value
+     * @return its aggregate
+     */
+    A of(V value);
+
+    /**
+     * Combines the aggregates of two runs of values, the first coming right
+     * before the second in order of key
+     *
+     * @pre true
+     * @post combine(combine(a, b), c) equals combine(a, combine(b, c))
+     *
+     * @param left
+     *            the aggregate of the first run
+     * @param right
+     *            the aggregate of the second run
+     * @return the aggregate of both runs
+     */
+    A combine(A left, A right);
+}
@@ -0,0 +1,638 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import java.util.Arrays;
+
+/**
+ * This class is a Red Black Tree that keeps its nodes in parallel arrays
+ * instead of {@link Node} objects. A node is an index into the arrays, the
+ * children and parent are int indexes and the colors are bits of a long
+ * array, so the tree only allocates when the arrays have to grow. Slots of
+ * deleted nodes are put on a free list and used again by the next add.
+ *
+ * It has the same add, lookup and delete behavior as {@link RedBlackTree}.
+ *
+ * @author Satshabad
+ *
+ * @param <K>
+ *            the keys that map to the values
+ * @param <V>
+ *            the values that the nodes hold.
+ */
+public class ArenaRedBlackTree<K extends Comparable<K>, V> {
+
+    /**
+     * The constant boolean for the color red
+     */
+    private static final boolean RED = true;
+
+    /**
+     * The constant boolean for the color black
+     */
+    private static final boolean BLACK = false;
+
+    /**
+     * No path in a red black tree of int size is longer than this
+     */
+    private static final int MAX_DEPTH = 64;
+
+    /**
+     * The index of the one node that represents all of the nil leaves at
+     * once. It is black and never changes.
+     */
+    private static final int NIL = 0;
+
+    /**
+     * How many slots the arrays have when the tree is made
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * The left child of each node
+     */
+    private int[] left;
+
+    /**
+     * The right child of each node, or for a free slot the next free slot
+     */
+    private int[] right;
+
+    /**
+     * The parent of each node, NIL for the root
+     */
+    private int[] parent;
+
+    /**
+     * The key of each node
+     */
+    private Object[] keys;
+
+    /**
+     * The value of each node
+     */
+    private Object[] values;
+
+    /**
+     * One bit per node, set if the node is red
+     */
+    private long[] red;
+
+    /**
+     * The first slot of the free list, NIL if it is empty
+     */
+    private int free;
+
+    /**
+     * The first slot that has never been used
+     */
+    private int top;
+
+    /**
+     * The index of the root, NIL if the tree is empty
+     */
+    private int root;
+
+    /**
+     * Initializes a Red Black Tree
+     *
+     * @pre true
+     * @post a RBT is made
+     */
+    public ArenaRedBlackTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Initializes a Red Black Tree with room for the given number of nodes
+     * before the arrays have to grow
+     *
+     * @pre capacity is not negative
+     * @post a RBT is made
+     *
+     * @param capacity
+     *            how many nodes to make room for
+     */
+    public ArenaRedBlackTree(int capacity) {
+        // slot 0 is the nil leaf
+        int slots = Math.max(capacity + 1, 2);
+        left = new int[slots];
+        right = new int[slots];
+        parent = new int[slots];
+        keys = new Object[slots];
+        values = new Object[slots];
+        red = new long[(slots + 63) >>> 6];
+        free = NIL;
+        top = 1;
+        root = NIL;
+    }
+
+    /**
+     * This method adds the mapping to the tree.
+     *
+     * @pre true
+     * @post the key added matches the value added with it. If there was a
+     *       previous mapping of the same key results are not guaranteed
+     *
+     * @param key
+     *            the key that will map to the value for look up
+     * @param value
+     *            the object to be stored
+     * @return whether the mapping was made or not
+     */
+    public boolean add(K key, V value) {
+
+        // don't add null mapping, it could interfere with other methods.
+        if (key == null || value == null) {
+            return false;
+        }
+
+        int placeToAdd = descend(key, false);
+        int added = allocate(key, value, placeToAdd);
+
+        // special case when there is no root.
+        if (placeToAdd == NIL) {
+            root = added;
+        } else if (keyAt(placeToAdd).compareTo(key) < 0) {
+            // greater than to the right, less or equal to the left
+            right[placeToAdd] = added;
+        } else {
+            left[placeToAdd] = added;
+        }
+        addBalance(added);
+        return true;
+    }
+
+    /**
+     * This method deletes the first instance of the key value mapping indicated
+     * by the key.
+     *
+     * @pre true
+     * @post the first instance of the mapping is removed
+     *
+     * @param key
+     *            the key to value to be deleted
+     * @return the value mapped to the key which was deleted, or null if there
+     *         was none
+     */
+    public V delete(K key) {
+        if (key == null) {
+            return null;
+        }
+        int toBeDeleted = descend(key, true);
+        if (toBeDeleted == NIL) {
+            return null;
+        }
+        V returnValue = valueAt(toBeDeleted);
+
+        // find the node that will really leave the tree, it has at most one
+        // child
+        int replaceNode;
+        int child;
+        if (right[toBeDeleted] != NIL) {
+            replaceNode = right[toBeDeleted];
+            while (left[replaceNode] != NIL) {
+                replaceNode = left[replaceNode];
+            }
+            child = right[replaceNode];
+        } else if (left[toBeDeleted] != NIL) {
+            replaceNode = left[toBeDeleted];
+            while (right[replaceNode] != NIL) {
+                replaceNode = right[replaceNode];
+            }
+            child = left[replaceNode];
+        } else {
+            replaceNode = toBeDeleted;
+            child = NIL;
+        }
+        keys[toBeDeleted] = keys[replaceNode];
+        values[toBeDeleted] = values[replaceNode];
+
+        int parentOfReplaced = parent[replaceNode];
+        replace(replaceNode, child);
+
+        if (!isRed(replaceNode)) {
+            if (isRed(child)) {
+                setColor(child, BLACK);
+            } else {
+                deleteBalance(child, parentOfReplaced);
+            }
+        }
+        release(replaceNode);
+        return returnValue;
+    }
+
+    /**
+     * This method looks up the value associated with the key.
+     *
+     * @pre true
+     * @post the value mapped to the key is returned, or null if the key is not
+     *       in the tree
+     *
+     * @param key
+     *            the key of the value
+     * @return the value indexed by key, or null if there is no such mapping
+     */
+    public V lookup(K key) {
+        if (key == null) {
+            return null;
+        }
+        int found = descend(key, true);
+        if (found == NIL) {
+            return null;
+        }
+        return valueAt(found);
+    }
+
+    /**
+     * Checks that no red node has a red child and that every path has the same
+     * number of black nodes. Unlike an assertion this runs whether or not the
+     * JVM has -ea.
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @return the number of black nodes on any path from the root to a leaf
+     * @throws IllegalStateException
+     *             if a rule is broken, saying which and where
+     */
+    public int verify() {
+        return verifyHelper(root, false, 1);
+    }
+
+    /**
+     * This method does most of the logic of the verify method. see
+     * {@link #verify()}
+     *
+     * @param node
+     *            the current node
+     * @param wasRed
+     *            if the parent was red
+     * @param depth
+     *            the number of nodes on the path down to node, node included
+     * @return the number of black nodes on any path from node to a leaf
+     * @throws IllegalStateException
+     *             if a rule is broken under node
+     */
+    private int verifyHelper(int node, boolean wasRed, int depth) {
+        if (node == NIL) {
+            return 1;
+        }
+        if (depth > MAX_DEPTH) {
+            throw new IllegalStateException("path deeper than " + MAX_DEPTH
+                    + " at " + keyAt(node));
+        }
+        if (isRed(node) && wasRed) {
+            throw new IllegalStateException("red node with a red parent at "
+                    + keyAt(node));
+        }
+        int leftBlack = verifyHelper(left[node], isRed(node), depth + 1);
+        int rightBlack = verifyHelper(right[node], isRed(node), depth + 1);
+        if (leftBlack != rightBlack) {
+            throw new IllegalStateException("black heights " + leftBlack
+                    + " and " + rightBlack + " differ at " + keyAt(node));
+        }
+        return isRed(node) ? leftBlack : leftBlack + 1;
+    }
+
+    /**
+     * This method is the one descent from the root that lookup, add and delete
+     * all share, see {@link RedBlackTree}
+     *
+     * @param key
+     *            the key to search for
+     * @param stopOnMatch
+     *            if true the descent stops at the first node whose key equals
+     *            key, if false it keeps going down as an add would
+     * @return if stopOnMatch, the first node with a matching key or NIL if
+     *         there is none. Otherwise the node to add onto, or NIL if the
+     *         tree is empty
+     */
+    private int descend(K key, boolean stopOnMatch) {
+        int current = root;
+        int last = NIL;
+
+        while (current != NIL) {
+            int comparison = keyAt(current).compareTo(key);
+            if (comparison == 0 && stopOnMatch) {
+                return current;
+            }
+            last = current;
+            if (comparison < 0) {
+                current = right[current];
+            } else {
+                current = left[current];
+            }
+        }
+
+        if (stopOnMatch) {
+            return NIL;
+        }
+        return last;
+    }
+
+    /**
+     * Takes a slot for a new red node, from the free list if it has one
+     *
+     * @pre true
+     * @post the slot holds the mapping and has no children
+     *
+     * @param key
+     *            the key of the node
+     * @param value
+     *            the value of the node
+     * @param parentNode
+     *            the parent of the node
+     * @return the slot of the new node
+     */
+    private int allocate(K key, V value, int parentNode) {
+        int slot;
+        if (free != NIL) {
+            slot = free;
+            free = right[slot];
+        } else {
+            if (top == left.length) {
+                grow();
+            }
+            slot = top++;
+        }
+        left[slot] = NIL;
+        right[slot] = NIL;
+        parent[slot] = parentNode;
+        keys[slot] = key;
+        values[slot] = value;
+        setColor(slot, RED);
+        return slot;
+    }
+
+    /**
+     * Puts a slot that is no longer in the tree on the free list
+     *
+     * @pre the slot is not in the tree
+     * @post the slot will be used by a later add
+     *
+     * @param slot
+     *            the slot to free
+     */
+    private void release(int slot) {
+        keys[slot] = null;
+        values[slot] = null;
+        left[slot] = NIL;
+        parent[slot] = NIL;
+        right[slot] = free;
+        free = slot;
+    }
+
+    /**
+     * Doubles the size of all of the arrays
+     *
+     * @pre true
+     * @post there are unused slots after top
+     */
+    private void grow() {
+        int slots = left.length * 2;
+        left = Arrays.copyOf(left, slots);
+        right = Arrays.copyOf(right, slots);
+        parent = Arrays.copyOf(parent, slots);
+        keys = Arrays.copyOf(keys, slots);
+        values = Arrays.copyOf(values, slots);
+        red = Arrays.copyOf(red, (slots + 63) >>> 6);
+    }
+
+    /**
+     * Gets the key of a node
+     *
+     * @param node
+     *            the node
+     * @return the key
+     */
+    @SuppressWarnings("unchecked")
+    private K keyAt(int node) {
+        return (K) keys[node];
+    }
+
+    /**
+     * Gets the value of a node
+     *
+     * @param node
+     *            the node
+     * @return the value
+     */
+    @SuppressWarnings("unchecked")
+    private V valueAt(int node) {
+        return (V) values[node];
+    }
+
+    /**
+     * Checks what the color of a node is
+     *
+     * @param node
+     *            the node
+     * @return true if the node is red
+     */
+    private boolean isRed(int node) {
+        return (red[node >>> 6] & (1L << node)) != 0;
+    }
+
+    /**
+     * Sets the color of a node
+     *
+     * @param node
+     *            the node
+     * @param isRed
+     *            the color (true for red) to set
+     */
+    private void setColor(int node, boolean isRed) {
+        if (isRed) {
+            red[node >>> 6] |= 1L << node;
+        } else {
+            red[node >>> 6] &= ~(1L << node);
+        }
+    }
+
+    /**
+     * Puts replacement where node is in the tree.
+     *
+     * @pre node is in the tree
+     * @post node's parent now points to replacement
+     *
+     * @param node
+     *            the node to take out
+     * @param replacement
+     *            the node to put in it's place, may be NIL
+     */
+    private void replace(int node, int replacement) {
+        int parentNode = parent[node];
+        if (parentNode == NIL) {
+            root = replacement;
+        } else if (left[parentNode] == node) {
+            left[parentNode] = replacement;
+        } else {
+            right[parentNode] = replacement;
+        }
+        if (replacement != NIL) {
+            parent[replacement] = parentNode;
+        }
+    }
+
+    /**
+     * This internal method will check the 5 cases that might occur when a node
+     * is added and it breaks the 4 RBT rules. see {@link RedBlackTree}
+     *
+     * @pre the only rules that are broken are from the latest add proc.
+     * @post all 4 of the RBT rules are not violated
+     * @param node
+     *            the node to start checking on
+     */
+    private void addBalance(int node) {
+        while (true) {
+            int parentNode = parent[node];
+
+            // case 1 and 2
+            if (parentNode == NIL) {
+                setColor(node, BLACK);
+                return;
+            }
+            if (!isRed(parentNode)) {
+                return;
+            }
+
+            int grandparent = parent[parentNode];
+            boolean parentIsLeft = left[grandparent] == parentNode;
+            int uncle = parentIsLeft ? right[grandparent] : left[grandparent];
+
+            // case 3
+            if (isRed(uncle)) {
+                setColor(uncle, BLACK);
+                setColor(parentNode, BLACK);
+                setColor(grandparent, RED);
+                node = grandparent;
+                continue;
+            }
+
+            // case 4
+            if (parentIsLeft && right[parentNode] == node) {
+                rotateLeft(parentNode);
+                parentNode = node;
+            } else if (!parentIsLeft && left[parentNode] == node) {
+                rotateRight(parentNode);
+                parentNode = node;
+            }
+
+            // case 5
+            if (parentIsLeft) {
+                rotateRight(grandparent);
+            } else {
+                rotateLeft(grandparent);
+            }
+            setColor(grandparent, RED);
+            setColor(parentNode, BLACK);
+            return;
+        }
+    }
+
+    /**
+     * This internal method will check the 6 cases that might occur when a
+     * black node is deleted and it breaks the 4 RBT rules. see
+     * {@link RedBlackTree}
+     *
+     * @pre every path through node has one black node too few
+     * @post all 4 of the RBT rules are not violated
+     * @param node
+     *            the node to start checking on, may be NIL
+     * @param parentNode
+     *            the parent of node
+     */
+    private void deleteBalance(int node, int parentNode) {
+        while (parentNode != NIL) {
+            boolean nodeIsLeft = left[parentNode] == node;
+            int sibling = nodeIsLeft ? right[parentNode] : left[parentNode];
+
+            // case 2
+            if (isRed(sibling)) {
+                setColor(parentNode, RED);
+                setColor(sibling, BLACK);
+                if (nodeIsLeft) {
+                    rotateLeft(parentNode);
+                    sibling = right[parentNode];
+                } else {
+                    rotateRight(parentNode);
+                    sibling = left[parentNode];
+                }
+            }
+
+            // case 3 and 4
+            if (!isRed(left[sibling]) && !isRed(right[sibling])) {
+                setColor(sibling, RED);
+                if (isRed(parentNode)) {
+                    setColor(parentNode, BLACK);
+                    return;
+                }
+                node = parentNode;
+                parentNode = parent[node];
+                continue;
+            }
+
+            // case 5
+            if (nodeIsLeft && !isRed(right[sibling])) {
+                setColor(sibling, RED);
+                setColor(left[sibling], BLACK);
+                rotateRight(sibling);
+                sibling = right[parentNode];
+            } else if (!nodeIsLeft && !isRed(left[sibling])) {
+                setColor(sibling, RED);
+                setColor(right[sibling], BLACK);
+                rotateLeft(sibling);
+                sibling = left[parentNode];
+            }
+
+            // case 6
+            setColor(sibling, isRed(parentNode));
+            setColor(parentNode, BLACK);
+            if (nodeIsLeft) {
+                setColor(right[sibling], BLACK);
+                rotateLeft(parentNode);
+            } else {
+                setColor(left[sibling], BLACK);
+                rotateRight(parentNode);
+            }
+            return;
+        }
+    }
+
+    /**
+     * Performs a left rotation on the node
+     *
+     * @pre the node has a right child
+     * @post a left rotation is performed
+     * @param node
+     *            the node to rotate on
+     */
+    private void rotateLeft(int node) {
+        int pivot = right[node];
+        right[node] = left[pivot];
+        if (left[pivot] != NIL) {
+            parent[left[pivot]] = node;
+        }
+        replace(node, pivot);
+        left[pivot] = node;
+        parent[node] = pivot;
+    }
+
+    /**
+     * Performs a right rotation on the node
+     *
+     * @pre the node has a left child
+     * @post a right rotation is performed
+     * @param node
+     *            the node to rotate on
+     */
+    private void rotateRight(int node) {
+        int pivot = left[node];
+        left[node] = right[pivot];
+        if (right[pivot] != NIL) {
+            parent[right[pivot]] = node;
+        }
+        replace(node, pivot);
+        right[pivot] = node;
+        parent[node] = pivot;
+    }
+}
@@ -0,0 +1,524 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is a Red Black Tree that holds no more than a given number of
+ * mappings, or a given total weight of them, so it can be used as an ordered
+ * cache. Each key maps to one value. An add that goes over a bound takes out
+ * mappings chosen by the {@link EvictionPolicy} until the tree is back under
+ * it.
+ *
+ * A mapping can be given a time to live. The mappings that have one are also
+ * kept in a second tree ordered by when they expire, so the next to expire is
+ * always found in O(log n). Every add and delete first takes out a few of the
+ * mappings that have expired, and a lookup of an expired mapping takes it out,
+ * so the tree is never swept as a whole. For the least recently used policy a
+ * third tree orders the keys by when they were last used.
+ *
+ * Every add, lookup and delete takes O(log n), each mapping taken out costing
+ * O(log n) as well, paid for by the add that put it in.
+ *
+ * @author Satshabad
+ *
+ * @param <K>
+ *            the keys that map to the values
+ * @param <V>
+ *            the values that the nodes hold.
+ */
+public class BoundedRedBlackTree<K extends Comparable<K>, V> {
+
+    /**
+     * The most expired mappings an add or delete takes out on its way
+     */
+    private static final int EXPIRE_PER_WRITE = 2;
+
+    /**
+     * The mappings
+     */
+    private final RedBlackTree<K, Entry<V>> tree;
+
+    /**
+     * The keys of the mappings that have a time to live, by when they expire
+     */
+    private final RedBlackTree<Deadline, K> deadlines;
+
+    /**
+     * The keys by when they were last used, null unless the policy is
+     * {@link EvictionPolicy#LEAST_RECENTLY_USED}
+     */
+    private final RedBlackTree<Long, K> recency;
+
+    /**
+     * Which mapping goes when the tree is over a bound
+     */
+    private final EvictionPolicy policy;
+
+    /**
+     * The most mappings the tree holds
+     */
+    private final int maxEntries;
+
+    /**
+     * The most weight the mappings of the tree add up to
+     */
+    private final long maxWeight;
+
+    /**
+     * The weight of all the mappings
+     */
+    private long weight;
+
+    /**
+     * Counts uses and deadlines, so no two are the same
+     */
+    private long tick;
+
+    /**
+     * Initializes a tree that holds no more than maxEntries mappings
+     *
+     * @pre maxEntries is positive
+     * @post an empty tree is made
+     *
+     * @param policy
+     *            which mapping goes when the tree is full
+     * @param maxEntries
+     *            the most mappings the tree holds
+     */
+    public BoundedRedBlackTree(EvictionPolicy policy, int maxEntries) {
+        this(policy, maxEntries, Long.MAX_VALUE);
+    }
+
+    /**
+     * Initializes a tree that holds no more than maxEntries mappings, whose
+     * weights add up to no more than maxWeight
+     *
+     * @pre maxEntries is positive, maxWeight is not negative
+     * @post an empty tree is made
+     *
+     * @param policy
+     *            which mapping goes when the tree is over a bound
+     * @param maxEntries
+     *            the most mappings the tree holds, Integer.MAX_VALUE for no
+     *            bound
+     * @param maxWeight
+     *            the most weight the mappings add up to, Long.MAX_VALUE for no
+     *            bound
+     */
+    public BoundedRedBlackTree(EvictionPolicy policy, int maxEntries,
+            long maxWeight) {
+        if (maxEntries <= 0 || maxWeight < 0) {
+            throw new IllegalArgumentException("bounds must be positive");
+        }
+        this.policy = policy;
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.tree = new RedBlackTree<K, Entry<V>>(KeyMode.MAP);
+        this.deadlines = new RedBlackTree<Deadline, K>(KeyMode.MAP);
+        if (policy == EvictionPolicy.LEAST_RECENTLY_USED) {
+            this.recency = new RedBlackTree<Long, K>(KeyMode.MAP);
+        } else {
+            this.recency = null;
+        }
+    }
+
+    /**
+     * This method adds the mapping with a weight of 1 that never expires. see
+     * {@link #add(Comparable, Object, long, long, TimeUnit)}
+     *
+     * @pre true
+     * @post the key maps to the value, unless it was evicted right away
+     *
+     * @param key
+     *            the key that will map to the value for look up
+     * @param value
+     *            the object to be stored
+     * @return whether the mapping is in the tree
+     */
+    public boolean add(K key, V value) {
+        return add(key, value, 1, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * This method adds the mapping with a weight that never expires. see
+     * {@link #add(Comparable, Object, long, long, TimeUnit)}
+     *
+     * @pre true
+     * @post the key maps to the value, unless it was evicted right away
+     *
+     * @param key
+     *            the key that will map to the value for look up
+     * @param value
+     *            the object to be stored
+     * @param weight
+     *            how much of the max weight the mapping takes up
+     * @return whether the mapping is in the tree
+     */
+    public boolean add(K key, V value, long weight) {
+        return add(key, value, weight, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * This method adds the mapping, replacing the value if the key is already
+     * there, and then evicts mappings until the tree is within its bounds.
+     * Under {@link EvictionPolicy#LOWEST_KEY} or
+     * {@link EvictionPolicy#HIGHEST_KEY} that can be the new mapping itself.
+     *
+     * @pre true
+     * @post the key maps to the value, unless it was evicted right away. The
+     *       tree is within its bounds
+     *
+     * @param key
+     *            the key that will map to the value for look up
+     * @param value
+     *            the object to be stored
+     * @param weight
+     *            how much of the max weight the mapping takes up
+     * @param ttl
+     *            how long until the mapping expires, not positive for never
+     * @param unit
+     *            the unit of ttl
+     * @return whether the mapping is in the tree, false if it was evicted or
+     *         was too heavy to add at all
+     */
+    public boolean add(K key, V value, long weight, long ttl, TimeUnit unit) {
+        if (key == null || value == null || weight < 0 || weight > maxWeight) {
+            return false;
+        }
+        long now = System.nanoTime();
+        expire(now, EXPIRE_PER_WRITE);
+
+        Node<K, Entry<V>> node = tree.findOrAdd(key);
+        Entry<V> entry = node.getValue();
+        if (entry == null) {
+            entry = new Entry<V>();
+            node.setMapping(key, entry);
+        } else {
+            forget(entry);
+        }
+        entry.value = value;
+        entry.weight = weight;
+        this.weight += weight;
+        if (ttl > 0) {
+            entry.deadline = new Deadline(now + unit.toNanos(ttl), ++tick);
+            deadlines.add(entry.deadline, key);
+        }
+        use(key, entry);
+
+        boolean kept = true;
+        while (tree.size() > maxEntries || this.weight > maxWeight) {
+            if (evict(now) == entry) {
+                kept = false;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * This method deletes the mapping of the key.
+     *
+     * @pre true
+     * @post the key is not in the tree
+     *
+     * @param key
+     *            the key to delete
+     * @return the value the key had, or null if it was not in the tree or had
+     *         expired
+     */
+    public V delete(K key) {
+        long now = System.nanoTime();
+        expire(now, EXPIRE_PER_WRITE);
+        Entry<V> deleted = remove(key);
+        if (deleted == null || deleted.expired(now)) {
+            return null;
+        }
+        return deleted.value;
+    }
+
+    /**
+     * This method looks up the value associated with the key, which makes it
+     * the most recently used. An expired mapping is taken out.
+     *
+     * @pre true
+     * @post the mapping is the most recently used
+     *
+     * @param key
+     *            the key of the value
+     * @return the value indexed by key, or null if there is no such mapping
+     *         or it has expired
+     */
+    public V lookup(K key) {
+        Entry<V> found = tree.lookup(key);
+        if (found == null) {
+            return null;
+        }
+        if (found.deadline != null && found.expired(System.nanoTime())) {
+            remove(key);
+            return null;
+        }
+        use(key, found);
+        return found.value;
+    }
+
+    /**
+     * Takes out every mapping that has expired. Only those mappings are
+     * visited, the rest of the tree is not.
+     *
+     * @pre true
+     * @post no mapping in the tree has expired
+     *
+     * @return the number of mappings taken out
+     */
+    public int expire() {
+        return expire(System.nanoTime(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets the number of mappings in the tree, counting those that have
+     * expired but not been taken out yet
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @return the number of mappings
+     */
+    public int size() {
+        return tree.size();
+    }
+
+    /**
+     * Gets the weight of all the mappings in the tree
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @return the total weight
+     */
+    public long weight() {
+        return weight;
+    }
+
+    /**
+     * Verifies the tree of the mappings and the trees ordering them, see
+     * {@link RedBlackTree#verify()}
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @return the black height of the tree of the mappings
+     */
+    public int verify() {
+        deadlines.verify();
+        if (recency != null) {
+            recency.verify();
+        }
+        return tree.verify();
+    }
+
+    /**
+     * Takes out the mapping the tree can best do without: the one that
+     * expired first if any has, otherwise the one the policy picks.
+     *
+     * @pre the tree is not empty
+     * @post one mapping is taken out
+     *
+     * @param now
+     *            the time, from {@link System#nanoTime()}
+     * @return the mapping taken out
+     */
+    private Entry<V> evict(long now) {
+        Node<Deadline, K> first = deadlines.lowestAbove(null, false);
+        K victim;
+        if (first != null && first.getKey().passed(now)) {
+            victim = first.getValue();
+        } else if (policy == EvictionPolicy.LOWEST_KEY) {
+            victim = tree.lowestAbove(null, false).getKey();
+        } else if (policy == EvictionPolicy.HIGHEST_KEY) {
+            victim = tree.highestBelow(null, false).getKey();
+        } else {
+            victim = recency.lowestAbove(null, false).getValue();
+        }
+        return remove(victim);
+    }
+
+    /**
+     * Takes out the mappings that have expired, the earliest first
+     *
+     * @pre true
+     * @post up to limit expired mappings are taken out
+     *
+     * @param now
+     *            the time, from {@link System#nanoTime()}
+     * @param limit
+     *            the most mappings to take out
+     * @return the number of mappings taken out
+     */
+    private int expire(long now, int limit) {
+        int expired = 0;
+        while (expired < limit) {
+            Node<Deadline, K> first = deadlines.lowestAbove(null, false);
+            if (first == null || !first.getKey().passed(now)) {
+                break;
+            }
+            remove(first.getValue());
+            expired++;
+        }
+        return expired;
+    }
+
+    /**
+     * Deletes a mapping from the tree and from the trees ordering it
+     *
+     * @pre true
+     * @post the key is in none of the trees
+     *
+     * @param key
+     *            the key to delete
+     * @return the mapping deleted, or null if the key was not in the tree
+     */
+    private Entry<V> remove(K key) {
+        Entry<V> removed = tree.delete(key);
+        if (removed != null) {
+            forget(removed);
+        }
+        return removed;
+    }
+
+    /**
+     * Takes a mapping out of the trees ordering it and its weight out of the
+     * total
+     *
+     * @pre the mapping was in the tree
+     * @post the mapping has no deadline or use
+     *
+     * @param entry
+     *            the mapping
+     */
+    private void forget(Entry<V> entry) {
+        weight -= entry.weight;
+        if (entry.deadline != null) {
+            deadlines.delete(entry.deadline);
+            entry.deadline = null;
+        }
+        if (entry.used != 0) {
+            recency.delete(entry.used);
+            entry.used = 0;
+        }
+    }
+
+    /**
+     * Makes a mapping the most recently used, if the policy cares
+     *
+     * @pre the mapping is in the tree
+     * @post the mapping is the last in recency
+     *
+     * @param key
+     *            the key of the mapping
+     * @param entry
+     *            the mapping
+     */
+    private void use(K key, Entry<V> entry) {
+        if (recency == null) {
+            return;
+        }
+        if (entry.used != 0) {
+            recency.delete(entry.used);
+        }
+        entry.used = ++tick;
+        recency.add(entry.used, key);
+    }
+
+    /**
+     * What the tree keeps for a key
+     *
+     * @param <V>
+     *            the type of the value
+     */
+    private static final class Entry<V> {
+
+        /**
+         * The value
+         */
+        V value;
+
+        /**
+         * How much of the max weight the mapping takes up
+         */
+        long weight;
+
+        /**
+         * When the mapping expires, null for never
+         */
+        Deadline deadline;
+
+        /**
+         * Its key in recency, 0 if it is not there
+         */
+        long used;
+
+        /**
+         * Tells whether the mapping has expired
+         *
+         * @param now
+         *            the time, from {@link System#nanoTime()}
+         * @return whether it has a deadline that has passed
+         */
+        boolean expired(long now) {
+            return deadline != null && deadline.passed(now);
+        }
+    }
+
+    /**
+     * When a mapping expires. Two mappings can expire at the same time, so
+     * each deadline also has a number of its own to order it by.
+     */
+    private static final class Deadline implements Comparable<Deadline> {
+
+        /**
+         * The time it expires, from {@link System#nanoTime()}
+         */
+        final long time;
+
+        /**
+         * Tells apart deadlines with the same time
+         */
+        final long sequence;
+
+        /**
+         * Initializes a deadline
+         *
+         * @param time
+         *            the time it expires, from {@link System#nanoTime()}
+         * @param sequence
+         *            a number no other deadline has
+         */
+        Deadline(long time, long sequence) {
+            this.time = time;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Tells whether the deadline has passed
+         *
+         * @param now
+         *            the time, from {@link System#nanoTime()}
+         * @return whether now is at or after the deadline
+         */
+        boolean passed(long now) {
+            return now - time >= 0;
+        }
+
+        /**
+         * Orders deadlines by time. Times from {@link System#nanoTime()} can
+         * only be compared by their difference.
+         */
+        public int compareTo(Deadline other) {
+            long difference = time - other.time;
+            if (difference != 0) {
+                return difference < 0 ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1
+                    : sequence == other.sequence ? 0 : 1;
+        }
+    }
+}
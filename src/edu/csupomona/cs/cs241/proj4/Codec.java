@@ -0,0 +1,102 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns keys or values into bytes and back, for
+ * {@link RedBlackTree#writeSnapshot(java.io.OutputStream, Codec, Codec)}.
+ * Whatever write puts out, read has to take back in exactly.
+ *
+ * @author Satshabad
+ *
+ * @param <T>
+ *            the type written and read
+ */
+public interface Codec<T> {
+
+    /**
+     * Writes longs as eight bytes
+     */
+    Codec<Long> LONG = new Codec<Long>() {
+        public void write(Long value, DataOutput out) throws IOException {
+            out.writeLong(value);
+        }
+
+        public Long read(DataInput in) throws IOException {
+            return in.readLong();
+        }
+    };
+
+    /**
+     * Writes integers as four bytes
+     */
+    Codec<Integer> INTEGER = new Codec<Integer>() {
+        public void write(Integer value, DataOutput out) throws IOException {
+            out.writeInt(value);
+        }
+
+        public Integer read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    /**
+     * Writes strings as their length and then their UTF-8 bytes, so unlike
+     * {@link DataOutput#writeUTF(String)} there is no limit on the length.
+     * A length below zero, or longer than an InputStream says it has
+     * available, is refused as corrupt before anything is allocated for it.
+     * For the snapshot blocks and log records it is read from, which are in
+     * memory, available is exactly what is left.
+     */
+    Codec<String> STRING = new Codec<String>() {
+        public void write(String value, DataOutput out) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        public String read(DataInput in) throws IOException {
+            int length = in.readInt();
+            if (length < 0 || (in instanceof InputStream
+                    && length > ((InputStream) in).available())) {
+                throw new IOException("corrupt string length " + length);
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    /**
+     * Writes one key or value
+     *
+     * @pre value is not null
+     * @post the bytes of the value have been written
+     *
+     * @param value
+     *            the value to write
+     * @param out
+     *            where it is written
+     * @throws IOException
+     *             if out can't be written to
+     */
+    void write(T value, DataOutput out) throws IOException;
+
+    /**
+     * Reads back one key or value written by {@link #write}
+     *
+     * @pre in is at the start of a value written by this codec
+     * @post the bytes of the value have been read
+     *
+     * @param in
+     *            where it is read from
+     * @return the value
+     * @throws IOException
+     *             if in can't be read from or ends too soon
+     */
+    T read(DataInput in) throws IOException;
+}
@@ -0,0 +1,290 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * This class is a Red Black Tree that many threads can use at once. Reads do
+ * not take a lock at all, they walk the tree and then check a stamp to see if
+ * a write happened while they were walking. Only if one did do they try again
+ * under a read lock. Writes take the lock for themselves.
+ *
+ * @author Satshabad
+ *
+ * @param <K>
+ *            the keys that map to the values
+ * @param <V>
+ *            the values that the nodes hold.
+ */
+public class ConcurrentRedBlackTree<K extends Comparable<K>, V> {
+
+    /**
+     * No path in a red black tree of int size is longer than this, so a walk
+     * that goes deeper has seen the tree half way through a change
+     */
+    private static final int MAX_DEPTH = 64;
+
+    /**
+     * The tree that holds the mappings
+     */
+    private final RedBlackTree<K, V> tree;
+
+    /**
+     * Guards the tree, the stamp changes whenever a write finishes
+     */
+    private final StampedLock lock;
+
+    /**
+     * Initializes an empty tree
+     *
+     * @pre true
+     * @post an empty tree is made
+     */
+    public ConcurrentRedBlackTree() {
+        this(new RedBlackTree<K, V>());
+    }
+
+    /**
+     * Initializes a tree holding the mappings of one that is already built,
+     * like one from {@link RedBlackTree#fromSorted(Object[], Object[])}. The
+     * mappings are copied into nodes of this tree's own in linear time, so
+     * the tree given stays the caller's, and nothing done to it afterward is
+     * seen here or can race with the lock-free reads.
+     *
+     * @pre tree is not null and not being changed during the call
+     * @post this tree holds the mappings of tree in the same key mode
+     *
+     * @param tree
+     *            the tree whose mappings are copied
+     */
+    public ConcurrentRedBlackTree(RedBlackTree<K, V> tree) {
+        this.tree = tree.copy();
+        this.lock = new StampedLock();
+    }
+
+    /**
+     * This method adds the mapping to the tree. It waits for all reads that
+     * hold a lock and all other writes to finish.
+     *
+     * @pre true
+     * @post the key added matches the value added with it. If there was a
+     *       previous mapping of the same key results are not guaranteed
+     *
+     * @param key
+     *            the key that will map to the value for look up
+     * @param value
+     *            the object to be stored
+     * @return whether the mapping was made or not
+     */
+    public boolean add(K key, V value) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.add(key, value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * This method deletes the first instance of the key value mapping indicated
+     * by the key. It waits for all reads that hold a lock and all other writes
+     * to finish.
+     *
+     * @pre true
+     * @post the first instance of the mapping is removed
+     *
+     * @param key
+     *            the key to value to be deleted
+     * @return the value mapped to the key which was deleted, or null if there
+     *         was none
+     */
+    public V delete(K key) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.delete(key);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * This method looks up the value associated with the key. It does not
+     * block unless a write finishes while it is looking.
+     *
+     * @pre true
+     * @post the value mapped to the key is returned, or null if the key is not
+     *       in the tree
+     *
+     * @param key
+     *            the key of the value
+     * @return the value indexed by key, or null if there is no such mapping
+     */
+    public V lookup(K key) {
+        if (key == null) {
+            return null;
+        }
+
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            V found = null;
+            RuntimeException failure = null;
+            try {
+                found = tree.racyLookup(key, MAX_DEPTH);
+            } catch (RuntimeException e) {
+                // the tree may have changed under the walk, the stamp will
+                // say so. If it didn't the key itself is to blame
+                failure = e;
+            }
+            if (lock.validate(stamp)) {
+                if (failure != null) {
+                    throw failure;
+                }
+                return found;
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return tree.lookup(key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets the number of mappings in the tree. It does not block unless a
+     * write finishes while it is looking.
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @return the number of mappings
+     */
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            int size = 0;
+            RuntimeException failure = null;
+            try {
+                size = tree.size();
+            } catch (RuntimeException e) {
+                // the root may have been taken out under the read, the stamp
+                // will say so
+                failure = e;
+            }
+            if (lock.validate(stamp)) {
+                if (failure != null) {
+                    throw failure;
+                }
+                return size;
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return tree.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Counts the keys that are less than the given key. see
+     * {@link RedBlackTree#rank(Comparable)}
+     *
+     * @pre key is not null
+     * @post the tree is unchanged
+     *
+     * @param key
+     *            the key to rank
+     * @return the number of keys less than key
+     */
+    public int rank(K key) {
+        long stamp = lock.readLock();
+        try {
+            return tree.rank(key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Finds the key at the given position in sorted order. see
+     * {@link RedBlackTree#select(int)}
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @param index
+     *            the position, starting at 0
+     * @return the key at that position, or null if there is none
+     */
+    public K select(int index) {
+        long stamp = lock.readLock();
+        try {
+            return tree.select(index);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Counts the keys from lo to hi, both included. see
+     * {@link RedBlackTree#countRange(Comparable, Comparable)}
+     *
+     * @pre lo and hi are not null
+     * @post the tree is unchanged
+     *
+     * @param lo
+     *            the lowest key to count
+     * @param hi
+     *            the highest key to count
+     * @return the number of keys in the range
+     */
+    public int countRange(K lo, K hi) {
+        long stamp = lock.readLock();
+        try {
+            return tree.countRange(lo, hi);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Checks that the tree follows the rules of a Red Black Tree. Writes wait
+     * until it is done. see {@link RedBlackTree#verify()}
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @return what {@link RedBlackTree#verify()} returns
+     */
+    public int verify() {
+        long stamp = lock.readLock();
+        try {
+            return tree.verify();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Checks every rule of the tree while holding a read lock, so writes wait
+     * until it is done. see {@link RedBlackTree#check(boolean)}
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @param parallel
+     *            if true, large subtrees are checked at the same time in the
+     *            common ForkJoinPool
+     * @return the report on the tree
+     */
+    public TreeReport<K> check(boolean parallel) {
+        long stamp = lock.readLock();
+        try {
+            return tree.check(parallel);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package edu.csupomona.cs.cs241.proj4;
+
+/**
+ * How soon an add or delete of a {@link DurableRedBlackTree} is forced to
+ * disk, trading how much a crash can lose for how many writes a second the
+ * tree takes.
+ *
+ * @author Satshabad
+ */
+public enum Durability {
+
+    /**
+     * Every write forces the log on its own before it returns, one at a
+     * time. Nothing that has returned is ever lost.
+     */
+    PER_OPERATION,
+
+    /**
+     * Every write waits for the log to be forced before it returns, but the
+     * writes waiting at the same time are forced together by one of them.
+     * Nothing that has returned is ever lost, and with many writing threads
+     * there are far fewer forces than writes.
+     */
+    GROUP,
+
+    /**
+     * Writes return at once and a thread of the tree forces the log every
+     * few milliseconds. A crash can lose the writes of the last few
+     * milliseconds, but never leaves the tree in between two of them.
+     */
+    ASYNC
+}
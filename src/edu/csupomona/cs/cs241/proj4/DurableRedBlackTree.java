@@ -0,0 +1,893 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.StampedLock;
+import java.util.zip.CRC32;
+
+/**
+ * This class is a Red Black Tree whose adds and deletes survive a crash. The
+ * tree is kept in memory, and every change to it is also appended to a log
+ * file in a directory of its own. Now and then the whole tree is written out
+ * as a checkpoint, see {@link RedBlackTree#writeSnapshot}, and the log is
+ * started over. Opening the directory again reads the checkpoint and replays
+ * the log written after it.
+ *
+ * How soon a change reaches the disk is set by its {@link Durability}. Each
+ * record of the log is its length, a CRC32 and then its body: a sequence
+ * number, what it does and the key and value. A record cut short by a crash
+ * fails its checksum, so replay stops there and the log is cut back to the
+ * last whole record.
+ *
+ * Keys are unique ({@link KeyMode#MAP}), so replaying the log gives back
+ * exactly the mappings the tree had. Lookups wait only for writes to the
+ * tree, never for the disk. If the log can't be written, the tree refuses
+ * every later write with the same exception and has to be opened again. A
+ * checkpoint that can't be written only leaves the log longer, see
+ * {@link #checkpointFailure()}.
+ *
+ * @author Satshabad
+ *
+ * @param <K>
+ *            the keys that map to the values
+ * @param <V>
+ *            the values that the nodes hold.
+ */
+public class DurableRedBlackTree<K extends Comparable<K>, V> implements
+        Closeable {
+
+    /**
+     * The name of the checkpoint in the directory
+     */
+    private static final String CHECKPOINT = "checkpoint";
+
+    /**
+     * The name of the log in the directory
+     */
+    private static final String LOG = "log";
+
+    /**
+     * By default a checkpoint is taken once the log grows past this many
+     * bytes. A checkpoint writes the whole tree and writes wait for it, so a
+     * smaller value keeps the log and reopening short at the price of
+     * stalling writes for O(n) more often.
+     */
+    public static final long CHECKPOINT_BYTES = 64L << 20;
+
+    /**
+     * How many milliseconds apart the log is forced in
+     * {@link Durability#ASYNC}
+     */
+    public static final long ASYNC_INTERVAL = 10;
+
+    /**
+     * In {@link Durability#ASYNC} a write that finds this many bytes waiting
+     * for the disk forces them itself, so memory can't run out
+     */
+    private static final int ASYNC_BUFFER = 1 << 20;
+
+    /**
+     * No record this long is ever written, a longer one is a torn record
+     */
+    private static final int MAX_RECORD = 1 << 30;
+
+    /**
+     * What a record of the log does
+     */
+    private static final byte ADD = 1, DELETE = 2;
+
+    /**
+     * The mappings
+     */
+    private final RedBlackTree<K, V> tree;
+
+    /**
+     * Writes and reads the keys
+     */
+    private final Codec<K> keys;
+
+    /**
+     * Writes and reads the values
+     */
+    private final Codec<V> values;
+
+    /**
+     * How soon a change is forced to disk
+     */
+    private final Durability durability;
+
+    /**
+     * A checkpoint is taken once the log is this long, 0 for never
+     */
+    private final long checkpointBytes;
+
+    /**
+     * The directory of the checkpoint and the log
+     */
+    private final File directory;
+
+    /**
+     * The log file
+     */
+    private final FileChannel log;
+
+    /**
+     * Guards the tree and the order the records are made in
+     */
+    private final StampedLock lock;
+
+    /**
+     * Held while a checkpoint is written, so only one thread writes it
+     */
+    private final Object checkpointLock;
+
+    /**
+     * Guards everything below it
+     */
+    private final Object logLock;
+
+    /**
+     * Records made but not yet written to the log
+     */
+    private TreeSnapshot.Buffer pending;
+
+    /**
+     * An empty buffer to swap with pending, null while a force is using it
+     */
+    private TreeSnapshot.Buffer spare;
+
+    /**
+     * The sequence number of the last record made
+     */
+    private long appended;
+
+    /**
+     * The sequence number of the last record forced to disk
+     */
+    private long durable;
+
+    /**
+     * True while some thread is writing and forcing the log
+     */
+    private boolean flushing;
+
+    /**
+     * The number of bytes in the log, those pending included
+     */
+    private long logBytes;
+
+    /**
+     * Why the log can't be written, null while it can
+     */
+    private IOException failure;
+
+    /**
+     * The log length the next checkpoint is taken at. It is pushed further
+     * out when a checkpoint fails, so a full disk isn't tried on every write
+     */
+    private long checkpointAt;
+
+    /**
+     * Why the last checkpoint taken by a write failed, null if it did not
+     */
+    private IOException checkpointFailure;
+
+    /**
+     * The body of the record being made, only used under the write lock
+     */
+    private final TreeSnapshot.Buffer body;
+
+    /**
+     * Writes into body
+     */
+    private final DataOutputStream bodyData;
+
+    /**
+     * Forces the log every {@link #ASYNC_INTERVAL} milliseconds, null unless
+     * {@link Durability#ASYNC}
+     */
+    private final Thread flusher;
+
+    /**
+     * Set once the tree is being closed, tells the flusher to stop. The
+     * flusher is never interrupted, that would close the log under it.
+     */
+    private volatile boolean closing;
+
+    /**
+     * Opens the tree in a directory, taking a checkpoint whenever the log
+     * passes {@link #CHECKPOINT_BYTES}. see
+     * {@link #DurableRedBlackTree(File, Codec, Codec, Durability, long)}
+     *
+     * @pre true
+     * @post the tree holds every change made to it before it was last closed
+     *       or crashed, as far as its durability promised
+     *
+     * @param directory
+     *            where the checkpoint and the log are kept, made if it is not
+     *            there
+     * @param keys
+     *            writes and reads the keys
+     * @param values
+     *            writes and reads the values
+     * @param durability
+     *            how soon a change is forced to disk
+     * @throws IOException
+     *             if the directory can't be used, or its checkpoint is
+     *             corrupt
+     */
+    public DurableRedBlackTree(File directory, Codec<K> keys, Codec<V> values,
+            Durability durability) throws IOException {
+        this(directory, keys, values, durability, CHECKPOINT_BYTES);
+    }
+
+    /**
+     * Opens the tree in a directory. The latest checkpoint is read, the
+     * records of the log made after it are replayed and anything after the
+     * last whole record is cut off.
+     *
+     * @pre true
+     * @post the tree holds every change made to it before it was last closed
+     *       or crashed, as far as its durability promised
+     *
+     * @param directory
+     *            where the checkpoint and the log are kept, made if it is not
+     *            there
+     * @param keys
+     *            writes and reads the keys
+     * @param values
+     *            writes and reads the values
+     * @param durability
+     *            how soon a change is forced to disk
+     * @param checkpointBytes
+     *            a checkpoint is taken once the log is this long, 0 for only
+     *            when {@link #checkpoint()} is called
+     * @throws IOException
+     *             if the directory can't be used, or its checkpoint is
+     *             corrupt
+     */
+    public DurableRedBlackTree(File directory, Codec<K> keys, Codec<V> values,
+            Durability durability, long checkpointBytes) throws IOException {
+        this.directory = directory;
+        this.keys = keys;
+        this.values = values;
+        this.durability = durability;
+        this.checkpointBytes = checkpointBytes;
+        this.lock = new StampedLock();
+        this.checkpointLock = new Object();
+        this.logLock = new Object();
+        this.pending = new TreeSnapshot.Buffer(8192);
+        this.spare = new TreeSnapshot.Buffer(8192);
+        this.body = new TreeSnapshot.Buffer(256);
+        this.bodyData = new DataOutputStream(body);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("can't make " + directory);
+        }
+        Files.deleteIfExists(new File(directory, CHECKPOINT + ".tmp")
+                .toPath());
+
+        // the checkpoint starts with the sequence number it is up to
+        long start = 0;
+        File checkpoint = new File(directory, CHECKPOINT);
+        if (checkpoint.exists()) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(checkpoint), TreeSnapshot.BLOCK_BYTES));
+            try {
+                start = in.readLong();
+                tree = RedBlackTree.readSnapshot(in, keys, values);
+            } finally {
+                in.close();
+            }
+        } else {
+            tree = new RedBlackTree<K, V>(KeyMode.MAP);
+        }
+
+        log = FileChannel.open(new File(directory, LOG).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            appended = start;
+            long end = replay(start);
+            log.truncate(end);
+            log.position(end);
+            log.force(true);
+            logBytes = end;
+            checkpointAt = checkpointBytes;
+            durable = appended;
+        } catch (IOException e) {
+            log.close();
+            throw e;
+        }
+
+        if (durability == Durability.ASYNC) {
+            flusher = new Thread(new Runnable() {
+                public void run() {
+                    flushEvery();
+                }
+            }, "tree log flusher " + directory);
+            flusher.setDaemon(true);
+            flusher.start();
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * This method adds the mapping to the tree, replacing the value if the key
+     * is already there, and logs it. Whether it is on disk when this returns
+     * depends on the durability.
+     *
+     * @pre true
+     * @post the key maps to the value
+     *
+     * @param key
+     *            the key that will map to the value for look up
+     * @param value
+     *            the object to be stored
+     * @return whether the mapping was made or not
+     * @throws IOException
+     *             if the log can't be written
+     */
+    public boolean add(K key, V value) throws IOException {
+        if (key == null || value == null) {
+            return false;
+        }
+        long sequence;
+        long stamp = lock.writeLock();
+        try {
+            checkWritable();
+            // the record is made first, so a codec that fails leaves the
+            // tree as it was
+            encode(ADD, key, value);
+            tree.add(key, value);
+            sequence = append();
+            if (durability == Durability.PER_OPERATION) {
+                // forced before the lock is let go, one write at a time
+                awaitDurable(sequence);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        afterWrite(sequence);
+        return true;
+    }
+
+    /**
+     * This method deletes the mapping of the key and logs it. Whether it is
+     * on disk when this returns depends on the durability.
+     *
+     * @pre true
+     * @post the key is not in the tree
+     *
+     * @param key
+     *            the key to delete
+     * @return the value the key had, or null if it was not in the tree
+     * @throws IOException
+     *             if the log can't be written
+     */
+    public V delete(K key) throws IOException {
+        if (key == null) {
+            return null;
+        }
+        V deleted;
+        long sequence;
+        long stamp = lock.writeLock();
+        try {
+            checkWritable();
+            encode(DELETE, key, null);
+            deleted = tree.delete(key);
+            if (deleted == null) {
+                return null;
+            }
+            sequence = append();
+            if (durability == Durability.PER_OPERATION) {
+                awaitDurable(sequence);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        afterWrite(sequence);
+        return deleted;
+    }
+
+    /**
+     * This method looks up the value associated with the key.
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @param key
+     *            the key of the value
+     * @return the value indexed by key, or null if there is no such mapping
+     */
+    public V lookup(K key) {
+        long stamp = lock.readLock();
+        try {
+            return tree.lookup(key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets the number of mappings in the tree
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @return the number of mappings
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return tree.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Forces every change made so far to disk, which only
+     * {@link Durability#ASYNC} leaves undone
+     *
+     * @pre true
+     * @post every change that returned before this was called is on disk
+     *
+     * @throws IOException
+     *             if the log can't be written
+     */
+    public void flush() throws IOException {
+        long sequence;
+        synchronized (logLock) {
+            sequence = appended;
+        }
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Writes the whole tree to a new checkpoint and starts the log over.
+     * This takes time linear in the size of the tree, and it is done under
+     * the read lock: lookups go on, but every write waits until it is done.
+     * The checkpoint is written to a file of its own and then renamed over
+     * the old one, so a crash leaves one whole checkpoint or the other, and
+     * the records it already holds are skipped by their sequence numbers.
+     *
+     * @pre true
+     * @post the checkpoint holds every change and the log is empty
+     *
+     * @throws IOException
+     *             if the checkpoint or the log can't be written
+     */
+    public void checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            long stamp = lock.readLock();
+            try {
+                checkWritable();
+                checkpointLocked();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * Gets why the last checkpoint a write took failed. Such a failure does
+     * not fail the write, whose change is already in the log, it only leaves
+     * the log growing until a checkpoint succeeds.
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @return the exception, or null if the last checkpoint succeeded or
+     *         none has failed
+     */
+    public IOException checkpointFailure() {
+        synchronized (logLock) {
+            return checkpointFailure;
+        }
+    }
+
+    /**
+     * Forces everything to disk, stops the flushing thread and closes the
+     * log. The tree can't be written afterward.
+     *
+     * @pre true
+     * @post every change is on disk and the log is closed
+     *
+     * @throws IOException
+     *             if the log can't be written
+     */
+    public void close() throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            if (!log.isOpen()) {
+                return;
+            }
+            closing = true;
+            if (flusher != null) {
+                try {
+                    flusher.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException(
+                            "interrupted stopping the flusher");
+                }
+            }
+            try {
+                flush();
+            } finally {
+                synchronized (logLock) {
+                    if (failure == null) {
+                        failure = new ClosedChannelException();
+                    }
+                }
+                log.close();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Makes the body of the record of a change, before the change is made to
+     * the tree
+     *
+     * @pre the write lock is held
+     * @post body holds the record, nothing else has changed
+     *
+     * @param op
+     *            what the change does
+     * @param key
+     *            the key it changes
+     * @param value
+     *            the value added, null for a delete
+     * @throws IOException
+     *             if a codec fails
+     */
+    private void encode(byte op, K key, V value) throws IOException {
+        long sequence;
+        synchronized (logLock) {
+            sequence = appended + 1;
+        }
+        body.reset();
+        bodyData.writeLong(sequence);
+        bodyData.writeByte(op);
+        keys.write(key, bodyData);
+        if (op == ADD) {
+            values.write(value, bodyData);
+        }
+    }
+
+    /**
+     * Puts the record in body after the others waiting to be written to the
+     * log
+     *
+     * @pre the write lock is held and body holds a record made by
+     *      {@link #encode} since
+     * @post the record is pending
+     *
+     * @return the sequence number of the record
+     */
+    private long append() {
+        synchronized (logLock) {
+            long sequence = appended + 1;
+            CRC32 crc = new CRC32();
+            crc.update(body.bytes(), 0, body.size());
+            ByteBuffer header = ByteBuffer.allocate(8);
+            header.putInt(body.size());
+            header.putInt((int) crc.getValue());
+            pending.write(header.array(), 0, 8);
+            pending.write(body.bytes(), 0, body.size());
+            appended = sequence;
+            logBytes += 8 + body.size();
+            return sequence;
+        }
+    }
+
+    /**
+     * Waits as long as the durability says a write has to, and takes a
+     * checkpoint if the log has grown long enough. If the checkpoint can't be
+     * written the write still succeeds, the reason is kept for
+     * {@link #checkpointFailure()} and no checkpoint is tried again until the
+     * log has grown by another checkpoint's worth of bytes.
+     *
+     * @pre the write lock is not held
+     * @post the record is on disk unless the durability is
+     *       {@link Durability#ASYNC}, the tree is writable or this threw
+     *
+     * @param sequence
+     *            the sequence number of the write's record
+     * @throws IOException
+     *             if the log can't be written
+     */
+    private void afterWrite(long sequence) throws IOException {
+        boolean wait;
+        boolean due;
+        synchronized (logLock) {
+            wait = durability == Durability.GROUP
+                    || pending.size() >= ASYNC_BUFFER;
+            due = checkpointBytes > 0 && logBytes >= checkpointAt;
+        }
+        if (wait) {
+            awaitDurable(sequence);
+        }
+        if (due) {
+            synchronized (checkpointLock) {
+                long stamp = lock.readLock();
+                try {
+                    checkWritable();
+                    synchronized (logLock) {
+                        due = logBytes >= checkpointAt;
+                    }
+                    if (due) {
+                        checkpointLocked();
+                    }
+                } catch (IOException e) {
+                    // the write itself is in the log, only a broken log
+                    // fails it
+                    synchronized (logLock) {
+                        if (failure != null) {
+                            throw failure;
+                        }
+                        checkpointFailure = e;
+                        checkpointAt = logBytes + checkpointBytes;
+                    }
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until a record is on disk. If no thread is writing the log, this
+     * one writes everything pending and forces it, for itself and for every
+     * thread that made a record before it did.
+     *
+     * @pre true
+     * @post the record is on disk
+     *
+     * @param sequence
+     *            the sequence number of the record
+     * @throws IOException
+     *             if the log can't be written
+     */
+    private void awaitDurable(long sequence) throws IOException {
+        while (true) {
+            TreeSnapshot.Buffer batch;
+            long upTo;
+            synchronized (logLock) {
+                while (true) {
+                    if (durable >= sequence) {
+                        return;
+                    }
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    if (!flushing) {
+                        break;
+                    }
+                    try {
+                        logLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException(
+                                "interrupted waiting for the log");
+                    }
+                }
+                flushing = true;
+                batch = pending;
+                pending = spare;
+                spare = null;
+                upTo = appended;
+            }
+
+            IOException error = null;
+            try {
+                ByteBuffer bytes = ByteBuffer.wrap(batch.bytes(), 0,
+                        batch.size());
+                while (bytes.hasRemaining()) {
+                    log.write(bytes);
+                }
+                log.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+
+            synchronized (logLock) {
+                flushing = false;
+                batch.reset();
+                spare = batch;
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durable = upTo;
+                }
+                logLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Writes the checkpoint and starts the log over, see
+     * {@link #checkpoint()}
+     *
+     * @pre the checkpoint lock and the read lock are held
+     * @post the checkpoint holds every change and the log is empty
+     *
+     * @throws IOException
+     *             if the checkpoint or the log can't be written
+     */
+    private void checkpointLocked() throws IOException {
+        long sequence;
+        synchronized (logLock) {
+            sequence = appended;
+        }
+        // no write can get the write lock to add to the log, so once this
+        // returns it is idle
+        awaitDurable(sequence);
+
+        File temporary = new File(directory, CHECKPOINT + ".tmp");
+        try {
+            FileOutputStream file = new FileOutputStream(temporary);
+            try {
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(file,
+                                TreeSnapshot.BLOCK_BYTES));
+                out.writeLong(sequence);
+                tree.writeSnapshot(out, keys, values, false, true);
+                out.flush();
+                file.getChannel().force(true);
+            } finally {
+                file.close();
+            }
+            Files.move(temporary.toPath(),
+                    new File(directory, CHECKPOINT).toPath(),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // the old checkpoint and the log are untouched, only the space
+            // the new one took is given back
+            temporary.delete();
+            throw e;
+        }
+        forceDirectory();
+
+        synchronized (logLock) {
+            try {
+                log.truncate(0);
+                log.position(0);
+                log.force(true);
+                logBytes = 0;
+                checkpointAt = checkpointBytes;
+                checkpointFailure = null;
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Forces the directory, so the rename of a checkpoint is on disk. Not
+     * every platform can open a directory, where it can't this does nothing.
+     */
+    private void forceDirectory() {
+        try {
+            FileChannel channel = FileChannel.open(directory.toPath(),
+                    StandardOpenOption.READ);
+            try {
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            // the rename is still atomic, just maybe not yet durable
+        }
+    }
+
+    /**
+     * Replays the records of the log made after the checkpoint
+     *
+     * @pre the log is at its start
+     * @post the tree holds the changes of every whole record, appended is the
+     *       last sequence number
+     *
+     * @param start
+     *            the sequence number the checkpoint is up to
+     * @return the length of the log up to the end of its last whole record
+     * @throws IOException
+     *             if the log can't be read
+     */
+    private long replay(long start) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(log), TreeSnapshot.BLOCK_BYTES));
+        long end = 0;
+        while (true) {
+            byte[] record;
+            int checksum;
+            try {
+                int length = in.readInt();
+                checksum = in.readInt();
+                if (length < 9 || length > MAX_RECORD) {
+                    break;
+                }
+                record = new byte[length];
+                in.readFully(record);
+            } catch (EOFException e) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            DataInputStream fields = new DataInputStream(
+                    new ByteArrayInputStream(record));
+            long sequence = fields.readLong();
+            byte op = fields.readByte();
+            K key = keys.read(fields);
+            if (sequence > start) {
+                if (op == ADD) {
+                    tree.add(key, values.read(fields));
+                } else {
+                    tree.delete(key);
+                }
+                appended = sequence;
+            }
+            end += 8 + record.length;
+        }
+        return end;
+    }
+
+    /**
+     * Forces the log every {@link #ASYNC_INTERVAL} milliseconds until the
+     * tree is closed
+     */
+    private void flushEvery() {
+        while (!closing) {
+            try {
+                Thread.sleep(ASYNC_INTERVAL);
+                flush();
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                // kept in failure, the next write throws it
+                return;
+            }
+        }
+    }
+
+    /**
+     * Throws why the tree can't be written, if it can't
+     *
+     * @throws IOException
+     *             the reason the log can't be written
+     */
+    private void checkWritable() throws IOException {
+        synchronized (logLock) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
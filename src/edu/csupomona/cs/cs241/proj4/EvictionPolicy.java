@@ -0,0 +1,28 @@
+package edu.csupomona.cs.cs241.proj4;
+
+/**
+ * Which mapping a {@link BoundedRedBlackTree} takes out when it holds too
+ * many, or too heavy, mappings. Mappings whose time to live has passed always
+ * go first, whatever the policy.
+ *
+ * @author Satshabad
+ */
+public enum EvictionPolicy {
+
+    /**
+     * The mapping with the lowest key goes, so the tree keeps the highest
+     * keys it was given
+     */
+    LOWEST_KEY,
+
+    /**
+     * The mapping with the highest key goes, so the tree keeps the lowest
+     * keys it was given
+     */
+    HIGHEST_KEY,
+
+    /**
+     * The mapping added or looked up the longest time ago goes
+     */
+    LEAST_RECENTLY_USED
+}
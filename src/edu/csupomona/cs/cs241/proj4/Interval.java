@@ -0,0 +1,91 @@
+package edu.csupomona.cs.cs241.proj4;
+
+/**
+ * An interval found by an {@link IntervalTree}, with both of its endpoints
+ * included, and the value it maps to.
+ *
+ * @author Satshabad
+ *
+ * @param <K>
+ *            the type of the endpoints
+ * @param <V>
+ *            the type of the value
+ */
+public class Interval<K extends Comparable<K>, V> {
+
+    /**
+     * The lower endpoint
+     */
+    private final K low;
+
+    /**
+     * The upper endpoint
+     */
+    private final K high;
+
+    /**
+     * The value the interval maps to
+     */
+    private final V value;
+
+    /**
+     * Creates an interval
+     *
+     * @pre low is not greater than high
+     * @post an interval is made
+     *
+     * @param low
+     *            the lower endpoint
+     * @param high
+     *            the upper endpoint
+     * @param value
+     *            the value the interval maps to
+     */
+    public Interval(K low, K high, V value) {
+        this.low = low;
+        this.high = high;
+        this.value = value;
+    }
+
+    /**
+     * gets the lower endpoint
+     *
+     * @pre true
+     * @post the lower endpoint is returned
+     * @return the lower endpoint
+     */
+    public K getLow() {
+        return low;
+    }
+
+    /**
+     * gets the upper endpoint
+     *
+     * @pre true
+     * @post the upper endpoint is returned
+     * @return the upper endpoint
+     */
+    public K getHigh() {
+        return high;
+    }
+
+    /**
+     * gets the value
+     *
+     * @pre true
+     * @post the value is returned
+     * @return the value the interval maps to
+     */
+    public V getValue() {
+        return value;
+    }
+
+    /**
+     * Writes the interval as [low, high]=value
+     *
+     * @return the interval as a string
+     */
+    public String toString() {
+        return "[" + low + ", " + high + "]=" + value;
+    }
+}
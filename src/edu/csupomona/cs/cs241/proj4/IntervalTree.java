@@ -0,0 +1,694 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is a Red Black Tree of intervals, such as time ranges, each
+ * mapping to a value. The intervals are ordered by their lower endpoint, then
+ * by their upper one, and every node also keeps the highest upper endpoint in
+ * its subtree. A subtree whose highest endpoint is below a query, or whose
+ * lowest is above it, can't hold anything the query wants, so it is never
+ * entered and a query doesn't have to look at every interval.
+ *
+ * The highest endpoint of a node only changes when what is below it does, so
+ * an add raises it on the way down, a delete lowers it on the way back up
+ * from the node taken out and each rotation works it out again for the two
+ * nodes that moved. Repainting nodes never changes it. Both endpoints are
+ * included in an interval.
+ *
+ * @author Satshabad
+ *
+ * @param <K>
+ *            the type of the endpoints
+ * @param <V>
+ *            the values that the nodes hold.
+ */
+public class IntervalTree<K extends Comparable<K>, V> {
+
+    /**
+     * The constant boolean for the color red
+     */
+    private static final boolean RED = true;
+
+    /**
+     * The constant boolean for the color black
+     */
+    private static final boolean BLACK = false;
+
+    /**
+     * The one node that represents all of the nil leaves at once.
+     */
+    private final Entry<K, V> theNilLeaf;
+
+    /**
+     * A special node called the root, null if the tree is empty
+     */
+    private Entry<K, V> root;
+
+    /**
+     * The number of intervals in the tree
+     */
+    private int size;
+
+    /**
+     * Initializes an empty interval tree
+     *
+     * @pre true
+     * @post an empty tree is made
+     */
+    public IntervalTree() {
+        theNilLeaf = new Entry<K, V>(BLACK, null, null, null, null, null);
+        theNilLeaf.left = theNilLeaf;
+        theNilLeaf.right = theNilLeaf;
+    }
+
+    /**
+     * This method adds an interval and the value it maps to. The same
+     * interval can be added more than once.
+     *
+     * @pre true
+     * @post the interval is in the tree
+     *
+     * @param low
+     *            the lower endpoint
+     * @param high
+     *            the upper endpoint
+     * @param value
+     *            the object to be stored
+     * @return whether the interval was added, false if low is greater than
+     *         high or anything is null
+     */
+    public boolean add(K low, K high, V value) {
+        if (low == null || high == null || value == null
+                || low.compareTo(high) > 0) {
+            return false;
+        }
+        size++;
+
+        if (root == null) {
+            root = new Entry<K, V>(BLACK, low, high, value, theNilLeaf, null);
+            return true;
+        }
+
+        // every node passed on the way down will have the new one below it
+        Entry<K, V> current = root;
+        Entry<K, V> placeToAdd = null;
+        while (current != theNilLeaf) {
+            if (current.max.compareTo(high) < 0) {
+                current.max = high;
+            }
+            placeToAdd = current;
+            if (compare(low, high, current) > 0) {
+                current = current.right;
+            } else {
+                current = current.left;
+            }
+        }
+
+        Entry<K, V> added = new Entry<K, V>(RED, low, high, value,
+                theNilLeaf, placeToAdd);
+
+        // greater than to the right, less or equal to the left
+        if (compare(low, high, placeToAdd) > 0) {
+            placeToAdd.right = added;
+        } else {
+            placeToAdd.left = added;
+        }
+        addBalance(added);
+        return true;
+    }
+
+    /**
+     * This method deletes one instance of an interval.
+     *
+     * @pre true
+     * @post one instance of the interval is removed
+     *
+     * @param low
+     *            the lower endpoint
+     * @param high
+     *            the upper endpoint
+     * @return the value the interval mapped to, or null if it was not in the
+     *         tree
+     */
+    public V delete(K low, K high) {
+        Entry<K, V> toBeDeleted = find(low, high);
+        if (toBeDeleted == null) {
+            return null;
+        }
+        V returnValue = toBeDeleted.value;
+        size--;
+
+        // find the node that will really leave the tree, it has at most one
+        // child
+        Entry<K, V> replaceNode;
+        Entry<K, V> child;
+        if (toBeDeleted.right != theNilLeaf) {
+            replaceNode = toBeDeleted.right;
+            while (replaceNode.left != theNilLeaf) {
+                replaceNode = replaceNode.left;
+            }
+            child = replaceNode.right;
+        } else if (toBeDeleted.left != theNilLeaf) {
+            replaceNode = toBeDeleted.left;
+            while (replaceNode.right != theNilLeaf) {
+                replaceNode = replaceNode.right;
+            }
+            child = replaceNode.left;
+        } else {
+            replaceNode = toBeDeleted;
+            child = theNilLeaf;
+        }
+        toBeDeleted.low = replaceNode.low;
+        toBeDeleted.high = replaceNode.high;
+        toBeDeleted.value = replaceNode.value;
+
+        Entry<K, V> parent = replaceNode.parent;
+        replace(replaceNode, child);
+
+        // toBeDeleted is on the way up too, so its new interval is counted.
+        // This comes before the rebalance, whose rotations trust the
+        // children they are given
+        for (Entry<K, V> above = parent; above != null; above = above.parent) {
+            update(above);
+        }
+
+        if (!replaceNode.red) {
+            if (child.red) {
+                child.red = BLACK;
+            } else {
+                deleteBalance(child, parent);
+            }
+        }
+        return returnValue;
+    }
+
+    /**
+     * This method looks up the value of an interval.
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @param low
+     *            the lower endpoint
+     * @param high
+     *            the upper endpoint
+     * @return the value of one instance of the interval, or null if it is not
+     *         in the tree
+     */
+    public V lookup(K low, K high) {
+        Entry<K, V> found = find(low, high);
+        if (found == null) {
+            return null;
+        }
+        return found.value;
+    }
+
+    /**
+     * Finds every interval that shares at least one point with [a, b]. A
+     * subtree is only entered if its highest endpoint is at least a, and the
+     * intervals to the right of one that starts after b are never looked at,
+     * so the nodes visited are those on the two edges of the answer and the
+     * ones between them that lead to an interval found.
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @param a
+     *            the lower endpoint of the query
+     * @param b
+     *            the upper endpoint of the query
+     * @return the intervals found, ordered by their lower endpoint. Empty if
+     *         a is greater than b
+     */
+    public List<Interval<K, V>> overlapping(K a, K b) {
+        List<Interval<K, V>> found = new ArrayList<Interval<K, V>>();
+        if (root != null && a.compareTo(b) <= 0) {
+            overlapping(root, a, b, found);
+        }
+        return found;
+    }
+
+    /**
+     * Finds every interval that holds a point. see
+     * {@link #overlapping(Comparable, Comparable)}
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @param point
+     *            the point to look for
+     * @return the intervals found, ordered by their lower endpoint
+     */
+    public List<Interval<K, V>> stabbing(K point) {
+        return overlapping(point, point);
+    }
+
+    /**
+     * Gets the number of intervals in the tree
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @return the number of intervals
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks that no red node has a red child, that every path has the same
+     * number of black nodes, that every node points back at its parent and
+     * that every node knows the highest endpoint below it. Unlike an
+     * assertion this runs whether or not the JVM has -ea, and it writes
+     * nothing, so a wrong highest endpoint is reported rather than fixed.
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @return the number of black nodes on any path from the root to a leaf
+     * @throws IllegalStateException
+     *             if a rule is broken, saying which and where
+     */
+    public int verify() {
+        if (root != null && root.red) {
+            throw new IllegalStateException("the root is red");
+        }
+        return verifyHelper(root, null);
+    }
+
+    /**
+     * This method does most of the logic of the verify method. see
+     * {@link #verify()}
+     *
+     * @param node
+     *            the current node
+     * @param parent
+     *            the node it is a child of, null for the root
+     * @return the number of black nodes on any path from node to a leaf
+     * @throws IllegalStateException
+     *             if a rule is broken under node
+     */
+    private int verifyHelper(Entry<K, V> node, Entry<K, V> parent) {
+        if (node == null || node == theNilLeaf) {
+            return 1;
+        }
+        String at = " at [" + node.low + ", " + node.high + "]";
+        if (node.parent != parent) {
+            throw new IllegalStateException("wrong parent link" + at);
+        }
+        if (node.red && parent != null && parent.red) {
+            throw new IllegalStateException("red node with a red parent" + at);
+        }
+        K max = node.high;
+        if (node.left != theNilLeaf && node.left.max.compareTo(max) > 0) {
+            max = node.left.max;
+        }
+        if (node.right != theNilLeaf && node.right.max.compareTo(max) > 0) {
+            max = node.right.max;
+        }
+        if (max.compareTo(node.max) != 0) {
+            throw new IllegalStateException("highest endpoint is " + node.max
+                    + " rather than " + max + at);
+        }
+        int left = verifyHelper(node.left, node);
+        int right = verifyHelper(node.right, node);
+        if (left != right) {
+            throw new IllegalStateException("black heights " + left + " and "
+                    + right + " differ" + at);
+        }
+        return node.red ? left : left + 1;
+    }
+
+    /**
+     * This method does most of the logic of the overlapping method. see
+     * {@link #overlapping(Comparable, Comparable)}
+     *
+     * @param node
+     *            the root of the subtree to search
+     * @param a
+     *            the lower endpoint of the query
+     * @param b
+     *            the upper endpoint of the query
+     * @param found
+     *            the intervals found so far, in order
+     */
+    private void overlapping(Entry<K, V> node, K a, K b,
+            List<Interval<K, V>> found) {
+        while (node != theNilLeaf && node.max.compareTo(a) >= 0) {
+            if (node.left != theNilLeaf) {
+                overlapping(node.left, a, b, found);
+            }
+            // everything to the right starts no earlier than node
+            if (node.low.compareTo(b) > 0) {
+                return;
+            }
+            if (node.high.compareTo(a) >= 0) {
+                found.add(new Interval<K, V>(node.low, node.high, node.value));
+            }
+            node = node.right;
+        }
+    }
+
+    /**
+     * Orders an interval against the one of a node, by lower endpoint and
+     * then by upper endpoint
+     *
+     * @param low
+     *            the lower endpoint
+     * @param high
+     *            the upper endpoint
+     * @param node
+     *            the node to compare with
+     * @return negative, zero or positive as the interval comes before, is the
+     *         same as or comes after the one of node
+     */
+    private int compare(K low, K high, Entry<K, V> node) {
+        int comparison = low.compareTo(node.low);
+        if (comparison != 0) {
+            return comparison;
+        }
+        return high.compareTo(node.high);
+    }
+
+    /**
+     * Finds the first node on the way down that holds an interval
+     *
+     * @param low
+     *            the lower endpoint
+     * @param high
+     *            the upper endpoint
+     * @return the node, or null if the interval is not in the tree
+     */
+    private Entry<K, V> find(K low, K high) {
+        if (low == null || high == null) {
+            return null;
+        }
+        Entry<K, V> current = root;
+        while (current != null && current != theNilLeaf) {
+            int comparison = compare(low, high, current);
+            if (comparison == 0) {
+                return current;
+            }
+            current = comparison > 0 ? current.right : current.left;
+        }
+        return null;
+    }
+
+    /**
+     * Works out the highest endpoint below a node from its own interval and
+     * the highest endpoints of its children
+     *
+     * @pre node's children know their highest endpoints
+     * @post node knows its highest endpoint
+     *
+     * @param node
+     *            the node to update, not the nil leaf
+     */
+    private void update(Entry<K, V> node) {
+        K max = node.high;
+        if (node.left != theNilLeaf && node.left.max.compareTo(max) > 0) {
+            max = node.left.max;
+        }
+        if (node.right != theNilLeaf && node.right.max.compareTo(max) > 0) {
+            max = node.right.max;
+        }
+        node.max = max;
+    }
+
+    /**
+     * Puts replacement where node is in the tree.
+     *
+     * @pre node is in the tree
+     * @post node's parent now points to replacement
+     *
+     * @param node
+     *            the node to take out
+     * @param replacement
+     *            the node to put in it's place, may be the nil leaf
+     */
+    private void replace(Entry<K, V> node, Entry<K, V> replacement) {
+        Entry<K, V> parent = node.parent;
+        if (parent == null) {
+            root = replacement == theNilLeaf ? null : replacement;
+        } else if (parent.left == node) {
+            parent.left = replacement;
+        } else {
+            parent.right = replacement;
+        }
+        if (replacement != theNilLeaf) {
+            replacement.parent = parent;
+        }
+    }
+
+    /**
+     * This internal method will check the 5 cases that might occur when a node
+     * is added and it breaks the 4 RBT rules. see {@link RedBlackTree}. Only
+     * the rotations change what is below a node, and they keep the highest
+     * endpoints right themselves.
+     *
+     * @pre the only rules that are broken are from the latest add proc.
+     * @post all 4 of the RBT rules are not violated
+     * @param node
+     *            the node to start checking on
+     */
+    private void addBalance(Entry<K, V> node) {
+        while (true) {
+            Entry<K, V> parent = node.parent;
+
+            // case 1 and 2
+            if (parent == null) {
+                node.red = BLACK;
+                return;
+            }
+            if (!parent.red) {
+                return;
+            }
+
+            Entry<K, V> grandparent = parent.parent;
+            boolean parentIsLeft = grandparent.left == parent;
+            Entry<K, V> uncle = parentIsLeft ? grandparent.right
+                    : grandparent.left;
+
+            // case 3
+            if (uncle.red) {
+                uncle.red = BLACK;
+                parent.red = BLACK;
+                grandparent.red = RED;
+                node = grandparent;
+                continue;
+            }
+
+            // case 4
+            if (parentIsLeft && parent.right == node) {
+                rotateLeft(parent);
+                parent = node;
+            } else if (!parentIsLeft && parent.left == node) {
+                rotateRight(parent);
+                parent = node;
+            }
+
+            // case 5
+            if (parentIsLeft) {
+                rotateRight(grandparent);
+            } else {
+                rotateLeft(grandparent);
+            }
+            grandparent.red = RED;
+            parent.red = BLACK;
+            return;
+        }
+    }
+
+    /**
+     * This internal method will check the 6 cases that might occur when a
+     * black node is deleted and it breaks the 4 RBT rules. see
+     * {@link RedBlackTree}. As in an add, the rotations keep the highest
+     * endpoints right.
+     *
+     * @pre every path through node has one black node too few, every node
+     *      knows its highest endpoint
+     * @post all 4 of the RBT rules are not violated
+     * @param node
+     *            the node to start checking on, may be the nil leaf
+     * @param parent
+     *            the parent of node
+     */
+    private void deleteBalance(Entry<K, V> node, Entry<K, V> parent) {
+        while (parent != null) {
+            boolean nodeIsLeft = parent.left == node;
+            Entry<K, V> sibling = nodeIsLeft ? parent.right : parent.left;
+
+            // case 2
+            if (sibling.red) {
+                parent.red = RED;
+                sibling.red = BLACK;
+                if (nodeIsLeft) {
+                    rotateLeft(parent);
+                    sibling = parent.right;
+                } else {
+                    rotateRight(parent);
+                    sibling = parent.left;
+                }
+            }
+
+            // case 3 and 4
+            if (!sibling.left.red && !sibling.right.red) {
+                sibling.red = RED;
+                if (parent.red) {
+                    parent.red = BLACK;
+                    return;
+                }
+                node = parent;
+                parent = node.parent;
+                continue;
+            }
+
+            // case 5
+            if (nodeIsLeft && !sibling.right.red) {
+                sibling.red = RED;
+                sibling.left.red = BLACK;
+                rotateRight(sibling);
+                sibling = parent.right;
+            } else if (!nodeIsLeft && !sibling.left.red) {
+                sibling.red = RED;
+                sibling.right.red = BLACK;
+                rotateLeft(sibling);
+                sibling = parent.left;
+            }
+
+            // case 6
+            sibling.red = parent.red;
+            parent.red = BLACK;
+            if (nodeIsLeft) {
+                sibling.right.red = BLACK;
+                rotateLeft(parent);
+            } else {
+                sibling.left.red = BLACK;
+                rotateRight(parent);
+            }
+            return;
+        }
+    }
+
+    /**
+     * Performs a left rotation on the node. The pivot ends up over the same
+     * intervals node was, so it takes node's highest endpoint, and node works
+     * its own out again from what is left below it.
+     *
+     * @pre the node has a right child
+     * @post a left rotation is performed
+     * @param node
+     *            the node to rotate on
+     */
+    private void rotateLeft(Entry<K, V> node) {
+        Entry<K, V> pivot = node.right;
+        node.right = pivot.left;
+        if (pivot.left != theNilLeaf) {
+            pivot.left.parent = node;
+        }
+        replace(node, pivot);
+        pivot.left = node;
+        node.parent = pivot;
+        pivot.max = node.max;
+        update(node);
+    }
+
+    /**
+     * Performs a right rotation on the node, keeping the highest endpoints
+     * right as in {@link #rotateLeft(Entry)}
+     *
+     * @pre the node has a left child
+     * @post a right rotation is performed
+     * @param node
+     *            the node to rotate on
+     */
+    private void rotateRight(Entry<K, V> node) {
+        Entry<K, V> pivot = node.left;
+        node.left = pivot.right;
+        if (pivot.right != theNilLeaf) {
+            pivot.right.parent = node;
+        }
+        replace(node, pivot);
+        pivot.right = node;
+        node.parent = pivot;
+        pivot.max = node.max;
+        update(node);
+    }
+
+    /**
+     * A node of the tree. The fields are used directly, this class is only
+     * ever seen by the tree.
+     *
+     * @param <K>
+     *            the type of the endpoints
+     * @param <V>
+     *            the type of value held by the node
+     */
+    private static final class Entry<K, V> {
+
+        /**
+         * The lower endpoint of the interval, the key of the node
+         */
+        K low;
+        /**
+         * The upper endpoint of the interval
+         */
+        K high;
+        /**
+         * The highest upper endpoint of this node and all below it
+         */
+        K max;
+        /**
+         * The value held by this node
+         */
+        V value;
+        /**
+         * The left child of this node
+         */
+        Entry<K, V> left;
+        /**
+         * The right child of this node
+         */
+        Entry<K, V> right;
+        /**
+         * The parent of this node
+         */
+        Entry<K, V> parent;
+        /**
+         * The color value of this node, if true, red, if false, black
+         */
+        boolean red;
+
+        /**
+         * Initializes this node with the given attributes, both children are
+         * the given leaf
+         *
+         * @param red
+         *            The color value of this node
+         * @param low
+         *            The lower endpoint of this node
+         * @param high
+         *            The upper endpoint of this node, also its highest
+         *            endpoint to start with
+         * @param value
+         *            The value held by this node
+         * @param leaf
+         *            The nil leaf both children start as
+         * @param parent
+         *            The parent of this node
+         */
+        Entry(boolean red, K low, K high, V value, Entry<K, V> leaf,
+                Entry<K, V> parent) {
+            this.red = red;
+            this.low = low;
+            this.high = high;
+            this.max = high;
+            this.value = value;
+            this.left = leaf;
+            this.right = leaf;
+            this.parent = parent;
+        }
+    }
+}
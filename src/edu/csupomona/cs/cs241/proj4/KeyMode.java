@@ -0,0 +1,22 @@
+package edu.csupomona.cs.cs241.proj4;
+
+/**
+ * What a {@link RedBlackTree} does when a key is added that it already
+ * holds. For a key that maps to many values see {@link RedBlackMultimap}.
+ *
+ * @author Satshabad
+ */
+public enum KeyMode {
+
+    /**
+     * Every add makes a new node, so the same key can be in the tree many
+     * times. Which of them a lookup or delete finds is not guaranteed.
+     */
+    DUPLICATES,
+
+    /**
+     * Each key is in the tree at most once, adding a key it already holds
+     * replaces the value in place, without a second descent or a rebalance
+     */
+    MAP
+}
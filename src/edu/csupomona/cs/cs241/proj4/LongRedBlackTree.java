@@ -0,0 +1,499 @@
+package edu.csupomona.cs.cs241.proj4;
+
+/**
+ * This class is a Red Black Tree whose keys are longs. It works just like
+ * {@link RedBlackTree} but the key is kept in the node as a plain long, so
+ * there is no boxed key to allocate and keys are compared with &lt;.
+ *
+ * @author Satshabad
+ *
+ * @param <V>
+ *            the values that the nodes hold.
+ */
+public class LongRedBlackTree<V> {
+
+    /**
+     * The constant boolean for the color red
+     */
+    private static final boolean RED = true;
+
+    /**
+     * The constant boolean for the color black
+     */
+    private static final boolean BLACK = false;
+
+    /**
+     * No path in a red black tree of int size is longer than this
+     */
+    private static final int MAX_DEPTH = 64;
+
+    /**
+     * The one node that represents all of the nil leaves at once.
+     */
+    private final Entry<V> theNilLeaf;
+
+    /**
+     * A special node called the root, null if the tree is empty
+     */
+    private Entry<V> root;
+
+    /**
+     * Initializes a Red Black Tree
+     *
+     * @pre true
+     * @post a RBT is made
+     */
+    public LongRedBlackTree() {
+        theNilLeaf = new Entry<V>(BLACK, 0, null, null, null);
+        theNilLeaf.left = theNilLeaf;
+        theNilLeaf.right = theNilLeaf;
+    }
+
+    /**
+     * This method adds the mapping to the tree.
+     *
+     * @pre true
+     * @post the key added matches the value added with it. If there was a
+     *       previous mapping of the same key results are not guaranteed
+     *
+     * @param key
+     *            the key that will map to the value for look up
+     * @param value
+     *            the object to be stored
+     * @return whether the mapping was made or not
+     */
+    public boolean add(long key, V value) {
+
+        // don't add null mapping, it could interfere with other methods.
+        if (value == null) {
+            return false;
+        }
+
+        // special case when there is no root.
+        if (root == null) {
+            root = new Entry<V>(BLACK, key, value, theNilLeaf, null);
+            return true;
+        }
+
+        Entry<V> placeToAdd = descend(key, false);
+        Entry<V> added = new Entry<V>(RED, key, value, theNilLeaf,
+                placeToAdd);
+
+        // greater than to the right, less or equal to the left
+        if (placeToAdd.key < key) {
+            placeToAdd.right = added;
+        } else {
+            placeToAdd.left = added;
+        }
+        addBalance(added);
+        return true;
+    }
+
+    /**
+     * This method deletes the first instance of the key value mapping indicated
+     * by the key.
+     *
+     * @pre true
+     * @post the first instance of the mapping is removed
+     *
+     * @param key
+     *            the key to value to be deleted
+     * @return the value mapped to the key which was deleted, or null if there
+     *         was none
+     */
+    public V delete(long key) {
+        Entry<V> toBeDeleted = descend(key, true);
+        if (toBeDeleted == null) {
+            return null;
+        }
+        V returnValue = toBeDeleted.value;
+
+        // find the node that will really leave the tree, it has at most one
+        // child
+        Entry<V> replaceNode;
+        Entry<V> child;
+        if (toBeDeleted.right != theNilLeaf) {
+            replaceNode = toBeDeleted.right;
+            while (replaceNode.left != theNilLeaf) {
+                replaceNode = replaceNode.left;
+            }
+            child = replaceNode.right;
+        } else if (toBeDeleted.left != theNilLeaf) {
+            replaceNode = toBeDeleted.left;
+            while (replaceNode.right != theNilLeaf) {
+                replaceNode = replaceNode.right;
+            }
+            child = replaceNode.left;
+        } else {
+            replaceNode = toBeDeleted;
+            child = theNilLeaf;
+        }
+        toBeDeleted.key = replaceNode.key;
+        toBeDeleted.value = replaceNode.value;
+
+        Entry<V> parent = replaceNode.parent;
+        replace(replaceNode, child);
+
+        if (!replaceNode.red) {
+            if (child.red) {
+                child.red = BLACK;
+            } else {
+                deleteBalance(child, parent);
+            }
+        }
+        return returnValue;
+    }
+
+    /**
+     * This method looks up the value associated with the key.
+     *
+     * @pre true
+     * @post the value mapped to the key is returned, or null if the key is not
+     *       in the tree
+     *
+     * @param key
+     *            the key of the value
+     * @return the value indexed by key, or null if there is no such mapping
+     */
+    public V lookup(long key) {
+        Entry<V> found = descend(key, true);
+        if (found == null) {
+            return null;
+        }
+        return found.value;
+    }
+
+    /**
+     * Checks that no red node has a red child and that every path has the same
+     * number of black nodes. Unlike an assertion this runs whether or not the
+     * JVM has -ea.
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @return the number of black nodes on any path from the root to a leaf
+     * @throws IllegalStateException
+     *             if a rule is broken, saying which and where
+     */
+    public int verify() {
+        return verifyHelper(root, false, 1);
+    }
+
+    /**
+     * This method does most of the logic of the verify method. see
+     * {@link #verify()}
+     *
+     * @param node
+     *            the current node
+     * @param wasRed
+     *            if the parent was red
+     * @param depth
+     *            the number of nodes on the path down to node, node included
+     * @return the number of black nodes on any path from node to a leaf
+     * @throws IllegalStateException
+     *             if a rule is broken under node
+     */
+    private int verifyHelper(Entry<V> node, boolean wasRed, int depth) {
+        if (node == null || node == theNilLeaf) {
+            return 1;
+        }
+        if (depth > MAX_DEPTH) {
+            throw new IllegalStateException("path deeper than " + MAX_DEPTH
+                    + " at " + node.key);
+        }
+        if (node.red && wasRed) {
+            throw new IllegalStateException("red node with a red parent at "
+                    + node.key);
+        }
+        int left = verifyHelper(node.left, node.red, depth + 1);
+        int right = verifyHelper(node.right, node.red, depth + 1);
+        if (left != right) {
+            throw new IllegalStateException("black heights " + left
+                    + " and " + right + " differ at " + node.key);
+        }
+        return node.red ? left : left + 1;
+    }
+
+    /**
+     * This method is the one descent from the root that lookup, add and delete
+     * all share.
+     *
+     * @param key
+     *            the key to search for
+     * @param stopOnMatch
+     *            if true the descent stops at the first node whose key equals
+     *            key, if false it keeps going down as an add would
+     * @return if stopOnMatch, the first node with a matching key or null if
+     *         there is none. Otherwise the node to add onto, or null if the
+     *         tree is empty
+     */
+    private Entry<V> descend(long key, boolean stopOnMatch) {
+        Entry<V> current = root;
+        Entry<V> last = null;
+
+        while (current != null && current != theNilLeaf) {
+            if (stopOnMatch && current.key == key) {
+                return current;
+            }
+            last = current;
+            if (current.key < key) {
+                current = current.right;
+            } else {
+                current = current.left;
+            }
+        }
+
+        if (stopOnMatch) {
+            return null;
+        }
+        return last;
+    }
+
+    /**
+     * Puts replacement where node is in the tree.
+     *
+     * @pre node is in the tree
+     * @post node's parent now points to replacement
+     *
+     * @param node
+     *            the node to take out
+     * @param replacement
+     *            the node to put in it's place, may be the nil leaf
+     */
+    private void replace(Entry<V> node, Entry<V> replacement) {
+        Entry<V> parent = node.parent;
+        if (parent == null) {
+            root = replacement == theNilLeaf ? null : replacement;
+        } else if (parent.left == node) {
+            parent.left = replacement;
+        } else {
+            parent.right = replacement;
+        }
+        if (replacement != theNilLeaf) {
+            replacement.parent = parent;
+        }
+    }
+
+    /**
+     * This internal method will check the 5 cases that might occur when a node
+     * is added and it breaks the 4 RBT rules. see {@link RedBlackTree}
+     *
+     * @pre the only rules that are broken are from the latest add proc.
+     * @post all 4 of the RBT rules are not violated
+     * @param node
+     *            the node to start checking on
+     */
+    private void addBalance(Entry<V> node) {
+        while (true) {
+            Entry<V> parent = node.parent;
+
+            // case 1 and 2
+            if (parent == null) {
+                node.red = BLACK;
+                return;
+            }
+            if (!parent.red) {
+                return;
+            }
+
+            Entry<V> grandparent = parent.parent;
+            boolean parentIsLeft = grandparent.left == parent;
+            Entry<V> uncle = parentIsLeft ? grandparent.right
+                    : grandparent.left;
+
+            // case 3
+            if (uncle.red) {
+                uncle.red = BLACK;
+                parent.red = BLACK;
+                grandparent.red = RED;
+                node = grandparent;
+                continue;
+            }
+
+            // case 4
+            if (parentIsLeft && parent.right == node) {
+                rotateLeft(parent);
+                parent = node;
+            } else if (!parentIsLeft && parent.left == node) {
+                rotateRight(parent);
+                parent = node;
+            }
+
+            // case 5
+            if (parentIsLeft) {
+                rotateRight(grandparent);
+            } else {
+                rotateLeft(grandparent);
+            }
+            grandparent.red = RED;
+            parent.red = BLACK;
+            return;
+        }
+    }
+
+    /**
+     * This internal method will check the 6 cases that might occur when a
+     * black node is deleted and it breaks the 4 RBT rules. see
+     * {@link RedBlackTree}
+     *
+     * @pre every path through node has one black node too few
+     * @post all 4 of the RBT rules are not violated
+     * @param node
+     *            the node to start checking on, may be the nil leaf
+     * @param parent
+     *            the parent of node
+     */
+    private void deleteBalance(Entry<V> node, Entry<V> parent) {
+        while (parent != null) {
+            boolean nodeIsLeft = parent.left == node;
+            Entry<V> sibling = nodeIsLeft ? parent.right : parent.left;
+
+            // case 2
+            if (sibling.red) {
+                parent.red = RED;
+                sibling.red = BLACK;
+                if (nodeIsLeft) {
+                    rotateLeft(parent);
+                    sibling = parent.right;
+                } else {
+                    rotateRight(parent);
+                    sibling = parent.left;
+                }
+            }
+
+            // case 3 and 4
+            if (!sibling.left.red && !sibling.right.red) {
+                sibling.red = RED;
+                if (parent.red) {
+                    parent.red = BLACK;
+                    return;
+                }
+                node = parent;
+                parent = node.parent;
+                continue;
+            }
+
+            // case 5
+            if (nodeIsLeft && !sibling.right.red) {
+                sibling.red = RED;
+                sibling.left.red = BLACK;
+                rotateRight(sibling);
+                sibling = parent.right;
+            } else if (!nodeIsLeft && !sibling.left.red) {
+                sibling.red = RED;
+                sibling.right.red = BLACK;
+                rotateLeft(sibling);
+                sibling = parent.left;
+            }
+
+            // case 6
+            sibling.red = parent.red;
+            parent.red = BLACK;
+            if (nodeIsLeft) {
+                sibling.right.red = BLACK;
+                rotateLeft(parent);
+            } else {
+                sibling.left.red = BLACK;
+                rotateRight(parent);
+            }
+            return;
+        }
+    }
+
+    /**
+     * Performs a left rotation on the node
+     *
+     * @pre the node has a right child
+     * @post a left rotation is performed
+     * @param node
+     *            the node to rotate on
+     */
+    private void rotateLeft(Entry<V> node) {
+        Entry<V> pivot = node.right;
+        node.right = pivot.left;
+        if (pivot.left != theNilLeaf) {
+            pivot.left.parent = node;
+        }
+        replace(node, pivot);
+        pivot.left = node;
+        node.parent = pivot;
+    }
+
+    /**
+     * Performs a right rotation on the node
+     *
+     * @pre the node has a left child
+     * @post a right rotation is performed
+     * @param node
+     *            the node to rotate on
+     */
+    private void rotateRight(Entry<V> node) {
+        Entry<V> pivot = node.left;
+        node.left = pivot.right;
+        if (pivot.right != theNilLeaf) {
+            pivot.right.parent = node;
+        }
+        replace(node, pivot);
+        pivot.right = node;
+        node.parent = pivot;
+    }
+
+    /**
+     * A node of the tree. The fields are used directly, this class is only
+     * ever seen by the tree.
+     *
+     * @param <V>
+     *            the type of value held by the node
+     */
+    private static final class Entry<V> {
+
+        /**
+         * The key associated with the value held by this node
+         */
+        long key;
+        /**
+         * The value held by this node
+         */
+        V value;
+        /**
+         * The left child of this node
+         */
+        Entry<V> left;
+        /**
+         * The right child of this node
+         */
+        Entry<V> right;
+        /**
+         * The parent of this node
+         */
+        Entry<V> parent;
+        /**
+         * The color value of this node, if true, red, if false, black
+         */
+        boolean red;
+
+        /**
+         * Initializes this node with the given attributes, both children are
+         * the given leaf
+         *
+         * @param red
+         *            The color value of this node
+         * @param key
+         *            The key of this node
+         * @param value
+         *            The value held by this node
+         * @param leaf
+         *            The nil leaf both children start as
+         * @param parent
+         *            The parent of this node
+         */
+        Entry(boolean red, long key, V value, Entry<V> leaf, Entry<V> parent) {
+            this.red = red;
+            this.key = key;
+            this.value = value;
+            this.left = leaf;
+            this.right = leaf;
+            this.parent = parent;
+        }
+    }
+}
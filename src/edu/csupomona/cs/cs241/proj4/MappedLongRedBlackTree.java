@@ -0,0 +1,1074 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * This class is a Red Black Tree from long keys to long values whose nodes
+ * live in a memory mapped file, so the tree survives a restart and opening it
+ * again does not rebuild anything.
+ *
+ * The file has a header, two journals and then the node records. Every
+ * record is {@value #RECORD_SIZE} bytes and nodes point to each other by
+ * record number, record 0 being the nil leaf. An add or delete first
+ * collects the new contents of every record it changes, writes them to a
+ * journal and forces the file. It then writes a commit record naming that
+ * journal and forces again. Only then are the records themselves written.
+ * When the file is opened the newest commit record with a good checksum has
+ * its journal written again, so a crash at any point leaves the tree as it
+ * was either before or after the update. Lookups read the mapped records
+ * directly.
+ *
+ * @author Satshabad
+ */
+public class MappedLongRedBlackTree implements Closeable {
+
+    /**
+     * The constant boolean for the color red
+     */
+    private static final boolean RED = true;
+
+    /**
+     * The constant boolean for the color black
+     */
+    private static final boolean BLACK = false;
+
+    /**
+     * No path in a red black tree of int size is longer than this
+     */
+    private static final int MAX_DEPTH = 64;
+
+    /**
+     * The record number of the nil leaf. It is black and never written.
+     */
+    private static final int NIL = 0;
+
+    /**
+     * The first eight bytes of every tree file
+     */
+    private static final long MAGIC = 0x5242545245453031L;
+
+    /**
+     * The number of bytes in a node record
+     */
+    public static final int RECORD_SIZE = 32;
+
+    /**
+     * The offsets of the fields inside a record
+     */
+    private static final int KEY = 0, VALUE = 8, LEFT = 16, RIGHT = 20,
+            PARENT = 24, COLOR = 28;
+
+    /**
+     * The offsets of the fields inside a commit record
+     */
+    private static final int SEQUENCE = 0, ROOT = 8, TOP = 12, FREE = 16,
+            JOURNAL_COUNT = 20, SIZE = 24, CHECKSUM = 32;
+
+    /**
+     * The number of bytes of a commit record covered by the checksum
+     */
+    private static final int COMMIT_BYTES = 32;
+
+    /**
+     * Where the two commit records are in the file
+     */
+    private static final int COMMIT_OFFSET = 64, COMMIT_STRIDE = 64;
+
+    /**
+     * The most records one add or delete can change
+     */
+    private static final int JOURNAL_CAPACITY = 512;
+
+    /**
+     * The number of bytes of one journal entry, the record number padded to
+     * eight bytes and then the record
+     */
+    private static final int JOURNAL_ENTRY = 8 + RECORD_SIZE;
+
+    /**
+     * Where the two journals are in the file
+     */
+    private static final int JOURNAL_OFFSET = 4096,
+            JOURNAL_STRIDE = JOURNAL_CAPACITY * JOURNAL_ENTRY;
+
+    /**
+     * Where the records start in the file
+     */
+    private static final int DATA_OFFSET = JOURNAL_OFFSET + 2 * JOURNAL_STRIDE;
+
+    /**
+     * How many records a new file has room for
+     */
+    private static final int INITIAL_RECORDS = 1024;
+
+    /**
+     * The open file
+     */
+    private final RandomAccessFile file;
+
+    /**
+     * The channel of the open file
+     */
+    private final FileChannel channel;
+
+    /**
+     * The whole file mapped into memory
+     */
+    private MappedByteBuffer map;
+
+    /**
+     * The number of records the mapped file has room for
+     */
+    private int capacity;
+
+    /**
+     * The sequence number of the last commit record
+     */
+    private long sequence;
+
+    /**
+     * The record number of the root, NIL if the tree is empty
+     */
+    private int root;
+
+    /**
+     * The first record that has never been used
+     */
+    private int top;
+
+    /**
+     * The first record of the free list, NIL if it is empty. Free records are
+     * chained through their right child.
+     */
+    private int free;
+
+    /**
+     * The number of mappings in the tree
+     */
+    private long size;
+
+    /**
+     * The new contents of the records changed by the update in progress
+     */
+    private final ByteBuffer staged = ByteBuffer
+            .allocate(JOURNAL_CAPACITY * RECORD_SIZE);
+
+    /**
+     * The record numbers of the staged records, in staging order
+     */
+    private final int[] stagedRecords = new int[JOURNAL_CAPACITY];
+
+    /**
+     * The number of staged records
+     */
+    private int stagedCount;
+
+    /**
+     * An open addressing table, hashed by record number, of the staged slot
+     * plus one of each staged record, so a record changed by the update can
+     * be found quickly. 0 is an empty place.
+     */
+    private final int[] stagedTable = new int[JOURNAL_CAPACITY * 4];
+
+    /**
+     * Opens the tree kept in the file, making a new empty tree if the file
+     * does not exist or is empty. If the last update before a crash was
+     * committed it is finished.
+     *
+     * @pre the file is not in use by another tree
+     * @post the tree holds what it held after the last committed update
+     *
+     * @param path
+     *            the file of the tree
+     * @throws IOException
+     *             if the file can't be read or written, or is not a tree file
+     */
+    public MappedLongRedBlackTree(File path) throws IOException {
+        file = new RandomAccessFile(path, "rw");
+        channel = file.getChannel();
+        try {
+            if (channel.size() == 0) {
+                create();
+            } else {
+                recover();
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        } catch (RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * This method adds the mapping to the tree and makes it durable before
+     * returning.
+     *
+     * @pre the tree is open
+     * @post the key added matches the value added with it. If there was a
+     *       previous mapping of the same key results are not guaranteed
+     *
+     * @param key
+     *            the key that will map to the value for look up
+     * @param value
+     *            the value to be stored
+     * @return whether the mapping was made or not, always true
+     * @throws IOException
+     *             if the file can't grow
+     */
+    public boolean add(long key, long value) throws IOException {
+        if (free == NIL && top == capacity) {
+            grow();
+        }
+
+        int placeToAdd = descend(key, false);
+        int added = allocate(key, value, placeToAdd);
+
+        // special case when there is no root.
+        if (placeToAdd == NIL) {
+            root = added;
+        } else if (key(placeToAdd) < key) {
+            // greater than to the right, less or equal to the left
+            setRight(placeToAdd, added);
+        } else {
+            setLeft(placeToAdd, added);
+        }
+        addBalance(added);
+        size++;
+        commit();
+        return true;
+    }
+
+    /**
+     * This method deletes the first instance of the key value mapping indicated
+     * by the key and makes the change durable before returning.
+     *
+     * @pre the tree is open
+     * @post the first instance of the mapping is removed
+     *
+     * @param key
+     *            the key to value to be deleted
+     * @param notFound
+     *            the value to return if the key is not in the tree
+     * @return the value mapped to the key which was deleted, or notFound if
+     *         there was none
+     */
+    public long delete(long key, long notFound) {
+        int toBeDeleted = descend(key, true);
+        if (toBeDeleted == NIL) {
+            return notFound;
+        }
+        long returnValue = value(toBeDeleted);
+
+        // find the node that will really leave the tree, it has at most one
+        // child
+        int replaceNode;
+        int child;
+        if (right(toBeDeleted) != NIL) {
+            replaceNode = right(toBeDeleted);
+            while (left(replaceNode) != NIL) {
+                replaceNode = left(replaceNode);
+            }
+            child = right(replaceNode);
+        } else if (left(toBeDeleted) != NIL) {
+            replaceNode = left(toBeDeleted);
+            while (right(replaceNode) != NIL) {
+                replaceNode = right(replaceNode);
+            }
+            child = left(replaceNode);
+        } else {
+            replaceNode = toBeDeleted;
+            child = NIL;
+        }
+        setMapping(toBeDeleted, key(replaceNode), value(replaceNode));
+
+        int parentOfReplaced = parent(replaceNode);
+        replace(replaceNode, child);
+
+        if (!isRed(replaceNode)) {
+            if (isRed(child)) {
+                setColor(child, BLACK);
+            } else {
+                deleteBalance(child, parentOfReplaced);
+            }
+        }
+
+        // chain the record onto the free list
+        setRight(replaceNode, free);
+        free = replaceNode;
+        size--;
+        commit();
+        return returnValue;
+    }
+
+    /**
+     * This method looks up the value associated with the key.
+     *
+     * @pre the tree is open
+     * @post the value mapped to the key is returned, or notFound if the key is
+     *       not in the tree
+     *
+     * @param key
+     *            the key of the value
+     * @param notFound
+     *            the value to return if the key is not in the tree
+     * @return the value indexed by key, or notFound if there is no such
+     *         mapping
+     */
+    public long lookup(long key, long notFound) {
+        int found = descend(key, true);
+        if (found == NIL) {
+            return notFound;
+        }
+        return value(found);
+    }
+
+    /**
+     * Checks if there is a mapping for the key.
+     *
+     * @pre the tree is open
+     * @post the tree is unchanged
+     *
+     * @param key
+     *            the key to look for
+     * @return true if the key is in the tree
+     */
+    public boolean contains(long key) {
+        return descend(key, true) != NIL;
+    }
+
+    /**
+     * Checks that no red node has a red child and that every path has the same
+     * number of black nodes. Unlike an assertion this runs whether or not the
+     * JVM has -ea.
+     *
+     * @pre the tree is open
+     * @post the tree is unchanged
+     *
+     * @return the number of black nodes on any path from the root to a leaf
+     * @throws IllegalStateException
+     *             if a rule is broken, saying which and where
+     */
+    public int verify() {
+        return verifyHelper(root, false, 1);
+    }
+
+    /**
+     * Closes the file. Every update was already durable when it returned.
+     *
+     * @pre true
+     * @post the tree can't be used any more
+     *
+     * @throws IOException
+     *             if the file can't be closed
+     */
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * This method does most of the logic of the verify method. see
+     * {@link #verify()}
+     *
+     * @param node
+     *            the current node
+     * @param wasRed
+     *            if the parent was red
+     * @param depth
+     *            the number of nodes on the path down to node, node included
+     * @return the number of black nodes on any path from node to a leaf
+     * @throws IllegalStateException
+     *             if a rule is broken under node
+     */
+    private int verifyHelper(int node, boolean wasRed, int depth) {
+        if (node == NIL) {
+            return 1;
+        }
+        if (depth > MAX_DEPTH) {
+            throw new IllegalStateException("path deeper than " + MAX_DEPTH
+                    + " at " + key(node));
+        }
+        if (isRed(node) && wasRed) {
+            throw new IllegalStateException("red node with a red parent at "
+                    + key(node));
+        }
+        int leftBlack = verifyHelper(left(node), isRed(node), depth + 1);
+        int rightBlack = verifyHelper(right(node), isRed(node), depth + 1);
+        if (leftBlack != rightBlack) {
+            throw new IllegalStateException("black heights " + leftBlack
+                    + " and " + rightBlack + " differ at " + key(node));
+        }
+        return isRed(node) ? leftBlack : leftBlack + 1;
+    }
+
+    /**
+     * This method is the one descent from the root that lookup, add and delete
+     * all share, see {@link RedBlackTree}
+     *
+     * @param key
+     *            the key to search for
+     * @param stopOnMatch
+     *            if true the descent stops at the first node whose key equals
+     *            key, if false it keeps going down as an add would
+     * @return if stopOnMatch, the first node with a matching key or NIL if
+     *         there is none. Otherwise the node to add onto, or NIL if the
+     *         tree is empty
+     */
+    private int descend(long key, boolean stopOnMatch) {
+        int current = root;
+        int last = NIL;
+
+        while (current != NIL) {
+            long currentKey = key(current);
+            if (stopOnMatch && currentKey == key) {
+                return current;
+            }
+            last = current;
+            if (currentKey < key) {
+                current = right(current);
+            } else {
+                current = left(current);
+            }
+        }
+
+        if (stopOnMatch) {
+            return NIL;
+        }
+        return last;
+    }
+
+    /**
+     * Takes a record for a new red node, from the free list if it has one
+     *
+     * @pre there is a free record or room after top
+     * @post the record holds the mapping and has no children
+     *
+     * @param key
+     *            the key of the node
+     * @param value
+     *            the value of the node
+     * @param parentNode
+     *            the parent of the node
+     * @return the record of the new node
+     */
+    private int allocate(long key, long value, int parentNode) {
+        int record;
+        if (free != NIL) {
+            record = free;
+            free = right(record);
+        } else {
+            record = top++;
+        }
+        setMapping(record, key, value);
+        setLeft(record, NIL);
+        setRight(record, NIL);
+        setParent(record, parentNode);
+        setColor(record, RED);
+        return record;
+    }
+
+    /**
+     * Puts replacement where node is in the tree.
+     *
+     * @pre node is in the tree
+     * @post node's parent now points to replacement
+     *
+     * @param node
+     *            the node to take out
+     * @param replacement
+     *            the node to put in it's place, may be NIL
+     */
+    private void replace(int node, int replacement) {
+        int parentNode = parent(node);
+        if (parentNode == NIL) {
+            root = replacement;
+        } else if (left(parentNode) == node) {
+            setLeft(parentNode, replacement);
+        } else {
+            setRight(parentNode, replacement);
+        }
+        if (replacement != NIL) {
+            setParent(replacement, parentNode);
+        }
+    }
+
+    /**
+     * This internal method will check the 5 cases that might occur when a node
+     * is added and it breaks the 4 RBT rules. see {@link RedBlackTree}
+     *
+     * @pre the only rules that are broken are from the latest add proc.
+     * @post all 4 of the RBT rules are not violated
+     * @param node
+     *            the node to start checking on
+     */
+    private void addBalance(int node) {
+        while (true) {
+            int parentNode = parent(node);
+
+            // case 1 and 2
+            if (parentNode == NIL) {
+                setColor(node, BLACK);
+                return;
+            }
+            if (!isRed(parentNode)) {
+                return;
+            }
+
+            int grandparent = parent(parentNode);
+            boolean parentIsLeft = left(grandparent) == parentNode;
+            int uncle = parentIsLeft ? right(grandparent) : left(grandparent);
+
+            // case 3
+            if (isRed(uncle)) {
+                setColor(uncle, BLACK);
+                setColor(parentNode, BLACK);
+                setColor(grandparent, RED);
+                node = grandparent;
+                continue;
+            }
+
+            // case 4
+            if (parentIsLeft && right(parentNode) == node) {
+                rotateLeft(parentNode);
+                parentNode = node;
+            } else if (!parentIsLeft && left(parentNode) == node) {
+                rotateRight(parentNode);
+                parentNode = node;
+            }
+
+            // case 5
+            if (parentIsLeft) {
+                rotateRight(grandparent);
+            } else {
+                rotateLeft(grandparent);
+            }
+            setColor(grandparent, RED);
+            setColor(parentNode, BLACK);
+            return;
+        }
+    }
+
+    /**
+     * This internal method will check the 6 cases that might occur when a
+     * black node is deleted and it breaks the 4 RBT rules. see
+     * {@link RedBlackTree}
+     *
+     * @pre every path through node has one black node too few
+     * @post all 4 of the RBT rules are not violated
+     * @param node
+     *            the node to start checking on, may be NIL
+     * @param parentNode
+     *            the parent of node
+     */
+    private void deleteBalance(int node, int parentNode) {
+        while (parentNode != NIL) {
+            boolean nodeIsLeft = left(parentNode) == node;
+            int sibling = nodeIsLeft ? right(parentNode) : left(parentNode);
+
+            // case 2
+            if (isRed(sibling)) {
+                setColor(parentNode, RED);
+                setColor(sibling, BLACK);
+                if (nodeIsLeft) {
+                    rotateLeft(parentNode);
+                    sibling = right(parentNode);
+                } else {
+                    rotateRight(parentNode);
+                    sibling = left(parentNode);
+                }
+            }
+
+            // case 3 and 4
+            if (!isRed(left(sibling)) && !isRed(right(sibling))) {
+                setColor(sibling, RED);
+                if (isRed(parentNode)) {
+                    setColor(parentNode, BLACK);
+                    return;
+                }
+                node = parentNode;
+                parentNode = parent(node);
+                continue;
+            }
+
+            // case 5
+            if (nodeIsLeft && !isRed(right(sibling))) {
+                setColor(sibling, RED);
+                setColor(left(sibling), BLACK);
+                rotateRight(sibling);
+                sibling = right(parentNode);
+            } else if (!nodeIsLeft && !isRed(left(sibling))) {
+                setColor(sibling, RED);
+                setColor(right(sibling), BLACK);
+                rotateLeft(sibling);
+                sibling = left(parentNode);
+            }
+
+            // case 6
+            setColor(sibling, isRed(parentNode));
+            setColor(parentNode, BLACK);
+            if (nodeIsLeft) {
+                setColor(right(sibling), BLACK);
+                rotateLeft(parentNode);
+            } else {
+                setColor(left(sibling), BLACK);
+                rotateRight(parentNode);
+            }
+            return;
+        }
+    }
+
+    /**
+     * Performs a left rotation on the node
+     *
+     * @pre the node has a right child
+     * @post a left rotation is performed
+     * @param node
+     *            the node to rotate on
+     */
+    private void rotateLeft(int node) {
+        int pivot = right(node);
+        int inner = left(pivot);
+        setRight(node, inner);
+        if (inner != NIL) {
+            setParent(inner, node);
+        }
+        replace(node, pivot);
+        setLeft(pivot, node);
+        setParent(node, pivot);
+    }
+
+    /**
+     * Performs a right rotation on the node
+     *
+     * @pre the node has a left child
+     * @post a right rotation is performed
+     * @param node
+     *            the node to rotate on
+     */
+    private void rotateRight(int node) {
+        int pivot = left(node);
+        int inner = right(pivot);
+        setLeft(node, inner);
+        if (inner != NIL) {
+            setParent(inner, node);
+        }
+        replace(node, pivot);
+        setRight(pivot, node);
+        setParent(node, pivot);
+    }
+
+    /**
+     * Writes a new empty tree to the file
+     *
+     * @throws IOException
+     *             if the file can't be written
+     */
+    private void create() throws IOException {
+        capacity = INITIAL_RECORDS;
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileLength(capacity));
+        map.putLong(0, MAGIC);
+        map.putInt(8, RECORD_SIZE);
+        sequence = 0;
+        root = NIL;
+        top = 1;
+        free = NIL;
+        size = 0;
+        writeCommitRecord(0);
+        map.force();
+    }
+
+    /**
+     * Reads the tree from the file and finishes the last committed update
+     *
+     * @throws IOException
+     *             if the file can't be read or is not a tree file
+     */
+    private void recover() throws IOException {
+        long length = channel.size();
+        if (length < DATA_OFFSET + RECORD_SIZE) {
+            throw new IOException("not a red black tree file");
+        }
+        capacity = (int) Math.min((length - DATA_OFFSET) / RECORD_SIZE,
+                Integer.MAX_VALUE);
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileLength(capacity));
+        if (map.getLong(0) != MAGIC || map.getInt(8) != RECORD_SIZE) {
+            throw new IOException("not a red black tree file");
+        }
+
+        // use the newest commit record that is whole
+        int newest = -1;
+        for (int slot = 0; slot < 2; slot++) {
+            int offset = COMMIT_OFFSET + slot * COMMIT_STRIDE;
+            if (checksum(slot) == map.getLong(offset + CHECKSUM)
+                    && (newest == -1 || map.getLong(offset + SEQUENCE) > map
+                            .getLong(COMMIT_OFFSET + newest * COMMIT_STRIDE
+                                    + SEQUENCE))) {
+                newest = slot;
+            }
+        }
+        if (newest == -1) {
+            throw new IOException("both commit records are damaged");
+        }
+
+        int offset = COMMIT_OFFSET + newest * COMMIT_STRIDE;
+        sequence = map.getLong(offset + SEQUENCE);
+        root = map.getInt(offset + ROOT);
+        top = map.getInt(offset + TOP);
+        free = map.getInt(offset + FREE);
+        size = map.getLong(offset + SIZE);
+        if (top > capacity) {
+            throw new IOException("the file is shorter than the tree");
+        }
+
+        // writing the journal again is harmless if it was already written
+        int journal = JOURNAL_OFFSET + newest * JOURNAL_STRIDE;
+        int count = map.getInt(offset + JOURNAL_COUNT);
+        for (int i = 0; i < count; i++) {
+            int entry = journal + i * JOURNAL_ENTRY;
+            int record = map.getInt(entry);
+            for (int b = 0; b < RECORD_SIZE; b++) {
+                map.put(offset(record) + b, map.get(entry + 8 + b));
+            }
+        }
+        map.force();
+    }
+
+    /**
+     * Makes the staged records durable and then writes them to their places.
+     * This is the end of every add and delete.
+     */
+    private void commit() {
+        sequence++;
+        int slot = (int) (sequence & 1);
+
+        // the journal
+        int journal = JOURNAL_OFFSET + slot * JOURNAL_STRIDE;
+        for (int i = 0; i < stagedCount; i++) {
+            int entry = journal + i * JOURNAL_ENTRY;
+            map.putInt(entry, stagedRecords[i]);
+            map.putInt(entry + 4, 0);
+            copyStaged(i, entry + 8);
+        }
+        map.force();
+
+        // the commit record, once it is on disk the update has happened
+        writeCommitRecord(stagedCount);
+        map.force();
+
+        // the records themselves, forced along with the next journal
+        for (int i = 0; i < stagedCount; i++) {
+            copyStaged(i, offset(stagedRecords[i]));
+        }
+        Arrays.fill(stagedTable, 0);
+        stagedCount = 0;
+    }
+
+    /**
+     * Writes the commit record for the current sequence number
+     *
+     * @param journalCount
+     *            the number of entries in the journal of this commit
+     */
+    private void writeCommitRecord(int journalCount) {
+        int slot = (int) (sequence & 1);
+        int offset = COMMIT_OFFSET + slot * COMMIT_STRIDE;
+        map.putLong(offset + SEQUENCE, sequence);
+        map.putInt(offset + ROOT, root);
+        map.putInt(offset + TOP, top);
+        map.putInt(offset + FREE, free);
+        map.putInt(offset + JOURNAL_COUNT, journalCount);
+        map.putLong(offset + SIZE, size);
+        map.putLong(offset + CHECKSUM, checksum(slot));
+    }
+
+    /**
+     * Computes the checksum of a commit record and the journal it names
+     *
+     * @param slot
+     *            which of the two commit records
+     * @return the checksum
+     */
+    private long checksum(int slot) {
+        int offset = COMMIT_OFFSET + slot * COMMIT_STRIDE;
+        int count = map.getInt(offset + JOURNAL_COUNT);
+        if (count < 0 || count > JOURNAL_CAPACITY) {
+            return ~map.getLong(offset + CHECKSUM);
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer view = map.duplicate();
+        view.limit(offset + COMMIT_BYTES).position(offset);
+        crc.update(view);
+        int journal = JOURNAL_OFFSET + slot * JOURNAL_STRIDE;
+        view.limit(journal + count * JOURNAL_ENTRY).position(journal);
+        crc.update(view);
+        return crc.getValue();
+    }
+
+    /**
+     * Makes the file twice as long
+     *
+     * @throws IOException
+     *             if the file can't grow
+     */
+    private void grow() throws IOException {
+        if (capacity >= (Integer.MAX_VALUE - DATA_OFFSET) / RECORD_SIZE / 2) {
+            throw new IllegalStateException("the tree file is full");
+        }
+        capacity *= 2;
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileLength(capacity));
+    }
+
+    /**
+     * The length of a file with room for the given number of records
+     *
+     * @param records
+     *            the number of records
+     * @return the length in bytes
+     */
+    private static long fileLength(int records) {
+        return DATA_OFFSET + (long) records * RECORD_SIZE;
+    }
+
+    /**
+     * Where a record is in the file
+     *
+     * @param record
+     *            the record number
+     * @return the offset of the record
+     */
+    private static int offset(int record) {
+        return DATA_OFFSET + record * RECORD_SIZE;
+    }
+
+    /**
+     * Copies a staged record into the mapped file
+     *
+     * @param slot
+     *            the staged slot
+     * @param to
+     *            where in the file to copy it
+     */
+    private void copyStaged(int slot, int to) {
+        int from = slot * RECORD_SIZE;
+        for (int b = 0; b < RECORD_SIZE; b += 8) {
+            map.putLong(to + b, staged.getLong(from + b));
+        }
+    }
+
+    /**
+     * Finds the place of a record in the staged table
+     *
+     * @param record
+     *            the record number
+     * @return the index in the table where the record is or would go
+     */
+    private int find(int record) {
+        int mask = stagedTable.length - 1;
+        int index = (record * 0x9E3779B9) >>> 20 & mask;
+        while (stagedTable[index] != 0
+                && stagedRecords[stagedTable[index] - 1] != record) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    /**
+     * Gets where a record is read from, the staged copy if the update in
+     * progress has changed it, otherwise the mapped file
+     *
+     * @param record
+     *            the record number
+     * @return the offset of the record in the file, or for a staged record
+     *         minus one more than it's staged slot
+     */
+    private int read(int record) {
+        if (stagedCount != 0) {
+            int slot = stagedTable[find(record)];
+            if (slot != 0) {
+                return -slot;
+            }
+        }
+        return offset(record);
+    }
+
+    /**
+     * Gets the staged offset of a record, staging it first if this is the
+     * first change to it in the update in progress
+     *
+     * @param record
+     *            the record number
+     * @return the offset of the staged copy
+     */
+    private int write(int record) {
+        int index = find(record);
+        int slot = stagedTable[index];
+        if (slot == 0) {
+            if (stagedCount == JOURNAL_CAPACITY) {
+                throw new IllegalStateException("update changes too many records");
+            }
+            slot = ++stagedCount;
+            stagedRecords[slot - 1] = record;
+            stagedTable[index] = slot;
+            int from = offset(record);
+            int to = (slot - 1) * RECORD_SIZE;
+            for (int b = 0; b < RECORD_SIZE; b += 8) {
+                staged.putLong(to + b, map.getLong(from + b));
+            }
+        }
+        return (slot - 1) * RECORD_SIZE;
+    }
+
+    /**
+     * Gets the key of a node
+     *
+     * @param node
+     *            the node
+     * @return the key
+     */
+    private long key(int node) {
+        int at = read(node);
+        return at < 0 ? staged.getLong((-at - 1) * RECORD_SIZE + KEY) : map
+                .getLong(at + KEY);
+    }
+
+    /**
+     * Gets the value of a node
+     *
+     * @param node
+     *            the node
+     * @return the value
+     */
+    private long value(int node) {
+        int at = read(node);
+        return at < 0 ? staged.getLong((-at - 1) * RECORD_SIZE + VALUE) : map
+                .getLong(at + VALUE);
+    }
+
+    /**
+     * Gets the left child of a node
+     *
+     * @param node
+     *            the node
+     * @return the left child
+     */
+    private int left(int node) {
+        int at = read(node);
+        return at < 0 ? staged.getInt((-at - 1) * RECORD_SIZE + LEFT) : map
+                .getInt(at + LEFT);
+    }
+
+    /**
+     * Gets the right child of a node
+     *
+     * @param node
+     *            the node
+     * @return the right child
+     */
+    private int right(int node) {
+        int at = read(node);
+        return at < 0 ? staged.getInt((-at - 1) * RECORD_SIZE + RIGHT) : map
+                .getInt(at + RIGHT);
+    }
+
+    /**
+     * Gets the parent of a node
+     *
+     * @param node
+     *            the node
+     * @return the parent
+     */
+    private int parent(int node) {
+        int at = read(node);
+        return at < 0 ? staged.getInt((-at - 1) * RECORD_SIZE + PARENT) : map
+                .getInt(at + PARENT);
+    }
+
+    /**
+     * Checks what the color of a node is
+     *
+     * @param node
+     *            the node
+     * @return true if the node is red
+     */
+    private boolean isRed(int node) {
+        int at = read(node);
+        return (at < 0 ? staged.get((-at - 1) * RECORD_SIZE + COLOR) : map
+                .get(at + COLOR)) != 0;
+    }
+
+    /**
+     * Sets the key and value of a node in the update in progress
+     *
+     * @param node
+     *            the node
+     * @param key
+     *            the key to set
+     * @param value
+     *            the value to set
+     */
+    private void setMapping(int node, long key, long value) {
+        int at = write(node);
+        staged.putLong(at + KEY, key);
+        staged.putLong(at + VALUE, value);
+    }
+
+    /**
+     * Sets the left child of a node in the update in progress
+     *
+     * @param node
+     *            the node
+     * @param child
+     *            the left child to set
+     */
+    private void setLeft(int node, int child) {
+        staged.putInt(write(node) + LEFT, child);
+    }
+
+    /**
+     * Sets the right child of a node in the update in progress
+     *
+     * @param node
+     *            the node
+     * @param child
+     *            the right child to set
+     */
+    private void setRight(int node, int child) {
+        staged.putInt(write(node) + RIGHT, child);
+    }
+
+    /**
+     * Sets the parent of a node in the update in progress
+     *
+     * @param node
+     *            the node
+     * @param parentNode
+     *            the parent to set
+     */
+    private void setParent(int node, int parentNode) {
+        staged.putInt(write(node) + PARENT, parentNode);
+    }
+
+    /**
+     * Sets the color of a node in the update in progress
+     *
+     * @param node
+     *            the node
+     * @param red
+     *            the color (true for red) to set
+     */
+    private void setColor(int node, boolean red) {
+        // the nil leaf is always black
+        if (node != NIL) {
+            staged.put(write(node) + COLOR, (byte) (red ? 1 : 0));
+        }
+    }
+}
@@ -0,0 +1,640 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * This class is a Red Black Tree that never changes. Adding or deleting makes
+ * a new tree that copies only the nodes on the path from the root to the key
+ * and shares every other node with the old tree, so each change allocates
+ * O(log n) nodes and the old tree stays just as it was.
+ *
+ * Because of that a tree is its own snapshot. A reader that keeps a reference
+ * sees that version for as long as it likes, with no lock, while writers go on
+ * making newer versions. To share the latest version between threads keep it
+ * in a volatile field or an AtomicReference.
+ *
+ * @author Satshabad
+ *
+ * @param <K>
+ *            the keys that map to the values
+ * @param <V>
+ *            the values that the nodes hold.
+ */
+public final class PersistentRedBlackTree<K extends Comparable<K>, V>
+        implements Iterable<Map.Entry<K, V>> {
+
+    /**
+     * No path in a red black tree of int size is longer than this
+     */
+    private static final int MAX_DEPTH = 64;
+
+    /**
+     * The root of this version, null if the tree is empty
+     */
+    private final Entry<K, V> root;
+
+    /**
+     * The number of mappings in this version
+     */
+    private final int size;
+
+    /**
+     * Initializes an empty tree
+     *
+     * @pre true
+     * @post an empty tree is made
+     */
+    public PersistentRedBlackTree() {
+        this(null, 0);
+    }
+
+    /**
+     * Initializes a version of the tree
+     *
+     * @param root
+     *            the root of the version, may be null
+     * @param size
+     *            the number of mappings under root
+     */
+    private PersistentRedBlackTree(Entry<K, V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Makes a version of this tree with the mapping added. If the key is
+     * already in the tree its value is replaced.
+     *
+     * @pre true
+     * @post this tree is unchanged
+     *
+     * @param key
+     *            the key that will map to the value for look up
+     * @param value
+     *            the object to be stored
+     * @return the new version, or this tree if the key or value is null or the
+     *         key already maps to that very value
+     */
+    public PersistentRedBlackTree<K, V> add(K key, V value) {
+        if (key == null || value == null) {
+            return this;
+        }
+        Entry<K, V> found = find(key);
+        if (found != null && found.value == value) {
+            return this;
+        }
+        Entry<K, V> newRoot = blacken(insert(root, key, value));
+        return new PersistentRedBlackTree<K, V>(newRoot, found == null ? size + 1
+                : size);
+    }
+
+    /**
+     * Makes a version of this tree without the mapping of the key.
+     *
+     * @pre true
+     * @post this tree is unchanged
+     *
+     * @param key
+     *            the key to be deleted
+     * @return the new version, or this tree if the key is not in it
+     */
+    public PersistentRedBlackTree<K, V> delete(K key) {
+        if (key == null || find(key) == null) {
+            return this;
+        }
+        Entry<K, V> newRoot = blacken(remove(root, key));
+        return new PersistentRedBlackTree<K, V>(newRoot, size - 1);
+    }
+
+    /**
+     * This method looks up the value associated with the key.
+     *
+     * @pre true
+     * @post the value mapped to the key is returned, or null if the key is not
+     *       in the tree
+     *
+     * @param key
+     *            the key of the value
+     * @return the value indexed by key, or null if there is no such mapping
+     */
+    public V lookup(K key) {
+        if (key == null) {
+            return null;
+        }
+        Entry<K, V> found = find(key);
+        if (found == null) {
+            return null;
+        }
+        return found.value;
+    }
+
+    /**
+     * Gets the number of mappings in this version
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @return the number of mappings
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the mappings of this version in order of their keys. Later versions
+     * do not change what the iterator sees.
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @return an iterator over the mappings from the lowest key up, which does
+     *         not support remove
+     */
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new InOrder<K, V>(root);
+    }
+
+    /**
+     * Checks that no red node has a red child, that every path has the same
+     * number of black nodes and that the keys are in order. Unlike an
+     * assertion this runs whether or not the JVM has -ea.
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @return the number of black nodes on any path from the root to a leaf
+     * @throws IllegalStateException
+     *             if a rule is broken, saying which and where
+     */
+    public int verify() {
+        return verifyHelper(root, false, 1);
+    }
+
+    /**
+     * This method does most of the logic of the verify method. see
+     * {@link #verify()}
+     *
+     * @param node
+     *            the current node
+     * @param wasRed
+     *            if the parent was red
+     * @param depth
+     *            the number of nodes on the path down to node, node included
+     * @return the number of black nodes on any path from node to a leaf
+     * @throws IllegalStateException
+     *             if a rule is broken under node
+     */
+    private int verifyHelper(Entry<K, V> node, boolean wasRed, int depth) {
+        if (node == null) {
+            return 1;
+        }
+        if (depth > MAX_DEPTH) {
+            throw new IllegalStateException("path deeper than " + MAX_DEPTH
+                    + " at " + node.key);
+        }
+        if (node.red && wasRed) {
+            throw new IllegalStateException("red node with a red parent at "
+                    + node.key);
+        }
+        if ((node.left != null && node.left.key.compareTo(node.key) >= 0)
+                || (node.right != null
+                        && node.right.key.compareTo(node.key) <= 0)) {
+            throw new IllegalStateException("keys out of order at " + node.key);
+        }
+        int left = verifyHelper(node.left, node.red, depth + 1);
+        int right = verifyHelper(node.right, node.red, depth + 1);
+        if (left != right) {
+            throw new IllegalStateException("black heights " + left
+                    + " and " + right + " differ at " + node.key);
+        }
+        return node.red ? left : left + 1;
+    }
+
+    /**
+     * Finds the node of a key
+     *
+     * @param key
+     *            the key to look for
+     * @return the node with that key or null if there is none
+     */
+    private Entry<K, V> find(K key) {
+        Entry<K, V> current = root;
+        while (current != null) {
+            int comparison = key.compareTo(current.key);
+            if (comparison == 0) {
+                return current;
+            }
+            current = comparison < 0 ? current.left : current.right;
+        }
+        return null;
+    }
+
+    /**
+     * Copies the path down to where the key goes and puts the mapping there,
+     * fixing any red node with a red child on the way back up.
+     *
+     * @param node
+     *            the subtree to add to, may be null
+     * @param key
+     *            the key to add
+     * @param value
+     *            the value to add
+     * @return the new subtree, its root may be red
+     */
+    private static <K extends Comparable<K>, V> Entry<K, V> insert(
+            Entry<K, V> node, K key, V value) {
+        if (node == null) {
+            return new Entry<K, V>(true, key, value, null, null);
+        }
+        int comparison = key.compareTo(node.key);
+        if (comparison < 0) {
+            return balanceLeft(node.red, node.key, node.value,
+                    insert(node.left, key, value), node.right);
+        }
+        if (comparison > 0) {
+            return balanceRight(node.red, node.key, node.value, node.left,
+                    insert(node.right, key, value));
+        }
+        return new Entry<K, V>(node.red, key, value, node.left, node.right);
+    }
+
+    /**
+     * Makes a node whose new left subtree may be a red node with a red child.
+     * If it is, the three nodes are rebuilt as a red node with two black
+     * children.
+     *
+     * @return the new subtree
+     */
+    private static <K extends Comparable<K>, V> Entry<K, V> balanceLeft(
+            boolean red, K key, V value, Entry<K, V> left, Entry<K, V> right) {
+        if (!red && isRed(left)) {
+            if (isRed(left.left)) {
+                return new Entry<K, V>(true, left.key, left.value,
+                        blacken(left.left), new Entry<K, V>(false, key, value,
+                                left.right, right));
+            }
+            if (isRed(left.right)) {
+                Entry<K, V> middle = left.right;
+                return new Entry<K, V>(true, middle.key, middle.value,
+                        new Entry<K, V>(false, left.key, left.value, left.left,
+                                middle.left), new Entry<K, V>(false, key,
+                                value, middle.right, right));
+            }
+        }
+        return new Entry<K, V>(red, key, value, left, right);
+    }
+
+    /**
+     * Makes a node whose new right subtree may be a red node with a red child.
+     * see {@link #balanceLeft(boolean, Comparable, Object, Entry, Entry)}
+     *
+     * @return the new subtree
+     */
+    private static <K extends Comparable<K>, V> Entry<K, V> balanceRight(
+            boolean red, K key, V value, Entry<K, V> left, Entry<K, V> right) {
+        if (!red && isRed(right)) {
+            if (isRed(right.right)) {
+                return new Entry<K, V>(true, right.key, right.value,
+                        new Entry<K, V>(false, key, value, left, right.left),
+                        blacken(right.right));
+            }
+            if (isRed(right.left)) {
+                Entry<K, V> middle = right.left;
+                return new Entry<K, V>(true, middle.key, middle.value,
+                        new Entry<K, V>(false, key, value, left, middle.left),
+                        new Entry<K, V>(false, right.key, right.value,
+                                middle.right, right.right));
+            }
+        }
+        return new Entry<K, V>(red, key, value, left, right);
+    }
+
+    /**
+     * Copies the path down to the key and leaves it out. A subtree that was
+     * black comes back with one black node too few on every path, and the
+     * caller makes up for it.
+     *
+     * @pre the key is in the subtree
+     *
+     * @param node
+     *            the subtree to delete from
+     * @param key
+     *            the key to delete
+     * @return the new subtree
+     */
+    private static <K extends Comparable<K>, V> Entry<K, V> remove(
+            Entry<K, V> node, K key) {
+        int comparison = key.compareTo(node.key);
+        if (comparison < 0) {
+            if (isBlack(node.left)) {
+                return balanceShortLeft(node.key, node.value,
+                        remove(node.left, key), node.right);
+            }
+            return new Entry<K, V>(true, node.key, node.value, remove(
+                    node.left, key), node.right);
+        }
+        if (comparison > 0) {
+            if (isBlack(node.right)) {
+                return balanceShortRight(node.key, node.value, node.left,
+                        remove(node.right, key));
+            }
+            return new Entry<K, V>(true, node.key, node.value, node.left,
+                    remove(node.right, key));
+        }
+        return fuse(node.left, node.right);
+    }
+
+    /**
+     * Makes a node whose left subtree is one black node short.
+     *
+     * @return the new subtree, as high as it was before the delete if the node
+     *         was red
+     */
+    private static <K extends Comparable<K>, V> Entry<K, V> balanceShortLeft(
+            K key, V value, Entry<K, V> left, Entry<K, V> right) {
+        if (isRed(left)) {
+            return new Entry<K, V>(true, key, value, blacken(left), right);
+        }
+        if (isBlack(right)) {
+            return balance(key, value, left, redden(right));
+        }
+        // the right is red with a black left child
+        Entry<K, V> middle = right.left;
+        return new Entry<K, V>(true, middle.key, middle.value,
+                new Entry<K, V>(false, key, value, left, middle.left),
+                balance(right.key, right.value, middle.right,
+                        redden(right.right)));
+    }
+
+    /**
+     * Makes a node whose right subtree is one black node short. see
+     * {@link #balanceShortLeft(Comparable, Object, Entry, Entry)}
+     *
+     * @return the new subtree
+     */
+    private static <K extends Comparable<K>, V> Entry<K, V> balanceShortRight(
+            K key, V value, Entry<K, V> left, Entry<K, V> right) {
+        if (isRed(right)) {
+            return new Entry<K, V>(true, key, value, left, blacken(right));
+        }
+        if (isBlack(left)) {
+            return balance(key, value, redden(left), right);
+        }
+        // the left is red with a black right child
+        Entry<K, V> middle = left.right;
+        return new Entry<K, V>(true, middle.key, middle.value, balance(
+                left.key, left.value, redden(left.left), middle.left),
+                new Entry<K, V>(false, key, value, middle.right, right));
+    }
+
+    /**
+     * Makes a black node over two subtrees of equal black height, either of
+     * which may be a red node with a red child.
+     *
+     * @return the new subtree
+     */
+    private static <K extends Comparable<K>, V> Entry<K, V> balance(K key,
+            V value, Entry<K, V> left, Entry<K, V> right) {
+        if (isRed(left)) {
+            if (isRed(right)) {
+                return new Entry<K, V>(true, key, value, blacken(left),
+                        blacken(right));
+            }
+            if (isRed(left.left)) {
+                return new Entry<K, V>(true, left.key, left.value,
+                        blacken(left.left), new Entry<K, V>(false, key, value,
+                                left.right, right));
+            }
+            if (isRed(left.right)) {
+                Entry<K, V> middle = left.right;
+                return new Entry<K, V>(true, middle.key, middle.value,
+                        new Entry<K, V>(false, left.key, left.value, left.left,
+                                middle.left), new Entry<K, V>(false, key,
+                                value, middle.right, right));
+            }
+        } else if (isRed(right)) {
+            if (isRed(right.right)) {
+                return new Entry<K, V>(true, right.key, right.value,
+                        new Entry<K, V>(false, key, value, left, right.left),
+                        blacken(right.right));
+            }
+            if (isRed(right.left)) {
+                Entry<K, V> middle = right.left;
+                return new Entry<K, V>(true, middle.key, middle.value,
+                        new Entry<K, V>(false, key, value, left, middle.left),
+                        new Entry<K, V>(false, right.key, right.value,
+                                middle.right, right.right));
+            }
+        }
+        return new Entry<K, V>(false, key, value, left, right);
+    }
+
+    /**
+     * Joins the two subtrees of a deleted node into one. Every key of left is
+     * less than every key of right and they have the same black height.
+     *
+     * @return the joined subtree
+     */
+    private static <K extends Comparable<K>, V> Entry<K, V> fuse(
+            Entry<K, V> left, Entry<K, V> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.red && right.red) {
+            Entry<K, V> inner = fuse(left.right, right.left);
+            if (isRed(inner)) {
+                return new Entry<K, V>(true, inner.key, inner.value,
+                        new Entry<K, V>(true, left.key, left.value, left.left,
+                                inner.left), new Entry<K, V>(true, right.key,
+                                right.value, inner.right, right.right));
+            }
+            return new Entry<K, V>(true, left.key, left.value, left.left,
+                    new Entry<K, V>(true, right.key, right.value, inner,
+                            right.right));
+        }
+        if (!left.red && !right.red) {
+            Entry<K, V> inner = fuse(left.right, right.left);
+            if (isRed(inner)) {
+                return new Entry<K, V>(true, inner.key, inner.value,
+                        new Entry<K, V>(false, left.key, left.value, left.left,
+                                inner.left), new Entry<K, V>(false, right.key,
+                                right.value, inner.right, right.right));
+            }
+            return balanceShortLeft(left.key, left.value, left.left,
+                    new Entry<K, V>(false, right.key, right.value, inner,
+                            right.right));
+        }
+        if (right.red) {
+            return new Entry<K, V>(true, right.key, right.value, fuse(left,
+                    right.left), right.right);
+        }
+        return new Entry<K, V>(true, left.key, left.value, left.left, fuse(
+                left.right, right));
+    }
+
+    /**
+     * @return whether the node is a red node, the leaves are black
+     */
+    private static boolean isRed(Entry<?, ?> node) {
+        return node != null && node.red;
+    }
+
+    /**
+     * @return whether the node is a black node that is not a leaf
+     */
+    private static boolean isBlack(Entry<?, ?> node) {
+        return node != null && !node.red;
+    }
+
+    /**
+     * @return the node if it is black or a leaf, otherwise a black copy of it
+     */
+    private static <K, V> Entry<K, V> blacken(Entry<K, V> node) {
+        if (node == null || !node.red) {
+            return node;
+        }
+        return new Entry<K, V>(false, node.key, node.value, node.left,
+                node.right);
+    }
+
+    /**
+     * @pre node is not null
+     * @return the node if it is red, otherwise a red copy of it
+     */
+    private static <K, V> Entry<K, V> redden(Entry<K, V> node) {
+        if (node.red) {
+            return node;
+        }
+        return new Entry<K, V>(true, node.key, node.value, node.left,
+                node.right);
+    }
+
+    /**
+     * A node of the tree. Nothing in it changes once it is made, so any
+     * number of versions can share it.
+     *
+     * @param <K>
+     *            the type of key held by the node
+     * @param <V>
+     *            the type of value held by the node
+     */
+    private static final class Entry<K, V> implements Map.Entry<K, V> {
+
+        /**
+         * The color value of this node, if true, red, if false, black
+         */
+        final boolean red;
+        /**
+         * The key associated with the value held by this node
+         */
+        final K key;
+        /**
+         * The value held by this node
+         */
+        final V value;
+        /**
+         * The left child of this node, null for a leaf
+         */
+        final Entry<K, V> left;
+        /**
+         * The right child of this node, null for a leaf
+         */
+        final Entry<K, V> right;
+
+        /**
+         * Initializes this node with the given attributes
+         */
+        Entry(boolean red, K key, V value, Entry<K, V> left, Entry<K, V> right) {
+            this.red = red;
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        /**
+         * The tree never changes, so neither does a mapping
+         *
+         * @throws UnsupportedOperationException
+         *             always
+         */
+        public V setValue(V value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Walks one version of the tree in order. There are no parent links to
+     * climb, so the nodes still to go back up to are kept on a stack.
+     *
+     * @param <K>
+     *            the type of key held by the nodes
+     * @param <V>
+     *            the type of value held by the nodes
+     */
+    private static final class InOrder<K, V> implements
+            Iterator<Map.Entry<K, V>> {
+
+        /**
+         * The nodes whose left subtree is being walked, the last is on top
+         */
+        @SuppressWarnings("unchecked")
+        private final Entry<K, V>[] stack = (Entry<K, V>[])
+                new Entry<?, ?>[MAX_DEPTH];
+
+        /**
+         * The number of nodes on the stack
+         */
+        private int depth;
+
+        /**
+         * Starts at the lowest key under root
+         *
+         * @param root
+         *            the root of the version to walk, may be null
+         */
+        InOrder(Entry<K, V> root) {
+            pushLeft(root);
+        }
+
+        /**
+         * Pushes node and every left child under it
+         */
+        private void pushLeft(Entry<K, V> node) {
+            while (node != null) {
+                stack[depth++] = node;
+                node = node.left;
+            }
+        }
+
+        public boolean hasNext() {
+            return depth > 0;
+        }
+
+        public Map.Entry<K, V> next() {
+            if (depth == 0) {
+                throw new NoSuchElementException();
+            }
+            Entry<K, V> node = stack[--depth];
+            pushLeft(node.right);
+            return node;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package edu.csupomona.cs.cs241.proj4;
+
+/**
+ * The kinds of things a {@link RedBlackTree} does to itself while it
+ * rebalances after an add or a delete.
+ * 
+ * @author Satshabad
+ */
+public enum RebalanceEvent {
+
+    /**
+     * The added node is the root, it is colored black
+     */
+    INSERT_CASE_1,
+    /**
+     * The parent of the added node is black, nothing to do
+     */
+    INSERT_CASE_2,
+    /**
+     * The parent and uncle are red, they are colored black and the
+     * grandparent red, then the grandparent is checked
+     */
+    INSERT_CASE_3,
+    /**
+     * The node is an inner grandchild, the parent is rotated to make it an
+     * outer one
+     */
+    INSERT_CASE_4,
+    /**
+     * The node is an outer grandchild, the grandparent is rotated
+     */
+    INSERT_CASE_5,
+    /**
+     * The child of the removed black node was red, it is colored black
+     */
+    DELETE_CASE_0,
+    /**
+     * The node is the root, nothing to do
+     */
+    DELETE_CASE_1,
+    /**
+     * The sibling is red, the parent is rotated so the sibling is black
+     */
+    DELETE_CASE_2,
+    /**
+     * The sibling, it's children and the parent are black, the sibling is
+     * colored red and the parent is checked
+     */
+    DELETE_CASE_3,
+    /**
+     * The sibling and it's children are black but the parent is red, the two
+     * swap colors
+     */
+    DELETE_CASE_4,
+    /**
+     * The sibling is black and only it's inner child is red, the sibling is
+     * rotated to make the red child an outer one
+     */
+    DELETE_CASE_5,
+    /**
+     * The sibling is black and it's outer child is red, the parent is rotated
+     */
+    DELETE_CASE_6,
+    /**
+     * A left rotation was performed on the node
+     */
+    ROTATE_LEFT,
+    /**
+     * A right rotation was performed on the node
+     */
+    ROTATE_RIGHT,
+    /**
+     * The node was given a new color
+     */
+    RECOLOR
+}
@@ -0,0 +1,33 @@
+package edu.csupomona.cs.cs241.proj4;
+
+/**
+ * Something that wants to be told every time a {@link RedBlackTree}
+ * rebalances itself. The tree only calls the listener if one is installed, so
+ * a tree without one does no extra work.
+ * 
+ * @author Satshabad
+ * 
+ * @param <K>
+ *            the type of key held by the tree
+ * @param <V>
+ *            the type of value held by the tree
+ */
+public interface RebalanceListener<K extends Comparable<K>, V> {
+
+    /**
+     * Called as the tree does each step of a rebalance.
+     * 
+     * @pre true
+     * @post the event has been handled, the tree must not be changed
+     * 
+     * @param event
+     *            what the tree is doing
+     * @param node
+     *            the node the tree is doing it to. For a case this is the
+     *            node being checked, for a rotation the node rotated on and
+     *            for a recolor the node that now has the new color. A delete
+     *            of a node with no children checks the nil leaf left in its
+     *            place, whose key is null
+     */
+    void onRebalance(RebalanceEvent event, Node<K, V> node);
+}
@@ -0,0 +1,51 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import java.io.PrintStream;
+
+/**
+ * A {@link RebalanceListener} that writes one line for every event to a
+ * stream. This replaces the console output delete used to always print.
+ * 
+ * @author Satshabad
+ * 
+ * @param <K>
+ *            the type of key held by the tree
+ * @param <V>
+ *            the type of value held by the tree
+ */
+public class RebalanceTracer<K extends Comparable<K>, V> implements
+        RebalanceListener<K, V> {
+
+    /**
+     * Where the events are written
+     */
+    private final PrintStream out;
+
+    /**
+     * Creates a tracer that writes to the given stream
+     * 
+     * @pre out is not null
+     * @post the tracer is made
+     * 
+     * @param out
+     *            the stream to write the events to
+     */
+    public RebalanceTracer(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes the event and the key of the node it happened to.
+     * 
+     * @pre true
+     * @post a line is written to the stream
+     */
+    public void onRebalance(RebalanceEvent event, Node<K, V> node) {
+        if (event == RebalanceEvent.RECOLOR) {
+            out.println(event + " " + node.getKey()
+                    + (node.isRed() ? " Red" : " Black"));
+        } else {
+            out.println(event + " " + node.getKey());
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class is a Red Black Tree in which a key can map to many values. Each
+ * key has one node, holding all its values in an array, so a key that is
+ * added a hundred times costs one node and not a hundred, and the tree is only
+ * as tall as the number of distinct keys makes it.
+ *
+ * @author Satshabad
+ *
+ * @param <K>
+ *            the keys that map to the values
+ * @param <V>
+ *            the values that the nodes hold.
+ */
+public class RedBlackMultimap<K extends Comparable<K>, V> {
+
+    /**
+     * The tree that holds the values of each key, one node per key
+     */
+    private final RedBlackTree<K, Bucket<V>> tree;
+
+    /**
+     * The number of values of all the keys
+     */
+    private int size;
+
+    /**
+     * Initializes an empty multimap
+     *
+     * @pre true
+     * @post an empty multimap is made
+     */
+    public RedBlackMultimap() {
+        tree = new RedBlackTree<K, Bucket<V>>(KeyMode.MAP);
+        size = 0;
+    }
+
+    /**
+     * Adds a value to the ones the key maps to, in one descent of the tree.
+     *
+     * @pre true
+     * @post the value is the last of the values of the key
+     *
+     * @param key
+     *            the key that will map to the value for look up
+     * @param value
+     *            the object to be stored
+     * @return whether the mapping was made or not
+     */
+    public boolean add(K key, V value) {
+        if (key == null || value == null) {
+            return false;
+        }
+        Node<K, Bucket<V>> node = tree.findOrAdd(key);
+        if (node.getValue() == null) {
+            node.setMapping(key, new Bucket<V>(value));
+        } else {
+            node.getValue().add(value);
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Looks up the values of a key
+     *
+     * @pre true
+     * @post the multimap is unchanged
+     *
+     * @param key
+     *            the key of the values
+     * @return the values of the key in the order they were added, or null if
+     *         the key is not in the multimap
+     */
+    public List<V> lookup(K key) {
+        Bucket<V> bucket = tree.lookup(key);
+        if (bucket == null) {
+            return null;
+        }
+        return bucket.values();
+    }
+
+    /**
+     * Counts the values of a key
+     *
+     * @pre true
+     * @post the multimap is unchanged
+     *
+     * @param key
+     *            the key of the values
+     * @return the number of values of the key, 0 if it is not in the multimap
+     */
+    public int count(K key) {
+        Bucket<V> bucket = tree.lookup(key);
+        if (bucket == null) {
+            return 0;
+        }
+        return bucket.count;
+    }
+
+    /**
+     * Deletes a key and all its values
+     *
+     * @pre true
+     * @post the key is not in the multimap
+     *
+     * @param key
+     *            the key to delete
+     * @return the values the key had in the order they were added, or null if
+     *         the key was not in the multimap
+     */
+    public List<V> delete(K key) {
+        Bucket<V> bucket = tree.delete(key);
+        if (bucket == null) {
+            return null;
+        }
+        size -= bucket.count;
+        return bucket.values();
+    }
+
+    /**
+     * Deletes the first instance of a value from the values of a key. The
+     * node of the key is only taken out of the tree once it has no values
+     * left.
+     *
+     * @pre true
+     * @post the first value of the key equal to value is removed
+     *
+     * @param key
+     *            the key of the value
+     * @param value
+     *            the value to delete
+     * @return whether the value was found and deleted
+     */
+    public boolean delete(K key, V value) {
+        Bucket<V> bucket = tree.lookup(key);
+        if (bucket == null || value == null || !bucket.remove(value)) {
+            return false;
+        }
+        if (bucket.count == 0) {
+            tree.delete(key);
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Gets the number of values of all the keys
+     *
+     * @pre true
+     * @post the multimap is unchanged
+     *
+     * @return the number of values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of distinct keys, which is the number of nodes in the
+     * tree
+     *
+     * @pre true
+     * @post the multimap is unchanged
+     *
+     * @return the number of keys
+     */
+    public int keyCount() {
+        return tree.size();
+    }
+
+    /**
+     * Verifies the tree of the keys, see {@link RedBlackTree#verify()}
+     *
+     * @pre true
+     * @post the multimap is unchanged
+     *
+     * @return the black height of the tree
+     */
+    public int verify() {
+        return tree.verify();
+    }
+
+    /**
+     * The values of one key, kept in an array that grows by half each time it
+     * fills, in the order they were added.
+     *
+     * @author Satshabad
+     *
+     * @param <V>
+     *            the values that the bucket holds
+     */
+    private static final class Bucket<V> {
+
+        /**
+         * The values, only the first count are used
+         */
+        private Object[] values;
+
+        /**
+         * The number of values
+         */
+        private int count;
+
+        /**
+         * Initializes a bucket with its first value
+         *
+         * @pre value is not null
+         * @post the bucket holds the value
+         *
+         * @param value
+         *            the first value
+         */
+        Bucket(V value) {
+            values = new Object[] { value };
+            count = 1;
+        }
+
+        /**
+         * Adds a value after all the others
+         *
+         * @pre value is not null
+         * @post the value is the last one
+         *
+         * @param value
+         *            the value to add
+         */
+        void add(V value) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count + (count >> 1) + 1);
+            }
+            values[count++] = value;
+        }
+
+        /**
+         * Removes the first value equal to the one given, keeping the others
+         * in order
+         *
+         * @pre value is not null
+         * @post the first equal value is gone
+         *
+         * @param value
+         *            the value to remove
+         * @return whether an equal value was found
+         */
+        boolean remove(V value) {
+            for (int i = 0; i < count; i++) {
+                if (value.equals(values[i])) {
+                    System.arraycopy(values, i + 1, values, i, count - i - 1);
+                    values[--count] = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Copies out the values
+         *
+         * @pre true
+         * @post the bucket is unchanged
+         *
+         * @return the values in the order they were added, unmodifiable
+         */
+        @SuppressWarnings("unchecked")
+        List<V> values() {
+            return Collections.unmodifiableList(Arrays.asList((V[]) Arrays
+                    .copyOf(values, count)));
+        }
+    }
+}
@@ -1,1030 +1,3013 @@
-package edu.csupomona.cs.cs241.proj4;
-
-import java.util.ArrayList;
-
-/**
- * This class is a Red Black Tree.
- * 
- * @author Satshabad
- * 
- * @param <K>
- *            the keys that map to the values
- * @param <V>
- *            the values that the nodes hold.
- */
-/**
- * @author Satshabad
- * 
- * @param <K>
- * @param <V>
- */
-public class RedBlackTree<K extends Comparable<K>, V> {
-
-    /**
-     * This is the length of the longest string representation of the key
-     */
-    private int longestString;
-
-    /**
-     * The constant boolean for the color red
-     */
-    private final boolean RED = true;
-
-    /**
-     * The constant boolean for the color black
-     */
-    private final boolean BLACK = false;
-
-    /**
-     * The one node that represents all of the nil leaves at once.
-     */
-    private Node<K, V> theNilLeaf;
-
-    /**
-     * A special node called the root
-     */
-    public Node<K, V> root;
-
-    /**
-     * Initializes a Red Black Tree
-     * 
-     * @pre true
-     * @post a RBT is made
-     */
-    public RedBlackTree() {
-        root = null;
-        theNilLeaf = new Node<K, V>(BLACK, null, null, null, null, null);
-        longestString = 0;
-    }
-
-    /**
-     * This method adds the mapping to the tree.
-     * 
-     * @pre true
-     * @post the key added matches the value added with it. If there was a
-     *       previous mapping of the same key results are not guaranteed
-     * 
-     * @param key
-     *            the key that will map to the value for look up
-     * @param value
-     *            the object to be stored
-     * @return whether the mapping was made or not
-     */
-    public boolean add(K key, V value) {
-
-        // don't add null mapping, it could interfere with other methods.
-        if (key == null || value == null) {
-            return false;
-        }
-
-        if (key.toString().length() > longestString) {
-            longestString = key.toString().length();
-        }
-
-        // special case when there is no root.
-        if (root == null) {
-            root = new Node<K, V>(BLACK, theNilLeaf, theNilLeaf, null, value,
-                    key);
-            root.getLeftChild().setParent(root);
-            root.getRightChild().setParent(root);
-            return true;
-        }
-
-        // finds the node on which to add the new node
-        Node<K, V> placeToAdd = traverseForAdd(key, root);
-        
-
-        // the method traverseToAdd should never return null.
-        assert (placeToAdd != null);
-
-        // add as if it were a binary tree, greater than to the right, less or
-        // equal to the left. Except now after adding we have to make sure that
-        // the tree is still following it's conditions
-        if (placeToAdd.getKey().compareTo(key) < 0) {
-            
-            placeToAdd.setRightChild(new Node<K, V>(RED, theNilLeaf,
-                    theNilLeaf, placeToAdd, value, key));
-           
-          
-            addBalance(placeToAdd.getRightChild());
-        } else {
-          
-            placeToAdd.setLeftChild(new Node<K, V>(RED, theNilLeaf, theNilLeaf,
-                    placeToAdd, value, key));
-          
-            addBalance(placeToAdd.getLeftChild());
-        }
-
-        return true;
-    }
-
-    /**
-     * This method deletes the first instance of the key value mapping indicated
-     * by the key.
-     * 
-     * @post the mapping to be deleted is valid
-     * @post the first instance of the mapping is removes
-     * 
-     * @param key
-     *            the key to value to be deleted
-     * @return the value mapped to the key which was deleted
-     */
-    public V delete(K key) {
-        V returnValue;
-        // the tree is empty
-        if (root == null) {
-            return null;
-        }
-
-        // find node to be deleted
-        Node<K, V> toBeDeleted = lookupHelper(key, root);
-
-        // if this is null the node we want to delete doesn't exists
-        if (toBeDeleted == null) {
-            return null;
-        }
-
-        returnValue = toBeDeleted.getValue();
-        // if the root is the only node
-        if (toBeDeleted == root && root.getRightChild() == theNilLeaf
-                && root.getLeftChild() == theNilLeaf) {
-            root = null;
-            return returnValue;
-        }
-
-        // this will tell if using the successor or predecessor
-        boolean successor = false;
-        Node<K, V> replaceNode;
-        if (toBeDeleted.getRightChild() == theNilLeaf
-                && toBeDeleted.getLeftChild() == theNilLeaf) {
-            replaceNode = toBeDeleted;
-        } else if (toBeDeleted.getRightChild() != theNilLeaf) {
-           
-            successor = true;
-            replaceNode = findInOrderSuccessor(toBeDeleted.getRightChild());
-
-        } else {
-        
-            replaceNode = findInOrderPredecessor(toBeDeleted.getLeftChild());
-        }
-
-    
-
-        // this should never happen because we know the node to be deleted
-        // exists
-        assert (replaceNode != null);
-
-        toBeDeleted.setMapping(replaceNode.getKey(), replaceNode.getValue());
-
-        Node<K, V> nodeNeedingBalance;
-        if (replaceNode.isRed()) {
-          
-            // if the node to be deleted is red than both of it's children
-            // must be leaves because at least one of it's children is a leaf
-            // otherwise it wouldn't be a successor or predecessor. Both child
-            // must leaves or it it would violate the black rule.
-            assert (replaceNode.getRightChild() == theNilLeaf && replaceNode
-                    .getLeftChild() == theNilLeaf);
-
-            // replace the node to with a nil leaf
-            if (replaceNode.getParent().getRightChild() == replaceNode) {
-                replaceNode.getParent().setRightChild(theNilLeaf);
-            } else {
-                replaceNode.getParent().setLeftChild(theNilLeaf);
-            }
-            return returnValue;
-
-        } else {
-          
-            if (successor) {
-                // if we have the successor to delete then the left child is
-                // definitely going to be a leaf
-                assert (replaceNode.getLeftChild() == theNilLeaf);
-
-                // in some cases the in order successor will be a right child
-                // and in some it will be the left
-                if (replaceNode.getParent().getRightChild() == replaceNode) {
-                    replaceNode.getParent().setRightChild(
-                            replaceNode.getRightChild());
-                } else {
-                    replaceNode.getParent().setLeftChild(
-                            replaceNode.getRightChild());
-                }
-                replaceNode.getRightChild().setParent(replaceNode.getParent());
-
-                nodeNeedingBalance = replaceNode.getRightChild();
-
-                replaceNode.setRightChild(null);
-                replaceNode.setLeftChild(null);
-                replaceNode.setParent(null);
-
-            } else {
-
-                // if we have the predecessor to delete then the right child is
-                // definitely going to be a leaf
-                assert (replaceNode.getRightChild() == theNilLeaf);
-
-                // in some cases the in order pred will be a right child
-                // and in some it will be the left
-                if (replaceNode.getParent().getRightChild() == replaceNode) {
-                    replaceNode.getParent().setRightChild(
-                            replaceNode.getLeftChild());
-                } else {
-                    replaceNode.getParent().setLeftChild(
-                            replaceNode.getLeftChild());
-                }
-                replaceNode.getLeftChild().setParent(replaceNode.getParent());
-                nodeNeedingBalance = replaceNode.getLeftChild();
-
-                System.out.println(" n's parent's parent: "
-                        + nodeNeedingBalance.getParent().getParent());
-                System.out.println(" n's parent: "
-                        + nodeNeedingBalance.getParent());
-                System.out.println(" n:" + nodeNeedingBalance);
-
-                replaceNode.setRightChild(null);
-                replaceNode.setLeftChild(null);
-                replaceNode.setParent(null);
-            }
-
-            if (nodeNeedingBalance.isRed()) {
-                nodeNeedingBalance.setColor(BLACK);
-                System.out
-                        .println("case 0: child of replacer was red, replacer was black, repainted child black");
-                System.out.println(" n's parent's parent: "
-                        + nodeNeedingBalance.getParent().getParent());
-                System.out.println(" n's parent: "
-                        + nodeNeedingBalance.getParent());
-                System.out.println(" n:" + nodeNeedingBalance);
-
-            } else {
-                deleteBalance(nodeNeedingBalance);
-            }
-            System.out.println("BEFORE REBALANCE-------------------------");
-            prettyPrint();
-
-        }
-
-        return returnValue;
-
-    }
-
-    /**
-     * This method looks up the value associated with the key.
-     * 
-     * @pre the mapping must be valid
-     * @post the value mapped to the key is returned
-     * 
-     * @param key
-     *            the key of the value
-     * @return the value indexed by key
-     */
-    public V lookup(K key) {
-        return lookupHelper(key, root).getValue();
-
-    }
-
-    /**
-     * This method helped me visualize the tree until I got pretty print working
-     * 
-     * @pre true
-     * @post the tree is printed sideways
-     * @deprecated
-     */
-    public void printTree() {
-        internalInOrderPrint(root, 0);
-    }
-
-    /**
-     * This prints the tree in a readable format, regardless of key string
-     * length
-     * 
-     * @pre true
-     * @post the tree is printed
-     */
-    public void prettyPrint() {
-        ArrayList<DepthAndNode<K, V>> queue = new ArrayList<DepthAndNode<K, V>>();
-        int depth = 0;
-        int treeDepth = getTreeDepth(root);
-        int beginningSpaces = longestString + 2;
-        for (int i = 0; i < treeDepth - 2; i++) {
-            beginningSpaces = (beginningSpaces * 2) + longestString + 2;
-        }
-
-        int inBetweenSpaces = beginningSpaces;
-        queue.add(0, new DepthAndNode<K, V>(depth, root));
-        DepthAndNode<K, V> m = null;
-        for (int i = 0; i < beginningSpaces; i++) {
-            System.out.print(" ");
-        }
-
-        while (depth < treeDepth) {
-            m = queue.remove(0);
-            if (m.getDepth() > depth) {
-                depth = m.getDepth();
-                if (!(depth < treeDepth)) {
-                    break;
-                }
-                System.out.println();
-                inBetweenSpaces = beginningSpaces;
-                beginningSpaces = ((beginningSpaces - (longestString + 2)) / 2);
-                for (int i = 0; i < beginningSpaces; i++) {
-                    System.out.print(" ");
-                }
-
-            }
-
-            Node<K, V> right;
-            Node<K, V> left;
-            if (m.getNode() == null) {
-                right = null;
-                left = null;
-
-            } else {
-                right = m.getNode().getRightChild();
-                left = m.getNode().getLeftChild();
-            }
-
-            queue.add(queue.size(), new DepthAndNode<K, V>(depth + 1, left));
-
-            queue.add(queue.size(), new DepthAndNode<K, V>(depth + 1, right));
-
-            if (m.getNode() == null) {
-                for (int j = 0; j < longestString + 2; j++) {
-                    System.out.print(" ");
-                }
-            } else if (m.getNode() == theNilLeaf) {
-                for (int j = 0; j < longestString; j++) {
-                    System.out.print("N");
-                }
-                System.out.print(":B");
-            } else {
-                System.out.print(m.getNode().getKey());
-
-                for (int j = m.getNode().getKey().toString().length(); j < longestString; j++) {
-                    System.out.print("E");
-                }
-
-                if (m.getNode().isRed()) {
-                    System.out.print(":R");
-                } else {
-                    System.out.print(":B");
-                }
-            }
-
-            for (int k = 0; k < inBetweenSpaces; k++) {
-                System.out.print(" ");
-            }
-
-        }
-        System.out.println();
-    }
-
-    /**
-     * This internal method will check the 5 cases that might occur when a node
-     * is added and it breaks the 4 RBT rules.
-     * 
-     * @pre the only rules that are broken are from the latest add proc.
-     * @post all 4 of the RBT rules are not violated
-     * @param currentNode
-     *            the node to start checking on
-     */
-    private void addBalance(Node<K, V> currentNode) {
-
-        // first case is when the root is not black. so color it black.
-        if (currentNode == root) {
-            currentNode.setColor(BLACK);
-            // System.out.println("case 1");
-            return;
-        }
-
-        Node<K, V> parent = currentNode.getParent();
-
-        // if the node is not the root then it should never have a null parent.
-        assert (parent != null);
-
-        // if parent is black no problem.
-        if (!parent.isRed()) {
-            // System.out.println("case 2");
-            return;
-        }
-        // The parent should always be red here
-        assert (parent.isRed());
-
-        Node<K, V> grandparent = parent.getParent();
-        Node<K, V> uncle = getUncle(currentNode);
-
-        // if the uncle and parent are red, re-color both to black and re-color
-        // gramp to red and call on gramp.
-        if (uncle.isRed()) {
-            // System.out.println("case 3");
-            uncle.setColor(BLACK);
-            parent.setColor(BLACK);
-            grandparent.setColor(RED);
-            // printTree();
-            // System.out.println("%%%%");
-            addBalance(currentNode.getParent().getParent());
-
-            // cases 4 and 5 involve rotations.
-        } else if (!uncle.isRed()) {
-
-            // case 4a and 4b simply set up for case 5a and 5b.
-            if (parent.getRightChild() == currentNode
-                    && grandparent.getLeftChild() == parent) {
-                // System.out.println("case 4a");
-
-                rotateLeft(parent);
-
-                // reset all the helpful variables
-                currentNode = currentNode.getLeftChild();
-                parent = currentNode.getParent();
-                grandparent = parent.getParent();
-                // printTree();
-                // System.out.println("%%%%");
-
-            } else if (parent.getLeftChild() == currentNode
-                    && grandparent.getRightChild() == parent) {
-                // System.out.println("case 4b");
-
-                rotateRight(parent);
-
-                // reset all the helpful variables
-                currentNode = currentNode.getRightChild();
-                parent = currentNode.getParent();
-                grandparent = parent.getParent();
-                // printTree();
-                // System.out.println("%%%%");
-            }
-
-            // if either of these cases occur then we are done
-            if (parent.getLeftChild() == currentNode
-                    && grandparent.getLeftChild() == parent) {
-                // System.out.println("case 5a");
-                rotateRight(grandparent);
-                grandparent.setColor(RED);
-                parent.setColor(BLACK);
-
-            } else if (parent.getRightChild() == currentNode
-                    && grandparent.getRightChild() == parent) {
-                // System.out.println("case 5b");
-                rotateLeft(grandparent);
-                grandparent.setColor(RED);
-                parent.setColor(BLACK);
-
-            }
-
-        }
-
-    }
-
-    /**
-     * This internal method will check the 5 cases that might occur when a node
-     * is deleted and it breaks the 4 RBT rules.
-     * 
-     * @pre the only rules that are broken are from the latest delete proc.
-     * @post all 4 of the RBT rules are not violated
-     * @param node
-     *            the node to start checking on
-     */
-    private void deleteBalance(Node<K, V> node) {
-
-        if (node == root) {
-            return;
-        }
-        Node<K, V> parent = node.getParent();
-
-        Node<K, V> sibling = getSibling(node);
-        if (sibling == theNilLeaf) {
-            return;
-        }
-        System.out.println("we's left child ="
-                + node.getParent().getLeftChild());
-        // Case 2 the sibling is red
-        if (sibling.isRed()) {
-            System.out
-                    .println("Case 2: the sibling is RED, set sibling to BLACK "
-                            + "and parent to BLACK, rotate left if left child "
-                            + "rotate right if right child, n = "
-                            + node.getKey());
-            prettyPrint();
-            System.out
-                    .println("%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%");
-            sibling.setColor(BLACK);
-            parent.setColor(BLACK);
-
-            if (node == parent.getLeftChild()) {
-                rotateLeft(parent);
-            } else {
-                rotateRight(parent);
-            }
-            sibling = getSibling(node);
-            parent = node.getParent();
-        }
-
-        // Case 3 4 5 and 6
-        // the sibling is black
-        if (!sibling.isRed()) {
-
-            // Case 3
-            if (!sibling.getRightChild().isRed()
-                    && !sibling.getLeftChild().isRed()) {
-
-                if (!parent.isRed()) {
-                    System.out
-                            .println("Case 3: sibling is BLACK, sibling's chilren are BLACK, "
-                                    + "parent is BLACK. set sibling to RED and call again on parent, n = "
-                                    + node.getKey());
-                    sibling.setColor(RED);
-                    prettyPrint();
-                    System.out
-                            .println("%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%");
-                    deleteBalance(parent);
-                }
-
-                // Case 3
-                else {
-                    System.out
-                            .println("Case 4: sibling is BLACK, sibling's chilren are BLACK, "
-                                    + "parent is RED. set sibling to RED set parent to BLACK, n = "
-                                    + node.getKey());
-                    sibling.setColor(RED);
-                    parent.setColor(BLACK);
-                    prettyPrint();
-                    System.out
-                            .println("%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%");
-                    return;
-                }
-            }
-            // Sibling is still black but it's children aren't both black
-
-            // Case 5
-
-            if (node == parent.getLeftChild()
-                    && !sibling.getRightChild().isRed()
-                    && sibling.getLeftChild().isRed()) {
-                System.out
-                        .println("Case 5: sibling is BLACK, sib's right child is BLACK, "
-                                + "sib's left child is RED. set the sibling to RED, sib's left child to BLACK. rotate right in sib. n = "
-                                + node.getKey());
-
-                sibling.setColor(RED);
-                sibling.getLeftChild().setColor(BLACK);
-                rotateRight(sibling);
-                prettyPrint();
-                System.out
-                        .println("%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%");
-            } else if (node == parent.getRightChild()
-                    && !sibling.getLeftChild().isRed()
-                    && sibling.getRightChild().isRed()) {
-
-                System.out
-                        .println("Case 5: sibling is BLACK, sib's right child is RED, "
-                                + "sib's left child is BLACK. set the sibling to RED, sib's right child to BLACK. rotate left on sib. n = "
-                                + node.getKey());
-                sibling.setColor(RED);
-                sibling.getRightChild().setColor(BLACK);
-                rotateLeft(sibling);
-                prettyPrint();
-                System.out
-                        .println("%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%");
-            }
-            if (node == theNilLeaf) {
-                node.setParent(parent);
-            }
-            sibling = getSibling(node);
-            if (sibling == theNilLeaf) {
-                return;
-            }
-            // Case 6
-            if (node == parent.getLeftChild()
-                    && sibling.getRightChild().isRed()) {
-                boolean temp = parent.isRed();
-                parent.setColor(sibling.isRed());
-                sibling.setColor(temp);
-
-                System.out.println("Case 6a: n = " + node.getKey());
-                sibling.getRightChild().setColor(BLACK);
-                rotateLeft(parent);
-                prettyPrint();
-                System.out
-                        .println("%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%");
-            } else if (node == parent.getRightChild()
-                    && sibling.getLeftChild().isRed()) {
-                boolean temp = parent.isRed();
-                parent.setColor(sibling.isRed());
-                sibling.setColor(temp);
-                sibling.getLeftChild().setColor(BLACK);
-                rotateRight(parent);
-                System.out.println("Case 6b: n = " + node.getKey());
-                prettyPrint();
-                System.out
-                        .println("%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%");
-            }
-
-        }
-
-    }
-
-    /**
-     * This method returns the sibling of the node
-     * 
-     * @pre the node is not the root, the node has a sibling
-     * @post the sibling is returned
-     * 
-     * @param node
-     *            the node of who's sibling is to be returned
-     * @return the sibling of node
-     */
-    private Node<K, V> getSibling(Node<K, V> node) {
-        if (node.getParent().getRightChild() == node) {
-            return node.getParent().getLeftChild();
-        } else {
-            return node.getParent().getRightChild();
-        }
-    }
-
-    /**
-     * Performs a right rotation on the node
-     * 
-     * @pre the node called on must not be a node with less than 2 levels of
-     *      children below it.
-     * @post a left rotation is performed
-     * @param node
-     *            the node to rotate on
-     */
-    private void rotateRight(Node<K, V> node) {
-
-        if (node != root) {
-            if (node.getParent().getLeftChild() == node) {
-                node.getLeftChild().setParent(node.getParent());
-                node.getParent().setLeftChild(node.getLeftChild());
-
-                Node<K, V> nodesOldLeftChild = node.getLeftChild();
-                node.setLeftChild(node.getLeftChild().getRightChild());
-                node.getLeftChild().setParent(node);
-                nodesOldLeftChild.setRightChild(node);
-                node.setParent(nodesOldLeftChild);
-
-                // after rotation node should be child of old child
-                assert (node.getParent() == nodesOldLeftChild);
-
-            } else if (node.getParent().getRightChild() == node) {
-                node.getLeftChild().setParent(node.getParent());
-                node.getParent().setRightChild(node.getLeftChild());
-
-                Node<K, V> nodesOldLeftChild = node.getLeftChild();
-                node.setLeftChild(node.getLeftChild().getRightChild());
-                node.getLeftChild().setParent(node);
-                nodesOldLeftChild.setRightChild(node);
-                node.setParent(nodesOldLeftChild);
-
-                // after rotation node should be child of old child
-                assert (node.getParent() == nodesOldLeftChild);
-
-            }
-        } else {
-            node.getLeftChild().setParent(null);
-            root = node.getLeftChild();
-
-            node.setLeftChild(node.getLeftChild().getRightChild());
-            node.getLeftChild().setParent(node);
-            root.setRightChild(node);
-            node.setParent(root);
-
-            // after rotation node should be child of root
-            assert (node.getParent() == root);
-
-        }
-
-    }
-
-    /**
-     * Performs a left rotation on the node
-     * 
-     * @pre the node called on must not be a node with less than 2 levels of
-     *      children below it.
-     * @post a left rotation is performed
-     * @param node
-     *            the node to rotate on
-     */
-    private void rotateLeft(Node<K, V> node) {
-
-        if (node != root) {
-            if (node.getParent().getLeftChild() == node) {
-                node.getParent().setLeftChild(node.getRightChild());
-                node.getRightChild().setParent(node.getParent());
-
-                Node<K, V> nodesOldRightChild = node.getRightChild();
-                node.setRightChild(node.getRightChild().getLeftChild());
-                node.getRightChild().setParent(node);
-                nodesOldRightChild.setLeftChild(node);
-                node.setParent(nodesOldRightChild);
-
-                // after rotation node should be child of old child
-                assert (node.getParent() == nodesOldRightChild);
-
-            } else if (node.getParent().getRightChild() == node) {
-                node.getParent().setRightChild(node.getRightChild());
-                node.getRightChild().setParent(node.getParent());
-
-                Node<K, V> nodesOldRightChild = node.getRightChild();
-                node.setRightChild(node.getRightChild().getLeftChild());
-                node.getRightChild().setParent(node);
-                nodesOldRightChild.setLeftChild(node);
-                node.setParent(nodesOldRightChild);
-
-                // after rotation node should be child of old child
-                assert (node.getParent() == nodesOldRightChild);
-            }
-        } else {
-            node.getRightChild().setParent(null);
-            root = node.getRightChild();
-
-            node.setRightChild(node.getRightChild().getLeftChild());
-            node.getRightChild().setParent(node);
-            root.setLeftChild(node);
-            node.setParent(root);
-
-            // after rotation node should be child of root
-            assert (node.getParent() == root);
-        }
-
-    }
-
-    /**
-     * Finds the uncle of the given node
-     * 
-     * @pre the passed node is not the root
-     * @post the uncle of the node is returned
-     * @param currentNode
-     *            the node to find the uncle of.
-     * @return the uncle of currentNode
-     */
-    private Node<K, V> getUncle(Node<K, V> currentNode) {
-        // this method should never be called on a node without a parent. i. e.
-        // the root
-        assert (currentNode.getParent() != null);
-
-        Node<K, V> parent = currentNode.getParent();
-
-        // just making sure that the root is black
-        if (parent.getParent() == null) {
-            assert (!parent.isRed());
-        }
-
-        if (parent.getParent().getLeftChild() == parent) {
-            return parent.getParent().getRightChild();
-        } else if (parent.getParent().getRightChild() == parent) {
-            return parent.getParent().getLeftChild();
-        }
-
-        // we must have returned by now.
-        assert (false);
-        return null;
-
-    }
-
-    /**
-     * The method find the node onto which the new node will be added
-     * 
-     * @pre true
-     * @post the node that should be added onto is returned. it is up to caller
-     *       to determine which side to add on to.
-     * 
-     * @param key
-     *            the key of the node to be added
-     * @param startNode
-     *            the node to currently look at for adding
-     * @return the node to add onto.
-     */
-    private Node<K, V> traverseForAdd(K key, Node<K, V> startNode) {
-        /* There are four cases of adding, I enumerated all of them one by one. */
-        Node<K, V> left = startNode.getLeftChild();
-        Node<K, V> right = startNode.getRightChild();
-
-        // if both leave are null this is the place to add
-        if (left == theNilLeaf && right == theNilLeaf) {
-            return startNode;
-        }
-
-        // if the left leaf is null we may add here or keep going on the right
-        // path
-        if (left == theNilLeaf && right != theNilLeaf) {
-
-            if (startNode.getKey().compareTo(key) > -1) {
-                return startNode;
-            } else {
-                return traverseForAdd(key, right);
-            }
-
-        }
-
-        // if the right leaf is null we may add here or keep going on the left
-        // path
-        if (right == theNilLeaf && left != theNilLeaf) {
-
-            if (startNode.getKey().compareTo(key) < 0) {
-                return startNode;
-            } else {
-                return traverseForAdd(key, left);
-            }
-
-        }
-
-        // if neither leaves are null then we check to see which way we should
-        // go.
-        if (left != theNilLeaf && right != theNilLeaf) {
-
-            if (startNode.getKey().compareTo(key) < 0) {
-                return traverseForAdd(key, right);
-            } else {
-                return traverseForAdd(key, left);
-            }
-
-        }
-
-        // this should never happen.
-        assert (false);
-        return null;
-
-    }
-
-    /**
-     * This method helps look up a node by key.
-     * 
-     * @pre the key is a valid mapping
-     * @post the node with the matching key is returned
-     * 
-     * @param key
-     *            the key of the node being looked for
-     * @param node
-     *            the node being looked at
-     * @return the node with the corresponding key if it exists, otherwise null
-     */
-    private Node<K, V> lookupHelper(K key, Node<K, V> node) {
-
-        if (node.getKey().compareTo(key) == 0) {
-            return node;
-        }
-
-        if (node.getKey().compareTo(key) < 0
-                && node.getRightChild() != theNilLeaf) {
-            return lookupHelper(key, node.getRightChild());
-        }
-
-        if (node.getKey().compareTo(key) > -1
-                && node.getLeftChild() != theNilLeaf) {
-            return lookupHelper(key, node.getLeftChild());
-        }
-        return null;
-    }
-
-    /**
-     * This method finds the in order successor of the subtree with startNode at
-     * the root
-     * 
-     * @param startNode
-     *            the root of the subtree
-     * @return the node that is the in order sucessor of startNode
-     */
-    private Node<K, V> findInOrderSuccessor(Node<K, V> startNode) {
-        if (startNode.getLeftChild() == theNilLeaf) {
-            return startNode;
-        }
-
-        if (startNode.getLeftChild() != theNilLeaf) {
-            return findInOrderSuccessor(startNode.getLeftChild());
-        }
-        if (startNode.getRightChild() != theNilLeaf) {
-            return findInOrderSuccessor(startNode.getRightChild());
-        }
-
-        // we should never reach here
-        assert (false);
-        return null;
-    }
-
-    /**
-     * This method finds the in order predecessor of the subtree with startNode
-     * at the root
-     * 
-     * @param startNode
-     *            the root of the subtree
-     * @return the node that is the in order predecessor of startNode
-     */
-
-    private Node<K, V> findInOrderPredecessor(Node<K, V> startNode) {
-
-        if (startNode.getRightChild() == theNilLeaf) {
-            return startNode;
-        }
-
-        if (startNode.getRightChild() != theNilLeaf) {
-            return findInOrderPredecessor(startNode.getRightChild());
-        }
-
-        if (startNode.getLeftChild() != theNilLeaf) {
-            return findInOrderPredecessor(startNode.getLeftChild());
-        }
-
-        // we should never reach here
-        assert (false);
-        return null;
-    }
-
-    private void internalInOrderPrint(Node<K, V> start, int depth) {
-
-        if (start == null) {
-            return;
-        }
-        internalInOrderPrint(start.getRightChild(), depth + 1);
-
-        for (int i = 0; i < depth; i++) {
-            System.out.print(" ");
-
-        }
-        if (start.isRed()) {
-            System.out.println(start.getKey() + " Red");
-
-        } else {
-            System.out.println(start.getKey());
-
-        }
-        internalInOrderPrint(start.getLeftChild(), depth + 1);
-
-    }
-
-    /**
-     * This method finds the depth of the tree starting at start
-     * 
-     * @pre true
-     * @post the tree is traversed and the depth is returned
-     * 
-     * @param start
-     *            the node to start the depth at
-     * @return the depth of the tree
-     */
-    private int getTreeDepth(Node<K, V> start) {
-
-        if (start == null) {
-            return 0;
-        }
-        return Math.max(getTreeDepth(start.getRightChild()) + 1,
-                getTreeDepth(start.getLeftChild()) + 1);
-
-    }
-
-    /**
-     * This is a method I was working on to help verify the tree, I got it to
-     * catch red violations, but not black. Often it will throw a black
-     * violation even though there is none
-     * 
-     * @pre true
-     * @post false
-     * 
-     * @return the number of black nodes in any given path
-     */
-    public int verify() {
-        return verifyHelper(root, 1, false, -1);
-    }
-
-    /**
-     * This method does most of the logic of the verify method. see
-     * {@link #verify()}
-     * 
-     * @param node
-     *            the current node
-     * @param numofBlack
-     *            the number of black so far
-     * @param wasRed
-     *            if the previous node was red
-     * @param firstPathBlack
-     *            the length of the black path that is reached first
-     * @return the number of black nodes in any given path
-     */
-    private int verifyHelper(Node<K, V> node, int numofBlack, boolean wasRed,
-            int firstPathBlack) {
-
-        if (node == null) {
-
-            if (firstPathBlack == -1) {
-                firstPathBlack = numofBlack;
-            } else {
-                assert (numofBlack == firstPathBlack);
-            }
-            return firstPathBlack;
-        }
-        if (!node.isRed()) {
-            numofBlack++;
-        }
-        if (node.isRed()) {
-            assert (!wasRed);
-        }
-        verifyHelper(node.getRightChild(), numofBlack, node.isRed(),
-                firstPathBlack);
-        verifyHelper(node.getLeftChild(), numofBlack, node.isRed(),
-                firstPathBlack);
-        return numofBlack;
-    }
-
-}
+package edu.csupomona.cs.cs241.proj4;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * This class is a Red Black Tree.
+ * 
+ * @author Satshabad
+ * 
+ * @param <K>
+ *            the keys that map to the values
+ * @param <V>
+ *            the values that the nodes hold.
+ */
+/**
+ * @author Satshabad
+ * 
+ * @param <K>
+ * @param <V>
+ */
+public class RedBlackTree<K extends Comparable<K>, V> {
+
+    /**
+     * The constant boolean for the color red
+     */
+    private final boolean RED = true;
+
+    /**
+     * The constant boolean for the color black
+     */
+    private final boolean BLACK = false;
+
+    /**
+     * The nil leaf of every tree. Nothing ever writes to it, so all the trees
+     * can share one, and nodes can be moved from one tree to another.
+     */
+    private static final Node<?, ?> NIL_LEAF = newNilLeaf();
+
+    /**
+     * How many levels an add climbs from the last key added before it gives
+     * up and descends from the root. A key that close is in a subtree of at
+     * most a few dozen nodes around the last one, and a key that is not costs
+     * only a few more comparisons.
+     */
+    private static final int NEAR_LEVELS = 4;
+
+    /**
+     * The one node that represents all of the nil leaves at once.
+     */
+    private Node<K, V> theNilLeaf;
+
+    /**
+     * A special node called the root
+     */
+    public Node<K, V> root;
+
+    /**
+     * Told about every step of a rebalance, null if no one is listening
+     */
+    private RebalanceListener<K, V> listener;
+
+    /**
+     * The node with the lowest key, null if it is not known
+     */
+    private Node<K, V> minimum;
+
+    /**
+     * The node with the highest key, null if it is not known
+     */
+    private Node<K, V> maximum;
+
+    /**
+     * The node added last, null if it has been taken out
+     */
+    private Node<K, V> lastAdded;
+
+    /**
+     * What an add of a key that is already in the tree does
+     */
+    private final KeyMode mode;
+
+    /**
+     * Works out the aggregate each node keeps of its subtree, null if the
+     * nodes keep none
+     */
+    private final Aggregator<? super V, Object> aggregator;
+
+    /**
+     * Initializes a Red Black Tree that can hold the same key many times
+     * 
+     * @pre true
+     * @post a RBT is made
+     */
+    public RedBlackTree() {
+        this(KeyMode.DUPLICATES);
+    }
+
+    /**
+     * Initializes a Red Black Tree
+     * 
+     * @pre mode is not null
+     * @post a RBT is made
+     * 
+     * @param mode
+     *            what adding a key that is already in the tree does
+     */
+    public RedBlackTree(KeyMode mode) {
+        this(mode, null);
+    }
+
+    /**
+     * Initializes a Red Black Tree whose nodes each keep the aggregate of the
+     * values below them, so that
+     * {@link #aggregate(Comparable, Comparable, Aggregator)} takes O(log n).
+     * Keeping them costs a few combines on every add and delete, one for each
+     * node on the way up and two for each rotation.
+     * 
+     * @pre mode is not null
+     * @post a RBT is made
+     * 
+     * @param mode
+     *            what adding a key that is already in the tree does
+     * @param aggregator
+     *            works out the aggregates, null for none
+     */
+    @SuppressWarnings("unchecked")
+    public RedBlackTree(KeyMode mode, Aggregator<? super V, ?> aggregator) {
+        root = null;
+        theNilLeaf = (Node<K, V>) NIL_LEAF;
+        this.mode = mode;
+        this.aggregator = (Aggregator<? super V, Object>) aggregator;
+    }
+
+    /**
+     * Makes the nil leaf shared by every tree. It has no key or value, so
+     * which types it is made with does not matter.
+     * 
+     * @pre true
+     * @post a black node of size 0 with no links is made
+     * 
+     * @return the nil leaf
+     */
+    private static <K extends Comparable<K>, V> Node<K, V> newNilLeaf() {
+        Node<K, V> nil = new Node<K, V>(false, null, null, null, null, null);
+        nil.setSize(0);
+        return nil;
+    }
+
+    /**
+     * Builds a tree from keys and values that are already sorted, in time
+     * linear in their number. This is much faster than adding them one at a
+     * time.
+     * 
+     * @pre keys and values have the same length, the keys are in ascending
+     *      order
+     * @post the tree holds every mapping and is balanced
+     * 
+     * @param keys
+     *            the keys in ascending order
+     * @param values
+     *            the value of each key
+     * @return the new tree
+     * @throws IllegalArgumentException
+     *             if the lengths differ, a key or value is null, or the keys
+     *             are not in order
+     */
+    public static <K extends Comparable<K>, V> RedBlackTree<K, V> fromSorted(
+            K[] keys, V[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException(
+                    "there must be one value for every key");
+        }
+        RedBlackTree<K, V> tree = new RedBlackTree<K, V>();
+        List<Node<K, V>> nodes = new ArrayList<Node<K, V>>(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            nodes.add(tree.newSortedNode(nodes, keys[i], values[i]));
+        }
+        tree.linkSorted(nodes);
+        return tree;
+    }
+
+    /**
+     * Builds a tree from a stream of mappings that is already sorted by key,
+     * in time linear in the number of mappings. The number of mappings does
+     * not have to be known.
+     * 
+     * @pre the mappings are in ascending order of key
+     * @post the tree holds every mapping and is balanced
+     * 
+     * @param entries
+     *            the mappings in ascending order of key
+     * @return the new tree
+     * @throws IllegalArgumentException
+     *             if a key or value is null, or the keys are not in order
+     */
+    public static <K extends Comparable<K>, V> RedBlackTree<K, V> fromSorted(
+            Iterator<? extends Map.Entry<? extends K, ? extends V>> entries) {
+        return fromSorted(entries, 16);
+    }
+
+    /**
+     * Builds a tree from a stream of mappings that is already sorted by key,
+     * in time linear in the number of mappings. Knowing about how many
+     * mappings there are saves growing the buffer of nodes.
+     * 
+     * @pre the mappings are in ascending order of key
+     * @post the tree holds every mapping and is balanced
+     * 
+     * @param entries
+     *            the mappings in ascending order of key
+     * @param expectedSize
+     *            about how many mappings there are
+     * @return the new tree
+     * @throws IllegalArgumentException
+     *             if a key or value is null, or the keys are not in order
+     */
+    public static <K extends Comparable<K>, V> RedBlackTree<K, V> fromSorted(
+            Iterator<? extends Map.Entry<? extends K, ? extends V>> entries,
+            int expectedSize) {
+        return fromSorted(entries, expectedSize, KeyMode.DUPLICATES);
+    }
+
+    /**
+     * Builds a tree in the given mode from a stream of mappings that is
+     * already sorted by key. see {@link #fromSorted(Iterator, int)}
+     * 
+     * @pre the mappings are in ascending order of key
+     * @post the tree holds every mapping and is balanced
+     * 
+     * @param entries
+     *            the mappings in ascending order of key
+     * @param expectedSize
+     *            about how many mappings there are
+     * @param mode
+     *            what adding a key that is already in the tree does
+     * @return the new tree
+     * @throws IllegalArgumentException
+     *             if a key or value is null, the keys are not in order, or
+     *             in {@link KeyMode#MAP} a key comes twice
+     */
+    static <K extends Comparable<K>, V> RedBlackTree<K, V> fromSorted(
+            Iterator<? extends Map.Entry<? extends K, ? extends V>> entries,
+            int expectedSize, KeyMode mode) {
+        RedBlackTree<K, V> tree = new RedBlackTree<K, V>(mode);
+        List<Node<K, V>> nodes = new ArrayList<Node<K, V>>(Math.max(
+                expectedSize, 0));
+        while (entries.hasNext()) {
+            Map.Entry<? extends K, ? extends V> entry = entries.next();
+            nodes.add(tree.newSortedNode(nodes, entry.getKey(),
+                    entry.getValue()));
+        }
+        tree.linkSorted(nodes);
+        return tree;
+    }
+
+    /**
+     * Makes a tree holding the same mappings with nodes of its own, in the
+     * same mode and keeping the same aggregates. The nodes are already in
+     * order, so they are linked in linear time like
+     * {@link #fromSorted(Iterator, int)} does, with no adds. The listener is
+     * not copied.
+     * 
+     * @pre true
+     * @post this tree is unchanged
+     * 
+     * @return the copy
+     */
+    RedBlackTree<K, V> copy() {
+        RedBlackTree<K, V> copy = new RedBlackTree<K, V>(mode, aggregator);
+        List<Node<K, V>> nodes = new ArrayList<Node<K, V>>(size());
+        for (Node<K, V> node : tailMap(null)) {
+            nodes.add(new Node<K, V>(BLACK, theNilLeaf, theNilLeaf, null,
+                    node.getValue(), node.getKey()));
+        }
+        copy.linkSorted(nodes);
+        return copy;
+    }
+
+    /**
+     * Reads back a tree written by
+     * {@link #writeSnapshot(OutputStream, Codec, Codec, boolean, boolean)}.
+     * The mappings come in order of key, so the tree is built from them in
+     * linear time, see {@link #fromSorted(Iterator, int)}, with no adds and
+     * no rebalancing.
+     * 
+     * @pre in is at the start of a snapshot
+     * @post the snapshot has been read from in, which is not closed
+     * 
+     * @param in
+     *            where the snapshot is read from
+     * @param keys
+     *            reads the keys, the same way they were written
+     * @param values
+     *            reads the values, the same way they were written
+     * @return the tree the snapshot was written from, in the same key mode
+     * @throws IOException
+     *             if in can't be read from, or the snapshot is corrupt or
+     *             fails a checksum
+     */
+    public static <K extends Comparable<K>, V> RedBlackTree<K, V> readSnapshot(
+            InputStream in, Codec<? extends K> keys, Codec<? extends V> values)
+            throws IOException {
+        return TreeSnapshot.read(in, keys, values);
+    }
+
+    /**
+     * Reads back a tree written by
+     * {@link #writeSnapshot(OutputStream, Codec, Codec, boolean, boolean)}
+     * from a channel. see {@link #readSnapshot(InputStream, Codec, Codec)}
+     * 
+     * @pre channel is at the start of a snapshot
+     * @post the snapshot has been read from channel, which is not closed
+     * 
+     * @param channel
+     *            where the snapshot is read from
+     * @param keys
+     *            reads the keys, the same way they were written
+     * @param values
+     *            reads the values, the same way they were written
+     * @return the tree the snapshot was written from, in the same key mode
+     * @throws IOException
+     *             if channel can't be read from, or the snapshot is corrupt
+     *             or fails a checksum
+     */
+    public static <K extends Comparable<K>, V> RedBlackTree<K, V> readSnapshot(
+            ReadableByteChannel channel, Codec<? extends K> keys,
+            Codec<? extends V> values) throws IOException {
+        return TreeSnapshot.read(new BufferedInputStream(
+                Channels.newInputStream(channel), TreeSnapshot.BLOCK_BYTES),
+                keys, values);
+    }
+
+    /**
+     * This method adds the mapping to the tree.
+     * 
+     * @pre true
+     * @post the key added matches the value added with it. If there was a
+     *       previous mapping of the same key, in {@link KeyMode#MAP} its value
+     *       is replaced, otherwise results are not guaranteed
+     * 
+     * @param key
+     *            the key that will map to the value for look up
+     * @param value
+     *            the object to be stored
+     * @return whether the mapping was made or not
+     */
+    public boolean add(K key, V value) {
+
+        // don't add null mapping, it could interfere with other methods.
+        if (key == null || value == null) {
+            return false;
+        }
+
+        // special case when there is no root.
+        if (root == null) {
+            root = new Node<K, V>(BLACK, theNilLeaf, theNilLeaf, null, value,
+                    key);
+            pull(root);
+            minimum = root;
+            maximum = root;
+            lastAdded = root;
+            return true;
+        }
+
+        insert(findPlaceToAdd(key), key, value);
+        return true;
+    }
+
+    /**
+     * This method deletes the first instance of the key value mapping indicated
+     * by the key.
+     * 
+     * @post the mapping to be deleted is valid
+     * @post the first instance of the mapping is removes
+     * 
+     * @param key
+     *            the key to value to be deleted
+     * @return the value mapped to the key which was deleted
+     */
+    public V delete(K key) {
+        V returnValue;
+        // the tree is empty, or there is nothing to look for
+        if (root == null || key == null) {
+            return null;
+        }
+
+        // find node to be deleted
+        Node<K, V> toBeDeleted = lookupHelper(key);
+
+        // if this is null the node we want to delete doesn't exists
+        if (toBeDeleted == null) {
+            return null;
+        }
+
+        returnValue = toBeDeleted.getValue();
+        removeNode(toBeDeleted);
+        return returnValue;
+    }
+
+    /**
+     * This method adds every mapping of the map. The keys come in order, so
+     * each search starts from the node added before it and only goes up as
+     * far as it has to, rather than all the way from the root. The tree is
+     * kept in balance after every add.
+     * 
+     * @pre true
+     * @post every mapping of the map is in the tree. If there was a previous
+     *       mapping of the same key, in {@link KeyMode#MAP} its value is
+     *       replaced, otherwise results are not guaranteed
+     * 
+     * @param mappings
+     *            the mappings to add
+     * @return the number of mappings that were made, mappings with a null key
+     *         or value are not made
+     */
+    public int addAll(SortedMap<? extends K, ? extends V> mappings) {
+        int made = 0;
+        Node<K, V> finger = root;
+        for (Map.Entry<? extends K, ? extends V> entry : mappings.entrySet()) {
+            K key = entry.getKey();
+            V value = entry.getValue();
+            if (key == null || value == null) {
+                continue;
+            }
+            if (root == null) {
+                add(key, value);
+                finger = root;
+                made++;
+                continue;
+            }
+
+            // past the highest key the place is known without a search, as
+            // in findPlaceToAdd, so a batch appended to the tree costs no
+            // more than adding its keys one at a time
+            findEnds();
+            Node<K, V> placeToAdd = maximum;
+            if (maximum.getKey().compareTo(key) >= 0) {
+                placeToAdd = descendFrom(climb(finger, key, false), key, false);
+            }
+            finger = insert(placeToAdd, key, value);
+            made++;
+        }
+        return made;
+    }
+
+    /**
+     * This method deletes the first instance of the mapping of every key of
+     * the set. The keys come in order, so each search starts near where the
+     * one before it left off, see {@link #addAll(SortedMap)}.
+     * 
+     * @pre true
+     * @post the first instance of each key's mapping is removed
+     * 
+     * @param keys
+     *            the keys to delete
+     * @return the number of mappings that were deleted
+     */
+    public int deleteAll(SortedSet<? extends K> keys) {
+        int deleted = 0;
+        Node<K, V> finger = root;
+        for (K key : keys) {
+            if (finger == null) {
+                break;
+            }
+            if (key == null) {
+                continue;
+            }
+            Node<K, V> toBeDeleted = descendFrom(climb(finger, key, true),
+                    key, true);
+            if (toBeDeleted != null) {
+                finger = removeNode(toBeDeleted);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Joins two trees and a mapping that goes between them into one tree, in
+     * time proportional to how much taller one tree is than the other. The
+     * nodes are moved, not copied, so both trees are left empty.
+     * 
+     * @pre every key of left is at most key, and key is at most every key of
+     *      right, strictly so if the trees are in {@link KeyMode#MAP}
+     * @post left and right are empty
+     * 
+     * @param left
+     *            the tree with the lower keys
+     * @param key
+     *            the key that goes between the trees
+     * @param value
+     *            the value of key
+     * @param right
+     *            the tree with the higher keys
+     * @return a tree holding all the mappings of left, the mapping, and all
+     *         the mappings of right
+     * @throws IllegalArgumentException
+     *             if the key or value is null, the keys are not in order,
+     *             the trees have different key modes or the trees keep
+     *             different aggregates
+     */
+    public static <K extends Comparable<K>, V> RedBlackTree<K, V> join(
+            RedBlackTree<K, V> left, K key, V value, RedBlackTree<K, V> right) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("null mappings can't be added");
+        }
+        if (left.mode != right.mode) {
+            throw new IllegalArgumentException(
+                    "the trees have different key modes");
+        }
+        // a map can't hold the pivot's key on either side of it as well
+        int most = left.mode == KeyMode.MAP ? -1 : 0;
+        if ((left.root != null && left.findInOrderPredecessor(left.root)
+                .getKey().compareTo(key) > most)
+                || (right.root != null && key.compareTo(right
+                        .findInOrderSuccessor(right.root).getKey()) > most)) {
+            throw new IllegalArgumentException("keys are not in order at "
+                    + key);
+        }
+
+        if (left.aggregator != right.aggregator) {
+            throw new IllegalArgumentException(
+                    "the trees keep different aggregates");
+        }
+
+        RedBlackTree<K, V> joined = new RedBlackTree<K, V>(left.mode,
+                left.aggregator);
+        Node<K, V> pivot = new Node<K, V>(joined.RED, joined.theNilLeaf,
+                joined.theNilLeaf, null, value, key);
+        joined.joinRoots(left.root, left.blackHeight(), pivot, right.root,
+                right.blackHeight());
+        left.clear();
+        right.clear();
+        return joined;
+    }
+
+    /**
+     * Cuts the tree in two at a key, in time proportional to the height of the
+     * tree. This tree keeps the keys less than key and the rest are moved to
+     * the tree that is returned.
+     * 
+     * @pre key is not null
+     * @post this tree holds only the keys less than key
+     * 
+     * @param key
+     *            the key to cut at
+     * @return a tree holding the keys of this tree that are at least key
+     */
+    public RedBlackTree<K, V> split(K key) {
+        RedBlackTree<K, V> less = new RedBlackTree<K, V>(mode, aggregator);
+        RedBlackTree<K, V> rest = new RedBlackTree<K, V>(mode, aggregator);
+        if (root != null) {
+            Node<K, V> top = root;
+            int height = blackHeight();
+            root = null;
+            splitHelper(top, height, key, false, less, rest, new int[2]);
+        }
+
+        Node<K, V> kept = less.root;
+        clear();
+        root = kept;
+        return rest;
+    }
+
+    /**
+     * Makes a tree holding every key that is in either tree. The trees are
+     * cut apart and joined back together, with the two halves of each cut
+     * worked on in parallel in the common ForkJoinPool, for O(m log(n/m + 1))
+     * work where m is the size of the smaller tree. The nodes are moved, not
+     * copied, so both trees are left empty. Both trees must be in
+     * {@link KeyMode#MAP}, a key repeated in either one has no single place
+     * in the cuts.
+     * 
+     * @pre both trees are in {@link KeyMode#MAP}
+     * @post a and b are empty
+     * 
+     * @param a
+     *            the first tree
+     * @param b
+     *            the second tree
+     * @param merge
+     *            given the value from a and the value from b of a key in both
+     *            trees, returns the value the key gets. If null the value from
+     *            a is kept
+     * @return the union of the trees
+     * @throws IllegalArgumentException
+     *             if a tree is not in {@link KeyMode#MAP}, or the trees keep
+     *             different aggregates
+     */
+    public static <K extends Comparable<K>, V> RedBlackTree<K, V> union(
+            RedBlackTree<K, V> a, RedBlackTree<K, V> b, BinaryOperator<V> merge) {
+        return SetOperation.run(SetOperation.Kind.UNION, a, b, merge);
+    }
+
+    /**
+     * Makes a tree holding every key that is in both trees, with its value
+     * from a. see {@link #union(RedBlackTree, RedBlackTree, BinaryOperator)}
+     * 
+     * @pre both trees are in {@link KeyMode#MAP}
+     * @post a and b are empty
+     * 
+     * @param a
+     *            the first tree
+     * @param b
+     *            the second tree
+     * @return the intersection of the trees
+     * @throws IllegalArgumentException
+     *             if a tree is not in {@link KeyMode#MAP}, or the trees keep
+     *             different aggregates
+     */
+    public static <K extends Comparable<K>, V> RedBlackTree<K, V> intersection(
+            RedBlackTree<K, V> a, RedBlackTree<K, V> b) {
+        return SetOperation.run(SetOperation.Kind.INTERSECTION, a, b, null);
+    }
+
+    /**
+     * Makes a tree holding every key of a that is not in b. see
+     * {@link #union(RedBlackTree, RedBlackTree, BinaryOperator)}
+     * 
+     * @pre both trees are in {@link KeyMode#MAP}
+     * @post a and b are empty
+     * 
+     * @param a
+     *            the tree to take keys from
+     * @param b
+     *            the keys to leave out
+     * @return the difference of the trees
+     * @throws IllegalArgumentException
+     *             if a tree is not in {@link KeyMode#MAP}, or the trees keep
+     *             different aggregates
+     */
+    public static <K extends Comparable<K>, V> RedBlackTree<K, V> difference(
+            RedBlackTree<K, V> a, RedBlackTree<K, V> b) {
+        return SetOperation.run(SetOperation.Kind.DIFFERENCE, a, b, null);
+    }
+
+    /**
+     * Takes a node out of the tree and puts the tree back in balance. If the
+     * node has children it is given the mapping of the one next to it in
+     * order, and that one is taken out instead.
+     * 
+     * @pre toBeDeleted is in the tree
+     * @post the mapping of toBeDeleted is no longer in the tree
+     * 
+     * @param toBeDeleted
+     *            the node whose mapping is to be deleted
+     * @return a node that is still in the tree and was near the one taken out,
+     *         or null if the tree is now empty
+     */
+    private Node<K, V> removeNode(Node<K, V> toBeDeleted) {
+        // if the root is the only node
+        if (toBeDeleted == root && root.getRightChild() == theNilLeaf
+                && root.getLeftChild() == theNilLeaf) {
+            root = null;
+            minimum = null;
+            maximum = null;
+            lastAdded = null;
+            return null;
+        }
+
+        // this will tell if using the successor or predecessor
+        boolean successor = false;
+        Node<K, V> replaceNode;
+        if (toBeDeleted.getRightChild() == theNilLeaf
+                && toBeDeleted.getLeftChild() == theNilLeaf) {
+            replaceNode = toBeDeleted;
+        } else if (toBeDeleted.getRightChild() != theNilLeaf) {
+           
+            successor = true;
+            replaceNode = findInOrderSuccessor(toBeDeleted.getRightChild());
+
+        } else {
+        
+            replaceNode = findInOrderPredecessor(toBeDeleted.getLeftChild());
+        }
+
+    
+
+        // this should never happen because we know the node to be deleted
+        // exists
+        assert (replaceNode != null);
+
+        // the other nodes keep their place in order, so only the node really
+        // leaving the tree can spoil what is remembered
+        if (replaceNode == minimum) {
+            minimum = null;
+        }
+        if (replaceNode == maximum) {
+            maximum = null;
+        }
+        if (replaceNode == lastAdded) {
+            lastAdded = null;
+        }
+
+        toBeDeleted.setMapping(replaceNode.getKey(), replaceNode.getValue());
+
+        Node<K, V> nodeNeedingBalance;
+        Node<K, V> parentOfReplaced = replaceNode.getParent();
+        if (replaceNode.isRed()) {
+
+            // if the node to be deleted is red than both of it's children
+            // must be leaves because at least one of it's children is a leaf
+            // otherwise it wouldn't be a successor or predecessor. Both child
+            // must leaves or it it would violate the black rule.
+            assert (replaceNode.getRightChild() == theNilLeaf && replaceNode
+                    .getLeftChild() == theNilLeaf);
+
+            // replace the node to with a nil leaf
+            if (parentOfReplaced.getRightChild() == replaceNode) {
+                parentOfReplaced.setRightChild(theNilLeaf);
+            } else {
+                parentOfReplaced.setLeftChild(theNilLeaf);
+            }
+            resize(parentOfReplaced, -1);
+            return parentOfReplaced;
+
+        } else {
+
+            if (successor) {
+                // if we have the successor to delete then the left child is
+                // definitely going to be a leaf
+                assert (replaceNode.getLeftChild() == theNilLeaf);
+                nodeNeedingBalance = replaceNode.getRightChild();
+            } else {
+                // if we have the predecessor to delete then the right child is
+                // definitely going to be a leaf
+                assert (replaceNode.getRightChild() == theNilLeaf);
+                nodeNeedingBalance = replaceNode.getLeftChild();
+            }
+
+            // in some cases the replacing node will be a right child and in
+            // some it will be the left
+            if (parentOfReplaced.getRightChild() == replaceNode) {
+                parentOfReplaced.setRightChild(nodeNeedingBalance);
+            } else {
+                parentOfReplaced.setLeftChild(nodeNeedingBalance);
+            }
+            // the nil leaf is shared, so it never gets a parent, the parent
+            // is handed to deleteBalance instead
+            if (nodeNeedingBalance != theNilLeaf) {
+                nodeNeedingBalance.setParent(parentOfReplaced);
+            }
+
+            // the sizes and aggregates up to the root, toBeDeleted's new
+            // mapping among them, are fixed before the rotations trust them
+            resize(parentOfReplaced, -1);
+
+            replaceNode.setRightChild(null);
+            replaceNode.setLeftChild(null);
+            replaceNode.setParent(null);
+
+            if (nodeNeedingBalance.isRed()) {
+                // case 0: child of replacer was red, replacer was black, so
+                // repaint the child black
+                fireRebalance(RebalanceEvent.DELETE_CASE_0, nodeNeedingBalance);
+                paint(nodeNeedingBalance, BLACK);
+            } else {
+                deleteBalance(nodeNeedingBalance, parentOfReplaced);
+            }
+        }
+
+        return parentOfReplaced;
+    }
+
+    /**
+     * Writes every mapping of the tree, in order of key, with checksums and
+     * without compression. see
+     * {@link #writeSnapshot(OutputStream, Codec, Codec, boolean, boolean)}
+     * 
+     * @pre nothing changes the tree while it is written
+     * @post the snapshot has been written to out and out flushed, but not
+     *       closed
+     * 
+     * @param out
+     *            where the snapshot is written
+     * @param keys
+     *            writes the keys
+     * @param values
+     *            writes the values
+     * @throws IOException
+     *             if out can't be written to
+     */
+    public void writeSnapshot(OutputStream out, Codec<? super K> keys,
+            Codec<? super V> values) throws IOException {
+        writeSnapshot(out, keys, values, false, true);
+    }
+
+    /**
+     * Writes every mapping of the tree, in order of key, so that
+     * {@link #readSnapshot(InputStream, Codec, Codec)} can build it again.
+     * The mappings are written in blocks of about 64 KiB, each of which can
+     * be compressed and given a CRC32.
+     * 
+     * @pre nothing changes the tree while it is written
+     * @post the snapshot has been written to out and out flushed, but not
+     *       closed
+     * 
+     * @param out
+     *            where the snapshot is written
+     * @param keys
+     *            writes the keys
+     * @param values
+     *            writes the values
+     * @param compress
+     *            if true each block is compressed with a Deflater
+     * @param checksum
+     *            if true each block has a checksum that is checked when it is
+     *            read
+     * @throws IOException
+     *             if out can't be written to
+     */
+    public void writeSnapshot(OutputStream out, Codec<? super K> keys,
+            Codec<? super V> values, boolean compress, boolean checksum)
+            throws IOException {
+        TreeSnapshot.write(this, mode, out, keys, values, compress, checksum);
+    }
+
+    /**
+     * Writes every mapping of the tree to a channel. see
+     * {@link #writeSnapshot(OutputStream, Codec, Codec, boolean, boolean)}
+     * 
+     * @pre nothing changes the tree while it is written
+     * @post the snapshot has been written to channel, which is not closed
+     * 
+     * @param channel
+     *            where the snapshot is written
+     * @param keys
+     *            writes the keys
+     * @param values
+     *            writes the values
+     * @param compress
+     *            if true each block is compressed with a Deflater
+     * @param checksum
+     *            if true each block has a checksum that is checked when it is
+     *            read
+     * @throws IOException
+     *             if channel can't be written to
+     */
+    public void writeSnapshot(WritableByteChannel channel,
+            Codec<? super K> keys, Codec<? super V> values, boolean compress,
+            boolean checksum) throws IOException {
+        writeSnapshot(Channels.newOutputStream(channel), keys, values,
+                compress, checksum);
+    }
+
+    /**
+     * Installs a listener that is told about every case, rotation and recolor
+     * of the rebalancing done by add and delete. Passing null removes it, so
+     * the tree does no extra work.
+     * 
+     * @pre true
+     * @post the listener will be told about every following rebalance
+     * 
+     * @param listener
+     *            the listener to install, or null for none
+     */
+    public void setRebalanceListener(RebalanceListener<K, V> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * This method looks up the value associated with the key.
+     * 
+     * @pre true
+     * @post the value mapped to the key is returned, or null if the key is not
+     *       in the tree
+     * 
+     * @param key
+     *            the key of the value
+     * @return the value indexed by key, or null if there is no such mapping
+     */
+    public V lookup(K key) {
+        if (key == null) {
+            return null;
+        }
+
+        Node<K, V> found = lookupHelper(key);
+        if (found == null) {
+            return null;
+        }
+        return found.getValue();
+    }
+
+    /**
+     * Gets the number of mappings in the tree
+     * 
+     * @pre true
+     * @post the tree is unchanged
+     * 
+     * @return the number of mappings
+     */
+    public int size() {
+        if (root == null) {
+            return 0;
+        }
+        return root.getSize();
+    }
+
+    /**
+     * Counts the keys that are less than the given key, which is the position
+     * the key has or would have in sorted order.
+     * 
+     * @pre key is not null
+     * @post the tree is unchanged
+     * 
+     * @param key
+     *            the key to rank
+     * @return the number of keys less than key
+     */
+    public int rank(K key) {
+        return countBelow(key, false);
+    }
+
+    /**
+     * Finds the key at a position in sorted order.
+     * 
+     * @pre true
+     * @post the tree is unchanged
+     * 
+     * @param index
+     *            the position, 0 being the smallest key
+     * @return the key at that position, or null if there is no such position
+     */
+    public K select(int index) {
+        if (index < 0 || index >= size()) {
+            return null;
+        }
+        Node<K, V> current = root;
+        while (true) {
+            int leftSize = current.getLeftChild().getSize();
+            if (index < leftSize) {
+                current = current.getLeftChild();
+            } else if (index == leftSize) {
+                return current.getKey();
+            } else {
+                index -= leftSize + 1;
+                current = current.getRightChild();
+            }
+        }
+    }
+
+    /**
+     * Counts the keys from lo to hi, both included.
+     * 
+     * @pre lo and hi are not null
+     * @post the tree is unchanged
+     * 
+     * @param lo
+     *            the smallest key to count
+     * @param hi
+     *            the largest key to count
+     * @return the number of keys k with lo <= k <= hi, 0 if hi is less than lo
+     */
+    public int countRange(K lo, K hi) {
+        if (lo.compareTo(hi) > 0) {
+            return 0;
+        }
+        return countBelow(hi, true) - countBelow(lo, false);
+    }
+
+    /**
+     * Aggregates the values of the keys from lo to hi, both included, in
+     * order of key. Each node keeps the aggregate of its subtree, so only the
+     * two paths down to lo and hi are walked: below the node where they part,
+     * every subtree hanging inside the range is taken whole.
+     * 
+     * @pre the tree was made with aggregator
+     * @post the tree is unchanged
+     * 
+     * @param lo
+     *            the smallest key to aggregate, null for no lower bound
+     * @param hi
+     *            the largest key to aggregate, null for no upper bound
+     * @param aggregator
+     *            the aggregator the tree was made with, which gives the type
+     *            of the aggregate
+     * @return the aggregate of the values of the keys k with lo <= k <= hi,
+     *         the identity if there are none
+     * @throws IllegalArgumentException
+     *             if the tree was not made with aggregator
+     */
+    @SuppressWarnings("unchecked")
+    public <A> A aggregate(K lo, K hi, Aggregator<? super V, A> aggregator) {
+        if (aggregator == null || aggregator != this.aggregator) {
+            throw new IllegalArgumentException(
+                    "the tree does not keep that aggregate");
+        }
+
+        // find the highest node in the range, where the paths to lo and hi
+        // part
+        Node<K, V> split = root;
+        while (split != null && split != theNilLeaf) {
+            if (lo != null && split.getKey().compareTo(lo) < 0) {
+                split = split.getRightChild();
+            } else if (hi != null && split.getKey().compareTo(hi) > 0) {
+                split = split.getLeftChild();
+            } else {
+                break;
+            }
+        }
+        if (split == null || split == theNilLeaf) {
+            return aggregator.identity();
+        }
+
+        // down the left to lo, every node at least lo comes in with all that
+        // is right of it, ahead of what came in before
+        A lower = aggregator.identity();
+        Node<K, V> current = split.getLeftChild();
+        while (current != theNilLeaf) {
+            if (lo == null || current.getKey().compareTo(lo) >= 0) {
+                A taken = aggregator.of(current.getValue());
+                if (current.getRightChild() != theNilLeaf) {
+                    taken = aggregator.combine(taken, (A) current
+                            .getRightChild().getAggregate());
+                }
+                lower = aggregator.combine(taken, lower);
+                current = current.getLeftChild();
+            } else {
+                current = current.getRightChild();
+            }
+        }
+
+        // and down the right to hi the same way, behind what came in before
+        A higher = aggregator.identity();
+        current = split.getRightChild();
+        while (current != theNilLeaf) {
+            if (hi == null || current.getKey().compareTo(hi) <= 0) {
+                A taken = aggregator.of(current.getValue());
+                if (current.getLeftChild() != theNilLeaf) {
+                    taken = aggregator.combine((A) current.getLeftChild()
+                            .getAggregate(), taken);
+                }
+                higher = aggregator.combine(higher, taken);
+                current = current.getRightChild();
+            } else {
+                current = current.getLeftChild();
+            }
+        }
+
+        return aggregator.combine(
+                aggregator.combine(lower, aggregator.of(split.getValue())),
+                higher);
+    }
+
+    /**
+     * Gets a view of the keys from lo, included, up to hi, not included.
+     * 
+     * @pre lo and hi are not null
+     * @post the tree is unchanged
+     * 
+     * @param lo
+     *            the lowest key of the view
+     * @param hi
+     *            the key the view stops before
+     * @return the view
+     */
+    public TreeView<K, V> subMap(K lo, K hi) {
+        return subMap(lo, true, hi, false);
+    }
+
+    /**
+     * Gets a view of the keys from lo to hi.
+     * 
+     * @pre true
+     * @post the tree is unchanged
+     * 
+     * @param lo
+     *            the lowest key of the view, null for no lower bound
+     * @param loInclusive
+     *            if lo itself is in the view
+     * @param hi
+     *            the highest key of the view, null for no upper bound
+     * @param hiInclusive
+     *            if hi itself is in the view
+     * @return the view
+     */
+    public TreeView<K, V> subMap(K lo, boolean loInclusive, K hi,
+            boolean hiInclusive) {
+        return new TreeView<K, V>(this, lo, loInclusive, hi, hiInclusive, false);
+    }
+
+    /**
+     * Gets a view of the keys less than hi.
+     * 
+     * @pre hi is not null
+     * @post the tree is unchanged
+     * 
+     * @param hi
+     *            the key the view stops before
+     * @return the view
+     */
+    public TreeView<K, V> headMap(K hi) {
+        return subMap(null, false, hi, false);
+    }
+
+    /**
+     * Gets a view of the keys less than, or if inclusive equal to, hi.
+     * 
+     * @pre hi is not null
+     * @post the tree is unchanged
+     * 
+     * @param hi
+     *            the highest key of the view
+     * @param inclusive
+     *            if hi itself is in the view
+     * @return the view
+     */
+    public TreeView<K, V> headMap(K hi, boolean inclusive) {
+        return subMap(null, false, hi, inclusive);
+    }
+
+    /**
+     * Gets a view of the keys greater than or equal to lo.
+     * 
+     * @pre lo is not null
+     * @post the tree is unchanged
+     * 
+     * @param lo
+     *            the lowest key of the view
+     * @return the view
+     */
+    public TreeView<K, V> tailMap(K lo) {
+        return subMap(lo, true, null, false);
+    }
+
+    /**
+     * Gets a view of the keys greater than, or if inclusive equal to, lo.
+     * 
+     * @pre lo is not null
+     * @post the tree is unchanged
+     * 
+     * @param lo
+     *            the lowest key of the view
+     * @param inclusive
+     *            if lo itself is in the view
+     * @return the view
+     */
+    public TreeView<K, V> tailMap(K lo, boolean inclusive) {
+        return subMap(lo, inclusive, null, false);
+    }
+
+    /**
+     * Gets a view of every key, from the largest to the smallest.
+     * 
+     * @pre true
+     * @post the tree is unchanged
+     * 
+     * @return the view
+     */
+    public TreeView<K, V> descendingMap() {
+        return new TreeView<K, V>(this, null, false, null, false, true);
+    }
+
+    /**
+     * Gets a spliterator over every node in key order that splits at subtree
+     * boundaries, see {@link TreeSpliterator}
+     * 
+     * @pre true
+     * @post the tree is unchanged
+     * 
+     * @return the spliterator
+     */
+    public TreeSpliterator<K, V> spliterator() {
+        return new TreeSpliterator<K, V>(this, null, root == null ? theNilLeaf
+                : root);
+    }
+
+    /**
+     * Gets a sequential stream of every node in key order
+     * 
+     * @pre true
+     * @post the tree is unchanged
+     * 
+     * @return the stream
+     */
+    public Stream<Node<K, V>> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Gets a parallel stream of every node in key order. Each worker takes a
+     * subtree.
+     * 
+     * @pre the tree is not changed while the stream runs
+     * @post the tree is unchanged
+     * 
+     * @return the stream
+     */
+    public Stream<Node<K, V>> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * This method helped me visualize the tree until I got pretty print working
+     * 
+     * @pre true
+     * @post the tree is printed sideways
+     * @deprecated
+     */
+    public void printTree() {
+        internalInOrderPrint(root, 0);
+    }
+
+    /**
+     * This prints the tree in a readable format, regardless of key string
+     * length. See {@link TreeRenderer} to draw it somewhere else, as DOT or
+     * JSON, or only its top levels.
+     * 
+     * @pre true
+     * @post the tree is printed
+     */
+    public void prettyPrint() {
+        try {
+            new TreeRenderer<K, V>(RenderFormat.TEXT).render(this, System.out);
+        } catch (IOException e) {
+            // a PrintStream never throws, it only sets its error flag
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Gets the nil leaf, so code drawing the tree can tell where it ends
+     * 
+     * @pre true
+     * @post the tree is unchanged
+     * 
+     * @return the node that stands for every nil leaf
+     */
+    Node<K, V> nilLeaf() {
+        return theNilLeaf;
+    }
+
+    /**
+     * This internal method will check the 5 cases that might occur when a node
+     * is added and it breaks the 4 RBT rules.
+     * 
+     * @pre the only rules that are broken are from the latest add proc.
+     * @post all 4 of the RBT rules are not violated
+     * @param currentNode
+     *            the node to start checking on
+     * @return whether a red root was painted black, which makes every path one
+     *         black node longer
+     */
+    private boolean addBalance(Node<K, V> currentNode) {
+
+        // first case is when the root is not black. so color it black.
+        if (currentNode == root) {
+            fireRebalance(RebalanceEvent.INSERT_CASE_1, currentNode);
+            boolean wasRed = currentNode.isRed();
+            paint(currentNode, BLACK);
+            return wasRed;
+        }
+
+        Node<K, V> parent = currentNode.getParent();
+
+        // if the node is not the root then it should never have a null parent.
+        assert (parent != null);
+
+        // if parent is black no problem.
+        if (!parent.isRed()) {
+            fireRebalance(RebalanceEvent.INSERT_CASE_2, currentNode);
+            return false;
+        }
+        // The parent should always be red here
+        assert (parent.isRed());
+
+        Node<K, V> grandparent = parent.getParent();
+        Node<K, V> uncle = getUncle(currentNode);
+
+        // if the uncle and parent are red, re-color both to black and re-color
+        // gramp to red and call on gramp.
+        if (uncle.isRed()) {
+            fireRebalance(RebalanceEvent.INSERT_CASE_3, currentNode);
+            paint(uncle, BLACK);
+            paint(parent, BLACK);
+            paint(grandparent, RED);
+            return addBalance(grandparent);
+
+            // cases 4 and 5 involve rotations.
+        } else {
+
+            // case 4a and 4b simply set up for case 5a and 5b.
+            if (parent.getRightChild() == currentNode
+                    && grandparent.getLeftChild() == parent) {
+                fireRebalance(RebalanceEvent.INSERT_CASE_4, currentNode);
+
+                rotateLeft(parent);
+
+                // reset all the helpful variables
+                currentNode = currentNode.getLeftChild();
+                parent = currentNode.getParent();
+                grandparent = parent.getParent();
+
+            } else if (parent.getLeftChild() == currentNode
+                    && grandparent.getRightChild() == parent) {
+                fireRebalance(RebalanceEvent.INSERT_CASE_4, currentNode);
+
+                rotateRight(parent);
+
+                // reset all the helpful variables
+                currentNode = currentNode.getRightChild();
+                parent = currentNode.getParent();
+                grandparent = parent.getParent();
+            }
+
+            // if either of these cases occur then we are done
+            fireRebalance(RebalanceEvent.INSERT_CASE_5, currentNode);
+            if (grandparent.getLeftChild() == parent) {
+                rotateRight(grandparent);
+            } else {
+                rotateLeft(grandparent);
+            }
+            paint(grandparent, RED);
+            paint(parent, BLACK);
+
+        }
+        return false;
+    }
+
+    /**
+     * This internal method will check the 6 cases that might occur when a
+     * black node is deleted and it breaks the 4 RBT rules.
+     * 
+     * @pre the only rules that are broken are from the latest delete proc.
+     *      every path through node has one black node too few
+     * @post all 4 of the RBT rules are not violated
+     * @param node
+     *            the node to start checking on, may be the nil leaf
+     * @param parent
+     *            the parent of node. This is passed in because node may be
+     *            the nil leaf, which has no parent of it's own
+     */
+    private void deleteBalance(Node<K, V> node, Node<K, V> parent) {
+
+        // Case 1 the node is the root, removing a black from every path is
+        // fine
+        if (parent == null) {
+            fireRebalance(RebalanceEvent.DELETE_CASE_1, node);
+            return;
+        }
+
+        boolean nodeIsLeft = parent.getLeftChild() == node;
+        Node<K, V> sibling;
+        if (nodeIsLeft) {
+            sibling = parent.getRightChild();
+        } else {
+            sibling = parent.getLeftChild();
+        }
+
+        // the missing black means the sibling's side has at least one black
+        // node, so it can't be a leaf
+        assert (sibling != theNilLeaf);
+
+        // Case 2 the sibling is red, make it black by rotating on the parent
+        if (sibling.isRed()) {
+            fireRebalance(RebalanceEvent.DELETE_CASE_2, node);
+            paint(parent, RED);
+            paint(sibling, BLACK);
+
+            if (nodeIsLeft) {
+                rotateLeft(parent);
+                sibling = parent.getRightChild();
+            } else {
+                rotateRight(parent);
+                sibling = parent.getLeftChild();
+            }
+        }
+
+        // Case 3 4 5 and 6
+        // the sibling is black
+        if (!sibling.getRightChild().isRed()
+                && !sibling.getLeftChild().isRed()) {
+
+            // Case 3
+            if (!parent.isRed()) {
+                fireRebalance(RebalanceEvent.DELETE_CASE_3, node);
+                paint(sibling, RED);
+                deleteBalance(parent, parent.getParent());
+                return;
+            }
+
+            // Case 4
+            fireRebalance(RebalanceEvent.DELETE_CASE_4, node);
+            paint(sibling, RED);
+            paint(parent, BLACK);
+            return;
+        }
+
+        // Sibling is still black but it's children aren't both black
+
+        // Case 5 only the inner child of the sibling is red, rotate it out
+        if (nodeIsLeft && !sibling.getRightChild().isRed()) {
+            fireRebalance(RebalanceEvent.DELETE_CASE_5, node);
+            paint(sibling, RED);
+            paint(sibling.getLeftChild(), BLACK);
+            rotateRight(sibling);
+            sibling = parent.getRightChild();
+        } else if (!nodeIsLeft && !sibling.getLeftChild().isRed()) {
+            fireRebalance(RebalanceEvent.DELETE_CASE_5, node);
+            paint(sibling, RED);
+            paint(sibling.getRightChild(), BLACK);
+            rotateLeft(sibling);
+            sibling = parent.getLeftChild();
+        }
+
+        // Case 6 the outer child of the sibling is red
+        fireRebalance(RebalanceEvent.DELETE_CASE_6, node);
+        paint(sibling, parent.isRed());
+        paint(parent, BLACK);
+        if (nodeIsLeft) {
+            paint(sibling.getRightChild(), BLACK);
+            rotateLeft(parent);
+        } else {
+            paint(sibling.getLeftChild(), BLACK);
+            rotateRight(parent);
+        }
+
+    }
+
+    /**
+     * Tells the listener, if there is one, about a step of a rebalance.
+     * 
+     * @pre true
+     * @post the listener has been told about the event
+     * 
+     * @param event
+     *            what the tree is doing
+     * @param node
+     *            the node the tree is doing it to
+     */
+    private void fireRebalance(RebalanceEvent event, Node<K, V> node) {
+        if (listener != null) {
+            listener.onRebalance(event, node);
+        }
+    }
+
+    /**
+     * Colors a node during a rebalance and tells the listener, if there is one.
+     * 
+     * @pre true
+     * @post the node has the given color
+     * 
+     * @param node
+     *            the node to color
+     * @param red
+     *            the color (true for red) to set
+     */
+    private void paint(Node<K, V> node, boolean red) {
+        node.setColor(red);
+        fireRebalance(RebalanceEvent.RECOLOR, node);
+    }
+
+    /**
+     * Changes the subtree size of a node and all of it's ancestors, and works
+     * out their aggregates again
+     * 
+     * @pre the children of node have the right sizes and aggregates
+     * @post every node from node up to the root has it's size changed
+     * 
+     * @param node
+     *            the lowest node to change, may be null
+     * @param change
+     *            how much to add to each size
+     */
+    private void resize(Node<K, V> node, int change) {
+        while (node != null) {
+            node.setSize(node.getSize() + change);
+            pull(node);
+            node = node.getParent();
+        }
+    }
+
+    /**
+     * Works out the aggregate of a node from its value and the aggregates of
+     * its children, if the tree keeps aggregates
+     * 
+     * @pre node's children have the right aggregates
+     * @post node has the right aggregate
+     * 
+     * @param node
+     *            the node to work out, not the nil leaf
+     */
+    private void pull(Node<K, V> node) {
+        if (aggregator == null) {
+            return;
+        }
+        Object aggregate = node.getValue() == null ? aggregator.identity()
+                : aggregator.of(node.getValue());
+        if (node.getLeftChild() != theNilLeaf) {
+            aggregate = aggregator.combine(node.getLeftChild().getAggregate(),
+                    aggregate);
+        }
+        if (node.getRightChild() != theNilLeaf) {
+            aggregate = aggregator.combine(aggregate, node.getRightChild()
+                    .getAggregate());
+        }
+        node.setAggregate(aggregate);
+    }
+
+    /**
+     * Recomputes the subtree sizes of a node that was just rotated down and of
+     * the node that took it's place. No other sizes change in a rotation. The
+     * pivot is over the same nodes node was, so it takes node's size and
+     * aggregate, and node works its own out again.
+     * 
+     * @pre node's children have the right sizes and aggregates
+     * @post node and it's parent have the right sizes and aggregates
+     * 
+     * @param node
+     *            the node that was rotated on
+     */
+    private void fixSizes(Node<K, V> node) {
+        Node<K, V> pivot = node.getParent();
+        pivot.setSize(node.getSize());
+        pivot.setAggregate(node.getAggregate());
+        node.setSize(node.getLeftChild().getSize()
+                + node.getRightChild().getSize() + 1);
+        pull(node);
+    }
+
+    /**
+     * Performs a right rotation on the node
+     * 
+     * @pre the node called on must not be a node with less than 2 levels of
+     *      children below it.
+     * @post a left rotation is performed
+     * @param node
+     *            the node to rotate on
+     */
+    private void rotateRight(Node<K, V> node) {
+
+        if (node != root) {
+            if (node.getParent().getLeftChild() == node) {
+                node.getLeftChild().setParent(node.getParent());
+                node.getParent().setLeftChild(node.getLeftChild());
+
+                Node<K, V> nodesOldLeftChild = node.getLeftChild();
+                node.setLeftChild(node.getLeftChild().getRightChild());
+                if (node.getLeftChild() != theNilLeaf) {
+                    node.getLeftChild().setParent(node);
+                }
+                nodesOldLeftChild.setRightChild(node);
+                node.setParent(nodesOldLeftChild);
+
+                // after rotation node should be child of old child
+                assert (node.getParent() == nodesOldLeftChild);
+
+            } else if (node.getParent().getRightChild() == node) {
+                node.getLeftChild().setParent(node.getParent());
+                node.getParent().setRightChild(node.getLeftChild());
+
+                Node<K, V> nodesOldLeftChild = node.getLeftChild();
+                node.setLeftChild(node.getLeftChild().getRightChild());
+                if (node.getLeftChild() != theNilLeaf) {
+                    node.getLeftChild().setParent(node);
+                }
+                nodesOldLeftChild.setRightChild(node);
+                node.setParent(nodesOldLeftChild);
+
+                // after rotation node should be child of old child
+                assert (node.getParent() == nodesOldLeftChild);
+
+            }
+        } else {
+            node.getLeftChild().setParent(null);
+            root = node.getLeftChild();
+
+            node.setLeftChild(node.getLeftChild().getRightChild());
+            if (node.getLeftChild() != theNilLeaf) {
+                node.getLeftChild().setParent(node);
+            }
+            root.setRightChild(node);
+            node.setParent(root);
+
+            // after rotation node should be child of root
+            assert (node.getParent() == root);
+
+        }
+        fixSizes(node);
+        fireRebalance(RebalanceEvent.ROTATE_RIGHT, node);
+
+    }
+
+    /**
+     * Performs a left rotation on the node
+     * 
+     * @pre the node called on must not be a node with less than 2 levels of
+     *      children below it.
+     * @post a left rotation is performed
+     * @param node
+     *            the node to rotate on
+     */
+    private void rotateLeft(Node<K, V> node) {
+
+        if (node != root) {
+            if (node.getParent().getLeftChild() == node) {
+                node.getParent().setLeftChild(node.getRightChild());
+                node.getRightChild().setParent(node.getParent());
+
+                Node<K, V> nodesOldRightChild = node.getRightChild();
+                node.setRightChild(node.getRightChild().getLeftChild());
+                if (node.getRightChild() != theNilLeaf) {
+                    node.getRightChild().setParent(node);
+                }
+                nodesOldRightChild.setLeftChild(node);
+                node.setParent(nodesOldRightChild);
+
+                // after rotation node should be child of old child
+                assert (node.getParent() == nodesOldRightChild);
+
+            } else if (node.getParent().getRightChild() == node) {
+                node.getParent().setRightChild(node.getRightChild());
+                node.getRightChild().setParent(node.getParent());
+
+                Node<K, V> nodesOldRightChild = node.getRightChild();
+                node.setRightChild(node.getRightChild().getLeftChild());
+                if (node.getRightChild() != theNilLeaf) {
+                    node.getRightChild().setParent(node);
+                }
+                nodesOldRightChild.setLeftChild(node);
+                node.setParent(nodesOldRightChild);
+
+                // after rotation node should be child of old child
+                assert (node.getParent() == nodesOldRightChild);
+            }
+        } else {
+            node.getRightChild().setParent(null);
+            root = node.getRightChild();
+
+            node.setRightChild(node.getRightChild().getLeftChild());
+            if (node.getRightChild() != theNilLeaf) {
+                node.getRightChild().setParent(node);
+            }
+            root.setLeftChild(node);
+            node.setParent(root);
+
+            // after rotation node should be child of root
+            assert (node.getParent() == root);
+        }
+        fixSizes(node);
+        fireRebalance(RebalanceEvent.ROTATE_LEFT, node);
+
+    }
+
+    /**
+     * Finds the uncle of the given node
+     * 
+     * @pre the passed node is not the root
+     * @post the uncle of the node is returned
+     * @param currentNode
+     *            the node to find the uncle of.
+     * @return the uncle of currentNode
+     */
+    private Node<K, V> getUncle(Node<K, V> currentNode) {
+        // this method should never be called on a node without a parent. i. e.
+        // the root
+        assert (currentNode.getParent() != null);
+
+        Node<K, V> parent = currentNode.getParent();
+
+        // just making sure that the root is black
+        if (parent.getParent() == null) {
+            assert (!parent.isRed());
+        }
+
+        if (parent.getParent().getLeftChild() == parent) {
+            return parent.getParent().getRightChild();
+        } else if (parent.getParent().getRightChild() == parent) {
+            return parent.getParent().getLeftChild();
+        }
+
+        // we must have returned by now.
+        assert (false);
+        return null;
+
+    }
+
+    /**
+     * Counts the keys below key in one descent, adding up the left subtree
+     * sizes of every node the path goes right from.
+     * 
+     * @pre key is not null
+     * @post the tree is unchanged
+     * 
+     * @param key
+     *            the key to count below
+     * @param inclusive
+     *            if keys equal to key are counted too
+     * @return the number of keys less than, or if inclusive not greater than,
+     *         key
+     */
+    private int countBelow(K key, boolean inclusive) {
+        int count = 0;
+        Node<K, V> current = root;
+        while (current != null && current != theNilLeaf) {
+            int comparison = current.getKey().compareTo(key);
+            if (comparison < 0 || (inclusive && comparison == 0)) {
+                count += current.getLeftChild().getSize() + 1;
+                current = current.getRightChild();
+            } else {
+                current = current.getLeftChild();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the keys below key, see {@link #countBelow(Comparable, boolean)}.
+     * Null counts nothing, or if inclusive, everything.
+     * 
+     * @pre true
+     * @post the tree is unchanged
+     * 
+     * @param key
+     *            the key to count below, may be null
+     * @param inclusive
+     *            if keys equal to key are counted too
+     * @return the number of keys below key
+     */
+    int countBelowOrAll(K key, boolean inclusive) {
+        if (key == null) {
+            return inclusive ? size() : 0;
+        }
+        return countBelow(key, inclusive);
+    }
+
+    /**
+     * Finds the first node in order whose key is greater than, or if
+     * inclusive equal to, key.
+     * 
+     * @pre true
+     * @post the tree is unchanged
+     * 
+     * @param key
+     *            the key to start from, null for the smallest node
+     * @param inclusive
+     *            if a node equal to key can be the one found
+     * @return the node, or null if there is none
+     */
+    Node<K, V> lowestAbove(K key, boolean inclusive) {
+        Node<K, V> found = null;
+        Node<K, V> current = root;
+        while (current != null && current != theNilLeaf) {
+            int comparison = key == null ? 1 : current.getKey().compareTo(key);
+            if (comparison > 0 || (inclusive && comparison == 0)) {
+                found = current;
+                current = current.getLeftChild();
+            } else {
+                current = current.getRightChild();
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the last node in order whose key is less than, or if inclusive
+     * equal to, key.
+     * 
+     * @pre true
+     * @post the tree is unchanged
+     * 
+     * @param key
+     *            the key to start from, null for the largest node
+     * @param inclusive
+     *            if a node equal to key can be the one found
+     * @return the node, or null if there is none
+     */
+    Node<K, V> highestBelow(K key, boolean inclusive) {
+        Node<K, V> found = null;
+        Node<K, V> current = root;
+        while (current != null && current != theNilLeaf) {
+            int comparison = key == null ? -1 : current.getKey().compareTo(key);
+            if (comparison < 0 || (inclusive && comparison == 0)) {
+                found = current;
+                current = current.getRightChild();
+            } else {
+                current = current.getLeftChild();
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the node that comes after node in order by walking the child and
+     * parent links, without recursion or a stack.
+     * 
+     * @pre node is in the tree
+     * @post the tree is unchanged
+     * 
+     * @param node
+     *            the node to start from
+     * @return the next node, or null if node is the last
+     */
+    Node<K, V> nextNode(Node<K, V> node) {
+        if (node.getRightChild() != theNilLeaf) {
+            return findInOrderSuccessor(node.getRightChild());
+        }
+        Node<K, V> parent = node.getParent();
+        while (parent != null && parent.getRightChild() == node) {
+            node = parent;
+            parent = node.getParent();
+        }
+        return parent;
+    }
+
+    /**
+     * Finds the node that comes before node in order by walking the child and
+     * parent links, without recursion or a stack.
+     * 
+     * @pre node is in the tree
+     * @post the tree is unchanged
+     * 
+     * @param node
+     *            the node to start from
+     * @return the previous node, or null if node is the first
+     */
+    Node<K, V> previousNode(Node<K, V> node) {
+        if (node.getLeftChild() != theNilLeaf) {
+            return findInOrderPredecessor(node.getLeftChild());
+        }
+        Node<K, V> parent = node.getParent();
+        while (parent != null && parent.getLeftChild() == node) {
+            node = parent;
+            parent = node.getParent();
+        }
+        return parent;
+    }
+
+    /**
+     * Makes the node for the next mapping of a sorted bulk load, checking that
+     * it really comes after the ones before it, and in {@link KeyMode#MAP}
+     * that its key is not the same as the one before it.
+     * 
+     * @pre true
+     * @post a black node with nil leaves as children is returned
+     * 
+     * @param nodes
+     *            the nodes made so far
+     * @param key
+     *            the key of the mapping
+     * @param value
+     *            the value of the mapping
+     * @return the new node
+     */
+    private Node<K, V> newSortedNode(List<Node<K, V>> nodes, K key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("null mappings can't be added");
+        }
+        if (!nodes.isEmpty()) {
+            int comparison = nodes.get(nodes.size() - 1).getKey()
+                    .compareTo(key);
+            if (comparison > 0) {
+                throw new IllegalArgumentException("keys are not sorted at "
+                        + key);
+            }
+            if (comparison == 0 && mode == KeyMode.MAP) {
+                throw new IllegalArgumentException("key " + key
+                        + " is in a map twice");
+            }
+        }
+        return new Node<K, V>(BLACK, theNilLeaf, theNilLeaf, null, value, key);
+    }
+
+    /**
+     * Links sorted nodes into a balanced tree and makes it the whole of this
+     * tree. Every level is black except the bottom one when it is not full,
+     * which is red, so every path has the same number of black nodes.
+     * 
+     * @pre this tree is empty, the nodes are black and in order
+     * @post this tree holds the nodes
+     * 
+     * @param nodes
+     *            the nodes in order
+     */
+    private void linkSorted(List<Node<K, V>> nodes) {
+        int count = nodes.size();
+
+        // the deepest level that is full is the height of a perfect tree of
+        // count nodes, anything below it is red
+        int redLevel = 0;
+        for (int m = count; m > 1; m >>>= 1) {
+            redLevel++;
+        }
+        if (count > 0 && count == (1 << (redLevel + 1)) - 1) {
+            redLevel++;
+        }
+
+        root = linkSorted(nodes, 0, count - 1, 0, redLevel);
+        if (root == theNilLeaf) {
+            root = null;
+        } else {
+            root.setParent(null);
+        }
+    }
+
+    /**
+     * Links the nodes from lo to hi into a balanced subtree. The recursion is
+     * only as deep as the tree.
+     * 
+     * @param nodes
+     *            the nodes in order
+     * @param lo
+     *            the first node of the subtree
+     * @param hi
+     *            the last node of the subtree
+     * @param level
+     *            the depth of the subtree's root, the root being 0
+     * @param redLevel
+     *            the depth whose nodes are colored red
+     * @return the root of the subtree, or the nil leaf if it is empty
+     */
+    private Node<K, V> linkSorted(List<Node<K, V>> nodes, int lo, int hi,
+            int level, int redLevel) {
+        if (hi < lo) {
+            return theNilLeaf;
+        }
+        int middle = (lo + hi) >>> 1;
+        Node<K, V> node = nodes.get(middle);
+
+        Node<K, V> left = linkSorted(nodes, lo, middle - 1, level + 1,
+                redLevel);
+        Node<K, V> right = linkSorted(nodes, middle + 1, hi, level + 1,
+                redLevel);
+        node.setLeftChild(left);
+        node.setRightChild(right);
+        if (left != theNilLeaf) {
+            left.setParent(node);
+        }
+        if (right != theNilLeaf) {
+            right.setParent(node);
+        }
+        if (level == redLevel) {
+            node.setColor(RED);
+        }
+        node.setSize(hi - lo + 1);
+        pull(node);
+        return node;
+    }
+
+    /**
+     * This method is the one descent from the root that lookup, add and delete
+     * all share. It is a loop rather than a recursion and it compares the key
+     * only once at each level.
+     * 
+     * @pre key is not null
+     * @post the tree is unchanged
+     * 
+     * @param key
+     *            the key to search for
+     * @param stopOnMatch
+     *            if true the descent stops at the first node whose key equals
+     *            key, if false it keeps going down as an add would
+     * @return if stopOnMatch, the first node with a matching key or null if
+     *         there is none. Otherwise the last real node on the path, which
+     *         is the node to add onto, or null if the tree is empty
+     */
+    private Node<K, V> descend(K key, boolean stopOnMatch) {
+        return descendFrom(root, key, stopOnMatch);
+    }
+
+    /**
+     * This method is {@link #descend(Comparable, boolean)} started from any
+     * node instead of the root.
+     * 
+     * @pre key is not null, the place the key belongs is under start, see
+     *      {@link #climb(Node, Comparable, boolean)}
+     * @post the tree is unchanged
+     * 
+     * @param start
+     *            the node to start from, may be null
+     * @param key
+     *            the key to search for
+     * @param stopOnMatch
+     *            if true the descent stops at the first node whose key equals
+     *            key, if false it keeps going down as an add would
+     * @return the same as {@link #descend(Comparable, boolean)}
+     */
+    private Node<K, V> descendFrom(Node<K, V> start, K key,
+            boolean stopOnMatch) {
+        Node<K, V> current = start;
+        Node<K, V> last = null;
+
+        while (current != null && current != theNilLeaf) {
+            int comparison = current.getKey().compareTo(key);
+            if (comparison == 0 && stopOnMatch) {
+                return current;
+            }
+            last = current;
+
+            // greater than to the right, less or equal to the left
+            if (comparison < 0) {
+                current = current.getRightChild();
+            } else {
+                current = current.getLeftChild();
+            }
+        }
+
+        if (stopOnMatch) {
+            return null;
+        }
+        return last;
+    }
+
+    /**
+     * Goes up from a node to the lowest node whose subtree a descent from the
+     * root would go into on its way to the key, so that a descent from there
+     * ends in the same place. Only the nodes that bound the subtree are
+     * compared with, so if the key is near the node the climb is short.
+     * 
+     * @pre finger is in the tree, key is not null
+     * @post the tree is unchanged
+     * 
+     * @param finger
+     *            the node to start from
+     * @param key
+     *            the key that will be searched for
+     * @param stopOnMatch
+     *            whether the search will stop at a matching key, which sends
+     *            an equal key to neither side
+     * @return the node to start the descent from
+     */
+    private Node<K, V> climb(Node<K, V> finger, K key, boolean stopOnMatch) {
+        return climb(finger, key, stopOnMatch, Integer.MAX_VALUE);
+    }
+
+    /**
+     * This method is {@link #climb(Node, Comparable, boolean)} going up at
+     * most so many levels.
+     * 
+     * @pre finger is in the tree, key is not null
+     * @post the tree is unchanged
+     * 
+     * @param finger
+     *            the node to start from
+     * @param key
+     *            the key that will be searched for
+     * @param stopOnMatch
+     *            whether the search will stop at a matching key
+     * @param maxLevels
+     *            the most levels to go up
+     * @return the node to start the descent from, or null if it is more than
+     *         maxLevels above the finger
+     */
+    private Node<K, V> climb(Node<K, V> finger, K key, boolean stopOnMatch,
+            int maxLevels) {
+        Node<K, V> current = finger;
+        int levels = 0;
+
+        // nothing is above a subtree on the right spine, so that bound holds
+        // for any key, and nothing is below one on the left spine. Without
+        // this a run of keys past the highest climbs to the root every time
+        findEnds();
+        boolean belowUpperBound = onSpine(finger, true);
+        boolean aboveLowerBound = onSpine(finger, false);
+
+        // the finger is inside every subtree above it, so the key is already
+        // inside the bound on the finger's side of it, and only the other
+        // bound is looked for on the way up
+        int comparison = finger.getKey().compareTo(key);
+        if (comparison == 0 && stopOnMatch && mode == KeyMode.MAP) {
+            return finger;
+        }
+        if (comparison < 0) {
+            aboveLowerBound = true;
+        } else if (comparison > 0 || !stopOnMatch) {
+            belowUpperBound = true;
+        }
+
+        // once the key is inside a bound of a subtree it is inside that
+        // bound for every subtree above it too
+        while (current.getParent() != null
+                && !(belowUpperBound && aboveLowerBound)) {
+            Node<K, V> parent = current.getParent();
+            if (parent.getLeftChild() == current) {
+                if (!belowUpperBound) {
+                    comparison = parent.getKey().compareTo(key);
+                    if (comparison == 0 && stopOnMatch && mode == KeyMode.MAP) {
+                        // the only node with the key, found on the way up
+                        return parent;
+                    }
+                    belowUpperBound = stopOnMatch ? comparison > 0
+                            : comparison >= 0;
+                }
+            } else if (!aboveLowerBound) {
+                comparison = parent.getKey().compareTo(key);
+                if (comparison == 0 && stopOnMatch && mode == KeyMode.MAP) {
+                    return parent;
+                }
+                aboveLowerBound = comparison < 0;
+            }
+            if (belowUpperBound && aboveLowerBound) {
+                break;
+            }
+            if (++levels > maxLevels) {
+                return null;
+            }
+            current = parent;
+        }
+        return current;
+    }
+
+    /**
+     * Tells if a node is on the right or left spine of the tree, the path
+     * from the root to the highest or lowest key. Only the links below the
+     * node are followed, no key is compared.
+     * 
+     * @pre node is in the tree, the lowest and highest nodes are known
+     * @post the tree is unchanged
+     * 
+     * @param node
+     *            the node to check
+     * @param right
+     *            true for the right spine, false for the left
+     * @return whether the node is on that spine
+     */
+    private boolean onSpine(Node<K, V> node, boolean right) {
+        Node<K, V> current = node;
+        Node<K, V> next = right ? current.getRightChild() : current
+                .getLeftChild();
+        while (next != theNilLeaf) {
+            current = next;
+            next = right ? current.getRightChild() : current.getLeftChild();
+        }
+        return current == (right ? maximum : minimum);
+    }
+
+    /**
+     * Looks up a value while another thread may be changing the tree. Nothing
+     * is written, and the walk gives up rather than loop forever if a
+     * rotation half way done makes the links go in a circle. The answer is
+     * only good if the caller finds out afterward that no write happened, see
+     * {@link ConcurrentRedBlackTree}.
+     * 
+     * @pre key is not null
+     * @post the tree is unchanged
+     * 
+     * @param key
+     *            the key of the value
+     * @param maxDepth
+     *            the most levels to walk down before giving up
+     * @return the value indexed by key, or null if there is no such mapping
+     * @throws IllegalStateException
+     *             if the walk went deeper than maxDepth
+     */
+    V racyLookup(K key, int maxDepth) {
+        Node<K, V> current = root;
+        int depth = 0;
+
+        // removed nodes have null links, so a stale path just ends
+        while (current != null && current != theNilLeaf) {
+            if (++depth > maxDepth) {
+                throw new IllegalStateException("tree changed during lookup");
+            }
+            K currentKey = current.getKey();
+            if (currentKey == null) {
+                return null;
+            }
+            int comparison = currentKey.compareTo(key);
+            if (comparison == 0) {
+                return current.getValue();
+            }
+            if (comparison < 0) {
+                current = current.getRightChild();
+            } else {
+                current = current.getLeftChild();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Puts a mapping in the tree at the place a descent for its key ended. In
+     * {@link KeyMode#MAP}, if the key is already in the tree it is right next
+     * to that place, so its value is replaced there and nothing is added.
+     * 
+     * @pre placeToAdd is the node a descent for the key ended at
+     * @post the key maps to the value
+     * 
+     * @param placeToAdd
+     *            the node to add onto
+     * @param key
+     *            the key of the mapping
+     * @param value
+     *            the value of the mapping
+     * @return the node that holds the mapping
+     */
+    private Node<K, V> insert(Node<K, V> placeToAdd, K key, V value) {
+        Node<K, V> same = sameKey(placeToAdd, key);
+        if (same != null) {
+            same.setMapping(same.getKey(), value);
+            if (aggregator != null) {
+                // nothing moved, but the aggregates above have a new value in
+                // them
+                resize(same, 0);
+            }
+            return same;
+        }
+        return attach(placeToAdd, key, value);
+    }
+
+    /**
+     * Finds the node holding a key in {@link KeyMode#MAP}, given where a
+     * descent for the key ended. Equal keys go left, so the node with the key
+     * is the first one after the leaf the descent ended at: placeToAdd itself
+     * if that leaf is its left child, otherwise the node after it.
+     * 
+     * @pre placeToAdd is the node a descent for the key ended at
+     * @post the tree is unchanged
+     * 
+     * @param placeToAdd
+     *            the node the descent ended at
+     * @param key
+     *            the key to look for
+     * @return the node with the key, or null if there is none or the tree is
+     *         not in {@link KeyMode#MAP}
+     */
+    private Node<K, V> sameKey(Node<K, V> placeToAdd, K key) {
+        if (mode != KeyMode.MAP) {
+            return null;
+        }
+        Node<K, V> after = placeToAdd;
+        if (placeToAdd.getKey().compareTo(key) < 0) {
+            after = nextNode(placeToAdd);
+        }
+        if (after != null && after.getKey().compareTo(key) == 0) {
+            return after;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the node holding a key, adding one with a null value if the key
+     * is not in the tree, all in one descent. This is how
+     * {@link RedBlackMultimap} gets at the bucket of a key.
+     * 
+     * @pre the tree is in {@link KeyMode#MAP}, key is not null
+     * @post the key is in the tree, if it was added the caller has to set its
+     *       value
+     * 
+     * @param key
+     *            the key to find
+     * @return the node holding the key
+     */
+    Node<K, V> findOrAdd(K key) {
+        if (root == null) {
+            root = new Node<K, V>(BLACK, theNilLeaf, theNilLeaf, null, null,
+                    key);
+            pull(root);
+            minimum = root;
+            maximum = root;
+            lastAdded = root;
+            return root;
+        }
+        Node<K, V> placeToAdd = findPlaceToAdd(key);
+        Node<K, V> same = sameKey(placeToAdd, key);
+        if (same != null) {
+            return same;
+        }
+        return attach(placeToAdd, key, null);
+    }
+
+    /**
+     * Hangs a new red node under the given node and puts the tree back in
+     * balance.
+     * 
+     * @pre placeToAdd is the node a descent for the key ended at
+     * @post the mapping is in the tree
+     * 
+     * @param placeToAdd
+     *            the node to add onto
+     * @param key
+     *            the key of the new node
+     * @param value
+     *            the value of the new node
+     * @return the node that was added
+     */
+    private Node<K, V> attach(Node<K, V> placeToAdd, K key, V value) {
+
+        // the method traverseToAdd should never return null.
+        assert (placeToAdd != null);
+
+        // add as if it were a binary tree, greater than to the right, less or
+        // equal to the left. Except now after adding we have to make sure that
+        // the tree is still following it's conditions
+        Node<K, V> added = new Node<K, V>(RED, theNilLeaf, theNilLeaf,
+                placeToAdd, value, key);
+        if (placeToAdd.getKey().compareTo(key) < 0) {
+            placeToAdd.setRightChild(added);
+            if (placeToAdd == maximum) {
+                maximum = added;
+            }
+        } else {
+            placeToAdd.setLeftChild(added);
+            if (placeToAdd == minimum) {
+                minimum = added;
+            }
+        }
+        lastAdded = added;
+        pull(added);
+        resize(placeToAdd, 1);
+        addBalance(added);
+        return added;
+    }
+
+    /**
+     * This method does most of the logic of the split method. see
+     * {@link #split(Comparable)}. Going down the path to the key, each node
+     * and the side of it off the path are joined onto the tree of their side.
+     * 
+     * @pre node is not part of any tree, if red its parent was black
+     * @post less holds the keys under node less than key, and rest the others,
+     *       both with a black root
+     * 
+     * @param node
+     *            the root of the subtree to split, may be the nil leaf
+     * @param height
+     *            the number of black nodes on any path down from node
+     * @param key
+     *            the key to cut at
+     * @param extract
+     *            if true a node whose key equals key goes to neither side and
+     *            is returned instead
+     * @param less
+     *            is given the keys less than key
+     * @param rest
+     *            is given the keys that are at least key
+     * @param heights
+     *            is given the black heights of less and rest
+     * @return the node taken out if extract is true and one was found,
+     *         otherwise null
+     */
+    private Node<K, V> splitHelper(Node<K, V> node, int height, K key,
+            boolean extract, RedBlackTree<K, V> less, RedBlackTree<K, V> rest,
+            int[] heights) {
+        if (node == theNilLeaf) {
+            less.root = null;
+            rest.root = null;
+            heights[0] = 0;
+            heights[1] = 0;
+            return null;
+        }
+
+        int childHeight = node.isRed() ? height : height - 1;
+        Node<K, V> leftSide = detach(node.getLeftChild());
+        Node<K, V> rightSide = detach(node.getRightChild());
+        int leftHeight = childHeight;
+        int rightHeight = childHeight;
+        if (leftSide.isRed()) {
+            leftSide.setColor(BLACK);
+            leftHeight++;
+        }
+        if (rightSide.isRed()) {
+            rightSide.setColor(BLACK);
+            rightHeight++;
+        }
+        node.setLeftChild(theNilLeaf);
+        node.setRightChild(theNilLeaf);
+        node.setParent(null);
+        node.setSize(1);
+
+        int comparison = node.getKey().compareTo(key);
+        if (extract && comparison == 0) {
+            less.root = leftSide == theNilLeaf ? null : leftSide;
+            rest.root = rightSide == theNilLeaf ? null : rightSide;
+            heights[0] = leftHeight;
+            heights[1] = rightHeight;
+            return node;
+        }
+
+        Node<K, V> found;
+        if (comparison < 0) {
+            found = splitHelper(rightSide, rightHeight, key, extract, less,
+                    rest, heights);
+            heights[0] = less.joinRoots(leftSide, leftHeight, node, less.root,
+                    heights[0]);
+        } else {
+            found = splitHelper(leftSide, leftHeight, key, extract, less,
+                    rest, heights);
+            heights[1] = rest.joinRoots(rest.root, heights[1], node,
+                    rightSide, rightHeight);
+        }
+        return found;
+    }
+
+    /**
+     * Makes this tree the join of two subtrees and a node that goes between
+     * them. The shorter subtree is hung in place of a black node of the same
+     * black height on the near side of the taller one, under the pivot, and
+     * the tree is put back in balance as if the pivot were just added.
+     * 
+     * @pre the subtrees have black roots and are not part of any tree, every
+     *      key of left is at most the pivot's and every key of right at
+     *      least, the pivot has no children
+     * @post this tree holds the subtrees and the pivot
+     * 
+     * @param left
+     *            the root of the lower subtree, may be null or the nil leaf
+     * @param leftHeight
+     *            the number of black nodes on any path down from left
+     * @param pivot
+     *            the node that goes between the subtrees
+     * @param right
+     *            the root of the higher subtree, may be null or the nil leaf
+     * @param rightHeight
+     *            the number of black nodes on any path down from right
+     * @return the number of black nodes on any path down from the new root
+     */
+    private int joinRoots(Node<K, V> left, int leftHeight, Node<K, V> pivot,
+            Node<K, V> right, int rightHeight) {
+        if (left == null) {
+            left = theNilLeaf;
+        }
+        if (right == null) {
+            right = theNilLeaf;
+        }
+        minimum = null;
+        maximum = null;
+        lastAdded = null;
+
+        if (leftHeight == rightHeight) {
+            pivot.setColor(BLACK);
+            link(pivot, left, right);
+            pivot.setParent(null);
+            root = pivot;
+            return leftHeight + 1;
+        }
+
+        boolean leftTaller = leftHeight > rightHeight;
+        Node<K, V> shorter = leftTaller ? right : left;
+        int shorterHeight = leftTaller ? rightHeight : leftHeight;
+
+        // go down the near side of the taller tree to a black node as high
+        // as the shorter tree
+        root = leftTaller ? left : right;
+        Node<K, V> current = root;
+        Node<K, V> parent = null;
+        int height = Math.max(leftHeight, rightHeight);
+        while (current.isRed() || height > shorterHeight) {
+            if (!current.isRed()) {
+                height--;
+            }
+            parent = current;
+            current = leftTaller ? current.getRightChild() : current
+                    .getLeftChild();
+        }
+
+        pivot.setColor(RED);
+        if (leftTaller) {
+            link(pivot, current, shorter);
+            parent.setRightChild(pivot);
+        } else {
+            link(pivot, shorter, current);
+            parent.setLeftChild(pivot);
+        }
+        pivot.setParent(parent);
+        resize(parent, shorter.getSize() + 1);
+
+        int tallerHeight = Math.max(leftHeight, rightHeight);
+        return addBalance(pivot) ? tallerHeight + 1 : tallerHeight;
+    }
+
+    /**
+     * Makes this tree the join of two subtrees with no node to go between
+     * them. The highest node of left is taken out and used as the pivot.
+     * 
+     * @pre the subtrees have black roots and are not part of any tree, every
+     *      key of left is at most every key of right
+     * @post this tree holds the subtrees
+     * 
+     * @param left
+     *            the root of the lower subtree, may be null
+     * @param leftHeight
+     *            the number of black nodes on any path down from left
+     * @param right
+     *            the root of the higher subtree, may be null
+     * @param rightHeight
+     *            the number of black nodes on any path down from right
+     * @return the number of black nodes on any path down from the new root
+     */
+    private int joinRoots(Node<K, V> left, int leftHeight, Node<K, V> right,
+            int rightHeight) {
+        if (left == null || right == null) {
+            clear();
+            root = left == null ? right : left;
+            return left == null ? rightHeight : leftHeight;
+        }
+
+        clear();
+        root = left;
+        Node<K, V> highest = findInOrderPredecessor(left);
+        Node<K, V> pivot = new Node<K, V>(RED, theNilLeaf, theNilLeaf, null,
+                highest.getValue(), highest.getKey());
+        Node<K, V> child = highest.getLeftChild();
+        if (child == theNilLeaf) {
+            removeNode(highest);
+        } else {
+            // the highest node's only child is a red leaf, it takes the
+            // highest node's place and color
+            Node<K, V> parent = highest.getParent();
+            if (parent == null) {
+                root = child;
+            } else {
+                parent.setRightChild(child);
+            }
+            child.setParent(parent);
+            child.setColor(BLACK);
+            resize(parent, -1);
+        }
+        Node<K, V> lower = root;
+        root = null;
+        return joinRoots(lower, blackHeight(lower), pivot, right, rightHeight);
+    }
+
+    /**
+     * Gives a node its two children and the size that goes with them
+     * 
+     * @param node
+     *            the node to become the parent
+     * @param left
+     *            the new left child, may be the nil leaf
+     * @param right
+     *            the new right child, may be the nil leaf
+     */
+    private void link(Node<K, V> node, Node<K, V> left, Node<K, V> right) {
+        node.setLeftChild(left);
+        node.setRightChild(right);
+        if (left != theNilLeaf) {
+            left.setParent(node);
+        }
+        if (right != theNilLeaf) {
+            right.setParent(node);
+        }
+        node.setSize(left.getSize() + right.getSize() + 1);
+        pull(node);
+    }
+
+    /**
+     * Cuts a subtree off from its parent
+     * 
+     * @param node
+     *            the root of the subtree, may be the nil leaf
+     * @return the node
+     */
+    private Node<K, V> detach(Node<K, V> node) {
+        if (node != theNilLeaf) {
+            node.setParent(null);
+        }
+        return node;
+    }
+
+    /**
+     * Counts the black nodes on the leftmost path, which is the same as on
+     * any path
+     * 
+     * @return the black height of the tree, 0 if it is empty
+     */
+    private int blackHeight() {
+        return blackHeight(root);
+    }
+
+    /**
+     * Counts the black nodes on the leftmost path down from a node
+     * 
+     * @param top
+     *            the root of the subtree, may be null
+     * @return the black height of the subtree, 0 if it is empty
+     */
+    private int blackHeight(Node<K, V> top) {
+        int height = 0;
+        for (Node<K, V> node = top; node != null && node != theNilLeaf; node = node
+                .getLeftChild()) {
+            if (!node.isRed()) {
+                height++;
+            }
+        }
+        return height;
+    }
+
+    /**
+     * Empties the tree and forgets the nodes it remembered
+     */
+    private void clear() {
+        root = null;
+        minimum = null;
+        maximum = null;
+        lastAdded = null;
+    }
+
+    /**
+     * Finds the nodes with the lowest and highest keys again if one of them
+     * was taken out
+     * 
+     * @pre the tree is not empty
+     * @post the lowest and highest nodes are known
+     */
+    private void findEnds() {
+        if (minimum == null || maximum == null) {
+            minimum = findInOrderSuccessor(root);
+            maximum = findInOrderPredecessor(root);
+        }
+    }
+
+    /**
+     * Finds the node onto which a new node will be added, trying first the
+     * places keys that come in order go to: after the highest key, near the
+     * last key added and before the lowest key. Near the last key added means
+     * within {@value #NEAR_LEVELS} levels of it, found by climbing from it
+     * through the parent links only as far as the key needs, see
+     * {@link #climb(Node, Comparable, boolean)}. Only if none fits is there a
+     * full descent.
+     * 
+     * @pre the tree is not empty, key is not null
+     * @post the node a descent from the root would end at is returned
+     * 
+     * @param key
+     *            the key of the node to be added
+     * @return the node to add onto
+     */
+    private Node<K, V> findPlaceToAdd(K key) {
+        findEnds();
+
+        // greater than every key, a descent would only ever go right
+        if (maximum.getKey().compareTo(key) < 0) {
+            return maximum;
+        }
+
+        // keys that arrive a little out of order land near the last one
+        if (lastAdded != null) {
+            Node<K, V> start = climb(lastAdded, key, false, NEAR_LEVELS);
+            if (start != null) {
+                return descendFrom(start, key, false);
+            }
+        }
+
+        // at most the lowest key, a descent would only ever go left
+        if (minimum.getKey().compareTo(key) >= 0) {
+            return minimum;
+        }
+        return traverseForAdd(key);
+    }
+
+    /**
+     * The method find the node onto which the new node will be added
+     * 
+     * @pre the tree is not empty
+     * @post the node that should be added onto is returned. it is up to caller
+     *       to determine which side to add on to.
+     * 
+     * @param key
+     *            the key of the node to be added
+     * @return the node to add onto.
+     */
+    private Node<K, V> traverseForAdd(K key) {
+        return descend(key, false);
+    }
+
+    /**
+     * This method helps look up a node by key.
+     * 
+     * @pre true
+     * @post the node with the matching key is returned
+     * 
+     * @param key
+     *            the key of the node being looked for
+     * @return the node with the corresponding key if it exists, otherwise null
+     */
+    private Node<K, V> lookupHelper(K key) {
+        return descend(key, true);
+    }
+
+    /**
+     * This method finds the in order successor of the subtree with startNode at
+     * the root
+     * 
+     * @param startNode
+     *            the root of the subtree
+     * @return the node that is the in order sucessor of startNode
+     */
+    private Node<K, V> findInOrderSuccessor(Node<K, V> startNode) {
+        while (startNode.getLeftChild() != theNilLeaf) {
+            startNode = startNode.getLeftChild();
+        }
+        return startNode;
+    }
+
+    /**
+     * This method finds the in order predecessor of the subtree with startNode
+     * at the root
+     * 
+     * @param startNode
+     *            the root of the subtree
+     * @return the node that is the in order predecessor of startNode
+     */
+    private Node<K, V> findInOrderPredecessor(Node<K, V> startNode) {
+        while (startNode.getRightChild() != theNilLeaf) {
+            startNode = startNode.getRightChild();
+        }
+        return startNode;
+    }
+
+    private void internalInOrderPrint(Node<K, V> start, int depth) {
+
+        if (start == null) {
+            return;
+        }
+        internalInOrderPrint(start.getRightChild(), depth + 1);
+
+        for (int i = 0; i < depth; i++) {
+            System.out.print(" ");
+
+        }
+        if (start.isRed()) {
+            System.out.println(start.getKey() + " Red");
+
+        } else {
+            System.out.println(start.getKey());
+
+        }
+        internalInOrderPrint(start.getLeftChild(), depth + 1);
+
+    }
+
+    /**
+     * Checks that the tree follows every rule, see {@link #check(boolean)}.
+     * Unlike an assertion this runs whether or not the JVM has -ea.
+     * 
+     * @pre true
+     * @post the tree is unchanged
+     * 
+     * @return the number of black nodes on any path down from the root, 0 if
+     *         the tree is empty
+     * @throws IllegalStateException
+     *             if a rule is broken, saying which and where
+     */
+    public int verify() {
+        TreeReport<K> report = check(false);
+        if (!report.isValid()) {
+            throw new IllegalStateException(report.toString());
+        }
+        return report.getBlackHeight();
+    }
+
+    /**
+     * Checks every rule of the tree: the keys are in order, the root is
+     * black, no red node has a red child, every path down has the same number
+     * of black nodes, every node points back at its parent, every size is
+     * right, and the nil leaf has not been written to. The tree is walked
+     * once, without recursion, so it is linear in the size of the tree and
+     * safe to run now and then on a tree in use, while nothing writes to it.
+     * 
+     * @pre true
+     * @post the tree is unchanged
+     * 
+     * @param parallel
+     *            if true, large subtrees are checked at the same time in the
+     *            common ForkJoinPool
+     * @return the report, with the first rule broken if there is one and the
+     *         height, black height and number of nodes of the tree
+     */
+    public TreeReport<K> check(boolean parallel) {
+        return new TreeChecker<K, V>(theNilLeaf, mode == KeyMode.MAP).check(root,
+                parallel);
+    }
+
+    /**
+     * One step of a union, intersection or difference. The root of one tree
+     * cuts the other in two, the halves on each side are worked on as two
+     * more steps, and the results are joined back together around the root.
+     * Big steps fork one half so another thread can take it.
+     * 
+     * @author Satshabad
+     * 
+     * @param <K>
+     *            the keys that map to the values
+     * @param <V>
+     *            the values that the nodes hold.
+     */
+    private static final class SetOperation<K extends Comparable<K>, V>
+            extends RecursiveTask<Node<K, V>> {
+
+        /**
+         * The kinds of step
+         */
+        enum Kind {
+            UNION, INTERSECTION, DIFFERENCE
+        }
+
+        /**
+         * Steps on fewer nodes than this are not worth handing to another
+         * thread
+         */
+        private static final int SEQUENTIAL_SIZE = 2048;
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * What this step does
+         */
+        private final Kind kind;
+
+        /**
+         * The root of the first subtree, may be null
+         */
+        private final Node<K, V> a;
+
+        /**
+         * The black height of a
+         */
+        private final int aHeight;
+
+        /**
+         * The root of the second subtree, may be null
+         */
+        private final Node<K, V> b;
+
+        /**
+         * The black height of b
+         */
+        private final int bHeight;
+
+        /**
+         * Picks the value of a key in both trees of a union, may be null
+         */
+        private final BinaryOperator<V> merge;
+
+        /**
+         * The aggregator of both trees, may be null
+         */
+        private final Aggregator<? super V, ?> aggregator;
+
+        /**
+         * The black height of the result, set once the step is done
+         */
+        private int height;
+
+        /**
+         * Initializes a step
+         */
+        SetOperation(Kind kind, Node<K, V> a, int aHeight, Node<K, V> b,
+                int bHeight, BinaryOperator<V> merge,
+                Aggregator<? super V, ?> aggregator) {
+            this.kind = kind;
+            this.a = a;
+            this.aHeight = aHeight;
+            this.b = b;
+            this.bHeight = bHeight;
+            this.merge = merge;
+            this.aggregator = aggregator;
+        }
+
+        /**
+         * Does an operation on two whole trees and empties them
+         * 
+         * @return a tree holding the result
+         */
+        static <K extends Comparable<K>, V> RedBlackTree<K, V> run(Kind kind,
+                RedBlackTree<K, V> a, RedBlackTree<K, V> b,
+                BinaryOperator<V> merge) {
+            if (a.mode != KeyMode.MAP || b.mode != KeyMode.MAP) {
+                throw new IllegalArgumentException(
+                        "set operations need trees in KeyMode.MAP");
+            }
+            if (a.aggregator != b.aggregator) {
+                throw new IllegalArgumentException(
+                        "the trees keep different aggregates");
+            }
+            SetOperation<K, V> operation = new SetOperation<K, V>(kind, a.root,
+                    a.blackHeight(), b.root, b.blackHeight(), merge,
+                    a.aggregator);
+            RedBlackTree<K, V> result = new RedBlackTree<K, V>(a.mode,
+                    a.aggregator);
+            result.root = operation.invoke();
+            a.clear();
+            b.clear();
+            return result;
+        }
+
+        /**
+         * Does this step
+         * 
+         * @return the root of the result, null if it is empty
+         */
+        protected Node<K, V> compute() {
+            if (a == null || b == null) {
+                return trivial();
+            }
+            // the split below takes the nodes of a and b apart and their
+            // sizes with them
+            int size = a.getSize() + b.getSize();
+
+            // split the tree the other is cut by at its root
+            Node<K, V> pivot = kind == Kind.DIFFERENCE ? b : a;
+            Node<K, V> cut = kind == Kind.DIFFERENCE ? a : b;
+            int pivotHeight = kind == Kind.DIFFERENCE ? bHeight : aHeight;
+            int cutHeight = kind == Kind.DIFFERENCE ? aHeight : bHeight;
+
+            RedBlackTree<K, V> work = new RedBlackTree<K, V>(
+                    KeyMode.DUPLICATES, aggregator);
+            RedBlackTree<K, V> less = new RedBlackTree<K, V>(
+                    KeyMode.DUPLICATES, aggregator);
+            RedBlackTree<K, V> rest = new RedBlackTree<K, V>(
+                    KeyMode.DUPLICATES, aggregator);
+            int[] heights = new int[2];
+            Node<K, V> match = work.splitHelper(cut, cutHeight,
+                    pivot.getKey(), true, less, rest, heights);
+            int restHeight = heights[1];
+            Node<K, V> restRoot = rest.root;
+            int lessHeight = heights[0];
+            Node<K, V> lessRoot = less.root;
+
+            // the pivot's own subtrees
+            int childHeight = pivot.isRed() ? pivotHeight : pivotHeight - 1;
+            Node<K, V> pivotLeft = work.detach(pivot.getLeftChild());
+            Node<K, V> pivotRight = work.detach(pivot.getRightChild());
+            int pivotLeftHeight = childHeight;
+            int pivotRightHeight = childHeight;
+            if (pivotLeft.isRed()) {
+                pivotLeft.setColor(work.BLACK);
+                pivotLeftHeight++;
+            }
+            if (pivotRight.isRed()) {
+                pivotRight.setColor(work.BLACK);
+                pivotRightHeight++;
+            }
+            pivotLeft = pivotLeft == work.theNilLeaf ? null : pivotLeft;
+            pivotRight = pivotRight == work.theNilLeaf ? null : pivotRight;
+
+            SetOperation<K, V> lower;
+            SetOperation<K, V> higher;
+            if (kind == Kind.DIFFERENCE) {
+                lower = new SetOperation<K, V>(kind, lessRoot, lessHeight,
+                        pivotLeft, pivotLeftHeight, merge, aggregator);
+                higher = new SetOperation<K, V>(kind, restRoot, restHeight,
+                        pivotRight, pivotRightHeight, merge, aggregator);
+            } else {
+                lower = new SetOperation<K, V>(kind, pivotLeft,
+                        pivotLeftHeight, lessRoot, lessHeight, merge,
+                        aggregator);
+                higher = new SetOperation<K, V>(kind, pivotRight,
+                        pivotRightHeight, restRoot, restHeight, merge,
+                        aggregator);
+            }
+
+            Node<K, V> lowerRoot;
+            Node<K, V> higherRoot;
+            if (size > SEQUENTIAL_SIZE) {
+                lower.fork();
+                higherRoot = higher.compute();
+                lowerRoot = lower.join();
+            } else {
+                lowerRoot = lower.compute();
+                higherRoot = higher.compute();
+            }
+
+            boolean keep;
+            if (kind == Kind.UNION) {
+                keep = true;
+                if (match != null && merge != null) {
+                    pivot = new Node<K, V>(work.RED, work.theNilLeaf,
+                            work.theNilLeaf, null, merge.apply(
+                                    pivot.getValue(), match.getValue()),
+                            pivot.getKey());
+                }
+            } else {
+                keep = kind == Kind.INTERSECTION && match != null;
+            }
+
+            if (keep) {
+                pivot.setLeftChild(work.theNilLeaf);
+                pivot.setRightChild(work.theNilLeaf);
+                pivot.setParent(null);
+                pivot.setSize(1);
+                height = work.joinRoots(lowerRoot, lower.height, pivot,
+                        higherRoot, higher.height);
+            } else {
+                height = work.joinRoots(lowerRoot, lower.height, higherRoot,
+                        higher.height);
+            }
+            return work.root;
+        }
+
+        /**
+         * Does a step where one of the subtrees is empty
+         * 
+         * @return the root of the result, null if it is empty
+         */
+        private Node<K, V> trivial() {
+            if (kind == Kind.INTERSECTION || a == null) {
+                height = kind == Kind.UNION ? bHeight : 0;
+                return kind == Kind.UNION ? b : null;
+            }
+            height = aHeight;
+            return a;
+        }
+    }
+}
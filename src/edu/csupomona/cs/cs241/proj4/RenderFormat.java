@@ -0,0 +1,27 @@
+package edu.csupomona.cs.cs241.proj4;
+
+/**
+ * The ways a {@link TreeRenderer} can write out a tree.
+ *
+ * @author Satshabad
+ */
+public enum RenderFormat {
+
+    /**
+     * The rows of the tree drawn in text, the layout of
+     * {@link RedBlackTree#prettyPrint()}. The width of a row doubles with each
+     * level, so this is only for small trees or a small depth.
+     */
+    TEXT,
+
+    /**
+     * A Graphviz digraph, one filled node per key and one edge per child
+     */
+    DOT,
+
+    /**
+     * Nested JSON objects, one per key with its color, subtree size and
+     * children, null for a nil leaf
+     */
+    JSON
+}
@@ -0,0 +1,635 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+
+/**
+ * This class splits the keys into ranges and keeps each range in a
+ * {@link RedBlackTree} of its own, called a shard, with a lock of its own.
+ * Writes to different shards don't wait for each other, so writes can go as
+ * fast as there are cores to make them. Reads are optimistic like in
+ * {@link ConcurrentRedBlackTree}.
+ *
+ * Where one range ends and the next begins is first picked from a sample of
+ * keys. When a shard grows past a limit it is cut in two at its middle key,
+ * and if there are already as many shards as asked for, the two smallest
+ * neighbouring shards are joined to make room. Only the shards being cut or
+ * joined are locked, and only for O(log n), so even keys that always land in
+ * the last shard never make every call wait on the whole tree. When no two
+ * neighbours are small enough to join the limit is doubled.
+ *
+ * @author Satshabad
+ *
+ * @param <K>
+ *            the keys that map to the values
+ * @param <V>
+ *            the values that the nodes hold.
+ */
+public class ShardedRedBlackTree<K extends Comparable<K>, V> {
+
+    /**
+     * No path in a red black tree of int size is longer than this
+     */
+    private static final int MAX_DEPTH = 64;
+
+    /**
+     * A shard smaller than this is never worth cutting again
+     */
+    private static final int MIN_SHARD_SIZE = 1024;
+
+    /**
+     * The number of shards the keys are split into
+     */
+    private final int shardCount;
+
+    /**
+     * The shards and the keys they start at. A new layout replaces it when
+     * a shard is cut or joined
+     */
+    private volatile Layout<K, V> layout;
+
+    /**
+     * Held while shards are being cut or joined so only one thread does it
+     */
+    private final Object reshardLock = new Object();
+
+    /**
+     * Initializes an empty tree with the given number of shards. The ranges
+     * are picked when the first shard fills up.
+     *
+     * @pre shardCount is positive
+     * @post an empty tree is made
+     *
+     * @param shardCount
+     *            the number of shards, the number of cores is a good choice
+     */
+    public ShardedRedBlackTree(int shardCount) {
+        this(shardCount, Collections.<K> emptyList());
+    }
+
+    /**
+     * Initializes an empty tree whose ranges each hold the same number of the
+     * sample keys.
+     *
+     * @pre shardCount is positive, the sample has no null keys
+     * @post an empty tree is made
+     *
+     * @param shardCount
+     *            the number of shards, the number of cores is a good choice
+     * @param sample
+     *            keys like the ones that will be added, in any order
+     */
+    public ShardedRedBlackTree(int shardCount, Collection<? extends K> sample) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("there must be a shard");
+        }
+        this.shardCount = shardCount;
+
+        List<K> sorted = new ArrayList<K>(sample);
+        Collections.sort(sorted);
+        List<K> starts = pickStarts(sorted, shardCount);
+        List<Shard<K, V>> shards = new ArrayList<Shard<K, V>>();
+        for (int i = 0; i <= starts.size(); i++) {
+            shards.add(new Shard<K, V>(new RedBlackTree<K, V>()));
+        }
+        this.layout = new Layout<K, V>(starts, shards, MIN_SHARD_SIZE);
+    }
+
+    /**
+     * This method adds the mapping to the shard that owns the key. It waits
+     * only for reads that hold that shard's lock and other writes to it.
+     *
+     * @pre true
+     * @post the key added matches the value added with it. If there was a
+     *       previous mapping of the same key results are not guaranteed
+     *
+     * @param key
+     *            the key that will map to the value for look up
+     * @param value
+     *            the object to be stored
+     * @return whether the mapping was made or not
+     */
+    public boolean add(K key, V value) {
+        if (key == null || value == null) {
+            return false;
+        }
+        while (true) {
+            Layout<K, V> current = layout;
+            Shard<K, V> shard = current.shardOf(key);
+            boolean overfull;
+            long stamp = shard.lock.writeLock();
+            try {
+                if (shard.retired) {
+                    continue;
+                }
+                if (!shard.tree.add(key, value)) {
+                    return false;
+                }
+                overfull = shardCount > 1 && shard.tree.size() > current.limit;
+            } finally {
+                shard.lock.unlockWrite(stamp);
+            }
+            if (overfull) {
+                reshard(shard);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * This method deletes the first instance of the key value mapping indicated
+     * by the key from the shard that owns it.
+     *
+     * @pre true
+     * @post the first instance of the mapping is removed
+     *
+     * @param key
+     *            the key to value to be deleted
+     * @return the value mapped to the key which was deleted, or null if there
+     *         was none
+     */
+    public V delete(K key) {
+        if (key == null) {
+            return null;
+        }
+        while (true) {
+            Shard<K, V> shard = layout.shardOf(key);
+            long stamp = shard.lock.writeLock();
+            try {
+                if (!shard.retired) {
+                    return shard.tree.delete(key);
+                }
+            } finally {
+                shard.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * This method looks up the value associated with the key. It does not
+     * block unless a write to the key's shard finishes while it is looking.
+     *
+     * @pre true
+     * @post the value mapped to the key is returned, or null if the key is not
+     *       in the tree
+     *
+     * @param key
+     *            the key of the value
+     * @return the value indexed by key, or null if there is no such mapping
+     */
+    public V lookup(K key) {
+        if (key == null) {
+            return null;
+        }
+        while (true) {
+            Shard<K, V> shard = layout.shardOf(key);
+            long stamp = shard.lock.tryOptimisticRead();
+            if (stamp != 0) {
+                V found = null;
+                RuntimeException failure = null;
+                try {
+                    found = shard.tree.racyLookup(key, MAX_DEPTH);
+                } catch (RuntimeException e) {
+                    // the shard may have changed under the walk, the stamp
+                    // will say so. If it didn't the key itself is to blame
+                    failure = e;
+                }
+                if (shard.lock.validate(stamp) && !shard.retired) {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    return found;
+                }
+            }
+
+            stamp = shard.lock.readLock();
+            try {
+                if (!shard.retired) {
+                    return shard.tree.lookup(key);
+                }
+            } finally {
+                shard.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of mappings in the tree. The shards are counted one at
+     * a time, so with writes going on the answer may not match any one
+     * moment.
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @return the number of mappings
+     */
+    public int size() {
+        while (true) {
+            Layout<K, V> current = layout;
+            int size = 0;
+            for (Shard<K, V> shard : current.shards) {
+                long stamp = shard.lock.readLock();
+                try {
+                    size += shard.tree.size();
+                } finally {
+                    shard.lock.unlockRead(stamp);
+                }
+            }
+            if (current == layout) {
+                return size;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of shards
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @return the number of shards, which may be less than asked for while
+     *         there are too few keys to cut into that many ranges
+     */
+    public int shardCount() {
+        return layout.shards.size();
+    }
+
+    /**
+     * Hands every mapping with a key from lo to hi to the visitor, in order of
+     * the keys. One shard is read locked at a time while its mappings in the
+     * range are copied out, so the mappings of each shard are from one moment
+     * but writes can happen between shards. The visitor is only called once
+     * the lock is let go, so it may write to this tree; a write to a shard
+     * already copied is not seen until the next scan.
+     *
+     * @pre true
+     * @post the tree is unchanged, apart from what the visitor does
+     *
+     * @param lo
+     *            the lowest key to visit, null for no lower bound
+     * @param hi
+     *            the highest key to visit, null for no upper bound
+     * @param visitor
+     *            is given each key and value
+     */
+    public void scan(K lo, K hi, BiConsumer<? super K, ? super V> visitor) {
+        K from = lo;
+        boolean fromInclusive = true;
+        // the mappings of one shard, handed over once its lock is let go
+        List<K> keys = new ArrayList<K>();
+        List<V> values = new ArrayList<V>();
+        while (true) {
+            Layout<K, V> current = layout;
+            int index = from == null ? 0 : current.indexOf(from);
+            for (; index < current.shards.size(); index++) {
+                if (hi != null && index > 0
+                        && current.starts.get(index - 1).compareTo(hi) > 0) {
+                    return;
+                }
+                Shard<K, V> shard = current.shards.get(index);
+                keys.clear();
+                values.clear();
+                long stamp = shard.lock.readLock();
+                try {
+                    if (shard.retired) {
+                        break;
+                    }
+                    TreeCursor<K, V> cursor = shard.tree.subMap(from,
+                            fromInclusive, hi, true).cursor();
+                    while (cursor.hasNext()) {
+                        cursor.next();
+                        keys.add(cursor.getKey());
+                        values.add(cursor.getValue());
+                    }
+                } finally {
+                    shard.lock.unlockRead(stamp);
+                }
+                if (!keys.isEmpty()) {
+                    from = keys.get(keys.size() - 1);
+                    fromInclusive = false;
+                }
+                for (int i = 0; i < keys.size(); i++) {
+                    visitor.accept(keys.get(i), values.get(i));
+                }
+            }
+            if (index == current.shards.size()) {
+                return;
+            }
+            // a shard was cut or joined, go on from the last key visited
+        }
+    }
+
+    /**
+     * Cuts an overfull shard in two at its middle key, holding only its own
+     * lock. While there are already as many shards as asked for, the two
+     * neighbouring shards that hold the fewest mappings between them are
+     * first joined into one, holding only their two locks. If no two
+     * neighbours are small enough to join, or the shard is one key over and
+     * over, the limit is doubled instead. Cutting and joining are both
+     * O(log n), so no call ever waits for the whole tree to be copied.
+     *
+     * @pre true
+     * @post the shard holds no more mappings than the limit, unless another
+     *       thread already retired it
+     *
+     * @param full
+     *            the shard that filled up
+     */
+    private void reshard(Shard<K, V> full) {
+        synchronized (reshardLock) {
+            Layout<K, V> current = layout;
+            int index = current.shards.indexOf(full);
+            if (index < 0 || sizeOf(full) <= current.limit) {
+                return;
+            }
+
+            if (current.shards.size() >= shardCount) {
+                int pair = smallestPair(current, index);
+                if (pair < 0) {
+                    layout = new Layout<K, V>(current.starts, current.shards,
+                            (int) Math.min(2L * current.limit,
+                                    Integer.MAX_VALUE));
+                    return;
+                }
+                joinShards(current, pair);
+                current = layout;
+                if (index > pair) {
+                    index--;
+                }
+            }
+            if (!splitShard(current, index)) {
+                layout = new Layout<K, V>(current.starts, current.shards,
+                        (int) Math.min(2L * current.limit, Integer.MAX_VALUE));
+            }
+        }
+    }
+
+    /**
+     * Finds the two neighbouring shards, neither of them the full one, that
+     * hold the fewest mappings between them, if joined they would still be
+     * at most half full
+     *
+     * @pre the reshard lock is held
+     * @post the tree is unchanged
+     *
+     * @param current
+     *            the layout
+     * @param full
+     *            the index of the shard that filled up
+     * @return the index of the first of the two shards, -1 if there are none
+     *         small enough
+     */
+    private int smallestPair(Layout<K, V> current, int full) {
+        int[] sizes = new int[current.shards.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = sizeOf(current.shards.get(i));
+        }
+        int best = -1;
+        long bestSize = current.limit / 2;
+        for (int i = 0; i + 1 < sizes.length; i++) {
+            if (i != full && i + 1 != full
+                    && (long) sizes[i] + sizes[i + 1] <= bestSize) {
+                best = i;
+                bestSize = (long) sizes[i] + sizes[i + 1];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Joins a shard and the one after it into one shard, write locking only
+     * the two of them
+     *
+     * @pre the reshard lock is held and pair + 1 is a shard of current
+     * @post the layout has one shard less
+     *
+     * @param current
+     *            the layout
+     * @param pair
+     *            the index of the first of the two shards
+     */
+    private void joinShards(Layout<K, V> current, int pair) {
+        Shard<K, V> low = current.shards.get(pair);
+        Shard<K, V> high = current.shards.get(pair + 1);
+        long lowStamp = low.lock.writeLock();
+        long highStamp = high.lock.writeLock();
+        try {
+            RedBlackTree<K, V> joined;
+            if (low.tree.size() == 0) {
+                joined = high.tree;
+            } else if (high.tree.size() == 0) {
+                joined = low.tree;
+            } else {
+                // the last mapping of the low shard goes between the trees
+                K pivot = low.tree.select(low.tree.size() - 1);
+                V value = low.tree.delete(pivot);
+                joined = RedBlackTree.join(low.tree, pivot, value, high.tree);
+            }
+
+            List<K> starts = new ArrayList<K>(current.starts);
+            starts.remove(pair);
+            List<Shard<K, V>> shards = new ArrayList<Shard<K, V>>(
+                    current.shards);
+            shards.remove(pair + 1);
+            shards.set(pair, new Shard<K, V>(joined));
+            layout = new Layout<K, V>(starts, shards, current.limit);
+            low.retired = true;
+            high.retired = true;
+        } finally {
+            high.lock.unlockWrite(highStamp);
+            low.lock.unlockWrite(lowStamp);
+        }
+    }
+
+    /**
+     * Cuts a shard in two at its middle key, write locking only that shard.
+     * Every copy of the middle key goes to the upper shard, so a shard whose
+     * lowest key is also its middle one can't be cut.
+     *
+     * @pre the reshard lock is held and index is a shard of current
+     * @post the layout has one shard more, if it could be cut
+     *
+     * @param current
+     *            the layout
+     * @param index
+     *            the index of the shard to cut
+     * @return whether the shard was cut
+     */
+    private boolean splitShard(Layout<K, V> current, int index) {
+        Shard<K, V> shard = current.shards.get(index);
+        long stamp = shard.lock.writeLock();
+        try {
+            K middle = shard.tree.select(shard.tree.size() / 2);
+            if (middle == null || shard.tree.select(0).compareTo(middle) == 0) {
+                return false;
+            }
+            RedBlackTree<K, V> upper = shard.tree.split(middle);
+
+            List<K> starts = new ArrayList<K>(current.starts);
+            starts.add(index, middle);
+            List<Shard<K, V>> shards = new ArrayList<Shard<K, V>>(
+                    current.shards);
+            shards.set(index, new Shard<K, V>(shard.tree));
+            shards.add(index + 1, new Shard<K, V>(upper));
+            layout = new Layout<K, V>(starts, shards, current.limit);
+            shard.retired = true;
+            return true;
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Gets the number of mappings in one shard
+     *
+     * @pre true
+     * @post the shard is unchanged
+     *
+     * @param shard
+     *            the shard to count
+     * @return the number of mappings in it
+     */
+    private static <K extends Comparable<K>, V> int sizeOf(Shard<K, V> shard) {
+        long stamp = shard.lock.readLock();
+        try {
+            return shard.tree.size();
+        } finally {
+            shard.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Picks the keys the shards after the first start at, so each range gets
+     * the same number of the sorted keys. A key is never a start twice, so
+     * there can be fewer ranges than asked for.
+     *
+     * @param sorted
+     *            the keys in order
+     * @param count
+     *            the number of ranges wanted
+     * @return the first key of every range but the first, in order
+     */
+    private static <K extends Comparable<K>> List<K> pickStarts(
+            List<K> sorted, int count) {
+        List<K> starts = new ArrayList<K>();
+        for (int i = 1; i < count; i++) {
+            int index = (int) ((long) i * sorted.size() / count);
+            if (index == 0) {
+                continue;
+            }
+            K start = sorted.get(index);
+            if (starts.isEmpty()
+                    ? sorted.get(0).compareTo(start) < 0
+                    : starts.get(starts.size() - 1).compareTo(start) < 0) {
+                starts.add(start);
+            }
+        }
+        return starts;
+    }
+
+    /**
+     * One range of keys, with its own tree and lock
+     *
+     * @param <K>
+     *            the keys that map to the values
+     * @param <V>
+     *            the values that the nodes hold.
+     */
+    private static final class Shard<K extends Comparable<K>, V> {
+
+        /**
+         * The mappings of the range
+         */
+        final RedBlackTree<K, V> tree;
+
+        /**
+         * Guards tree, and retired while it is set
+         */
+        final StampedLock lock = new StampedLock();
+
+        /**
+         * True once the shard was cut or joined and this one holds nothing
+         * that counts anymore. Set under the write lock.
+         */
+        volatile boolean retired;
+
+        /**
+         * Initializes a shard holding the given tree
+         *
+         * @param tree
+         *            the mappings of the range
+         */
+        Shard(RedBlackTree<K, V> tree) {
+            this.tree = tree;
+        }
+    }
+
+    /**
+     * The ranges the keys are split into. It never changes, cutting or
+     * joining shards makes a new one.
+     *
+     * @param <K>
+     *            the keys that map to the values
+     * @param <V>
+     *            the values that the nodes hold.
+     */
+    private static final class Layout<K extends Comparable<K>, V> {
+
+        /**
+         * The key each shard after the first starts at, in order
+         */
+        final List<K> starts;
+
+        /**
+         * The shards in order of their ranges, one more than there are starts
+         */
+        final List<Shard<K, V>> shards;
+
+        /**
+         * A shard holding more mappings than this gets cut in two
+         */
+        final int limit;
+
+        /**
+         * Initializes a layout
+         */
+        Layout(List<K> starts, List<Shard<K, V>> shards, int limit) {
+            this.starts = starts;
+            this.shards = shards;
+            this.limit = limit;
+        }
+
+        /**
+         * Finds which range a key is in
+         *
+         * @param key
+         *            the key to find the range of
+         * @return the index of the shard that owns the key
+         */
+        int indexOf(K key) {
+            int lo = 0;
+            int hi = starts.size();
+            // find how many starts are at or below key
+            while (lo < hi) {
+                int middle = (lo + hi) >>> 1;
+                if (starts.get(middle).compareTo(key) <= 0) {
+                    lo = middle + 1;
+                } else {
+                    hi = middle;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * @return the shard that owns the key
+         */
+        Shard<K, V> shardOf(K key) {
+            return shards.get(indexOf(key));
+        }
+    }
+}
@@ -0,0 +1,571 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class checks every rule of a Red Black Tree, see
+ * {@link RedBlackTree#check(boolean)}. The walk keeps its own stack rather
+ * than recursing, and does not rely on assertions, so it can be run on a live
+ * tree in a JVM without -ea. It goes on past the first violation, to measure
+ * the tree, but does not go under a node whose parent link is wrong, so a
+ * broken tree can't make it loop.
+ *
+ * @author Satshabad
+ *
+ * @param <K>
+ *            the keys that map to the values
+ * @param <V>
+ *            the values that the nodes hold.
+ */
+final class TreeChecker<K extends Comparable<K>, V> {
+
+    /**
+     * Subtrees with fewer nodes than this are not worth handing to another
+     * thread
+     */
+    private static final int SEQUENTIAL_SIZE = 2048;
+
+    /**
+     * The nil leaf of the tree being checked
+     */
+    private final Node<K, V> nil;
+
+    /**
+     * If no key may be in the tree twice, as in {@link KeyMode#MAP}
+     */
+    private final boolean unique;
+
+    /**
+     * Initializes a checker
+     *
+     * @pre nil is the nil leaf of the tree to check
+     * @post a checker is made
+     *
+     * @param nil
+     *            the nil leaf of the tree
+     * @param unique
+     *            if no key may be in the tree twice
+     */
+    TreeChecker(Node<K, V> nil, boolean unique) {
+        this.nil = nil;
+        this.unique = unique;
+    }
+
+    /**
+     * Checks a whole tree
+     *
+     * @pre true
+     * @post the tree is unchanged
+     *
+     * @param root
+     *            the root of the tree, null if it is empty
+     * @param parallel
+     *            if true, large subtrees are checked at the same time in the
+     *            common ForkJoinPool
+     * @return the report on the tree
+     */
+    TreeReport<K> check(Node<K, V> root, boolean parallel) {
+        Result<K> result;
+        if (root == null) {
+            result = new Result<K>();
+        } else if (parallel) {
+            result = new Check(root, null, null, null).invoke();
+        } else {
+            result = walk(root, null, null, null);
+        }
+
+        TreeViolation violation = result.violation;
+        List<K> path = result.path;
+        Collections.reverse(path);
+        if (nil.getParent() != null || nil.isRed() || nil.getSize() != 0
+                || nil.getKey() != null || nil.getLeftChild() != null
+                || nil.getRightChild() != null) {
+            violation = TreeViolation.SENTINEL;
+            path.clear();
+        }
+        return new TreeReport<K>(violation, path, result.height,
+                result.blackHeight, result.count);
+    }
+
+    /**
+     * Checks a subtree on this thread, going down with a stack of its own
+     *
+     * @pre top is not a leaf
+     * @post the tree is unchanged
+     *
+     * @param top
+     *            the root of the subtree
+     * @param parent
+     *            the node top should have as its parent, null for the root
+     * @param lo
+     *            no key of the subtree may be less than this, null for no
+     *            bound
+     * @param hi
+     *            no key of the subtree may be greater than this, null for no
+     *            bound
+     * @return the result for the subtree, its path going up from the node
+     *         breaking a rule to top
+     */
+    @SuppressWarnings("unchecked")
+    private Result<K> walk(Node<K, V> top, Node<K, V> parent, K lo, K hi) {
+        Result<K> result = new Result<K>();
+        Frames<K, V> frames = new Frames<K, V>();
+        int depth = 0;
+        frames.push(0, top, lo, hi);
+        int black = 0;
+        int count = 0;
+        int height = 0;
+        while (depth >= 0) {
+            Node<K, V> node = frames.nodes[depth];
+            if (frames.stage[depth] == 0) {
+                TreeViolation violation = local(node, depth == 0 ? parent
+                        : frames.nodes[depth - 1], (K) frames.los[depth],
+                        (K) frames.his[depth]);
+                if (violation != null && result.violation == null) {
+                    result.violation = violation;
+                    frames.pathTo(depth, result.path);
+                }
+                frames.stage[depth] = 1;
+                if (!canDescend(node, violation)) {
+                    frames.stage[depth] = 3;
+                } else if (!isLeaf(node.getLeftChild())) {
+                    depth++;
+                    frames.push(depth, node.getLeftChild(),
+                            (K) frames.los[depth - 1], node.getKey());
+                    continue;
+                }
+            }
+            if (frames.stage[depth] == 1) {
+                frames.stage[depth] = 2;
+                if (!isLeaf(node.getRightChild())) {
+                    depth++;
+                    frames.push(depth, node.getRightChild(), node.getKey(),
+                            (K) frames.his[depth - 1]);
+                    continue;
+                }
+            }
+            if (frames.stage[depth] == 3) {
+                // not a part of the tree, it counts for nothing
+                black = 0;
+                count = 0;
+                height = 0;
+            } else {
+                // both subtrees are checked, now the node itself
+                TreeViolation violation = after(node, frames.leftBlack[depth],
+                        frames.rightBlack[depth], frames.leftCount[depth],
+                        frames.rightCount[depth]);
+                if (violation != null && result.violation == null) {
+                    result.violation = violation;
+                    frames.pathTo(depth, result.path);
+                }
+                black = Math.max(frames.leftBlack[depth],
+                        frames.rightBlack[depth]) + (node.isRed() ? 0 : 1);
+                count = frames.leftCount[depth] + frames.rightCount[depth] + 1;
+                height = Math.max(frames.leftHeight[depth],
+                        frames.rightHeight[depth]) + 1;
+            }
+
+            // hand what the subtree returned to the node above it
+            frames.nodes[depth] = null;
+            depth--;
+            if (depth >= 0) {
+                if (frames.stage[depth] == 1) {
+                    frames.leftBlack[depth] = black;
+                    frames.leftCount[depth] = count;
+                    frames.leftHeight[depth] = height;
+                } else {
+                    frames.rightBlack[depth] = black;
+                    frames.rightCount[depth] = count;
+                    frames.rightHeight[depth] = height;
+                }
+            }
+        }
+
+        result.blackHeight = black;
+        result.count = count;
+        result.height = height;
+        return result;
+    }
+
+    /**
+     * Checks the rules a node has to follow before its subtrees are looked at
+     *
+     * @pre node is not a leaf
+     * @post the tree is unchanged
+     *
+     * @param node
+     *            the node to check
+     * @param parent
+     *            the node it is a child of, null for the root
+     * @param lo
+     *            its key may not be less than this, null for no bound
+     * @param hi
+     *            its key may not be greater than this, null for no bound
+     * @return the first rule broken, null if there is none
+     */
+    private TreeViolation local(Node<K, V> node, Node<K, V> parent, K lo,
+            K hi) {
+        if (node.getParent() != parent) {
+            return TreeViolation.PARENT_LINK;
+        }
+        if (node.getKey() == null || node.getLeftChild() == null
+                || node.getRightChild() == null) {
+            return TreeViolation.SENTINEL;
+        }
+        if ((lo != null && node.getKey().compareTo(lo) < 0)
+                || (hi != null && node.getKey().compareTo(hi) > 0)) {
+            return TreeViolation.ORDER;
+        }
+        // two equal keys next to each other in order are always an ancestor
+        // and a descendant, so the bounds catch every repeated key
+        if (unique
+                && ((lo != null && node.getKey().compareTo(lo) == 0)
+                        || (hi != null && node.getKey().compareTo(hi) == 0))) {
+            return TreeViolation.DUPLICATE_KEY;
+        }
+        if (parent == null && node.isRed()) {
+            return TreeViolation.RED_ROOT;
+        }
+        if (parent != null && parent.isRed() && node.isRed()) {
+            return TreeViolation.RED_RED;
+        }
+        return null;
+    }
+
+    /**
+     * Checks the rules a node has to follow once its subtrees are measured
+     *
+     * @pre node is not a leaf
+     * @post the tree is unchanged
+     *
+     * @param node
+     *            the node to check
+     * @param leftBlack
+     *            the black height of the left subtree
+     * @param rightBlack
+     *            the black height of the right subtree
+     * @param leftCount
+     *            the number of nodes in the left subtree
+     * @param rightCount
+     *            the number of nodes in the right subtree
+     * @return the first rule broken, null if there is none
+     */
+    private TreeViolation after(Node<K, V> node, int leftBlack,
+            int rightBlack, int leftCount, int rightCount) {
+        if (leftBlack != rightBlack) {
+            return TreeViolation.BLACK_HEIGHT;
+        }
+        if (node.getSize() != leftCount + rightCount + 1) {
+            return TreeViolation.SIZE;
+        }
+        return null;
+    }
+
+    /**
+     * Checks if the subtrees of a node can be walked
+     *
+     * @param node
+     *            the node
+     * @param violation
+     *            what {@link #local} found wrong with it
+     * @return false if the node does not belong where it was found, or has no
+     *         key to bound its subtrees with
+     */
+    private boolean canDescend(Node<K, V> node, TreeViolation violation) {
+        return violation != TreeViolation.PARENT_LINK && node.getKey() != null;
+    }
+
+    /**
+     * Checks if a child is a leaf, a null child counts as one once it has
+     * been reported
+     *
+     * @param node
+     *            the child
+     * @return true if it is the nil leaf or null
+     */
+    private boolean isLeaf(Node<K, V> node) {
+        return node == null || node == nil;
+    }
+
+    /**
+     * What checking a subtree found
+     *
+     * @author Satshabad
+     *
+     * @param <K>
+     *            the keys of the tree
+     */
+    private static final class Result<K> {
+
+        /**
+         * The first rule broken, null if there is none
+         */
+        TreeViolation violation;
+
+        /**
+         * The keys from the node breaking the rule up to the top of the
+         * subtree
+         */
+        List<K> path = new ArrayList<K>();
+
+        /**
+         * The greatest number of black nodes on a path down
+         */
+        int blackHeight;
+
+        /**
+         * The number of nodes walked
+         */
+        int count;
+
+        /**
+         * The number of nodes on the longest path down
+         */
+        int height;
+    }
+
+    /**
+     * The stack of {@link TreeChecker#walk}, one frame for each node on the
+     * way down from the top of the subtree, kept in arrays that grow when the
+     * tree is deeper than a valid one can be
+     *
+     * @author Satshabad
+     *
+     * @param <K>
+     *            the keys of the tree
+     * @param <V>
+     *            the values of the tree
+     */
+    private static final class Frames<K extends Comparable<K>, V> {
+
+        /**
+         * The node of each frame
+         */
+        Node<K, V>[] nodes;
+
+        /**
+         * The least key allowed under each node, null for no bound
+         */
+        Object[] los;
+
+        /**
+         * The greatest key allowed under each node, null for no bound
+         */
+        Object[] his;
+
+        /**
+         * 0 before the node is checked, 1 while its left subtree is, 2 while
+         * its right subtree is, 3 if its subtrees are not walked
+         */
+        int[] stage;
+
+        /**
+         * The black height of the left subtree of each node
+         */
+        int[] leftBlack;
+
+        /**
+         * The number of nodes in the left subtree of each node
+         */
+        int[] leftCount;
+
+        /**
+         * The height of the left subtree of each node
+         */
+        int[] leftHeight;
+
+        /**
+         * The black height of the right subtree of each node
+         */
+        int[] rightBlack;
+
+        /**
+         * The number of nodes in the right subtree of each node
+         */
+        int[] rightCount;
+
+        /**
+         * The height of the right subtree of each node
+         */
+        int[] rightHeight;
+
+        /**
+         * Initializes a stack deep enough for any valid tree of int size
+         */
+        @SuppressWarnings("unchecked")
+        Frames() {
+            nodes = (Node<K, V>[]) new Node<?, ?>[64];
+            los = new Object[64];
+            his = new Object[64];
+            stage = new int[64];
+            leftBlack = new int[64];
+            leftCount = new int[64];
+            leftHeight = new int[64];
+            rightBlack = new int[64];
+            rightCount = new int[64];
+            rightHeight = new int[64];
+        }
+
+        /**
+         * Starts a frame for a node
+         *
+         * @param depth
+         *            the depth of the frame, one below the top one
+         * @param node
+         *            the node
+         * @param lo
+         *            the least key allowed under it
+         * @param hi
+         *            the greatest key allowed under it
+         */
+        void push(int depth, Node<K, V> node, K lo, K hi) {
+            if (depth == nodes.length) {
+                int capacity = depth * 2;
+                nodes = Arrays.copyOf(nodes, capacity);
+                los = Arrays.copyOf(los, capacity);
+                his = Arrays.copyOf(his, capacity);
+                stage = Arrays.copyOf(stage, capacity);
+                leftBlack = Arrays.copyOf(leftBlack, capacity);
+                leftCount = Arrays.copyOf(leftCount, capacity);
+                leftHeight = Arrays.copyOf(leftHeight, capacity);
+                rightBlack = Arrays.copyOf(rightBlack, capacity);
+                rightCount = Arrays.copyOf(rightCount, capacity);
+                rightHeight = Arrays.copyOf(rightHeight, capacity);
+            }
+            nodes[depth] = node;
+            los[depth] = lo;
+            his[depth] = hi;
+            stage[depth] = 0;
+            leftBlack[depth] = 0;
+            leftCount[depth] = 0;
+            leftHeight[depth] = 0;
+            rightBlack[depth] = 0;
+            rightCount[depth] = 0;
+            rightHeight[depth] = 0;
+        }
+
+        /**
+         * Adds the keys of the frames to a path, from the given frame up
+         *
+         * @param depth
+         *            the frame to start at
+         * @param path
+         *            the path to add to
+         */
+        void pathTo(int depth, List<K> path) {
+            for (int i = depth; i >= 0; i--) {
+                path.add(nodes[i].getKey());
+            }
+        }
+    }
+
+    /**
+     * Checks a subtree, splitting off its left half to another thread while
+     * it is large. The results are put together in the order the walk visits
+     * them, so the first violation is the one {@link TreeChecker#walk} would
+     * find.
+     *
+     * @author Satshabad
+     */
+    private final class Check extends RecursiveTask<Result<K>> {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The root of the subtree
+         */
+        private final Node<K, V> node;
+
+        /**
+         * The node it should have as its parent, null for the root
+         */
+        private final Node<K, V> parent;
+
+        /**
+         * The least key allowed in the subtree, null for no bound
+         */
+        private final K lo;
+
+        /**
+         * The greatest key allowed in the subtree, null for no bound
+         */
+        private final K hi;
+
+        /**
+         * Initializes a check of a subtree
+         *
+         * @param node
+         *            the root of the subtree, not a leaf
+         * @param parent
+         *            the node it should have as its parent
+         * @param lo
+         *            the least key allowed, null for no bound
+         * @param hi
+         *            the greatest key allowed, null for no bound
+         */
+        Check(Node<K, V> node, Node<K, V> parent, K lo, K hi) {
+            this.node = node;
+            this.parent = parent;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        /**
+         * Does this check
+         *
+         * @return the result for the subtree
+         */
+        protected Result<K> compute() {
+            if (node.getSize() <= SEQUENTIAL_SIZE) {
+                return walk(node, parent, lo, hi);
+            }
+
+            Result<K> result = new Result<K>();
+            TreeViolation violation = local(node, parent, lo, hi);
+            if (!canDescend(node, violation)) {
+                result.violation = violation;
+                result.path.add(node.getKey());
+                return result;
+            }
+
+            Node<K, V> left = node.getLeftChild();
+            Node<K, V> right = node.getRightChild();
+            Check leftCheck = null;
+            if (!isLeaf(left)) {
+                leftCheck = new Check(left, node, lo, node.getKey());
+                leftCheck.fork();
+            }
+            Result<K> rightResult = isLeaf(right) ? new Result<K>()
+                    : new Check(right, node, node.getKey(), hi).compute();
+            Result<K> leftResult = leftCheck == null ? new Result<K>()
+                    : leftCheck.join();
+
+            if (violation == null) {
+                if (leftResult.violation != null) {
+                    violation = leftResult.violation;
+                    result.path = leftResult.path;
+                } else if (rightResult.violation != null) {
+                    violation = rightResult.violation;
+                    result.path = rightResult.path;
+                } else {
+                    violation = after(node, leftResult.blackHeight,
+                            rightResult.blackHeight, leftResult.count,
+                            rightResult.count);
+                }
+            }
+            if (violation != null) {
+                result.violation = violation;
+                result.path.add(node.getKey());
+            }
+            result.blackHeight = Math.max(leftResult.blackHeight,
+                    rightResult.blackHeight) + (node.isRed() ? 0 : 1);
+            result.count = leftResult.count + rightResult.count + 1;
+            result.height = Math.max(leftResult.height, rightResult.height) + 1;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Walks through the nodes of a {@link RedBlackTree} in order, from a first
+ * node up to a bound, by following the child and parent links. It uses no
+ * recursion, no stack and allocates nothing per node, so walking k nodes
+ * costs O(k) after the O(log n) search for the first one.
+ * 
+ * @author Satshabad
+ * 
+ * @param <K>
+ *            the keys that map to the values
+ * @param <V>
+ *            the values that the nodes hold.
+ */
+public class TreeCursor<K extends Comparable<K>, V> implements
+        Iterator<Node<K, V>> {
+
+    /**
+     * The tree being walked
+     */
+    private final RedBlackTree<K, V> tree;
+
+    /**
+     * The key the walk stops at, null for no bound
+     */
+    private final K end;
+
+    /**
+     * If a node whose key equals end is still part of the walk
+     */
+    private final boolean endInclusive;
+
+    /**
+     * If the walk goes from higher keys to lower ones
+     */
+    private final boolean descending;
+
+    /**
+     * The node next returns, null when the walk is over
+     */
+    private Node<K, V> upcoming;
+
+    /**
+     * The node next returned last, null before the first call
+     */
+    private Node<K, V> current;
+
+    /**
+     * Makes a cursor
+     * 
+     * @pre first is in tree or null
+     * @post the cursor is before first
+     * 
+     * @param tree
+     *            the tree being walked
+     * @param first
+     *            the first node of the walk, null if it is empty
+     * @param end
+     *            the key the walk stops at, null for no bound
+     * @param endInclusive
+     *            if a node whose key equals end is still part of the walk
+     * @param descending
+     *            if the walk goes from higher keys to lower ones
+     */
+    TreeCursor(RedBlackTree<K, V> tree, Node<K, V> first, K end,
+            boolean endInclusive, boolean descending) {
+        this.tree = tree;
+        this.end = end;
+        this.endInclusive = endInclusive;
+        this.descending = descending;
+        this.upcoming = bounded(first);
+    }
+
+    /**
+     * Checks if there is another node
+     * 
+     * @pre true
+     * @post the cursor is unchanged
+     * 
+     * @return true if next will return a node
+     */
+    public boolean hasNext() {
+        return upcoming != null;
+    }
+
+    /**
+     * Moves to the next node and returns it
+     * 
+     * @pre hasNext is true
+     * @post the cursor is on the returned node
+     * 
+     * @return the next node
+     */
+    public Node<K, V> next() {
+        if (upcoming == null) {
+            throw new NoSuchElementException();
+        }
+        current = upcoming;
+        if (descending) {
+            upcoming = bounded(tree.previousNode(current));
+        } else {
+            upcoming = bounded(tree.nextNode(current));
+        }
+        return current;
+    }
+
+    /**
+     * Gets the key of the node the cursor is on
+     * 
+     * @pre next has been called
+     * @post the cursor is unchanged
+     * 
+     * @return the key
+     */
+    public K getKey() {
+        return current.getKey();
+    }
+
+    /**
+     * Gets the value of the node the cursor is on
+     * 
+     * @pre next has been called
+     * @post the cursor is unchanged
+     * 
+     * @return the value
+     */
+    public V getValue() {
+        return current.getValue();
+    }
+
+    /**
+     * The tree can only be changed through it's own methods
+     * 
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Checks a node against the end of the walk
+     * 
+     * @param node
+     *            the node, may be null
+     * @return the node if it is part of the walk, otherwise null
+     */
+    private Node<K, V> bounded(Node<K, V> node) {
+        if (node == null || end == null) {
+            return node;
+        }
+        int comparison = node.getKey().compareTo(end);
+        if (descending) {
+            comparison = -comparison;
+        }
+        if (comparison < 0 || (endInclusive && comparison == 0)) {
+            return node;
+        }
+        return null;
+    }
+}
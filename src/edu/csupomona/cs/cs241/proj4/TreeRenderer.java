@@ -0,0 +1,381 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class writes a picture of a Red Black Tree to anything that can be
+ * appended to. Nothing about the picture is kept by the tree, the widths of
+ * the labels are worked out here, from only the keys that are drawn. Every
+ * format takes time linear in the number of nodes drawn, and a depth past
+ * which nothing is drawn so a large tree can be looked at from the top.
+ *
+ * @author Satshabad
+ *
+ * @param <K>
+ *            the keys that map to the values
+ * @param <V>
+ *            the values that the nodes hold.
+ */
+public class TreeRenderer<K extends Comparable<K>, V> {
+
+    /**
+     * Spaces to copy from, so padding is appended in pieces
+     */
+    private static final String SPACES = "                                ";
+
+    /**
+     * How the tree is written
+     */
+    private final RenderFormat format;
+
+    /**
+     * The number of levels drawn, the root being the first
+     */
+    private final int maxDepth;
+
+    /**
+     * Initializes a renderer that draws every level
+     *
+     * @pre format is not null
+     * @post a renderer is made
+     *
+     * @param format
+     *            how the tree is written
+     */
+    public TreeRenderer(RenderFormat format) {
+        this(format, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Initializes a renderer that draws only the top levels
+     *
+     * @pre format is not null, maxDepth is positive
+     * @post a renderer is made
+     *
+     * @param format
+     *            how the tree is written
+     * @param maxDepth
+     *            the number of levels drawn, the root being the first. In DOT
+     *            and JSON the subtrees cut off are drawn as the number of keys
+     *            they hold
+     */
+    public TreeRenderer(RenderFormat format, int maxDepth) {
+        this.format = format;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Writes the tree out
+     *
+     * @pre tree is not null
+     * @post the picture of the tree has been appended to out, the tree is
+     *       unchanged
+     *
+     * @param tree
+     *            the tree to draw
+     * @param out
+     *            where the picture is written
+     * @throws IOException
+     *             if out can't be written to
+     */
+    public void render(RedBlackTree<K, V> tree, Appendable out)
+            throws IOException {
+        switch (format) {
+        case DOT:
+            out.append("digraph tree {\n");
+            out.append("  node [style=filled, fontcolor=white];\n");
+            if (tree.root != null) {
+                dot(tree.root, tree.nilLeaf(), 0, new int[1], out);
+            }
+            out.append("}\n");
+            break;
+        case JSON:
+            if (tree.root == null) {
+                out.append("null");
+            } else {
+                json(tree.root, tree.nilLeaf(), 0, out);
+            }
+            out.append('\n');
+            break;
+        default:
+            text(tree, out);
+        }
+    }
+
+    /**
+     * Writes a subtree as DOT nodes and edges, numbering the nodes in the
+     * order they are written
+     *
+     * @pre node is not the nil leaf
+     * @post the subtree has been appended to out
+     *
+     * @param node
+     *            the root of the subtree
+     * @param nil
+     *            the nil leaf of the tree
+     * @param depth
+     *            the level of node, the root being 0
+     * @param count
+     *            the number of nodes written so far, in its only element
+     * @param out
+     *            where the subtree is written
+     * @return the number node was given
+     * @throws IOException
+     *             if out can't be written to
+     */
+    private int dot(Node<K, V> node, Node<K, V> nil, int depth, int[] count,
+            Appendable out) throws IOException {
+        int id = count[0]++;
+        out.append("  n").append(Integer.toString(id)).append(" [label=\"");
+        escape(node.getKey().toString(), out);
+        out.append("\", fillcolor=").append(node.isRed() ? "red" : "black")
+                .append("];\n");
+
+        Node<K, V> left = node.getLeftChild();
+        Node<K, V> right = node.getRightChild();
+        if (left == nil && right == nil) {
+            return id;
+        }
+        if (depth + 1 >= maxDepth) {
+            // the rest is drawn as one node saying how much was cut off
+            out.append("  n").append(Integer.toString(id))
+                    .append("more [label=\"+")
+                    .append(Integer.toString(node.getSize() - 1))
+                    .append("\", shape=plaintext, fontcolor=black];\n");
+            out.append("  n").append(Integer.toString(id)).append(" -> n")
+                    .append(Integer.toString(id)).append("more;\n");
+            return id;
+        }
+        if (left != nil) {
+            int childId = dot(left, nil, depth + 1, count, out);
+            out.append("  n").append(Integer.toString(id)).append(" -> n")
+                    .append(Integer.toString(childId)).append(";\n");
+        }
+        if (right != nil) {
+            int childId = dot(right, nil, depth + 1, count, out);
+            out.append("  n").append(Integer.toString(id)).append(" -> n")
+                    .append(Integer.toString(childId)).append(";\n");
+        }
+        return id;
+    }
+
+    /**
+     * Writes a subtree as a JSON object
+     *
+     * @pre node is not the nil leaf
+     * @post the subtree has been appended to out
+     *
+     * @param node
+     *            the root of the subtree
+     * @param nil
+     *            the nil leaf of the tree
+     * @param depth
+     *            the level of node, the root being 0
+     * @param out
+     *            where the subtree is written
+     * @throws IOException
+     *             if out can't be written to
+     */
+    private void json(Node<K, V> node, Node<K, V> nil, int depth,
+            Appendable out) throws IOException {
+        if (depth >= maxDepth) {
+            out.append("{\"more\":").append(Integer.toString(node.getSize()))
+                    .append('}');
+            return;
+        }
+        out.append("{\"key\":\"");
+        escape(node.getKey().toString(), out);
+        out.append("\",\"color\":\"").append(node.isRed() ? "red" : "black")
+                .append("\",\"size\":")
+                .append(Integer.toString(node.getSize()));
+        out.append(",\"left\":");
+        if (node.getLeftChild() == nil) {
+            out.append("null");
+        } else {
+            json(node.getLeftChild(), nil, depth + 1, out);
+        }
+        out.append(",\"right\":");
+        if (node.getRightChild() == nil) {
+            out.append("null");
+        } else {
+            json(node.getRightChild(), nil, depth + 1, out);
+        }
+        out.append('}');
+    }
+
+    /**
+     * Writes the tree in rows, the layout of
+     * {@link RedBlackTree#prettyPrint()}: each key padded with E to the width
+     * of the longest one drawn and followed by its color, each nil leaf drawn
+     * as N. The rows are worked out one at a time from the one above, with a
+     * run of empty places kept as one count, so only the nodes drawn are
+     * visited.
+     *
+     * @pre tree is not null
+     * @post the rows have been appended to out
+     *
+     * @param tree
+     *            the tree to draw
+     * @param out
+     *            where the rows are written
+     * @throws IOException
+     *             if out can't be written to
+     */
+    private void text(RedBlackTree<K, V> tree, Appendable out)
+            throws IOException {
+        Node<K, V> nil = tree.nilLeaf();
+
+        // a first pass finds how many rows there are and how wide a label is
+        int rows = 0;
+        int width = 0;
+        List<Node<K, V>> row = new ArrayList<Node<K, V>>();
+        if (tree.root != null) {
+            row.add(tree.root);
+        }
+        while (!row.isEmpty() && rows < maxDepth) {
+            rows++;
+            List<Node<K, V>> below = new ArrayList<Node<K, V>>();
+            for (Node<K, V> node : row) {
+                if (node != nil) {
+                    width = Math.max(width, node.getKey().toString().length());
+                    below.add(node.getLeftChild());
+                    below.add(node.getRightChild());
+                }
+            }
+            row = below;
+        }
+
+        // an empty tree is an empty line
+        if (rows == 0) {
+            out.append('\n');
+            return;
+        }
+
+        int slot = width + 2;
+        int beginningSpaces = slot;
+        for (int i = 0; i < rows - 2; i++) {
+            beginningSpaces = (beginningSpaces * 2) + slot;
+        }
+        int inBetweenSpaces = beginningSpaces;
+
+        // each entry is a node, or an Integer counting empty places in a row
+        List<Object> places = new ArrayList<Object>();
+        if (tree.root != null) {
+            places.add(tree.root);
+        }
+        spaces(beginningSpaces, out);
+        for (int depth = 0; depth < rows; depth++) {
+            if (depth > 0) {
+                out.append('\n');
+                inBetweenSpaces = beginningSpaces;
+                beginningSpaces = (beginningSpaces - slot) / 2;
+                spaces(beginningSpaces, out);
+            }
+
+            List<Object> below = new ArrayList<Object>();
+            for (Object place : places) {
+                if (place instanceof Integer) {
+                    int empty = (Integer) place;
+                    spaces(empty * (slot + inBetweenSpaces), out);
+                    addEmpty(below, empty * 2);
+                    continue;
+                }
+
+                @SuppressWarnings("unchecked")
+                Node<K, V> node = (Node<K, V>) place;
+                if (node == nil) {
+                    for (int j = 0; j < width; j++) {
+                        out.append('N');
+                    }
+                    out.append(":B");
+                    addEmpty(below, 2);
+                } else {
+                    String key = node.getKey().toString();
+                    out.append(key);
+                    for (int j = key.length(); j < width; j++) {
+                        out.append('E');
+                    }
+                    out.append(node.isRed() ? ":R" : ":B");
+                    below.add(node.getLeftChild());
+                    below.add(node.getRightChild());
+                }
+                spaces(inBetweenSpaces, out);
+            }
+            places = below;
+        }
+        out.append('\n');
+    }
+
+    /**
+     * Adds empty places to the end of a row, onto the count already there if
+     * the row ends with one
+     *
+     * @pre count is positive
+     * @post the row ends with the empty places
+     *
+     * @param row
+     *            the row being built
+     * @param count
+     *            the number of empty places
+     */
+    private static void addEmpty(List<Object> row, int count) {
+        int last = row.size() - 1;
+        if (last >= 0 && row.get(last) instanceof Integer) {
+            row.set(last, (Integer) row.get(last) + count);
+        } else {
+            row.add(count);
+        }
+    }
+
+    /**
+     * Appends spaces
+     *
+     * @pre true
+     * @post count spaces have been appended to out
+     *
+     * @param count
+     *            the number of spaces, nothing is appended if not positive
+     * @param out
+     *            where the spaces are written
+     * @throws IOException
+     *             if out can't be written to
+     */
+    private static void spaces(int count, Appendable out) throws IOException {
+        while (count > 0) {
+            int piece = Math.min(count, SPACES.length());
+            out.append(SPACES, 0, piece);
+            count -= piece;
+        }
+    }
+
+    /**
+     * Appends a key as the inside of a quoted string. Quotes and backslashes
+     * are escaped the same way in DOT and JSON, other control characters are
+     * written as JSON escapes, which DOT shows as they are.
+     *
+     * @pre text is not null
+     * @post the escaped text has been appended to out
+     *
+     * @param text
+     *            the text to escape
+     * @param out
+     *            where the text is written
+     * @throws IOException
+     *             if out can't be written to
+     */
+    private static void escape(String text, Appendable out)
+            throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < ' ') {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What {@link RedBlackTree#check(boolean)} found out about a tree: its shape,
+ * and the first rule it breaks if it breaks any. The nodes are checked in the
+ * order of a walk down the tree, left before right, so the first violation is
+ * the same whether or not the check ran in parallel.
+ *
+ * @author Satshabad
+ *
+ * @param <K>
+ *            the keys of the tree
+ */
+public class TreeReport<K> {
+
+    /**
+     * The first rule broken, null if there is none
+     */
+    private final TreeViolation violation;
+
+    /**
+     * The keys from the root down to the node breaking the rule
+     */
+    private final List<K> path;
+
+    /**
+     * The number of nodes on the longest path down from the root
+     */
+    private final int height;
+
+    /**
+     * The number of black nodes on the paths down from the root
+     */
+    private final int blackHeight;
+
+    /**
+     * The number of nodes reached from the root
+     */
+    private final int nodeCount;
+
+    /**
+     * Initializes a report
+     *
+     * @pre path is empty if violation is null
+     * @post a report is made
+     *
+     * @param violation
+     *            the first rule broken, null if there is none
+     * @param path
+     *            the keys from the root down to the node breaking the rule
+     * @param height
+     *            the number of nodes on the longest path down from the root
+     * @param blackHeight
+     *            the number of black nodes on the paths down from the root
+     * @param nodeCount
+     *            the number of nodes reached from the root
+     */
+    TreeReport(TreeViolation violation, List<K> path, int height,
+            int blackHeight, int nodeCount) {
+        this.violation = violation;
+        this.path = Collections.unmodifiableList(path);
+        this.height = height;
+        this.blackHeight = blackHeight;
+        this.nodeCount = nodeCount;
+    }
+
+    /**
+     * Checks if the tree follows every rule
+     *
+     * @pre true
+     * @post the report is unchanged
+     *
+     * @return true if no rule is broken
+     */
+    public boolean isValid() {
+        return violation == null;
+    }
+
+    /**
+     * Gets the first rule the tree breaks
+     *
+     * @pre true
+     * @post the report is unchanged
+     *
+     * @return the rule, or null if the tree is valid
+     */
+    public TreeViolation getViolation() {
+        return violation;
+    }
+
+    /**
+     * Gets the keys on the way down to the first node breaking a rule
+     *
+     * @pre true
+     * @post the report is unchanged
+     *
+     * @return the keys from the root to that node, both included. Empty if
+     *         the tree is valid or the nil leaf itself is broken
+     */
+    public List<K> getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the height of the tree
+     *
+     * @pre true
+     * @post the report is unchanged
+     *
+     * @return the number of nodes on the longest path down from the root, 0
+     *         if the tree is empty
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the black height of the tree. If paths differ it is the greatest
+     * one.
+     *
+     * @pre true
+     * @post the report is unchanged
+     *
+     * @return the number of black nodes on any path down from the root, 0 if
+     *         the tree is empty
+     */
+    public int getBlackHeight() {
+        return blackHeight;
+    }
+
+    /**
+     * Gets the number of nodes in the tree
+     *
+     * @pre true
+     * @post the report is unchanged
+     *
+     * @return the number of nodes reached from the root
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public String toString() {
+        String shape = "height " + height + ", black height " + blackHeight
+                + ", " + nodeCount + " nodes";
+        if (violation == null) {
+            return "valid, " + shape;
+        }
+        return violation + " at " + path + ", " + shape;
+    }
+}
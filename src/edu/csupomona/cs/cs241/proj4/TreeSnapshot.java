@@ -0,0 +1,533 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * This class writes and reads the snapshots of
+ * {@link RedBlackTree#writeSnapshot(OutputStream, Codec, Codec, boolean, boolean)}
+ * .
+ *
+ * A snapshot is a header and then the mappings in order of key, cut into
+ * blocks of about {@value #BLOCK_BYTES} bytes. The header is the magic
+ * number, the version, the flags, the {@link KeyMode} of the tree and the
+ * number of mappings, followed by a CRC32 of all of those. Each block starts
+ * with the number of mappings in it, its length before and after compression
+ * and, if the snapshot is checksummed, a CRC32 of those three numbers and the
+ * stored bytes. A block of no mappings ends the snapshot. Reading hands the
+ * mappings as they are decoded to
+ * {@link RedBlackTree#fromSorted(Iterator, int)}, so the tree is rebuilt in
+ * linear time without a single add. Version 1 snapshots have no header
+ * checksum and are still read.
+ *
+ * @author Satshabad
+ */
+final class TreeSnapshot {
+
+    /**
+     * The first eight bytes of every snapshot
+     */
+    private static final long MAGIC = 0x524254534e415031L;
+
+    /**
+     * The version of the format written
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * The last version written without a header checksum
+     */
+    private static final int UNCHECKED_VERSION = 1;
+
+    /**
+     * The flag for blocks compressed with a Deflater
+     */
+    private static final int COMPRESSED = 1;
+
+    /**
+     * The flag for blocks with a checksum
+     */
+    private static final int CHECKSUMMED = 2;
+
+    /**
+     * A block is written once its mappings take up this many bytes
+     */
+    static final int BLOCK_BYTES = 64 * 1024;
+
+    /**
+     * No block this long is ever written, a longer one means the snapshot is
+     * corrupt
+     */
+    private static final int MAX_BLOCK_BYTES = 1 << 30;
+
+    /**
+     * Only static methods
+     */
+    private TreeSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of a tree
+     *
+     * @pre nothing changes the tree while it is written
+     * @post the snapshot has been written to out and out flushed, but not
+     *       closed
+     *
+     * @param tree
+     *            the tree to write
+     * @param mode
+     *            the key mode of the tree, given back to the tree read
+     * @param out
+     *            where the snapshot is written
+     * @param keys
+     *            writes the keys
+     * @param values
+     *            writes the values
+     * @param compress
+     *            if true each block is compressed
+     * @param checksum
+     *            if true each block has a checksum
+     * @throws IOException
+     *             if out can't be written to
+     */
+    static <K extends Comparable<K>, V> void write(RedBlackTree<K, V> tree,
+            KeyMode mode, OutputStream out, Codec<? super K> keys,
+            Codec<? super V> values, boolean compress, boolean checksum)
+            throws IOException {
+        Buffer header = new Buffer(32);
+        DataOutputStream headerData = new DataOutputStream(header);
+        headerData.writeLong(MAGIC);
+        headerData.writeInt(VERSION);
+        headerData.writeInt((compress ? COMPRESSED : 0)
+                | (checksum ? CHECKSUMMED : 0));
+        headerData.writeInt(mode.ordinal());
+        headerData.writeInt(tree.size());
+        headerData.writeLong(checksum(header.bytes(), header.size()));
+        out.write(header.bytes(), 0, header.size());
+
+        Buffer raw = new Buffer(BLOCK_BYTES + BLOCK_BYTES / 4);
+        DataOutputStream data = new DataOutputStream(raw);
+        Buffer block = new Buffer(BLOCK_BYTES + BLOCK_BYTES / 4);
+        Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED)
+                : null;
+        try {
+            int entries = 0;
+            Iterator<Node<K, V>> nodes = tree.stream().iterator();
+            while (nodes.hasNext()) {
+                Node<K, V> node = nodes.next();
+                keys.write(node.getKey(), data);
+                values.write(node.getValue(), data);
+                entries++;
+                if (raw.size() >= BLOCK_BYTES) {
+                    writeBlock(out, entries, raw, block, deflater, checksum);
+                    entries = 0;
+                }
+            }
+            if (entries > 0) {
+                writeBlock(out, entries, raw, block, deflater, checksum);
+            }
+            writeBlock(out, 0, raw, block, deflater, checksum);
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes one block and empties the buffer of its mappings
+     *
+     * @param out
+     *            where the block is written
+     * @param entries
+     *            the number of mappings in the block
+     * @param raw
+     *            the mappings, emptied afterward
+     * @param block
+     *            a buffer to put the block together in
+     * @param deflater
+     *            compresses the mappings, null if they are not compressed
+     * @param checksum
+     *            if true the block gets a checksum
+     * @throws IOException
+     *             if out can't be written to
+     */
+    private static void writeBlock(OutputStream out, int entries, Buffer raw,
+            Buffer block, Deflater deflater, boolean checksum)
+            throws IOException {
+        byte[] stored = raw.bytes();
+        int storedLength = raw.size();
+        if (deflater != null && storedLength > 0) {
+            deflater.reset();
+            deflater.setInput(raw.bytes(), 0, raw.size());
+            deflater.finish();
+            block.reset();
+            byte[] piece = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(piece);
+                block.write(piece, 0, length);
+            }
+            stored = block.bytes();
+            storedLength = block.size();
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(20);
+        header.putInt(entries);
+        header.putInt(raw.size());
+        header.putInt(storedLength);
+        if (checksum) {
+            header.putLong(checksum(entries, raw.size(), stored, storedLength));
+        }
+        out.write(header.array(), 0, header.position());
+        out.write(stored, 0, storedLength);
+        raw.reset();
+    }
+
+    /**
+     * Reads a snapshot back into a tree
+     *
+     * @pre in is at the start of a snapshot
+     * @post the snapshot has been read from in, which is not closed
+     *
+     * @param in
+     *            where the snapshot is read from
+     * @param keys
+     *            reads the keys
+     * @param values
+     *            reads the values
+     * @return the tree the snapshot was written from
+     * @throws IOException
+     *             if in can't be read from, or the snapshot is corrupt
+     */
+    static <K extends Comparable<K>, V> RedBlackTree<K, V> read(
+            InputStream in, Codec<? extends K> keys, Codec<? extends V> values)
+            throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readLong() != MAGIC) {
+            throw new IOException("not a tree snapshot");
+        }
+        int version = data.readInt();
+        if (version != VERSION && version != UNCHECKED_VERSION) {
+            throw new IOException("unknown snapshot version " + version);
+        }
+        int flags = data.readInt();
+        int mode = data.readInt();
+        int count = data.readInt();
+        if (version == VERSION) {
+            ByteBuffer header = ByteBuffer.allocate(24);
+            header.putLong(MAGIC).putInt(version).putInt(flags).putInt(mode)
+                    .putInt(count);
+            long expected = checksum(header.array(), header.position());
+            if (data.readLong() != expected) {
+                throw new IOException("corrupt snapshot header, bad checksum");
+            }
+        }
+        if (mode < 0 || mode >= KeyMode.values().length || count < 0) {
+            throw new IOException("corrupt snapshot header");
+        }
+
+        Blocks<K, V> blocks = new Blocks<K, V>(data, keys, values,
+                (flags & COMPRESSED) != 0, (flags & CHECKSUMMED) != 0);
+        RedBlackTree<K, V> tree;
+        try {
+            // the count is only a hint for the buffer of nodes, an unchecked
+            // header may be wrong about it, so it never sizes more than a
+            // block's worth of mappings up front
+            tree = RedBlackTree.fromSorted(blocks,
+                    Math.min(count, BLOCK_BYTES), KeyMode.values()[mode]);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("corrupt snapshot, " + e.getMessage(), e);
+        } finally {
+            blocks.end();
+        }
+        if (tree.size() != count) {
+            throw new IOException("snapshot holds " + tree.size()
+                    + " mappings, its header says " + count);
+        }
+        return tree;
+    }
+
+    /**
+     * Computes the checksum of a header
+     *
+     * @param header
+     *            the bytes of the header before its checksum
+     * @param length
+     *            the number of those bytes
+     * @return the checksum
+     */
+    private static long checksum(byte[] header, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(header, 0, length);
+        return crc.getValue();
+    }
+
+    /**
+     * Computes the checksum of a block
+     *
+     * @param entries
+     *            the number of mappings in the block
+     * @param rawLength
+     *            the length of the block before compression
+     * @param stored
+     *            the bytes of the block as stored
+     * @param storedLength
+     *            the number of bytes stored
+     * @return the checksum
+     */
+    private static long checksum(int entries, int rawLength, byte[] stored,
+            int storedLength) {
+        CRC32 crc = new CRC32();
+        for (int value : new int[] { entries, rawLength, storedLength }) {
+            crc.update(value >>> 24);
+            crc.update(value >>> 16);
+            crc.update(value >>> 8);
+            crc.update(value);
+        }
+        crc.update(stored, 0, storedLength);
+        return crc.getValue();
+    }
+
+    /**
+     * A ByteArrayOutputStream that lets its bytes be read without a copy
+     *
+     * @author Satshabad
+     */
+    static final class Buffer extends ByteArrayOutputStream {
+
+        /**
+         * Initializes an empty buffer
+         *
+         * @param size
+         *            the number of bytes it starts with room for
+         */
+        Buffer(int size) {
+            super(size);
+        }
+
+        /**
+         * Gets the bytes written, only the first {@link #size()} of them
+         *
+         * @return the array the bytes are in
+         */
+        byte[] bytes() {
+            return buf;
+        }
+    }
+
+    /**
+     * Reads the mappings of a snapshot one block at a time. An iterator can't
+     * throw an IOException, so it is wrapped in an UncheckedIOException that
+     * {@link TreeSnapshot#read} takes back out.
+     *
+     * @author Satshabad
+     *
+     * @param <K>
+     *            the keys read
+     * @param <V>
+     *            the values read
+     */
+    private static final class Blocks<K, V> implements
+            Iterator<Map.Entry<K, V>> {
+
+        /**
+         * Where the blocks are read from
+         */
+        private final DataInputStream in;
+
+        /**
+         * Reads the keys
+         */
+        private final Codec<? extends K> keys;
+
+        /**
+         * Reads the values
+         */
+        private final Codec<? extends V> values;
+
+        /**
+         * Uncompresses the blocks, null if they are not compressed
+         */
+        private final Inflater inflater;
+
+        /**
+         * If true each block has a checksum
+         */
+        private final boolean checksummed;
+
+        /**
+         * The mappings of the block being read
+         */
+        private DataInputStream block;
+
+        /**
+         * The number of mappings of the block not yet read
+         */
+        private int left;
+
+        /**
+         * The bytes of the block being read, reused for the next
+         */
+        private byte[] raw;
+
+        /**
+         * True once the block ending the snapshot has been read
+         */
+        private boolean ended;
+
+        /**
+         * The number of the block being read, for the messages
+         */
+        private int number;
+
+        /**
+         * Initializes a reader of the blocks that come next in the stream
+         *
+         * @param in
+         *            where the blocks are read from
+         * @param keys
+         *            reads the keys
+         * @param values
+         *            reads the values
+         * @param compressed
+         *            if true the blocks are compressed
+         * @param checksummed
+         *            if true each block has a checksum
+         */
+        Blocks(DataInputStream in, Codec<? extends K> keys,
+                Codec<? extends V> values, boolean compressed,
+                boolean checksummed) {
+            this.in = in;
+            this.keys = keys;
+            this.values = values;
+            this.inflater = compressed ? new Inflater() : null;
+            this.checksummed = checksummed;
+            this.raw = new byte[0];
+        }
+
+        public boolean hasNext() {
+            try {
+                while (left == 0 && !ended) {
+                    nextBlock();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return left > 0;
+        }
+
+        public Map.Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                K key = keys.read(block);
+                V value = values.read(block);
+                left--;
+                if (left == 0 && block.available() != 0) {
+                    throw new IOException("block " + number
+                            + " has bytes after its last mapping");
+                }
+                return new AbstractMap.SimpleImmutableEntry<K, V>(key, value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Reads the next block and checks it
+         *
+         * @throws IOException
+         *             if the block can't be read or is corrupt
+         */
+        private void nextBlock() throws IOException {
+            number++;
+            int entries = in.readInt();
+            int length = in.readInt();
+            int storedLength = in.readInt();
+            long expected = checksummed ? in.readLong() : 0;
+            if (entries < 0 || length < 0 || storedLength < 0
+                    || length > MAX_BLOCK_BYTES
+                    || storedLength > MAX_BLOCK_BYTES) {
+                throw new IOException("block " + number
+                        + " has a corrupt header");
+            }
+            byte[] stored = new byte[storedLength];
+            in.readFully(stored);
+            if (checksummed
+                    && checksum(entries, length, stored, storedLength) != expected) {
+                throw new IOException("block " + number
+                        + " fails its checksum");
+            }
+
+            if (inflater == null || length == 0) {
+                if (storedLength != length) {
+                    throw new IOException("block " + number
+                            + " has a corrupt header");
+                }
+                raw = stored;
+            } else {
+                if (raw.length < length) {
+                    raw = new byte[length];
+                }
+                inflater.reset();
+                inflater.setInput(stored);
+                try {
+                    int inflated = 0;
+                    while (inflated < length && !inflater.finished()) {
+                        int piece = inflater.inflate(raw, inflated, length
+                                - inflated);
+                        if (piece == 0 && inflater.needsInput()) {
+                            break;
+                        }
+                        inflated += piece;
+                    }
+                    if (inflated != length || !inflater.finished()) {
+                        throw new IOException("block " + number
+                                + " does not uncompress to its length");
+                    }
+                } catch (DataFormatException e) {
+                    throw new IOException("block " + number
+                            + " does not uncompress", e);
+                }
+            }
+            if (entries == 0 && length != 0) {
+                throw new IOException("block " + number
+                        + " has bytes but no mappings");
+            }
+            block = new DataInputStream(new ByteArrayInputStream(raw, 0,
+                    length));
+            left = entries;
+            if (entries == 0) {
+                ended = true;
+            }
+        }
+
+        /**
+         * Lets go of the inflater
+         */
+        void end() {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Spliterator} over the nodes of a {@link RedBlackTree} in key
+ * order that splits along subtree boundaries, so parallel streams hand each
+ * worker about half of what is left. What is left is always an optional
+ * single node followed by a whole subtree. Splitting gives away the node and
+ * the left subtree and keeps the subtree's root and right subtree, which has
+ * the same shape. The subtree sizes make every size exact.
+ * 
+ * Changing the tree while a spliterator is in use makes its results
+ * undefined.
+ * 
+ * @author Satshabad
+ * 
+ * @param <K>
+ *            the keys that map to the values
+ * @param <V>
+ *            the values that the nodes hold.
+ */
+public class TreeSpliterator<K extends Comparable<K>, V> implements
+        Spliterator<Node<K, V>> {
+
+    /**
+     * The tree being walked
+     */
+    private final RedBlackTree<K, V> tree;
+
+    /**
+     * The node that comes before the subtree, null if there is none
+     */
+    private Node<K, V> head;
+
+    /**
+     * The root of the subtree that is left, the nil leaf if there is none
+     */
+    private Node<K, V> top;
+
+    /**
+     * Once the walk through the subtree has started, the next node of it, or
+     * null if it is over
+     */
+    private Node<K, V> current;
+
+    /**
+     * Once the walk through the subtree has started, the last node of it
+     */
+    private Node<K, V> last;
+
+    /**
+     * The number of nodes that are left
+     */
+    private long remaining;
+
+    /**
+     * Makes a spliterator over a node and a subtree
+     * 
+     * @pre the nodes are in tree, head comes just before the subtree of top
+     * @post the spliterator is made
+     * 
+     * @param tree
+     *            the tree being walked
+     * @param head
+     *            the node before the subtree, null for none
+     * @param top
+     *            the root of the subtree, the nil leaf for none
+     */
+    TreeSpliterator(RedBlackTree<K, V> tree, Node<K, V> head, Node<K, V> top) {
+        this.tree = tree;
+        this.head = head;
+        this.top = top;
+        this.remaining = (head == null ? 0 : 1) + top.getSize();
+    }
+
+    /**
+     * Splits off the first part of what is left, the head and the left
+     * subtree
+     * 
+     * @pre true
+     * @post this spliterator covers only what it did not give away
+     * 
+     * @return the spliterator over the first part, or null if this can't be
+     *         split
+     */
+    public Spliterator<Node<K, V>> trySplit() {
+        if (current != null || last != null || top.getSize() < 2) {
+            return null;
+        }
+        TreeSpliterator<K, V> prefix = new TreeSpliterator<K, V>(tree, head,
+                top.getLeftChild());
+        head = top;
+        top = top.getRightChild();
+        remaining -= prefix.remaining;
+        return prefix;
+    }
+
+    /**
+     * Gives the next node to the action
+     * 
+     * @pre action is not null
+     * @post the node is passed over
+     * 
+     * @param action
+     *            what to do with the node
+     * @return false if there was no node left
+     */
+    public boolean tryAdvance(Consumer<? super Node<K, V>> action) {
+        Node<K, V> node = step();
+        if (node == null) {
+            return false;
+        }
+        action.accept(node);
+        return true;
+    }
+
+    /**
+     * Gives every node that is left to the action, in order
+     * 
+     * @pre action is not null
+     * @post no nodes are left
+     * 
+     * @param action
+     *            what to do with each node
+     */
+    public void forEachRemaining(Consumer<? super Node<K, V>> action) {
+        for (Node<K, V> node = step(); node != null; node = step()) {
+            action.accept(node);
+        }
+    }
+
+    /**
+     * Gets the exact number of nodes left
+     * 
+     * @pre true
+     * @post the spliterator is unchanged
+     * 
+     * @return the number of nodes left
+     */
+    public long estimateSize() {
+        return remaining;
+    }
+
+    /**
+     * The nodes are in key order, never null, never the same node twice and
+     * the sizes are exact
+     * 
+     * @pre true
+     * @post the spliterator is unchanged
+     * 
+     * @return the characteristics
+     */
+    public int characteristics() {
+        return ORDERED | SORTED | DISTINCT | NONNULL | SIZED | SUBSIZED;
+    }
+
+    /**
+     * The nodes are sorted by key
+     * 
+     * @pre true
+     * @post the spliterator is unchanged
+     * 
+     * @return a comparator of nodes by key
+     */
+    public Comparator<? super Node<K, V>> getComparator() {
+        return new Comparator<Node<K, V>>() {
+            public int compare(Node<K, V> a, Node<K, V> b) {
+                return a.getKey().compareTo(b.getKey());
+            }
+        };
+    }
+
+    /**
+     * Moves past the next node
+     * 
+     * @return the node moved past, or null if there are none left
+     */
+    private Node<K, V> step() {
+        if (head != null) {
+            Node<K, V> node = head;
+            head = null;
+            remaining--;
+            return node;
+        }
+
+        // start the walk through the subtree
+        if (last == null) {
+            if (top.getSize() == 0) {
+                return null;
+            }
+            current = top;
+            while (current.getLeftChild().getSize() != 0) {
+                current = current.getLeftChild();
+            }
+            last = top;
+            while (last.getRightChild().getSize() != 0) {
+                last = last.getRightChild();
+            }
+        }
+
+        Node<K, V> node = current;
+        if (node != null) {
+            current = node == last ? null : tree.nextNode(node);
+            remaining--;
+        }
+        return node;
+    }
+}
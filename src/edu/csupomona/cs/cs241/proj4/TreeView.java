@@ -0,0 +1,145 @@
+package edu.csupomona.cs.cs241.proj4;
+
+import java.util.Iterator;
+
+/**
+ * A view of the keys of a {@link RedBlackTree} that fall in a range, in
+ * ascending or descending order. The view holds no copy of the keys, it
+ * always shows what is in the tree right now.
+ * 
+ * @author Satshabad
+ * 
+ * @param <K>
+ *            the keys that map to the values
+ * @param <V>
+ *            the values that the nodes hold.
+ */
+public class TreeView<K extends Comparable<K>, V> implements
+        Iterable<Node<K, V>> {
+
+    /**
+     * The tree this is a view of
+     */
+    private final RedBlackTree<K, V> tree;
+
+    /**
+     * The lowest key of the view, null for no lower bound
+     */
+    private final K lo;
+
+    /**
+     * If lo itself is in the view
+     */
+    private final boolean loInclusive;
+
+    /**
+     * The highest key of the view, null for no upper bound
+     */
+    private final K hi;
+
+    /**
+     * If hi itself is in the view
+     */
+    private final boolean hiInclusive;
+
+    /**
+     * If the view goes from the highest key to the lowest
+     */
+    private final boolean descending;
+
+    /**
+     * Makes a view of a tree
+     * 
+     * @pre tree is not null
+     * @post the view is made
+     * 
+     * @param tree
+     *            the tree to view
+     * @param lo
+     *            the lowest key of the view, null for no lower bound
+     * @param loInclusive
+     *            if lo itself is in the view
+     * @param hi
+     *            the highest key of the view, null for no upper bound
+     * @param hiInclusive
+     *            if hi itself is in the view
+     * @param descending
+     *            if the view goes from the highest key to the lowest
+     */
+    TreeView(RedBlackTree<K, V> tree, K lo, boolean loInclusive, K hi,
+            boolean hiInclusive, boolean descending) {
+        this.tree = tree;
+        this.lo = lo;
+        this.loInclusive = loInclusive;
+        this.hi = hi;
+        this.hiInclusive = hiInclusive;
+        this.descending = descending;
+    }
+
+    /**
+     * Gets the same range in the other order
+     * 
+     * @pre true
+     * @post the view is unchanged
+     * 
+     * @return the reversed view
+     */
+    public TreeView<K, V> descendingMap() {
+        return new TreeView<K, V>(tree, lo, loInclusive, hi, hiInclusive,
+                !descending);
+    }
+
+    /**
+     * Counts the keys in the view without walking through them
+     * 
+     * @pre true
+     * @post the view is unchanged
+     * 
+     * @return the number of keys in the view
+     */
+    public int size() {
+        if (lo != null && hi != null) {
+            int comparison = lo.compareTo(hi);
+            if (comparison > 0
+                    || (comparison == 0 && !(loInclusive && hiInclusive))) {
+                return 0;
+            }
+        }
+        // with no lower bound nothing is below the view, whatever
+        // loInclusive says
+        return tree.countBelowOrAll(hi, hi == null || hiInclusive)
+                - tree.countBelowOrAll(lo, lo != null && !loInclusive);
+    }
+
+    /**
+     * Gets a cursor that walks through the nodes of the view in order. The
+     * cursor finds the first node in O(log n) and then makes no allocation
+     * while it walks. Changing the tree while a cursor is open makes the
+     * cursor's results undefined.
+     * 
+     * @pre true
+     * @post the view is unchanged
+     * 
+     * @return the cursor
+     */
+    public TreeCursor<K, V> cursor() {
+        if (descending) {
+            return new TreeCursor<K, V>(tree, tree.highestBelow(hi,
+                    hi == null || hiInclusive), lo, loInclusive, true);
+        }
+        return new TreeCursor<K, V>(tree, tree.lowestAbove(lo, lo == null
+                || loInclusive), hi, hiInclusive, false);
+    }
+
+    /**
+     * Gets a cursor over the view, see {@link #cursor()}
+     * 
+     * @pre true
+     * @post the view is unchanged
+     * 
+     * @return the cursor
+     */
+    public Iterator<Node<K, V>> iterator() {
+        return cursor();
+    }
+}
@@ -0,0 +1,48 @@
+package edu.csupomona.cs.cs241.proj4;
+
+/**
+ * The rules a {@link RedBlackTree} can be found breaking by
+ * {@link RedBlackTree#check(boolean)}.
+ *
+ * @author Satshabad
+ */
+public enum TreeViolation {
+
+    /**
+     * A key is less than a key on its left or greater than one on its right
+     */
+    ORDER,
+    /**
+     * A key is in a {@link KeyMode#MAP} tree more than once
+     */
+    DUPLICATE_KEY,
+    /**
+     * The root is red
+     */
+    RED_ROOT,
+    /**
+     * A red node has a red parent
+     */
+    RED_RED,
+    /**
+     * The two children of a node have a different number of black nodes on
+     * the paths down from them
+     */
+    BLACK_HEIGHT,
+    /**
+     * A node does not point back at the node it is a child of, or the root
+     * has a parent. The subtree under it is not checked, it may not even be a
+     * tree.
+     */
+    PARENT_LINK,
+    /**
+     * The size kept by a node is not the number of nodes under it, itself
+     * included
+     */
+    SIZE,
+    /**
+     * The nil leaf has been written to, or a child is null rather than the
+     * nil leaf
+     */
+    SENTINEL
+}